@@ -0,0 +1,146 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import java.util.Map;
+
+/**
+ * Provides binary store configuration
+ */
+public interface BinaryStoreConfigurator {
+
+    /**
+     * Layout used when creating the chunks table
+     *
+     * @return
+     */
+    ChunkLayout getChunkLayout();
+
+    /**
+     * Default time to live in seconds for files that don't specify one, 0 if files never expire.  When set, new tables
+     * are created with a compaction strategy suited to expiring data.
+     *
+     * @return
+     */
+    int getDefaultTtl();
+
+    /**
+     * Size in bytes of the blocks new files store each chunk as, 0 to store chunks whole.  Range reads only fetch the
+     * blocks they overlap.
+     *
+     * @return
+     */
+    int getBlockSize();
+
+    /**
+     * Whether readers verify chunk and file checksums as data is streamed
+     *
+     * @return
+     */
+    boolean isVerifyChecksums();
+
+    /**
+     * Number of chunks a reader loads ahead of the consumer, 0 to only load a chunk once the previous one was delivered
+     *
+     * @return
+     */
+    int getReadAhead();
+
+    /**
+     * Options for the background collection of orphaned chunks
+     *
+     * @return
+     */
+    OrphanedChunkCollectorOptions getOrphanedChunkCollectorOptions();
+
+    /**
+     * Options for exporting metrics over JMX and Prometheus
+     *
+     * @return
+     */
+    MetricsOptions getMetricsOptions();
+
+    /**
+     * Options for hedging file and chunk reads
+     *
+     * @return
+     */
+    HedgingOptions getHedgingOptions();
+
+    /**
+     * Options for the adaptive limit on queries in flight, the defaults for each lane
+     *
+     * @return
+     */
+    ConcurrencyLimitOptions getConcurrencyLimitOptions();
+
+    /**
+     * Options for the lane of file metadata queries
+     *
+     * @return
+     */
+    LaneOptions getMetadataLaneOptions();
+
+    /**
+     * Options for the lane of chunk queries
+     *
+     * @return
+     */
+    LaneOptions getChunkLaneOptions();
+
+    /**
+     * Options for the fair scheduling of chunk reads and writes
+     *
+     * @return
+     */
+    ChunkSchedulerOptions getChunkSchedulerOptions();
+
+    /**
+     * Options for the budget of chunk data held in memory by readers and writers
+     *
+     * @return
+     */
+    MemoryBudgetOptions getMemoryBudgetOptions();
+
+    /**
+     * Options for the pool of chunk buffers
+     *
+     * @return
+     */
+    BufferPoolOptions getBufferPoolOptions();
+
+    /**
+     * Options for the per tenant quotas on chunk reads and writes
+     *
+     * @return
+     */
+    QuotaOptions getQuotaOptions();
+
+    /**
+     * Options for serving keyspaces besides the default one
+     *
+     * @return
+     */
+    KeyspaceOptions getKeyspaceOptions();
+
+    /**
+     * Cassandra options of the store's tables by table name, tables not listed keep Cassandra's defaults
+     *
+     * @return
+     */
+    Map<String, TableOptions> getTableOptions();
+
+    /**
+     * Whether the store is ready as soon as the cached schema metadata has its tables, verifying the schema and
+     * preparing statements in the background
+     *
+     * @return
+     */
+    boolean isLazyStartup();
+
+    /**
+     * Options for the node-local cache of popular chunks and warming it after a restart
+     *
+     * @return
+     */
+    WarmCacheOptions getWarmCacheOptions();
+
+}
@@ -0,0 +1,103 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.vertx.cassandra.binarystore.impl.BinaryStoreHttpHandler;
+import com.englishtown.vertx.cassandra.binarystore.impl.MetricsHttpHandler;
+import io.vertx.core.Handler;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+
+import javax.inject.Inject;
+
+/**
+ * Serves files from the binary store over HTTP, see {@link BinaryStoreHttpHandler}, and the store metrics to
+ * Prometheus when {@link MetricsOptions#isPrometheusEnabled()}
+ */
+public class BinaryStoreHttpVerticle extends AbstractVerticle {
+
+    public static final String CONFIG_HTTP = "http";
+    public static final String CONFIG_PREFIX = "prefix";
+    public static final int DEFAULT_PORT = 8080;
+
+    private final BinaryStoreStarter starter;
+    private final BinaryStoreHttpHandler handler;
+    private final MetricsHttpHandler metricsHandler;
+    private final MetricsOptions metricsOptions;
+    private HttpServer server;
+
+    @Inject
+    public BinaryStoreHttpVerticle(
+            BinaryStoreStarter starter,
+            BinaryStoreHttpHandler handler,
+            MetricsHttpHandler metricsHandler,
+            BinaryStoreConfigurator configurator) {
+        this.starter = starter;
+        this.handler = handler;
+        this.metricsHandler = metricsHandler;
+        this.metricsOptions = configurator.getMetricsOptions();
+    }
+
+    @Override
+    public void start(Future<Void> startFuture) throws Exception {
+
+        // The http object takes any HttpServerOptions field in addition to the path prefix
+        JsonObject config = config().getJsonObject(CONFIG_HTTP, new JsonObject());
+        HttpServerOptions options = new HttpServerOptions(config);
+        if (!config.containsKey("port")) {
+            options.setPort(DEFAULT_PORT);
+        }
+        handler.setPrefix(config.getString(CONFIG_PREFIX, BinaryStoreHttpHandler.DEFAULT_PREFIX));
+
+        Handler<HttpServerRequest> requestHandler = handler;
+        if (metricsOptions.isPrometheusEnabled()) {
+            String metricsPath = metricsOptions.getPrometheusPath();
+            requestHandler = request -> {
+                if (metricsPath.equals(request.path())) {
+                    metricsHandler.handle(request);
+                } else {
+                    handler.handle(request);
+                }
+            };
+        }
+        Handler<HttpServerRequest> serverHandler = requestHandler;
+
+        starter.run()
+                .then(aVoid -> {
+                    server = vertx.createHttpServer(options)
+                            .requestHandler(serverHandler)
+                            .listen(result -> {
+                                if (result.succeeded()) {
+                                    startFuture.complete();
+                                } else {
+                                    startFuture.fail(result.cause());
+                                }
+                            });
+                    return null;
+                })
+                .otherwise(t -> {
+                    startFuture.fail(t);
+                    return null;
+                });
+
+    }
+
+    @Override
+    public void stop(Future<Void> stopFuture) throws Exception {
+        if (server != null) {
+            server.close();
+        }
+        starter.stop()
+                .then(aVoid -> {
+                    stopFuture.complete();
+                    return null;
+                })
+                .otherwise(t -> {
+                    stopFuture.fail(t);
+                    return null;
+                });
+    }
+
+}
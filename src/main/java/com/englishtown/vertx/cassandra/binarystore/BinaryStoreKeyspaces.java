@@ -0,0 +1,60 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.promises.Promise;
+
+/**
+ * Provides the statements of each keyspace served by the store.  The default keyspace's statements are initialized
+ * at startup, those of other keyspaces are prepared on first use and cached.
+ */
+public interface BinaryStoreKeyspaces {
+
+    /**
+     * Initializes the default keyspace's statements and prepares them on the lane sessions.  Until they are prepared,
+     * {@link #getStatements(String)} of the default keyspace waits for them.  If initialization fails, the next
+     * request of the default keyspace tries again.
+     *
+     * @param keyspace the default keyspace
+     * @return
+     */
+    Promise<Void> init(String keyspace);
+
+    /**
+     * Resolved when the default keyspace is first initialized, whether by {@link #init(String)} or by a request
+     * retrying it after a failure
+     *
+     * @return
+     */
+    Promise<Void> whenInitialized();
+
+    /**
+     * The keyspace the store was started with
+     *
+     * @return
+     */
+    String getDefaultKeyspace();
+
+    /**
+     * Whether a keyspace may be served
+     *
+     * @param keyspace
+     * @return
+     */
+    boolean isAllowed(String keyspace);
+
+    /**
+     * The statements of a keyspace, preparing them if needed
+     *
+     * @param keyspace
+     * @return a promise rejected with an {@link IllegalArgumentException} if the keyspace is not allowed
+     */
+    Promise<BinaryStoreStatements> getStatements(String keyspace);
+
+    /**
+     * The statements of a keyspace if they are already prepared
+     *
+     * @param keyspace
+     * @return the statements, or null
+     */
+    BinaryStoreStatements getPreparedStatements(String keyspace);
+
+}
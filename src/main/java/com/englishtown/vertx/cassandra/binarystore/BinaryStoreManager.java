@@ -17,4 +17,51 @@ public interface BinaryStoreManager {
 
     Promise<ChunkInfo> loadChunk(UUID id, int n);
 
+    /**
+     * Loads a contiguous run of blocks of a chunk stored with a block size.  The returned data starts at the first
+     * block.  The checksum is only set when the whole chunk is loaded, from block 0 to {@link Integer#MAX_VALUE}.
+     *
+     * @param id
+     * @param n         the chunk number
+     * @param fromBlock first block to load
+     * @param toBlock   last block to load (inclusive)
+     * @return
+     */
+    Promise<ChunkInfo> loadBlocks(UUID id, int n, int fromBlock, int toBlock);
+
+    /**
+     * Deletes a file.  The file is no longer readable once the returned promise resolves, its chunks are removed in
+     * the background.
+     *
+     * @param id
+     * @return
+     */
+    Promise<Void> deleteFile(UUID id);
+
+    /**
+     * Deletes the chunks of a file
+     *
+     * @param id
+     * @param count the number of chunks the file has
+     * @return
+     */
+    Promise<Void> deleteChunks(UUID id, int count);
+
+    /**
+     * A manager of the files of another keyspace.  Its statements are prepared on first use.
+     *
+     * @param keyspace the keyspace, null for the default one
+     * @return
+     * @throws IllegalArgumentException if the keyspace is not allowed
+     */
+    BinaryStoreManager forKeyspace(String keyspace);
+
+    /**
+     * A manager whose loads are not counted as reads by the {@link WarmCache}, for loads the store makes itself such
+     * as warming the cache
+     *
+     * @return
+     */
+    BinaryStoreManager uncounted();
+
 }
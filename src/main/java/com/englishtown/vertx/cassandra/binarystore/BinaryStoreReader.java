@@ -1,5 +1,6 @@
 package com.englishtown.vertx.cassandra.binarystore;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -24,4 +25,54 @@ public interface BinaryStoreReader {
      */
     FileReader readRange(UUID id, ContentRange range);
 
+    /**
+     * Reads several ranges of a binary file in a single pass.  Overlapping or adjacent ranges are merged and the
+     * resulting parts are streamed in ascending order, each preceded by a call to the reader's part handler.  Chunks
+     * shared by neighbouring parts are only loaded once.
+     *
+     * @param id
+     * @param ranges
+     * @return
+     */
+    FileReader readRanges(UUID id, List<ContentRange> ranges);
+
+    /**
+     * Reads a binary file whose record the caller has already loaded, without loading it again.  The read starts
+     * asynchronously, so handlers can still be set on the returned reader.
+     *
+     * @param fileInfo
+     * @return
+     */
+    FileReader read(FileInfo fileInfo);
+
+    /**
+     * Reads a binary file range whose record the caller has already loaded
+     *
+     * @param fileInfo
+     * @param range
+     * @return
+     * @see #read(FileInfo)
+     */
+    FileReader readRange(FileInfo fileInfo, ContentRange range);
+
+    /**
+     * Reads several ranges of a binary file whose record the caller has already loaded
+     *
+     * @param fileInfo
+     * @param ranges
+     * @return
+     * @see #read(FileInfo)
+     * @see #readRanges(UUID, List)
+     */
+    FileReader readRanges(FileInfo fileInfo, List<ContentRange> ranges);
+
+    /**
+     * A reader that reads files of another keyspace
+     *
+     * @param keyspace the keyspace, null for the default one
+     * @return
+     * @throws IllegalArgumentException if the keyspace is not allowed
+     */
+    BinaryStoreReader forKeyspace(String keyspace);
+
 }
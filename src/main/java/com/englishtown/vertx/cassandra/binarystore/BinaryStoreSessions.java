@@ -0,0 +1,40 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.promises.Promise;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+
+/**
+ * Provides the sessions the metadata and chunk lanes send their queries through
+ */
+public interface BinaryStoreSessions extends AutoCloseable {
+
+    /**
+     * Session for file metadata queries
+     *
+     * @return
+     */
+    WhenCassandraSession getMetadataSession();
+
+    /**
+     * Session for chunk queries
+     *
+     * @return
+     */
+    WhenCassandraSession getChunkSession();
+
+    /**
+     * Prepares the statements of each lane with a separate session on that session, so it can re-prepare them
+     * on nodes that lost them
+     *
+     * @param statements initialized statements
+     * @return
+     */
+    Promise<Void> init(BinaryStoreStatements statements);
+
+    /**
+     * Closes the sessions the store created, a session that fails to close is logged
+     */
+    @Override
+    void close();
+
+}
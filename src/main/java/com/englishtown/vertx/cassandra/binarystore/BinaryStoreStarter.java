@@ -1,11 +1,18 @@
 package com.englishtown.vertx.cassandra.binarystore;
 
+import com.codahale.metrics.MetricRegistry;
 import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
 import com.englishtown.vertx.cassandra.CassandraSession;
 import com.google.common.base.Strings;
 import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * Initializes the binary store and closes it when finished
@@ -15,18 +22,48 @@ public class BinaryStoreStarter implements AutoCloseable {
     public static final String ENV_VAR_KEYSPACE = "BINARYSTORE_KEYSPACE";
     public static final String DEFAULT_KEYSPACE = "binarystore";
 
+    private static final Logger logger = LoggerFactory.getLogger(BinaryStoreStarter.class);
+
     private final CassandraSession session;
+    private final BinaryStoreSessions sessions;
     private final BinaryStoreStatements statements;
+    private final BinaryStoreKeyspaces keyspaces;
+    private final OrphanedChunkCollector collector;
+    private final CacheWarmer cacheWarmer;
+    private final MetricsExporter metricsExporter;
+    private final BinaryStoreConfigurator configurator;
+    private final MetricRegistry registry;
+    private final When when;
     private final Vertx vertx;
 
     @Inject
-    public BinaryStoreStarter(CassandraSession session, BinaryStoreStatements statements, Vertx vertx) {
+    public BinaryStoreStarter(
+            CassandraSession session,
+            BinaryStoreSessions sessions,
+            BinaryStoreStatements statements,
+            BinaryStoreKeyspaces keyspaces,
+            OrphanedChunkCollector collector,
+            CacheWarmer cacheWarmer,
+            MetricsExporter metricsExporter,
+            BinaryStoreConfigurator configurator,
+            MetricRegistry registry,
+            When when,
+            Vertx vertx) {
         this.session = session;
+        this.sessions = sessions;
         this.statements = statements;
+        this.keyspaces = keyspaces;
+        this.collector = collector;
+        this.cacheWarmer = cacheWarmer;
+        this.metricsExporter = metricsExporter;
+        this.configurator = configurator;
+        this.registry = registry;
+        this.when = when;
         this.vertx = vertx;
     }
 
     public Promise<Void> run() {
+        long start = System.nanoTime();
         String keyspace = System.getenv(ENV_VAR_KEYSPACE);
 
         // Get keyspace, default to binarystore
@@ -34,8 +71,62 @@ public class BinaryStoreStarter implements AutoCloseable {
             keyspace = vertx.getOrCreateContext().config().getString("keyspace", DEFAULT_KEYSPACE);
         }
 
-        return statements.init(keyspace);
+        // A lazy start only trusts a schema the driver already knows, a new keyspace is created before serving
+        boolean lazy = configurator.isLazyStartup() && statements.hasSchema(keyspace);
+        String initKeyspace = keyspace;
+
+        // Background work starts with the first successful initialization, which may be a request's retry
+        keyspaces.whenInitialized().then(aVoid -> {
+            record("prepared", start);
+            collector.start();
+            cacheWarmer.start();
+            return null;
+        });
+
+        Promise<Void> init = keyspaces.init(keyspace);
+
+        if (!lazy) {
+            return init.then(aVoid -> {
+                metricsExporter.start();
+                record("ready", start);
+                return null;
+            });
+        }
+
+        // Requests wait for the statements, so a failure here is retried by the first one
+        init.otherwise(t -> {
+            logger.error("Error verifying the schema of keyspace " + initKeyspace
+                    + ", orphaned chunks are not collected and the cache is not warmed until a request initializes it", t);
+            return null;
+        });
+
+        metricsExporter.start();
+        record("ready", start);
+        return when.resolve(null);
+
+    }
+
+    private void record(String phase, long start) {
+        registry.timer(name(Metrics.BASE_NAME, "startup", phase)).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the background work and closes the sessions once the cache warmer has persisted the popular chunks
+     *
+     * @return
+     */
+    public Promise<Void> stop() {
+
+        Promise<Void> persisted = (cacheWarmer == null ? when.resolve(null) : cacheWarmer.stop());
 
+        return persisted.then(aVoid -> {
+            try {
+                close();
+                return when.resolve(null);
+            } catch (Exception e) {
+                return when.reject(e);
+            }
+        });
     }
 
     /**
@@ -43,6 +134,18 @@ public class BinaryStoreStarter implements AutoCloseable {
      */
     @Override
     public void close() throws Exception {
+        if (collector != null) {
+            collector.stop();
+        }
+        if (cacheWarmer != null) {
+            cacheWarmer.stop();
+        }
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+        }
+        if (sessions != null) {
+            sessions.close();
+        }
         if (session != null) {
             session.close();
         }
@@ -14,6 +14,21 @@ public interface BinaryStoreStatements {
 
     String getKeyspace();
 
+    /**
+     * Whether the session's cached schema metadata already has the keyspace and its tables, without a round trip
+     *
+     * @param keyspace
+     * @return
+     */
+    boolean hasSchema(String keyspace);
+
+    /**
+     * Layout of the chunks table once initialized
+     *
+     * @return
+     */
+    ChunkLayout getChunkLayout();
+
     PreparedStatement getLoadChunk();
 
     BinaryStoreStatements setLoadChunk(PreparedStatement loadChunk);
@@ -30,4 +45,58 @@ public interface BinaryStoreStatements {
 
     BinaryStoreStatements setStoreFile(PreparedStatement storeFile);
 
+    PreparedStatement getDeleteFile();
+
+    BinaryStoreStatements setDeleteFile(PreparedStatement deleteFile);
+
+    PreparedStatement getDeleteChunk();
+
+    BinaryStoreStatements setDeleteChunk(PreparedStatement deleteChunk);
+
+    /**
+     * Deletes all chunks of a file with a single partition tombstone.  Only available for the
+     * {@link ChunkLayout#WIDE} layout, otherwise null.
+     *
+     * @return
+     */
+    PreparedStatement getDeleteChunks();
+
+    BinaryStoreStatements setDeleteChunks(PreparedStatement deleteChunks);
+
+    PreparedStatement getStoreBlock();
+
+    BinaryStoreStatements setStoreBlock(PreparedStatement storeBlock);
+
+    /**
+     * Selects a range of blocks of a chunk stored with a block size
+     *
+     * @return
+     */
+    PreparedStatement getLoadBlocks();
+
+    BinaryStoreStatements setLoadBlocks(PreparedStatement loadBlocks);
+
+    PreparedStatement getDeleteBlocks();
+
+    BinaryStoreStatements setDeleteBlocks(PreparedStatement deleteBlocks);
+
+    /**
+     * Selects chunk keys and write times within a token range
+     *
+     * @return
+     */
+    PreparedStatement getScanChunks();
+
+    BinaryStoreStatements setScanChunks(PreparedStatement scanChunks);
+
+    /**
+     * Selects the keys of chunks stored with a block size and the write times of their static checksum within a token
+     * range, one row per chunk
+     *
+     * @return
+     */
+    PreparedStatement getScanBlocks();
+
+    BinaryStoreStatements setScanBlocks(PreparedStatement scanBlocks);
+
 }
@@ -11,4 +11,21 @@ public interface BinaryStoreWriter {
 
     Promise<FileInfo> write(FileInfo fileInfo, ReadStream<Buffer> rs);
 
+    /**
+     * Opens a file for writing by producers that push their data.  The file is pending until the writer is ended.
+     *
+     * @param fileInfo
+     * @return
+     */
+    FileWriter open(FileInfo fileInfo);
+
+    /**
+     * A writer that writes files of another keyspace
+     *
+     * @param keyspace the keyspace, null for the default one
+     * @return
+     * @throws IllegalArgumentException if the keyspace is not allowed
+     */
+    BinaryStoreWriter forKeyspace(String keyspace);
+
 }
@@ -0,0 +1,75 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for the pool of chunk buffers shared by readers and writers
+ */
+public class BufferPoolOptions {
+
+    public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_MIN_SIZE = 64 * 1024;
+
+    private boolean enabled;
+    private long maxPooledBytes = DEFAULT_MAX_POOLED_BYTES;
+    private int minSize = DEFAULT_MIN_SIZE;
+    private boolean leakDetection;
+
+    public BufferPoolOptions() {
+    }
+
+    /**
+     * Whether chunk buffers are pooled
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public BufferPoolOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Bytes of idle buffers the pool keeps
+     *
+     * @return
+     */
+    public long getMaxPooledBytes() {
+        return maxPooledBytes;
+    }
+
+    public BufferPoolOptions setMaxPooledBytes(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        return this;
+    }
+
+    /**
+     * Size of the smallest buffer pooled, smaller buffers are cheap for the garbage collector
+     *
+     * @return
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public BufferPoolOptions setMinSize(int minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * Whether the pool records where each buffer was taken, to find buffers that are never returned
+     *
+     * @return
+     */
+    public boolean isLeakDetection() {
+        return leakDetection;
+    }
+
+    public BufferPoolOptions setLeakDetection(boolean leakDetection) {
+        this.leakDetection = leakDetection;
+        return this;
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.promises.Promise;
+
+/**
+ * Persists the {@link WarmCache}'s most read chunks to local disk and prefetches them after a restart, so a node
+ * doesn't start with a cold cache
+ */
+public interface CacheWarmer {
+
+    /**
+     * Starts prefetching the persisted chunks and persisting periodically if enabled
+     */
+    void start();
+
+    /**
+     * Stops prefetching and persisting, and persists once more
+     *
+     * @return resolved once the chunks are persisted, persisting errors are logged rather than rejected
+     */
+    Promise<Void> stop();
+
+    /**
+     * Loads the persisted chunks into the cache, throttled to
+     * {@link WarmCacheOptions#getPrefetchPerSecond()}
+     *
+     * @return the number of chunks prefetched
+     */
+    Promise<Integer> prefetch();
+
+    /**
+     * Writes the most read chunks to local disk
+     *
+     * @return
+     */
+    Promise<Void> persist();
+
+}
@@ -0,0 +1,42 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * A pool of the byte arrays chunk data is read into and assembled in
+ */
+public interface ChunkBufferPool {
+
+    /**
+     * Takes an array from the pool, or allocates one if none is idle
+     *
+     * @param size exact length of the array
+     * @return an array whose contents are undefined
+     */
+    byte[] acquire(int size);
+
+    /**
+     * Returns an array to the pool.  Nothing may refer to it afterwards, an array still referred to is better left to
+     * the garbage collector.
+     *
+     * @param buffer
+     */
+    void release(byte[] buffer);
+
+    /**
+     * Wraps an array taken from the pool in a buffer without copying it.  The array goes back to the pool once nothing
+     * refers to the buffer any more, such as once a write stream has written it, so it must not be released as well.
+     *
+     * @param buffer
+     * @return
+     */
+    Buffer lend(byte[] buffer);
+
+    /**
+     * Whether arrays are pooled at all
+     *
+     * @return
+     */
+    boolean isEnabled();
+
+}
@@ -12,6 +12,9 @@ public class ChunkInfo {
     private UUID id;
     private int n;
     private byte[] data;
+    private int ttl;
+    private Integer checksum;
+    private int blockSize;
 
     public UUID getId() {
         return id;
@@ -40,6 +43,48 @@ public class ChunkInfo {
         return this;
     }
 
+    /**
+     * Time to live in seconds after which the chunk expires, 0 if the chunk never expires
+     *
+     * @return
+     */
+    public int getTtl() {
+        return ttl;
+    }
+
+    public ChunkInfo setTtl(int ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    /**
+     * CRC32C of the chunk data, null if the chunk was stored without one
+     *
+     * @return
+     */
+    public Integer getChecksum() {
+        return checksum;
+    }
+
+    public ChunkInfo setChecksum(Integer checksum) {
+        this.checksum = checksum;
+        return this;
+    }
+
+    /**
+     * Size in bytes of the blocks the chunk is stored as, 0 if the chunk is stored whole
+     *
+     * @return
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public ChunkInfo setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+        return this;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null) return false;
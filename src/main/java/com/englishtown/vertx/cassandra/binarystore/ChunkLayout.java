@@ -0,0 +1,20 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Physical layout of the chunks table
+ */
+public enum ChunkLayout {
+
+    /**
+     * Every chunk is its own partition keyed by (files_id, n).  Partitions stay small regardless of file size, but
+     * deleting a file writes one partition tombstone per chunk.
+     */
+    PARTITIONED,
+
+    /**
+     * All chunks of a file share a files_id partition with n as a clustering column.  Deleting a file is a single
+     * partition tombstone, but the partition grows with the file so this suits small to medium sized files.
+     */
+    WIDE
+
+}
@@ -0,0 +1,42 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.promises.Promise;
+
+import java.util.function.Supplier;
+
+/**
+ * Orders the chunk operations of concurrent file reads and writes, so a large transfer can't hold every slot while
+ * small ones wait behind it
+ */
+public interface ChunkScheduler {
+
+    /**
+     * Opens a stream for the chunk operations of one file read or write
+     *
+     * @return
+     */
+    Stream open();
+
+    /**
+     * The chunk operations of one file read or write, started in the order they were submitted
+     */
+    interface Stream {
+
+        /**
+         * Submits a chunk operation to be started on the stream's turn
+         *
+         * @param bytes     the bytes the operation transfers
+         * @param operation starts the operation
+         * @param <T>
+         * @return the operation's result
+         */
+        <T> Promise<T> submit(long bytes, Supplier<Promise<T>> operation);
+
+        /**
+         * Drops the operations not started yet, their results are rejected
+         */
+        void close();
+
+    }
+
+}
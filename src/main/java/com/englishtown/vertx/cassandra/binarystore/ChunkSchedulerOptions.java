@@ -0,0 +1,60 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for scheduling chunk reads and writes fairly across the files being read and written
+ */
+public class ChunkSchedulerOptions {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+    public static final int DEFAULT_QUANTUM = 256 * 1024;
+
+    private boolean enabled;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int quantum = DEFAULT_QUANTUM;
+
+    public ChunkSchedulerOptions() {
+    }
+
+    /**
+     * Whether chunk operations are scheduled, otherwise they are sent as soon as they are requested
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ChunkSchedulerOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Maximum chunk operations in flight, further operations wait for their stream's turn
+     *
+     * @return
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public ChunkSchedulerOptions setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Bytes each stream may send per round
+     *
+     * @return
+     */
+    public int getQuantum() {
+        return quantum;
+    }
+
+    public ChunkSchedulerOptions setQuantum(int quantum) {
+        this.quantum = quantum;
+        return this;
+    }
+
+}
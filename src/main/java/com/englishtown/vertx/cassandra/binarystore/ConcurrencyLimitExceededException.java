@@ -0,0 +1,27 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Rejection of a query because the limit on queries in flight was reached.  Nothing was sent to Cassandra, the
+ * caller can retry later or shed the request.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int limit;
+
+    public ConcurrencyLimitExceededException(String lane, int limit) {
+        super("Too many " + lane + " queries in flight, the limit is " + limit);
+        this.limit = limit;
+    }
+
+    /**
+     * The limit in force when the query was rejected
+     *
+     * @return
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+}
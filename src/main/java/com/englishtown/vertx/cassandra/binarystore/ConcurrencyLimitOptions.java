@@ -0,0 +1,108 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for the adaptive limit on queries in flight
+ */
+public class ConcurrencyLimitOptions {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 4;
+    public static final int DEFAULT_MAX_LIMIT = 500;
+    public static final double DEFAULT_SMOOTHING = 0.2;
+    public static final double DEFAULT_TOLERANCE = 1.5;
+
+    private boolean enabled;
+    private int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private int minLimit = DEFAULT_MIN_LIMIT;
+    private int maxLimit = DEFAULT_MAX_LIMIT;
+    private double smoothing = DEFAULT_SMOOTHING;
+    private double tolerance = DEFAULT_TOLERANCE;
+
+    public ConcurrencyLimitOptions() {
+    }
+
+    /**
+     * Whether queries are limited
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ConcurrencyLimitOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Limit before any latency has been measured
+     *
+     * @return
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public ConcurrencyLimitOptions setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    /**
+     * Lowest the limit can shrink to
+     *
+     * @return
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public ConcurrencyLimitOptions setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    /**
+     * Highest the limit can grow to
+     *
+     * @return
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public ConcurrencyLimitOptions setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * Fraction of each new estimate applied to the limit, lower values react more slowly
+     *
+     * @return
+     */
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public ConcurrencyLimitOptions setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+        return this;
+    }
+
+    /**
+     * How many times the long term latency a query can take before the limit shrinks
+     *
+     * @return
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public ConcurrencyLimitOptions setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+}
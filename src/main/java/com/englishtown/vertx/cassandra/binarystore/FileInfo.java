@@ -19,7 +19,11 @@ public class FileInfo {
     String contentType;
     long length;
     int chunkSize;
+    int blockSize;
     long uploadDate;
+    int ttl;
+    FileStatus status = FileStatus.COMMITTED;
+    String sha256;
     Map<String, String> metadata;
 
     private static final String JSON_FIELD_ID = "id";
@@ -27,7 +31,10 @@ public class FileInfo {
     private static final String JSON_FIELD_CONTENT_TYPE = "contentType";
     private static final String JSON_FIELD_LENGTH = "length";
     private static final String JSON_FIELD_CHUNK_SIZE = "chunkSize";
+    private static final String JSON_FIELD_BLOCK_SIZE = "blockSize";
     private static final String JSON_FIELD_UPLOAD_DATE = "uploadDate";
+    private static final String JSON_FIELD_TTL = "ttl";
+    private static final String JSON_FIELD_SHA256 = "sha256";
     private static final String JSON_FIELD_METADATA = "metadata";
 
     public FileInfo() {
@@ -39,7 +46,11 @@ public class FileInfo {
         contentType = other.getContentType();
         length = other.getLength();
         chunkSize = other.getChunkSize();
+        blockSize = other.getBlockSize();
         uploadDate = other.getUploadDate();
+        ttl = other.getTtl();
+        status = other.getStatus();
+        sha256 = other.getSha256();
         metadata = other.getMetadata();
     }
 
@@ -52,7 +63,10 @@ public class FileInfo {
 
         length = json.getLong(JSON_FIELD_LENGTH, 0L);
         chunkSize = json.getInteger(JSON_FIELD_CHUNK_SIZE, 0);
+        blockSize = json.getInteger(JSON_FIELD_BLOCK_SIZE, 0);
         uploadDate = json.getLong(JSON_FIELD_UPLOAD_DATE, 0L);
+        ttl = json.getInteger(JSON_FIELD_TTL, 0);
+        sha256 = json.getString(JSON_FIELD_SHA256);
 
         String filename = json.getString(JSON_FIELD_FILENAME);
         String contentType = json.getString(JSON_FIELD_CONTENT_TYPE);
@@ -129,6 +143,20 @@ public class FileInfo {
         return this;
     }
 
+    /**
+     * Size in bytes of the blocks each chunk is stored as, 0 if chunks are stored whole
+     *
+     * @return
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public FileInfo setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+        return this;
+    }
+
     public long getUploadDate() {
         return uploadDate;
     }
@@ -138,6 +166,48 @@ public class FileInfo {
         return this;
     }
 
+    /**
+     * Time to live in seconds after which the file expires, 0 if the file never expires
+     *
+     * @return
+     */
+    public int getTtl() {
+        return ttl;
+    }
+
+    public FileInfo setTtl(int ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    /**
+     * Upload state of the file, only {@link FileStatus#COMMITTED} files are readable
+     *
+     * @return
+     */
+    public FileStatus getStatus() {
+        return status;
+    }
+
+    public FileInfo setStatus(FileStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * Hex encoded SHA-256 of the file content, null if the file was stored without one
+     *
+     * @return
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    public FileInfo setSha256(String sha256) {
+        this.sha256 = sha256;
+        return this;
+    }
+
     public Map<String, String> getMetadata() {
         return this.metadata;
     }
@@ -159,6 +229,15 @@ public class FileInfo {
         if (getId() != null) {
             json.put(JSON_FIELD_ID, getId().toString());
         }
+        if (getBlockSize() > 0) {
+            json.put(JSON_FIELD_BLOCK_SIZE, getBlockSize());
+        }
+        if (getTtl() > 0) {
+            json.put(JSON_FIELD_TTL, getTtl());
+        }
+        if (getSha256() != null) {
+            json.put(JSON_FIELD_SHA256, getSha256());
+        }
         if (getMetadata() != null) {
             json.put(JSON_FIELD_METADATA, getMetadata());
         }
@@ -1,5 +1,7 @@
 package com.englishtown.vertx.cassandra.binarystore;
 
+import java.util.List;
+
 /**
  * Created by adriangonzalez on 3/10/14.
  */
@@ -7,6 +9,7 @@ public class FileReadInfo {
 
     private FileInfo fileInfo;
     private ContentRange range;
+    private List<ContentRange> ranges;
 
     public FileInfo getFile() {
         return fileInfo;
@@ -26,4 +29,19 @@ public class FileReadInfo {
         return this;
     }
 
+    /**
+     * The merged parts of a multi-range read in the order they are streamed, empty if none of the requested ranges
+     * could be satisfied
+     *
+     * @return
+     */
+    public List<ContentRange> getRanges() {
+        return ranges;
+    }
+
+    public FileReadInfo setRanges(List<ContentRange> ranges) {
+        this.ranges = ranges;
+        return this;
+    }
+
 }
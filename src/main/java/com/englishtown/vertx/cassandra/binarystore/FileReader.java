@@ -1,8 +1,12 @@
 package com.englishtown.vertx.cassandra.binarystore;
 
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.netty.buffer.Unpooled;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
 
 /**
  * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.FileReader}
@@ -12,16 +16,22 @@ public class FileReader implements ReadStream<Buffer> {
     public enum Result {
         OK,
         NOT_FOUND,
-        ERROR
+        ERROR,
+        /**
+         * Stopped by {@link #cancel()} before the whole file was read
+         */
+        CANCELLED
     }
 
     private Handler<FileReadInfo> fileHandler;
+    private Handler<ContentRange> partHandler;
     private Handler<Buffer> dataHandler;
     private Handler<Void> endHandler;
     private Handler<Result> resultHandler;
     private Handler<Throwable> exceptionHandler;
 
     private boolean paused;
+    private boolean ended;
     private Handler<Void> resumeHandler;
 
     public FileReader fileHandler(Handler<FileReadInfo> handler) {
@@ -29,6 +39,16 @@ public class FileReader implements ReadStream<Buffer> {
         return this;
     }
 
+    /**
+     * Set a handler called at the start of each part of a multi-range read, before the part's data
+     *
+     * @param handler
+     */
+    public FileReader partHandler(Handler<ContentRange> handler) {
+        partHandler = handler;
+        return this;
+    }
+
     /**
      * Set a data handler. As data is read, the handler will be called with the data.
      *
@@ -63,12 +83,94 @@ public class FileReader implements ReadStream<Buffer> {
         return this;
     }
 
+    /**
+     * Stop reading, for example once the consumer has gone away.  Chunks not delivered yet are dropped along with the
+     * memory they hold, and the read ends with {@link Result#CANCELLED}.  Does nothing once the read has ended.
+     */
+    public void cancel() {
+        handleEnd(Result.CANCELLED);
+    }
+
     @Override
     public FileReader endHandler(Handler<Void> handler) {
         endHandler = handler;
         return this;
     }
 
+    /**
+     * Pipe the file data to a write stream, ending it once reading ends.
+     *
+     * @param ws the stream to write to
+     * @see #pipeTo(WriteStream, Handler)
+     */
+    public FileReader pipeTo(WriteStream<Buffer> ws) {
+        return pipeTo(ws, null);
+    }
+
+    /**
+     * Pipe the file data to a write stream.  Reading pauses while the write queue is full and resumes from its drain
+     * handler, so at most the reader's read ahead is held in memory however slow the write stream is.
+     * <p>
+     * This takes over the data, result and exception handlers, an end handler is still called once reading ends.  The
+     * write stream is ended on every result.  On {@link Result#OK} it is ended before the completion handler is
+     * called, on any other result after it, so the caller can still respond or give up on the underlying connection
+     * first.  If the write stream fails reading stops and it is not ended.
+     *
+     * @param ws                the stream to write to
+     * @param completionHandler called with the result once reading ends, failed if either stream failed
+     */
+    public FileReader pipeTo(WriteStream<Buffer> ws, Handler<AsyncResult<Result>> completionHandler) {
+
+        Pipe pipe = new Pipe(completionHandler);
+
+        ws.exceptionHandler(t -> {
+            // Nothing more can be written, stop loading chunks
+            pipe.complete(Future.failedFuture(t));
+            cancel();
+        });
+
+        handler(data -> {
+            if (pipe.completed) {
+                return;
+            }
+            ws.write(data);
+            if (ws.writeQueueFull()) {
+                pause();
+                ws.drainHandler(event -> {
+                    if (!pipe.completed) {
+                        resume();
+                    }
+                });
+            }
+        });
+
+        exceptionHandler(t -> {
+            if (pipe.cause == null) {
+                pipe.cause = t;
+            }
+        });
+
+        resultHandler(result -> {
+            if (pipe.completed) {
+                return;
+            }
+            if (result == Result.OK) {
+                ws.end();
+                pipe.complete(Future.succeededFuture(result));
+                return;
+            }
+            if (result == Result.NOT_FOUND || result == Result.CANCELLED) {
+                pipe.complete(Future.succeededFuture(result));
+            } else {
+                Throwable t = (pipe.cause == null ? new IllegalStateException("Error reading file") : pipe.cause);
+                pipe.complete(Future.failedFuture(t));
+            }
+            ws.end();
+        });
+
+        return this;
+    }
+
     public FileReader resultHandler(Handler<Result> handler) {
         resultHandler = handler;
         return this;
@@ -86,8 +188,19 @@ public class FileReader implements ReadStream<Buffer> {
         }
     }
 
+    public void handlePart(ContentRange range) {
+        if (partHandler != null) {
+            partHandler.handle(range);
+        }
+    }
+
+    /**
+     * Delivers an array without copying it, nothing may change it afterwards
+     *
+     * @param data
+     */
     public void handleData(byte[] data) {
-        handleData(Buffer.buffer(data));
+        handleData(Buffer.buffer(Unpooled.wrappedBuffer(data)));
     }
 
     public void handleData(Buffer data) {
@@ -97,6 +210,11 @@ public class FileReader implements ReadStream<Buffer> {
     }
 
     public void handleEnd(Result result) {
+        // A read only ends once, even if a chunk it already stopped waiting for fails later
+        if (ended) {
+            return;
+        }
+        ended = true;
         if (resultHandler != null) {
             resultHandler.handle(result);
         }
@@ -115,7 +233,33 @@ public class FileReader implements ReadStream<Buffer> {
         return paused;
     }
 
+    public boolean isEnded() {
+        return ended;
+    }
+
     public void resumeHandler(Handler<Void> handler) {
         resumeHandler = handler;
     }
+
+    private static class Pipe {
+
+        private final Handler<AsyncResult<Result>> completionHandler;
+        private boolean completed;
+        private Throwable cause;
+
+        public Pipe(Handler<AsyncResult<Result>> completionHandler) {
+            this.completionHandler = completionHandler;
+        }
+
+        public void complete(AsyncResult<Result> result) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (completionHandler != null) {
+                completionHandler.handle(result);
+            }
+        }
+    }
+
 }
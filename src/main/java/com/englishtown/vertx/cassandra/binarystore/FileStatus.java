@@ -0,0 +1,19 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Upload state of a file
+ */
+public enum FileStatus {
+
+    /**
+     * The upload has started but not all chunks are persisted yet.  Readers treat the file as not found.
+     */
+    PENDING,
+
+    /**
+     * Every chunk has been persisted and the file is readable.  Files written before upload states existed have no
+     * stored status and are treated as committed.
+     */
+    COMMITTED
+
+}
@@ -0,0 +1,58 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.promises.Promise;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+/**
+ * A file being uploaded to the binary store.  Data written is cut into chunks that are stored as they fill, the write
+ * queue is made of the chunks still being stored.  Ending the stream stores the last chunk and commits the file.
+ */
+public interface FileWriter extends WriteStream<Buffer> {
+
+    int DEFAULT_WRITE_QUEUE_MAX_CHUNKS = 4;
+
+    /**
+     * The file being written, its id is assigned when the writer is opened and its length grows as chunks are cut
+     *
+     * @return
+     */
+    FileInfo getFileInfo();
+
+    /**
+     * Resolves with the committed file once the stream has been ended and every chunk is stored, rejects if any chunk
+     * or the commit failed
+     *
+     * @return
+     */
+    Promise<FileInfo> getResult();
+
+    /**
+     * Set a handler called when a chunk fails to store.  The file will not be committed.
+     *
+     * @param handler
+     */
+    @Override
+    FileWriter exceptionHandler(Handler<Throwable> handler);
+
+    @Override
+    FileWriter write(Buffer data);
+
+    /**
+     * Set the maximum bytes of chunks being stored before {@link #writeQueueFull()} returns true.  Defaults to
+     * {@link #DEFAULT_WRITE_QUEUE_MAX_CHUNKS} chunks.
+     *
+     * @param maxSize
+     */
+    @Override
+    FileWriter setWriteQueueMaxSize(int maxSize);
+
+    /**
+     * Set a handler called once the chunks being stored drop to half the write queue max size
+     *
+     * @param handler
+     */
+    @Override
+    FileWriter drainHandler(Handler<Void> handler);
+}
@@ -0,0 +1,108 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for hedging file and chunk reads
+ */
+public class HedgingOptions {
+
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final long DEFAULT_MIN_DELAY = 5;
+    public static final long DEFAULT_MAX_DELAY = 1000;
+    public static final int DEFAULT_MIN_SAMPLES = 100;
+    public static final double DEFAULT_BUDGET = 0.05;
+
+    private boolean enabled;
+    private double percentile = DEFAULT_PERCENTILE;
+    private long minDelay = DEFAULT_MIN_DELAY;
+    private long maxDelay = DEFAULT_MAX_DELAY;
+    private int minSamples = DEFAULT_MIN_SAMPLES;
+    private double budget = DEFAULT_BUDGET;
+
+    public HedgingOptions() {
+    }
+
+    /**
+     * Whether reads are hedged
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public HedgingOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Percentile of recent read latencies after which a read is sent again
+     *
+     * @return
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public HedgingOptions setPercentile(double percentile) {
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * Lower bound in milliseconds on the hedge delay
+     *
+     * @return
+     */
+    public long getMinDelay() {
+        return minDelay;
+    }
+
+    public HedgingOptions setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+        return this;
+    }
+
+    /**
+     * Upper bound in milliseconds on the hedge delay, also used until enough latencies have been recorded
+     *
+     * @return
+     */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public HedgingOptions setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * Number of recorded latencies needed before the percentile is used
+     *
+     * @return
+     */
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public HedgingOptions setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    /**
+     * Fraction of reads that may be hedged, so hedges can't multiply the load when every read is slow
+     *
+     * @return
+     */
+    public double getBudget() {
+        return budget;
+    }
+
+    public HedgingOptions setBudget(double budget) {
+        this.budget = budget;
+        return this;
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Options for serving keyspaces besides the default one
+ */
+public class KeyspaceOptions {
+
+    public static final int DEFAULT_MAX_KEYSPACES = 100;
+
+    private static final Pattern VALID_NAME = Pattern.compile("[a-zA-Z][a-zA-Z0-9_]{0,47}");
+
+    private List<String> allowed = new ArrayList<>();
+    private boolean allowAny;
+    private int maxKeyspaces = DEFAULT_MAX_KEYSPACES;
+
+    public KeyspaceOptions() {
+    }
+
+    /**
+     * Keyspaces served besides the default one
+     *
+     * @return
+     */
+    public List<String> getAllowed() {
+        return allowed;
+    }
+
+    public KeyspaceOptions setAllowed(List<String> allowed) {
+        this.allowed = allowed;
+        return this;
+    }
+
+    /**
+     * Whether any validly named keyspace is served, not just the listed ones
+     *
+     * @return
+     */
+    public boolean isAllowAny() {
+        return allowAny;
+    }
+
+    public KeyspaceOptions setAllowAny(boolean allowAny) {
+        this.allowAny = allowAny;
+        return this;
+    }
+
+    /**
+     * Keyspaces with prepared statements at any one time, including the default one
+     *
+     * @return
+     */
+    public int getMaxKeyspaces() {
+        return maxKeyspaces;
+    }
+
+    public KeyspaceOptions setMaxKeyspaces(int maxKeyspaces) {
+        this.maxKeyspaces = maxKeyspaces;
+        return this;
+    }
+
+    /**
+     * Whether a keyspace may be served.  Names are built into queries, so only unquoted identifiers are allowed.
+     *
+     * @param keyspace
+     * @return
+     */
+    public boolean isAllowed(String keyspace) {
+        return isValidName(keyspace) && (allowAny || allowed.contains(keyspace));
+    }
+
+    /**
+     * Whether a keyspace name is an unquoted identifier
+     *
+     * @param keyspace
+     * @return
+     */
+    public static boolean isValidName(String keyspace) {
+        return keyspace != null && VALID_NAME.matcher(keyspace).matches();
+    }
+
+}
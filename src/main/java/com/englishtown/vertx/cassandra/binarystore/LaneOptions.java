@@ -0,0 +1,42 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for a lane of queries
+ */
+public class LaneOptions {
+
+    private ConcurrencyLimitOptions concurrencyLimitOptions = new ConcurrencyLimitOptions();
+    private boolean separateSession;
+
+    public LaneOptions() {
+    }
+
+    /**
+     * Limit on the lane's queries in flight
+     *
+     * @return
+     */
+    public ConcurrencyLimitOptions getConcurrencyLimitOptions() {
+        return concurrencyLimitOptions;
+    }
+
+    public LaneOptions setConcurrencyLimitOptions(ConcurrencyLimitOptions concurrencyLimitOptions) {
+        this.concurrencyLimitOptions = concurrencyLimitOptions;
+        return this;
+    }
+
+    /**
+     * Whether the lane's queries go through their own cluster connections instead of the shared session
+     *
+     * @return
+     */
+    public boolean isSeparateSession() {
+        return separateSession;
+    }
+
+    public LaneOptions setSeparateSession(boolean separateSession) {
+        this.separateSession = separateSession;
+        return this;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.promises.Promise;
+
+/**
+ * A budget in bytes for the chunk data held in memory by all readers and writers
+ */
+public interface MemoryBudget {
+
+    /**
+     * Takes bytes from the budget once they are available.  Requests are granted in order, a request larger than the
+     * whole budget is granted once nothing else is held.
+     *
+     * @param bytes
+     * @return a promise resolved on the caller's context when the bytes were taken
+     */
+    Promise<Void> acquire(long bytes);
+
+    /**
+     * Takes bytes from the budget only if they are available now and no one is waiting for them
+     *
+     * @param bytes
+     * @return whether the bytes were taken
+     */
+    boolean tryAcquire(long bytes);
+
+    /**
+     * Takes bytes from the budget straight away, even beyond it, for data already in memory
+     *
+     * @param bytes
+     */
+    void reserve(long bytes);
+
+    /**
+     * Returns bytes taken by {@link #acquire(long)} or {@link #reserve(long)}
+     *
+     * @param bytes
+     */
+    void release(long bytes);
+
+    /**
+     * Whether the budget is used up
+     *
+     * @return
+     */
+    boolean isExhausted();
+
+    /**
+     * @return a promise resolved on the caller's context once the budget is no longer used up
+     */
+    Promise<Void> whenAvailable();
+
+    /**
+     * Bytes currently taken
+     *
+     * @return
+     */
+    long getUsed();
+
+}
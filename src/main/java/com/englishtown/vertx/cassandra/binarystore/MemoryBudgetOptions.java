@@ -0,0 +1,44 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for the budget of chunk data held in memory by readers and writers
+ */
+public class MemoryBudgetOptions {
+
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private boolean enabled;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+
+    public MemoryBudgetOptions() {
+    }
+
+    /**
+     * Whether chunk data held in memory is limited
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public MemoryBudgetOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Bytes of chunk data all readers and writers can hold at once
+     *
+     * @return
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public MemoryBudgetOptions setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+}
@@ -1,20 +1,27 @@
 package com.englishtown.vertx.cassandra.binarystore;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
 /**
- * Container for read/write timers and error counters
+ * Container for read/write timers, error counters, byte meters and the count of requests in flight
  */
 public class Metrics {
 
     private final Timer readTimer;
     private final Timer writeTimer;
+    private final Timer deleteTimer;
     private final Counter readErrors;
     private final Counter writeErrors;
+    private final Counter deleteErrors;
+    private final Meter readBytes;
+    private final Meter writeBytes;
+    private final Counter inFlight;
 
     public final static String BASE_NAME = "et.cass.binarystore";
 
@@ -22,31 +29,85 @@ public class Metrics {
 
         readTimer = registry.timer(name(BASE_NAME, type, "read", "success"));
         writeTimer = registry.timer(name(BASE_NAME, type, "write", "success"));
+        deleteTimer = registry.timer(name(BASE_NAME, type, "delete", "success"));
 
         readErrors = registry.counter(name(BASE_NAME, type, "read", "errors"));
         writeErrors = registry.counter(name(BASE_NAME, type, "write", "errors"));
+        deleteErrors = registry.counter(name(BASE_NAME, type, "delete", "errors"));
+
+        readBytes = registry.meter(name(BASE_NAME, type, "read", "bytes"));
+        writeBytes = registry.meter(name(BASE_NAME, type, "write", "bytes"));
+
+        inFlight = registry.counter(name(BASE_NAME, type, "inflight"));
+    }
+
+    /**
+     * Registers a gauge that reads an instance's state, replacing any left by an earlier instance
+     *
+     * @param registry
+     * @param name
+     * @param gauge
+     * @param <T>
+     */
+    public static <T> void registerGauge(MetricRegistry registry, String name, Gauge<T> gauge) {
+        registry.remove(name);
+        registry.register(name, gauge);
+    }
+
+    /**
+     * Timer of successful reads, used to pick how long to wait before hedging a read
+     *
+     * @return
+     */
+    public Timer getReadTimer() {
+        return readTimer;
     }
 
     public Context timeRead() {
-        return new Context(readTimer.time(), readErrors);
+        return new Context(readTimer.time(), readErrors, readBytes);
     }
 
     public Context timeWrite() {
-        return new Context(writeTimer.time(), writeErrors);
+        return new Context(writeTimer.time(), writeErrors, writeBytes);
+    }
+
+    public Context timeDelete() {
+        return new Context(deleteTimer.time(), deleteErrors, null);
     }
 
     public class Context {
 
         private final Timer.Context context;
         private final Counter errors;
+        private final Meter bytes;
+        private boolean stopped;
 
-        private Context(Timer.Context context, Counter errors) {
+        private Context(Timer.Context context, Counter errors, Meter bytes) {
             this.context = context;
             this.errors = errors;
+            this.bytes = bytes;
+            inFlight.inc();
         }
 
         public void stop() {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
             context.stop();
+            inFlight.dec();
+        }
+
+        /**
+         * Stops timing a request that moved {@code length} bytes
+         *
+         * @param length the number of bytes read or written
+         */
+        public void stop(long length) {
+            stop();
+            if (bytes != null) {
+                bytes.mark(length);
+            }
         }
 
         public void error() {
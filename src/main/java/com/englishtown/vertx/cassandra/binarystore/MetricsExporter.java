@@ -0,0 +1,27 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Exports the binary store metrics to monitoring systems
+ */
+public interface MetricsExporter {
+
+    /**
+     * Starts the push style exporters enabled in the {@link MetricsOptions}
+     */
+    void start();
+
+    /**
+     * Stops any started exporters
+     */
+    void stop();
+
+    /**
+     * Formats the current value of every binary store metric in the Prometheus text exposition format.  Metric
+     * names under {@link Metrics#BASE_NAME} are mapped to {@code binarystore_*} with {@code keyspace} and {@code type}
+     * labels, so the series stay the same as the store grows new metric types.
+     *
+     * @return
+     */
+    String scrape();
+
+}
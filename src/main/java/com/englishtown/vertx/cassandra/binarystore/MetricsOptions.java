@@ -0,0 +1,75 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for the {@link MetricsExporter}
+ */
+public class MetricsOptions {
+
+    public static final String DEFAULT_JMX_DOMAIN = Metrics.BASE_NAME;
+    public static final String DEFAULT_PROMETHEUS_PATH = "/metrics";
+
+    private boolean jmxEnabled;
+    private String jmxDomain = DEFAULT_JMX_DOMAIN;
+    private boolean prometheusEnabled;
+    private String prometheusPath = DEFAULT_PROMETHEUS_PATH;
+
+    public MetricsOptions() {
+    }
+
+    /**
+     * Whether the metrics are published as JMX MBeans
+     *
+     * @return
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    public MetricsOptions setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+        return this;
+    }
+
+    /**
+     * JMX domain the MBeans are registered under
+     *
+     * @return
+     */
+    public String getJmxDomain() {
+        return jmxDomain;
+    }
+
+    public MetricsOptions setJmxDomain(String jmxDomain) {
+        this.jmxDomain = jmxDomain;
+        return this;
+    }
+
+    /**
+     * Whether the HTTP verticle serves the metrics in the Prometheus text format
+     *
+     * @return
+     */
+    public boolean isPrometheusEnabled() {
+        return prometheusEnabled;
+    }
+
+    public MetricsOptions setPrometheusEnabled(boolean prometheusEnabled) {
+        this.prometheusEnabled = prometheusEnabled;
+        return this;
+    }
+
+    /**
+     * Path the Prometheus text format is served from
+     *
+     * @return
+     */
+    public String getPrometheusPath() {
+        return prometheusPath;
+    }
+
+    public MetricsOptions setPrometheusPath(String prometheusPath) {
+        this.prometheusPath = prometheusPath;
+        return this;
+    }
+
+}
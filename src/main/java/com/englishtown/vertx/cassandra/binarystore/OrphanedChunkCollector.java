@@ -0,0 +1,27 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.promises.Promise;
+
+/**
+ * Reclaims chunks that were written without ever getting a file record, for example when an upload fails midway
+ */
+public interface OrphanedChunkCollector {
+
+    /**
+     * Starts periodic background sweeps if enabled
+     */
+    void start();
+
+    /**
+     * Stops background sweeps, a sweep in progress stops after its current page
+     */
+    void stop();
+
+    /**
+     * Runs a single sweep over all chunks
+     *
+     * @return the number of chunks reclaimed
+     */
+    Promise<Long> sweep();
+
+}
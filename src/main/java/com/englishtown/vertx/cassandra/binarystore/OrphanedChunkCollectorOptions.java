@@ -0,0 +1,92 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for the {@link OrphanedChunkCollector}
+ */
+public class OrphanedChunkCollectorOptions {
+
+    public static final long DEFAULT_INTERVAL = 60 * 60 * 1000L;
+    public static final long DEFAULT_GRACE_PERIOD = 24 * 60 * 60 * 1000L;
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    public static final int DEFAULT_MAX_ROWS_PER_SECOND = 1000;
+
+    private boolean enabled;
+    private long interval = DEFAULT_INTERVAL;
+    private long gracePeriod = DEFAULT_GRACE_PERIOD;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int maxRowsPerSecond = DEFAULT_MAX_ROWS_PER_SECOND;
+
+    public OrphanedChunkCollectorOptions() {
+    }
+
+    /**
+     * Whether the collector runs in the background
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public OrphanedChunkCollectorOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Milliseconds between sweeps
+     *
+     * @return
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    public OrphanedChunkCollectorOptions setInterval(long interval) {
+        this.interval = interval;
+        return this;
+    }
+
+    /**
+     * Minimum age in milliseconds of a chunk before it can be collected, this must be longer than any upload takes
+     *
+     * @return
+     */
+    public long getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public OrphanedChunkCollectorOptions setGracePeriod(long gracePeriod) {
+        this.gracePeriod = gracePeriod;
+        return this;
+    }
+
+    /**
+     * Number of chunk keys fetched per scan page
+     *
+     * @return
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public OrphanedChunkCollectorOptions setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Upper bound on the number of chunk keys scanned per second
+     *
+     * @return
+     */
+    public int getMaxRowsPerSecond() {
+        return maxRowsPerSecond;
+    }
+
+    public OrphanedChunkCollectorOptions setMaxRowsPerSecond(int maxRowsPerSecond) {
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        return this;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Options for the per tenant quotas on chunk reads and writes
+ */
+public class QuotaOptions {
+
+    public static final String DEFAULT_TENANT_FIELD = "tenant";
+    public static final String DEFAULT_TENANT = "default";
+    public static final int DEFAULT_MAX_TENANTS = 1000;
+
+    private boolean enabled;
+    private String tenantField = DEFAULT_TENANT_FIELD;
+    private String defaultTenant = DEFAULT_TENANT;
+    private int maxTenants = DEFAULT_MAX_TENANTS;
+    private TenantQuotaOptions defaultQuota = new TenantQuotaOptions();
+    private Map<String, TenantQuotaOptions> tenants = new HashMap<>();
+
+    public QuotaOptions() {
+    }
+
+    /**
+     * Whether tenants' chunk traffic is limited
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public QuotaOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * The metadata field holding a file's tenant
+     *
+     * @return
+     */
+    public String getTenantField() {
+        return tenantField;
+    }
+
+    public QuotaOptions setTenantField(String tenantField) {
+        this.tenantField = tenantField;
+        return this;
+    }
+
+    /**
+     * The tenant of files without one
+     *
+     * @return
+     */
+    public String getDefaultTenant() {
+        return defaultTenant;
+    }
+
+    public QuotaOptions setDefaultTenant(String defaultTenant) {
+        this.defaultTenant = defaultTenant;
+        return this;
+    }
+
+    /**
+     * Tenants tracked separately, further tenants share the default tenant's quota
+     *
+     * @return
+     */
+    public int getMaxTenants() {
+        return maxTenants;
+    }
+
+    public QuotaOptions setMaxTenants(int maxTenants) {
+        this.maxTenants = maxTenants;
+        return this;
+    }
+
+    /**
+     * Limits of tenants without limits of their own
+     *
+     * @return
+     */
+    public TenantQuotaOptions getDefaultQuota() {
+        return defaultQuota;
+    }
+
+    public QuotaOptions setDefaultQuota(TenantQuotaOptions defaultQuota) {
+        this.defaultQuota = defaultQuota;
+        return this;
+    }
+
+    /**
+     * Limits of individual tenants
+     *
+     * @return
+     */
+    public Map<String, TenantQuotaOptions> getTenants() {
+        return tenants;
+    }
+
+    public QuotaOptions setTenants(Map<String, TenantQuotaOptions> tenants) {
+        this.tenants = tenants;
+        return this;
+    }
+
+    /**
+     * The limits of a tenant
+     *
+     * @param tenant
+     * @return
+     */
+    public TenantQuotaOptions getQuota(String tenant) {
+        TenantQuotaOptions quota = tenants.get(tenant);
+        return (quota == null ? defaultQuota : quota);
+    }
+
+}
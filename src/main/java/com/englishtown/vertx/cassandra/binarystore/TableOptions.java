@@ -0,0 +1,100 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cassandra options of one of the store's tables, unset options keep Cassandra's defaults
+ */
+public class TableOptions {
+
+    private Map<String, String> compression;
+    private Map<String, String> compaction;
+    private Map<String, String> caching;
+    private Double bloomFilterFpChance;
+
+    public TableOptions() {
+    }
+
+    private static Map<String, String> disabledCompression() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("enabled", "false");
+        return map;
+    }
+
+    /**
+     * Whether any option is set
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return compression == null && compaction == null && caching == null && bloomFilterFpChance == null;
+    }
+
+    /**
+     * Compression sub-options, null for Cassandra's default
+     *
+     * @return
+     */
+    public Map<String, String> getCompression() {
+        return compression;
+    }
+
+    public TableOptions setCompression(Map<String, String> compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Stores the table uncompressed, for data such as media that is compressed already
+     *
+     * @return
+     */
+    public TableOptions disableCompression() {
+        this.compression = disabledCompression();
+        return this;
+    }
+
+    /**
+     * Compaction sub-options including the strategy class, null for Cassandra's default
+     *
+     * @return
+     */
+    public Map<String, String> getCompaction() {
+        return compaction;
+    }
+
+    public TableOptions setCompaction(Map<String, String> compaction) {
+        this.compaction = compaction;
+        return this;
+    }
+
+    /**
+     * Caching sub-options, null for Cassandra's default
+     *
+     * @return
+     */
+    public Map<String, String> getCaching() {
+        return caching;
+    }
+
+    public TableOptions setCaching(Map<String, String> caching) {
+        this.caching = caching;
+        return this;
+    }
+
+    /**
+     * Bloom filter false positive chance, null for Cassandra's default
+     *
+     * @return
+     */
+    public Double getBloomFilterFpChance() {
+        return bloomFilterFpChance;
+    }
+
+    public TableOptions setBloomFilterFpChance(Double bloomFilterFpChance) {
+        this.bloomFilterFpChance = bloomFilterFpChance;
+        return this;
+    }
+
+}
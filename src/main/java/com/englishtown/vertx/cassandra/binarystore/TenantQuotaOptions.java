@@ -0,0 +1,59 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Limits on the chunk traffic of one tenant
+ */
+public class TenantQuotaOptions {
+
+    public static final double DEFAULT_BURST_SECONDS = 1.0;
+
+    private long bytesPerSecond;
+    private double opsPerSecond;
+    private double burstSeconds = DEFAULT_BURST_SECONDS;
+
+    public TenantQuotaOptions() {
+    }
+
+    /**
+     * Chunk bytes read and written per second, 0 for no limit
+     *
+     * @return
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public TenantQuotaOptions setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Chunk reads and writes per second, 0 for no limit
+     *
+     * @return
+     */
+    public double getOpsPerSecond() {
+        return opsPerSecond;
+    }
+
+    public TenantQuotaOptions setOpsPerSecond(double opsPerSecond) {
+        this.opsPerSecond = opsPerSecond;
+        return this;
+    }
+
+    /**
+     * Seconds of unused quota a tenant can save up and spend at once
+     *
+     * @return
+     */
+    public double getBurstSeconds() {
+        return burstSeconds;
+    }
+
+    public TenantQuotaOptions setBurstSeconds(double burstSeconds) {
+        this.burstSeconds = burstSeconds;
+        return this;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import com.englishtown.promises.Promise;
+
+import java.util.function.Supplier;
+
+/**
+ * Quotas limiting the chunk traffic of each tenant sharing the store
+ */
+public interface TenantQuotas {
+
+    /**
+     * The quota of the tenant a file belongs to
+     *
+     * @param fileInfo
+     * @return
+     */
+    Quota forFile(FileInfo fileInfo);
+
+    /**
+     * The quota of one tenant
+     */
+    interface Quota {
+
+        /**
+         * @return the tenant
+         */
+        String getTenant();
+
+        /**
+         * Runs a chunk operation once the tenant's quota allows it.  Operations over quota are delayed rather than
+         * failed, so the streams waiting on them pause.
+         *
+         * @param bytes     the size of the chunk
+         * @param operation starts the operation
+         * @param <T>
+         * @return the operation's promise
+         */
+        <T> Promise<T> submit(long bytes, Supplier<Promise<T>> operation);
+
+    }
+
+}
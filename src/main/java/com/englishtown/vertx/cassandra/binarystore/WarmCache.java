@@ -0,0 +1,105 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A node-local cache of the default keyspace's most read file records and chunks, consulted by the
+ * {@link BinaryStoreManager} before Cassandra.  Reads are counted to tell which chunks are popular, so the
+ * {@link CacheWarmer} can persist them and fill the cache again after a restart.
+ * <p>
+ * The cache keeps its own copies of chunk data, arrays handed out or taken in belong to the caller.
+ */
+public interface WarmCache {
+
+    /**
+     * Whether anything is cached
+     *
+     * @return
+     */
+    boolean isEnabled();
+
+    /**
+     * Counts a read of a file record and returns it if cached
+     *
+     * @param id
+     * @return a copy of the cached record, or null
+     */
+    FileInfo getFile(UUID id);
+
+    /**
+     * Returns a file record if cached without counting a read, for loads the store makes itself
+     *
+     * @param id
+     * @return a copy of the cached record, or null
+     */
+    FileInfo peekFile(UUID id);
+
+    /**
+     * Caches a file record just loaded if it is read often enough
+     *
+     * @param fileInfo
+     */
+    void offerFile(FileInfo fileInfo);
+
+    /**
+     * Caches a file record regardless of how often it is read
+     *
+     * @param fileInfo
+     */
+    void putFile(FileInfo fileInfo);
+
+    /**
+     * Counts a read of a whole chunk and returns it if cached
+     *
+     * @param id
+     * @param n
+     * @return the cached chunk with its data copied into an array from the {@link ChunkBufferPool}, or null
+     */
+    ChunkInfo getChunk(UUID id, int n);
+
+    /**
+     * Returns a whole chunk if cached without counting a read, for loads the store makes itself
+     *
+     * @param id
+     * @param n
+     * @return the cached chunk with its data copied into an array from the {@link ChunkBufferPool}, or null
+     */
+    ChunkInfo peekChunk(UUID id, int n);
+
+    /**
+     * Caches a copy of a whole chunk just loaded if it is read often enough
+     *
+     * @param chunkInfo
+     */
+    void offerChunk(ChunkInfo chunkInfo);
+
+    /**
+     * Caches a copy of a whole chunk regardless of how often it is read
+     *
+     * @param chunkInfo
+     */
+    void putChunk(ChunkInfo chunkInfo);
+
+    /**
+     * Drops the record and chunks of a file
+     *
+     * @param id
+     */
+    void invalidate(UUID id);
+
+    /**
+     * The most read chunks, most read first
+     *
+     * @return chunks with only their id and number set
+     */
+    List<ChunkInfo> getPopularChunks();
+
+    /**
+     * Bytes of chunk data cached
+     *
+     * @return
+     */
+    long getCachedBytes();
+
+}
@@ -0,0 +1,125 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+/**
+ * Options for the node-local {@link WarmCache} and the {@link CacheWarmer} filling it after a restart
+ */
+public class WarmCacheOptions {
+
+    public static final String DEFAULT_PATH = "binarystore-popular.txt";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_KEYS = 1000;
+    public static final long DEFAULT_PERSIST_INTERVAL = 5 * 60 * 1000L;
+    public static final int DEFAULT_PREFETCH_PER_SECOND = 20;
+    public static final long DEFAULT_EXPIRE_AFTER = 10 * 60 * 1000L;
+
+    private boolean enabled;
+    private String path = DEFAULT_PATH;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private int maxKeys = DEFAULT_MAX_KEYS;
+    private long persistInterval = DEFAULT_PERSIST_INTERVAL;
+    private int prefetchPerSecond = DEFAULT_PREFETCH_PER_SECOND;
+    private long expireAfter = DEFAULT_EXPIRE_AFTER;
+
+    public WarmCacheOptions() {
+    }
+
+    /**
+     * Whether popular chunks are tracked, cached and prefetched after a restart
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public WarmCacheOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Local file the most read chunk keys are persisted to
+     *
+     * @return
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public WarmCacheOptions setPath(String path) {
+        this.path = path;
+        return this;
+    }
+
+    /**
+     * Bytes of chunk data the cache holds
+     *
+     * @return
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public WarmCacheOptions setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Number of the most read chunk keys persisted and prefetched
+     *
+     * @return
+     */
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public WarmCacheOptions setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+        return this;
+    }
+
+    /**
+     * Milliseconds between persisting the most read keys
+     *
+     * @return
+     */
+    public long getPersistInterval() {
+        return persistInterval;
+    }
+
+    public WarmCacheOptions setPersistInterval(long persistInterval) {
+        this.persistInterval = persistInterval;
+        return this;
+    }
+
+    /**
+     * Upper bound on the number of chunks prefetched per second after a restart
+     *
+     * @return
+     */
+    public int getPrefetchPerSecond() {
+        return prefetchPerSecond;
+    }
+
+    public WarmCacheOptions setPrefetchPerSecond(int prefetchPerSecond) {
+        this.prefetchPerSecond = prefetchPerSecond;
+        return this;
+    }
+
+    /**
+     * Milliseconds a cached entry is served before it is read from Cassandra again, this bounds how long a file
+     * deleted through another node is still served
+     *
+     * @return
+     */
+    public long getExpireAfter() {
+        return expireAfter;
+    }
+
+    public WarmCacheOptions setExpireAfter(long expireAfter) {
+        this.expireAfter = expireAfter;
+        return this;
+    }
+
+}
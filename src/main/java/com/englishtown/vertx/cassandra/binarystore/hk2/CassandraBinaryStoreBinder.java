@@ -1,10 +1,23 @@
 package com.englishtown.vertx.cassandra.binarystore.hk2;
 
 import com.englishtown.vertx.cassandra.binarystore.*;
+import com.englishtown.vertx.cassandra.binarystore.impl.BinaryStoreHttpHandler;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreKeyspaces;
 import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreManager;
 import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreReader;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreSessions;
 import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreStatements;
 import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreWriter;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultCacheWarmer;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultChunkBufferPool;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultChunkScheduler;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultMemoryBudget;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultMetricsExporter;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultOrphanedChunkCollector;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultTenantQuotas;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultWarmCache;
+import com.englishtown.vertx.cassandra.binarystore.impl.JsonBinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.impl.MetricsHttpHandler;
 import com.englishtown.vertx.cassandra.hk2.HK2WhenCassandraBinder;
 import com.englishtown.vertx.promises.hk2.HK2WhenBinder;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
@@ -23,15 +36,26 @@ public class CassandraBinaryStoreBinder extends AbstractBinder {
     @Override
     protected void configure() {
 
-        // TODO: Metrics
-//        install(new MetricsBinder(), new HK2WhenCassandraBinder(), new HK2WhenBinder());
-        install(new HK2WhenCassandraBinder(), new HK2WhenBinder());
+        install(new MetricsBinder(), new HK2WhenCassandraBinder(), new HK2WhenBinder());
 
         bind(BinaryStoreStarter.class).to(BinaryStoreStarter.class);
+        bind(JsonBinaryStoreConfigurator.class).to(BinaryStoreConfigurator.class).in(Singleton.class);
+        bind(DefaultBinaryStoreSessions.class).to(BinaryStoreSessions.class).in(Singleton.class);
         bind(DefaultBinaryStoreManager.class).to(BinaryStoreManager.class).in(Singleton.class);
         bind(DefaultBinaryStoreStatements.class).to(BinaryStoreStatements.class).in(Singleton.class);
+        bind(DefaultBinaryStoreKeyspaces.class).to(BinaryStoreKeyspaces.class).in(Singleton.class);
+        bind(DefaultChunkScheduler.class).to(ChunkScheduler.class).in(Singleton.class);
+        bind(DefaultMemoryBudget.class).to(MemoryBudget.class).in(Singleton.class);
+        bind(DefaultChunkBufferPool.class).to(ChunkBufferPool.class).in(Singleton.class);
+        bind(DefaultTenantQuotas.class).to(TenantQuotas.class).in(Singleton.class);
         bind(DefaultBinaryStoreWriter.class).to(BinaryStoreWriter.class).in(Singleton.class);
         bind(DefaultBinaryStoreReader.class).to(BinaryStoreReader.class).in(Singleton.class);
+        bind(DefaultOrphanedChunkCollector.class).to(OrphanedChunkCollector.class).in(Singleton.class);
+        bind(DefaultWarmCache.class).to(WarmCache.class).in(Singleton.class);
+        bind(DefaultCacheWarmer.class).to(CacheWarmer.class).in(Singleton.class);
+        bind(BinaryStoreHttpHandler.class).to(BinaryStoreHttpHandler.class);
+        bind(DefaultMetricsExporter.class).to(MetricsExporter.class).in(Singleton.class);
+        bind(MetricsHttpHandler.class).to(MetricsHttpHandler.class);
 
     }
 }
@@ -0,0 +1,18 @@
+package com.englishtown.vertx.cassandra.binarystore.hk2;
+
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.vertx.cassandra.binarystore.impl.HdrMetricRegistry;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+
+import javax.inject.Singleton;
+
+/**
+ * Binds a single {@link MetricRegistry} shared by the binary store components
+ */
+public class MetricsBinder extends AbstractBinder {
+
+    @Override
+    protected void configure() {
+        bind(HdrMetricRegistry.class).to(MetricRegistry.class).in(Singleton.class);
+    }
+}
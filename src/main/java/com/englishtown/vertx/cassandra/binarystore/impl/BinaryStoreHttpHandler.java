@@ -0,0 +1,433 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.vertx.cassandra.binarystore.*;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.WriteStream;
+
+import javax.inject.Inject;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Serves files over HTTP from {@code GET} and {@code HEAD} requests to {@code <prefix><id>}.
+ * <p>
+ * Conditional requests are answered from the file record alone, ranges map onto
+ * {@link BinaryStoreReader#readRange(FileInfo, ContentRange)} and {@link BinaryStoreReader#readRanges(FileInfo, List)}
+ * given the record already loaded, and file data is piped to the response so a slow client holds back chunk loads.  A {@code keyspace} query parameter
+ * serves the file from another allowed keyspace.
+ */
+public class BinaryStoreHttpHandler implements Handler<HttpServerRequest> {
+
+    public static final String DEFAULT_PREFIX = "/files/";
+    public static final String KEYSPACE_PARAM = "keyspace";
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryStoreHttpHandler.class);
+    private static final String BOUNDARY = "BINARYSTORE_BYTERANGES";
+
+    private final BinaryStoreManager binaryStoreManager;
+    private final BinaryStoreReader binaryStoreReader;
+    private String prefix = DEFAULT_PREFIX;
+
+    @Inject
+    public BinaryStoreHttpHandler(BinaryStoreManager binaryStoreManager, BinaryStoreReader binaryStoreReader) {
+        this.binaryStoreManager = binaryStoreManager;
+        this.binaryStoreReader = binaryStoreReader;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public BinaryStoreHttpHandler setPrefix(String prefix) {
+        this.prefix = prefix;
+        return this;
+    }
+
+    @Override
+    public void handle(HttpServerRequest request) {
+
+        HttpServerResponse response = request.response();
+
+        if (request.method() != HttpMethod.GET && request.method() != HttpMethod.HEAD) {
+            response.setStatusCode(405).putHeader("Allow", "GET, HEAD").end();
+            return;
+        }
+
+        UUID id = getId(request.path());
+        if (id == null) {
+            response.setStatusCode(404).end();
+            return;
+        }
+
+        // Files of other keyspaces are served to requests naming an allowed one
+        String keyspace = request.getParam(KEYSPACE_PARAM);
+        BinaryStoreManager manager = binaryStoreManager;
+        BinaryStoreReader storeReader = binaryStoreReader;
+
+        if (keyspace != null) {
+            try {
+                manager = binaryStoreManager.forKeyspace(keyspace);
+                storeReader = binaryStoreReader.forKeyspace(keyspace);
+            } catch (IllegalArgumentException e) {
+                response.setStatusCode(404).end();
+                return;
+            }
+        }
+
+        BinaryStoreReader fileReader = storeReader;
+
+        manager.loadFile(id)
+                .then(fileInfo -> {
+                    if (fileInfo == null || fileInfo.getStatus() == FileStatus.PENDING) {
+                        response.setStatusCode(404).end();
+                    } else {
+                        handleFile(request, fileInfo, fileReader);
+                    }
+                    return null;
+                })
+                .otherwise(t -> {
+                    logger.error("Error loading file " + id, t);
+                    response.setStatusCode(500).end();
+                    return null;
+                });
+
+    }
+
+    private UUID getId(String path) {
+
+        if (path == null || !path.startsWith(prefix)) {
+            return null;
+        }
+
+        try {
+            return UUID.fromString(path.substring(prefix.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void handleFile(HttpServerRequest request, FileInfo fileInfo, BinaryStoreReader binaryStoreReader) {
+
+        HttpServerResponse response = request.response();
+        String etag = getETag(fileInfo);
+
+        // Files never change once committed, so validators are answered without touching chunks
+        response.putHeader("ETag", etag)
+                .putHeader("Last-Modified", formatDate(fileInfo.getUploadDate()))
+                .putHeader("Accept-Ranges", "bytes");
+
+        if (isNotModified(request, fileInfo, etag)) {
+            response.setStatusCode(304).end();
+            return;
+        }
+
+        if (fileInfo.getContentType() != null) {
+            response.putHeader("Content-Type", fileInfo.getContentType());
+        }
+
+        List<ContentRange> ranges = null;
+        if (request.method() == HttpMethod.GET && isRangeCurrent(request, fileInfo, etag)) {
+            ranges = parseRanges(request.getHeader("Range"), fileInfo.getLength());
+        }
+
+        if (ranges == null) {
+            response.putHeader("Content-Length", String.valueOf(fileInfo.getLength()));
+            if (request.method() == HttpMethod.HEAD) {
+                response.end();
+            } else {
+                pipe(binaryStoreReader.read(fileInfo), response, response);
+            }
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatusCode(416)
+                    .putHeader("Content-Range", "bytes */" + fileInfo.getLength())
+                    .end();
+            return;
+        }
+
+        if (ranges.size() == 1) {
+            ContentRange range = ranges.get(0);
+            setPartialContent(response, range, fileInfo);
+            pipe(binaryStoreReader.readRange(fileInfo, range), response, response);
+            return;
+        }
+
+        FileReader reader = binaryStoreReader.readRanges(fileInfo, ranges);
+
+        // Called before any chunk is loaded
+        reader.fileHandler(readInfo -> {
+            // Overlapping ranges are merged by the reader, which may leave a single one
+            List<ContentRange> parts = readInfo.getRanges();
+            if (parts.size() == 1) {
+                setPartialContent(response, parts.get(0), fileInfo);
+                pipe(reader, response, response);
+            } else {
+                MultipartStream multipart = new MultipartStream(response, fileInfo);
+                response.setStatusCode(206)
+                        .putHeader("Content-Type", "multipart/byteranges; boundary=" + BOUNDARY)
+                        .putHeader("Content-Length", String.valueOf(multipart.getLength(parts)));
+                reader.partHandler(multipart::startPart);
+                pipe(reader, multipart, response);
+            }
+        });
+
+    }
+
+    private void setPartialContent(HttpServerResponse response, ContentRange range, FileInfo fileInfo) {
+        response.setStatusCode(206)
+                .putHeader("Content-Range", formatRange(range, fileInfo))
+                .putHeader("Content-Length", String.valueOf(range.getTo() - range.getFrom() + 1));
+    }
+
+    private void pipe(FileReader reader, WriteStream<Buffer> ws, HttpServerResponse response) {
+
+        // Stop loading chunks for a client that has gone away, and give back what the reader holds
+        response.closeHandler(event -> reader.cancel());
+
+        reader.pipeTo(ws, result -> {
+            if (result.succeeded() && result.result() == FileReader.Result.OK) {
+                return;
+            }
+            if (result.failed()) {
+                logger.error("Error reading file", result.cause());
+            }
+            if (response.closed() || response.ended()) {
+                return;
+            }
+            // The reader ends the response once this returns
+            if (response.headWritten()) {
+                // Part of the body is out, the client must not take it for the whole file
+                response.close();
+            } else {
+                response.setStatusCode(result.succeeded() ? 404 : 500)
+                        .putHeader("Content-Length", "0");
+            }
+        });
+
+    }
+
+    private boolean isNotModified(HttpServerRequest request, FileInfo fileInfo, String etag) {
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch, etag);
+        }
+
+        String ifModifiedSince = request.getHeader("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            Long since = parseDate(ifModifiedSince);
+            return (since != null && fileInfo.getUploadDate() / 1000 <= since / 1000);
+        }
+
+        return false;
+    }
+
+    private boolean isRangeCurrent(HttpServerRequest request, FileInfo fileInfo, String etag) {
+
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+
+        // Only a strong validator is allowed to match
+        if (ifRange.startsWith("\"")) {
+            return ifRange.trim().equals(etag);
+        }
+
+        Long date = parseDate(ifRange);
+        return (date != null && fileInfo.getUploadDate() / 1000 == date / 1000);
+    }
+
+    private boolean matchesETag(String header, String etag) {
+
+        for (String value : header.split(",")) {
+            value = value.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parses a byte ranges header against the file length
+     *
+     * @param header the range header
+     * @param length the file length
+     * @return the satisfiable ranges, an empty list if there are none, or null if the header should be ignored
+     */
+    List<ContentRange> parseRanges(String header, long length) {
+
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+
+        List<ContentRange> ranges = new ArrayList<>();
+
+        for (String spec : header.substring("bytes=".length()).split(",")) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+
+            long from;
+            long to;
+
+            try {
+                if (dash == 0) {
+                    // Suffix range of the last n bytes
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    from = Math.max(0, length - suffix);
+                    to = length - 1;
+                } else {
+                    from = Long.parseLong(spec.substring(0, dash));
+                    to = (dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1)));
+                    if (from < 0 || to < from) {
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (from < length) {
+                ranges.add(new ContentRange().setFrom(from).setTo(Math.min(to, length - 1)));
+            }
+        }
+
+        return ranges;
+    }
+
+    private String getETag(FileInfo fileInfo) {
+        if (fileInfo.getSha256() != null) {
+            return "\"" + fileInfo.getSha256() + "\"";
+        }
+        // Files are immutable, so the id and upload date identify the content
+        return "\"" + fileInfo.getId() + "-" + Long.toHexString(fileInfo.getUploadDate()) + "\"";
+    }
+
+    private static String formatRange(ContentRange range, FileInfo fileInfo) {
+        return "bytes " + range.getFrom() + "-" + range.getTo() + "/" + fileInfo.getLength();
+    }
+
+    private static String formatDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    private static Long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a {@code multipart/byteranges} body, part headers are written as each part starts and the closing
+     * boundary when the body ends, unless no part was started
+     */
+    private static class MultipartStream implements WriteStream<Buffer> {
+
+        private final HttpServerResponse response;
+        private final FileInfo fileInfo;
+        private boolean first = true;
+
+        public MultipartStream(HttpServerResponse response, FileInfo fileInfo) {
+            this.response = response;
+            this.fileInfo = fileInfo;
+        }
+
+        public long getLength(List<ContentRange> parts) {
+            long length = getTrailer().length();
+            boolean first = true;
+            for (ContentRange part : parts) {
+                length += getPartHeader(part, first).length() + (part.getTo() - part.getFrom() + 1);
+                first = false;
+            }
+            return length;
+        }
+
+        public void startPart(ContentRange range) {
+            response.write(getPartHeader(range, first));
+            first = false;
+        }
+
+        private String getPartHeader(ContentRange range, boolean first) {
+            StringBuilder sb = new StringBuilder();
+            if (!first) {
+                sb.append("\r\n");
+            }
+            sb.append("--").append(BOUNDARY).append("\r\n");
+            if (fileInfo.getContentType() != null) {
+                sb.append("Content-Type: ").append(fileInfo.getContentType()).append("\r\n");
+            }
+            sb.append("Content-Range: ").append(formatRange(range, fileInfo)).append("\r\n\r\n");
+            return sb.toString();
+        }
+
+        private String getTrailer() {
+            return "\r\n--" + BOUNDARY + "--\r\n";
+        }
+
+        @Override
+        public MultipartStream exceptionHandler(Handler<Throwable> handler) {
+            response.exceptionHandler(handler);
+            return this;
+        }
+
+        @Override
+        public MultipartStream write(Buffer data) {
+            response.write(data);
+            return this;
+        }
+
+        @Override
+        public void end() {
+            if (first) {
+                response.end();
+            } else {
+                response.end(getTrailer());
+            }
+        }
+
+        @Override
+        public MultipartStream setWriteQueueMaxSize(int maxSize) {
+            response.setWriteQueueMaxSize(maxSize);
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return response.writeQueueFull();
+        }
+
+        @Override
+        public MultipartStream drainHandler(Handler<Void> handler) {
+            response.drainHandler(handler);
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.exceptions.BusyConnectionException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitExceededException;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitOptions;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+
+import java.util.function.Supplier;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Limits the queries in flight to a limit that adapts to query latency
+ */
+public class ConcurrencyLimiter {
+
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 600;
+    private static final double BACKOFF = 0.9;
+
+    private final ConcurrencyLimitOptions options;
+    private final String lane;
+    private final Meter rejected;
+    private final When when;
+
+    private double estimate;
+    private int limit;
+    private int inFlight;
+    private double shortRtt;
+    private double longRtt;
+
+    public ConcurrencyLimiter(ConcurrencyLimitOptions options, MetricRegistry registry, String lane, When when) {
+        this.options = options;
+        this.lane = lane;
+        this.when = when;
+
+        estimate = limit = options.getInitialLimit();
+
+        rejected = registry.meter(name(Metrics.BASE_NAME, lane, "lane", "rejected"));
+
+        if (options.isEnabled()) {
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, lane, "lane", "limit"), this::getLimit);
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, lane, "lane", "inflight"), this::getInFlight);
+        }
+    }
+
+    /**
+     * Runs a query if the limit allows it
+     *
+     * @param query starts the query
+     * @param <T>
+     * @return the query's promise, or a promise rejected with a {@link ConcurrencyLimitExceededException}
+     */
+    public <T> Promise<T> execute(Supplier<Promise<T>> query) {
+
+        if (!options.isEnabled()) {
+            return query.get();
+        }
+
+        int current = tryAcquire();
+        if (current < 0) {
+            rejected.mark();
+            return when.reject(new ConcurrencyLimitExceededException(lane, limit));
+        }
+
+        long start = System.nanoTime();
+        Promise<T> promise;
+
+        try {
+            promise = query.get();
+        } catch (RuntimeException e) {
+            release();
+            return when.reject(e);
+        }
+
+        return promise.then(
+                result -> {
+                    onSample(System.nanoTime() - start, current, false);
+                    return when.resolve(result);
+                },
+                t -> {
+                    onSample(System.nanoTime() - start, current, isOverload(t));
+                    return when.reject(t);
+                });
+
+    }
+
+    /**
+     * Takes a slot for a query that is not run through {@link #execute(Supplier)}, such as the second copy of a hedged
+     * read.  Its latency is not sampled, it only counts against the limit until {@link #releaseSlot()}.
+     *
+     * @return whether the limit allowed it
+     */
+    public boolean tryAcquireSlot() {
+        if (!options.isEnabled()) {
+            return true;
+        }
+        return tryAcquire() >= 0;
+    }
+
+    /**
+     * Gives back a slot taken by {@link #tryAcquireSlot()}
+     */
+    public void releaseSlot() {
+        if (options.isEnabled()) {
+            release();
+        }
+    }
+
+    /**
+     * Current limit on queries in flight
+     *
+     * @return
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Queries currently in flight
+     *
+     * @return
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the queries in flight including this one, or -1 if the limit was reached
+     */
+    private synchronized int tryAcquire() {
+        if (inFlight >= limit) {
+            return -1;
+        }
+        return ++inFlight;
+    }
+
+    private synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * Releases a query and adjusts the limit to its latency
+     *
+     * @param rtt      nanoseconds the query took
+     * @param inFlight queries in flight when it started, including itself
+     * @param dropped  whether it failed in a way that signals overload
+     */
+    synchronized void onSample(long rtt, int inFlight, boolean dropped) {
+
+        this.inFlight--;
+
+        if (dropped) {
+            setEstimate(estimate * BACKOFF);
+            return;
+        }
+
+        if (longRtt == 0) {
+            shortRtt = longRtt = rtt;
+        } else {
+            shortRtt += (rtt - shortRtt) / SHORT_WINDOW;
+            longRtt += (rtt - longRtt) / LONG_WINDOW;
+        }
+
+        // Latency dropped well below the long term average, let the average catch up so the limit can grow again
+        if (longRtt > 2 * shortRtt) {
+            longRtt *= 0.95;
+        }
+
+        // Too few queries to tell whether latency is limiting them, leave the limit alone
+        if (inFlight < estimate / 2) {
+            return;
+        }
+
+        // Grows by about its square root while short and long term latency agree, shrinks as short term latency rises
+        double gradient = Math.max(0.5, Math.min(1.0, options.getTolerance() * longRtt / shortRtt));
+        double target = estimate * gradient + Math.sqrt(estimate);
+
+        setEstimate(estimate * (1 - options.getSmoothing()) + target * options.getSmoothing());
+
+    }
+
+    private void setEstimate(double value) {
+        estimate = Math.max(options.getMinLimit(), Math.min(options.getMaxLimit(), value));
+        limit = (int) estimate;
+    }
+
+    static boolean isOverload(Throwable t) {
+        return t instanceof ReadTimeoutException
+                || t instanceof WriteTimeoutException
+                || t instanceof OverloadedException
+                || t instanceof OperationTimedOutException
+                || t instanceof BusyConnectionException
+                || t instanceof NoHostAvailableException;
+    }
+
+}
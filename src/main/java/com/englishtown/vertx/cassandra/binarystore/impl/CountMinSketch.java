@@ -0,0 +1,92 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate read counts in fixed memory, safe to use from many threads without locking
+ */
+final class CountMinSketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final AtomicIntegerArray[] counters;
+    private final int mask;
+    private final long resetAfter;
+    private final AtomicLong additions = new AtomicLong();
+    private final AtomicBoolean halving = new AtomicBoolean();
+
+    /**
+     * @param width minimum counters per row, rounded up to a power of two
+     */
+    CountMinSketch(int width) {
+        int size = Integer.highestOneBit((Math.max(16, width) - 1) << 1);
+        counters = new AtomicIntegerArray[DEPTH];
+        for (int i = 0; i < DEPTH; i++) {
+            counters[i] = new AtomicIntegerArray(size);
+        }
+        mask = size - 1;
+        resetAfter = 10L * size;
+    }
+
+    /**
+     * Counts a read
+     *
+     * @param hash the key's hash code
+     * @return the key's estimated count including this read
+     */
+    int add(int hash) {
+
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int count = counters[i].updateAndGet(index(hash, i), c -> (c < Integer.MAX_VALUE ? c + 1 : c));
+            // Collisions can only overestimate a key, so the smallest of its counters is the closest
+            estimate = Math.min(estimate, count);
+        }
+
+        // Halving lets keys that stop being read fade out.  Only one thread halves, the others keep counting
+        // meanwhile and may be halved or not, which only blurs estimates that are approximate anyway
+        if (additions.incrementAndGet() >= resetAfter && halving.compareAndSet(false, true)) {
+            try {
+                halve();
+            } finally {
+                halving.set(false);
+            }
+        }
+
+        return estimate;
+    }
+
+    /**
+     * @param hash the key's hash code
+     * @return the key's estimated count
+     */
+    int estimate(int hash) {
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            estimate = Math.min(estimate, counters[i].get(index(hash, i)));
+        }
+        return estimate;
+    }
+
+    private void halve() {
+        for (AtomicIntegerArray row : counters) {
+            for (int j = 0; j < row.length(); j++) {
+                row.updateAndGet(j, c -> c >>> 1);
+            }
+        }
+        additions.updateAndGet(a -> a / 2);
+    }
+
+    private int index(int hash, int row) {
+        // Murmur3 finalizer over a per row seed, so keys colliding in one row rarely collide in another
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & mask;
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreKeyspaces;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreSessions;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreStatements;
+import com.englishtown.vertx.cassandra.binarystore.KeyspaceOptions;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Default implementation of {@link BinaryStoreKeyspaces}
+ */
+public class DefaultBinaryStoreKeyspaces implements BinaryStoreKeyspaces {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultBinaryStoreKeyspaces.class);
+
+    private final BinaryStoreStatements statements;
+    private final Supplier<BinaryStoreStatements> factory;
+    private final BinaryStoreSessions sessions;
+    private final KeyspaceOptions options;
+    private final When when;
+    private final Deferred<Void> initialized;
+
+    private String initKeyspace;
+    private Promise<BinaryStoreStatements> initPromise;
+    private final Map<String, Promise<BinaryStoreStatements>> pending = new HashMap<>();
+    private final Map<String, BinaryStoreStatements> prepared = new ConcurrentHashMap<>();
+
+    /**
+     * Serves only the default keyspace
+     *
+     * @param statements the default keyspace's statements
+     * @param when
+     */
+    public DefaultBinaryStoreKeyspaces(BinaryStoreStatements statements, When when) {
+        this(statements, null, null, new KeyspaceOptions(), when);
+    }
+
+    @Inject
+    public DefaultBinaryStoreKeyspaces(
+            WhenCassandraSession session,
+            BinaryStoreSessions sessions,
+            BinaryStoreStatements statements,
+            BinaryStoreConfigurator configurator,
+            When when) {
+        this(statements,
+                () -> new DefaultBinaryStoreStatements(session, configurator, when),
+                sessions,
+                configurator.getKeyspaceOptions(),
+                when);
+    }
+
+    public DefaultBinaryStoreKeyspaces(
+            BinaryStoreStatements statements,
+            Supplier<BinaryStoreStatements> factory,
+            BinaryStoreSessions sessions,
+            KeyspaceOptions options,
+            When when) {
+        this.statements = statements;
+        this.factory = factory;
+        this.sessions = sessions;
+        this.options = options;
+        this.when = when;
+        this.initialized = when.defer();
+    }
+
+    @Override
+    public Promise<Void> init(String keyspace) {
+        synchronized (this) {
+            initKeyspace = keyspace;
+        }
+        return initDefault().then(initialized -> null);
+    }
+
+    @Override
+    public Promise<Void> whenInitialized() {
+        return initialized.getPromise();
+    }
+
+    private synchronized Promise<BinaryStoreStatements> initDefault() {
+
+        if (initPromise != null) {
+            return initPromise;
+        }
+
+        Deferred<BinaryStoreStatements> d = when.defer();
+        initPromise = d.getPromise();
+
+        statements.init(initKeyspace)
+                .then(aVoid -> sessions.init(statements))
+                .then(aVoid -> {
+                    d.resolve(statements);
+                    // A successful initialization is kept, so this only happens once
+                    initialized.resolve((Void) null);
+                    return null;
+                })
+                .otherwise(t -> {
+                    logger.error("Error initializing keyspace " + initKeyspace, t);
+                    forgetDefault();
+                    d.reject(t);
+                    return null;
+                });
+
+        return d.getPromise();
+    }
+
+    private synchronized void forgetDefault() {
+        initPromise = null;
+    }
+
+    @Override
+    public String getDefaultKeyspace() {
+        return statements.getKeyspace();
+    }
+
+    @Override
+    public boolean isAllowed(String keyspace) {
+        return keyspace != null && (keyspace.equals(getDefaultKeyspace()) || options.isAllowed(keyspace));
+    }
+
+    @Override
+    public BinaryStoreStatements getPreparedStatements(String keyspace) {
+        if (keyspace == null) {
+            return null;
+        }
+        if (keyspace.equals(getDefaultKeyspace())) {
+            return (statements.isInitialized() ? statements : null);
+        }
+        return prepared.get(keyspace);
+    }
+
+    @Override
+    public Promise<BinaryStoreStatements> getStatements(String keyspace) {
+
+        BinaryStoreStatements existing = getPreparedStatements(keyspace);
+        if (existing != null) {
+            return when.resolve(existing);
+        }
+
+        if (keyspace != null && keyspace.equals(getDefaultKeyspace())) {
+            // Started lazily, requests wait for the default keyspace's statements
+            synchronized (this) {
+                if (initKeyspace == null) {
+                    return when.reject(new IllegalStateException("Keyspace " + keyspace + " is not initialized"));
+                }
+            }
+            return initDefault();
+        }
+
+        if (!isAllowed(keyspace)) {
+            return when.reject(new IllegalArgumentException("Keyspace " + keyspace + " is not allowed"));
+        }
+
+        return prepare(keyspace);
+    }
+
+    private synchronized Promise<BinaryStoreStatements> prepare(String keyspace) {
+
+        Promise<BinaryStoreStatements> promise = pending.get(keyspace);
+        if (promise != null) {
+            return promise;
+        }
+
+        // The default keyspace counts towards the limit
+        if (pending.size() + 1 >= options.getMaxKeyspaces()) {
+            return when.reject(new IllegalStateException("Keyspace " + keyspace + " exceeds the limit of "
+                    + options.getMaxKeyspaces() + " keyspaces"));
+        }
+
+        // Only the statements differ between keyspaces, later requests wait on the first one's preparation
+        BinaryStoreStatements keyspaceStatements = factory.get();
+        Deferred<BinaryStoreStatements> d = when.defer();
+        pending.put(keyspace, d.getPromise());
+
+        keyspaceStatements.init(keyspace)
+                .then(aVoid -> sessions.init(keyspaceStatements))
+                .then(aVoid -> {
+                    prepared.put(keyspace, keyspaceStatements);
+                    d.resolve(keyspaceStatements);
+                    return null;
+                })
+                .otherwise(t -> {
+                    logger.error("Error preparing keyspace " + keyspace, t);
+                    // The next request retries it
+                    forget(keyspace);
+                    d.reject(t);
+                    return null;
+                });
+
+        return d.getPromise();
+    }
+
+    private synchronized void forget(String keyspace) {
+        pending.remove(keyspace);
+    }
+
+    /**
+     * Keyspaces prepared besides the default one
+     *
+     * @return
+     */
+    public int getPreparedCount() {
+        return prepared.size();
+    }
+
+}
@@ -2,38 +2,168 @@ package com.englishtown.vertx.cassandra.binarystore.impl;
 
 import com.codahale.metrics.MetricRegistry;
 import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.englishtown.promises.Promise;
 import com.englishtown.promises.When;
 import com.englishtown.vertx.cassandra.binarystore.*;
 import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 import javax.inject.Inject;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.BinaryStoreManager}
  */
 public class DefaultBinaryStoreManager implements BinaryStoreManager {
 
+    private static final Logger logger = LoggerFactory.getLogger(DefaultBinaryStoreManager.class);
+    private static final WarmCache DISABLED_CACHE = new DisabledWarmCache();
+
     private final MetricRegistry registry;
     private final When when;
 
-    private final WhenCassandraSession session;
     private final BinaryStoreStatements statements;
+    private final BinaryStoreKeyspaces keyspaces;
+    private final DefaultBinaryStoreManager root;
+    private final Map<String, DefaultBinaryStoreManager> keyspaceManagers;
     private final Metrics fileMetrics;
     private final Metrics chunkMetrics;
+    private final QueryLane metadataLane;
+    private final QueryLane chunkLane;
+    private final ReadHedger fileHedger;
+    private final ReadHedger chunkHedger;
+    private final ChunkBufferPool bufferPool;
+    private final WarmCache warmCache;
+    private final boolean counted;
 
-    @Inject
     public DefaultBinaryStoreManager(WhenCassandraSession session, BinaryStoreStatements statements, MetricRegistry registry, When when) {
-        this.session = session;
+        this(session, session, statements, new DefaultBinaryStoreKeyspaces(statements, when), new HedgingOptions(), new LaneOptions(), new LaneOptions(),
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), registry, when);
+    }
+
+    @Inject
+    public DefaultBinaryStoreManager(
+            BinaryStoreSessions sessions,
+            BinaryStoreStatements statements,
+            BinaryStoreKeyspaces keyspaces,
+            BinaryStoreConfigurator configurator,
+            ChunkBufferPool bufferPool,
+            WarmCache warmCache,
+            MetricRegistry registry,
+            When when) {
+        this(sessions.getMetadataSession(),
+                sessions.getChunkSession(),
+                statements,
+                keyspaces,
+                configurator.getHedgingOptions(),
+                configurator.getMetadataLaneOptions(),
+                configurator.getChunkLaneOptions(),
+                bufferPool,
+                warmCache,
+                registry,
+                when);
+    }
+
+    public DefaultBinaryStoreManager(
+            WhenCassandraSession metadataSession,
+            WhenCassandraSession chunkSession,
+            BinaryStoreStatements statements,
+            BinaryStoreKeyspaces keyspaces,
+            HedgingOptions hedgingOptions,
+            LaneOptions metadataLaneOptions,
+            LaneOptions chunkLaneOptions,
+            ChunkBufferPool bufferPool,
+            MetricRegistry registry,
+            When when) {
+        this(metadataSession, chunkSession, statements, keyspaces, hedgingOptions, metadataLaneOptions, chunkLaneOptions,
+                bufferPool, DISABLED_CACHE, registry, when);
+    }
+
+    public DefaultBinaryStoreManager(
+            WhenCassandraSession metadataSession,
+            WhenCassandraSession chunkSession,
+            BinaryStoreStatements statements,
+            BinaryStoreKeyspaces keyspaces,
+            HedgingOptions hedgingOptions,
+            LaneOptions metadataLaneOptions,
+            LaneOptions chunkLaneOptions,
+            ChunkBufferPool bufferPool,
+            WarmCache warmCache,
+            MetricRegistry registry,
+            When when) {
         this.statements = statements;
+        this.keyspaces = keyspaces;
+        this.root = this;
+        this.keyspaceManagers = new ConcurrentHashMap<>();
+        this.bufferPool = bufferPool;
+        this.warmCache = warmCache;
+        this.counted = true;
         this.registry = registry;
         this.when = when;
 
         this.fileMetrics = new Metrics(registry, "files");
         this.chunkMetrics = new Metrics(registry, "chunks");
+
+        // File records and chunk data have separate budgets, so metadata lookups never queue behind bulk transfers
+        this.metadataLane = new QueryLane("metadata", metadataSession, metadataLaneOptions, registry, when);
+        this.chunkLane = new QueryLane("chunks", chunkSession, chunkLaneOptions, registry, when);
+
+        // Each kind of read hedges after a percentile of its own latencies, the copy takes its own slot in the lane
+        this.fileHedger = new ReadHedger(metadataSession, hedgingOptions, metadataLane.getLimiter(), fileMetrics, registry, "files", when);
+        this.chunkHedger = new ReadHedger(chunkSession, hedgingOptions, chunkLane.getLimiter(), chunkMetrics, registry, "chunks", when);
+    }
+
+    /**
+     * A manager of another keyspace's files, sharing the lanes, hedgers and metrics of the root manager.  The warm
+     * cache only holds the default keyspace's files.
+     */
+    private DefaultBinaryStoreManager(DefaultBinaryStoreManager root, BinaryStoreStatements statements) {
+        this.statements = statements;
+        this.keyspaces = root.keyspaces;
+        this.root = root;
+        this.keyspaceManagers = root.keyspaceManagers;
+        this.bufferPool = root.bufferPool;
+        this.warmCache = DISABLED_CACHE;
+        this.counted = true;
+        this.registry = root.registry;
+        this.when = root.when;
+        this.fileMetrics = root.fileMetrics;
+        this.chunkMetrics = root.chunkMetrics;
+        this.metadataLane = root.metadataLane;
+        this.chunkLane = root.chunkLane;
+        this.fileHedger = root.fileHedger;
+        this.chunkHedger = root.chunkHedger;
+    }
+
+    /**
+     * A view of a manager that looks up the warm cache without counting reads
+     */
+    private DefaultBinaryStoreManager(DefaultBinaryStoreManager manager) {
+        this.statements = manager.statements;
+        this.keyspaces = manager.keyspaces;
+        this.root = manager.root;
+        this.keyspaceManagers = manager.keyspaceManagers;
+        this.bufferPool = manager.bufferPool;
+        this.warmCache = manager.warmCache;
+        this.counted = false;
+        this.registry = manager.registry;
+        this.when = manager.when;
+        this.fileMetrics = manager.fileMetrics;
+        this.chunkMetrics = manager.chunkMetrics;
+        this.metadataLane = manager.metadataLane;
+        this.chunkLane = manager.chunkLane;
+        this.fileHedger = manager.fileHedger;
+        this.chunkHedger = manager.chunkHedger;
     }
 
     @Override
@@ -45,14 +175,23 @@ public class DefaultBinaryStoreManager implements BinaryStoreManager {
         if (fileInfo.getId() == null) {
             throw new IllegalArgumentException("fileInfo missing id");
         }
-        if (fileInfo.getLength() <= 0) {
+        if (fileInfo.getLength() <= 0 && fileInfo.getStatus() != FileStatus.PENDING) {
             throw new IllegalArgumentException("fileInfo must have length > 0");
         }
+        if (fileInfo.getTtl() < 0) {
+            throw new IllegalArgumentException("fileInfo must have ttl >= 0");
+        }
+
+        if (!statements.isInitialized()) {
+            return whenPrepared(() -> storeFile(fileInfo));
+        }
 
         if (fileInfo.getUploadDate() <= 0) {
             fileInfo.setUploadDate( System.currentTimeMillis());
         }
 
+        warmCache.invalidate(fileInfo.getId());
+
         final Metrics.Context context = fileMetrics.timeWrite();
 
         BoundStatement insert = statements
@@ -61,13 +200,17 @@ public class DefaultBinaryStoreManager implements BinaryStoreManager {
                         fileInfo.getId(),
                         fileInfo.getLength(),
                         fileInfo.getChunkSize(),
+                        fileInfo.getBlockSize(),
                         fileInfo.getUploadDate(),
                         fileInfo.getFileName(),
                         fileInfo.getContentType(),
-                        fileInfo.getMetadata()
+                        fileInfo.getMetadata(),
+                        fileInfo.getSha256(),
+                        fileInfo.getStatus() == null ? FileStatus.COMMITTED.name() : fileInfo.getStatus().name(),
+                        fileInfo.getTtl()
                 );
 
-        return session.executeAsync(insert)
+        return metadataLane.execute(insert)
                 .then(rs -> {
                     context.stop();
                     return null;
@@ -81,23 +224,88 @@ public class DefaultBinaryStoreManager implements BinaryStoreManager {
     @Override
     public Promise<Void> storeChunk(ChunkInfo chunkInfo) {
 
+        if (!statements.isInitialized()) {
+            return whenPrepared(() -> storeChunk(chunkInfo));
+        }
+
+        if (chunkInfo.getBlockSize() > 0) {
+            return storeBlocks(chunkInfo);
+        }
+
         final Metrics.Context context = chunkMetrics.timeWrite();
+        final JfrEvents.ChunkWrite event = (JfrEvents.AVAILABLE
+                ? JfrEvents.ChunkWrite.begin(chunkInfo.getId(), chunkInfo.getNum(), chunkInfo.getData().length, 0)
+                : null);
 
         BoundStatement insert = statements
                 .getStoreChunk()
                 .bind(
                         chunkInfo.getId(),
                         chunkInfo.getNum(),
-                        ByteBuffer.wrap(chunkInfo.getData())
+                        ByteBuffer.wrap(chunkInfo.getData()),
+                        chunkInfo.getChecksum(),
+                        chunkInfo.getTtl()
                 );
 
-        return session.executeAsync(insert)
+        return chunkLane.execute(insert)
                 .then(rs -> {
-                    context.stop();
+                    context.stop(chunkInfo.getData().length);
+                    if (event != null) {
+                        event.commit(false);
+                    }
+                    return null;
+                })
+                .otherwise(t -> {
+                    context.error();
+                    if (event != null) {
+                        event.commit(true);
+                    }
+                    return when.reject(t);
+                });
+
+    }
+
+    private Promise<Void> storeBlocks(ChunkInfo chunkInfo) {
+
+        final Metrics.Context context = chunkMetrics.timeWrite();
+
+        byte[] data = chunkInfo.getData();
+        int blockSize = chunkInfo.getBlockSize();
+        List<Promise<ResultSet>> promises = new ArrayList<>();
+
+        final JfrEvents.ChunkWrite event = (JfrEvents.AVAILABLE
+                ? JfrEvents.ChunkWrite.begin(chunkInfo.getId(), chunkInfo.getNum(), data.length, (data.length + blockSize - 1) / blockSize)
+                : null);
+
+        // Blocks go out as individual inserts, a logged batch of a whole chunk would exceed the batch size limits
+        for (int b = 0; b * blockSize < data.length; b++) {
+            int offset = b * blockSize;
+            BoundStatement insert = statements
+                    .getStoreBlock()
+                    .bind(
+                            chunkInfo.getId(),
+                            chunkInfo.getNum(),
+                            b,
+                            ByteBuffer.wrap(data, offset, Math.min(blockSize, data.length - offset)),
+                            chunkInfo.getChecksum(),
+                            chunkInfo.getTtl()
+                    );
+            promises.add(chunkLane.execute(insert));
+        }
+
+        return when.all(promises)
+                .then(results -> {
+                    context.stop(data.length);
+                    if (event != null) {
+                        event.commit(false);
+                    }
                     return null;
                 })
                 .otherwise(t -> {
                     context.error();
+                    if (event != null) {
+                        event.commit(true);
+                    }
                     return when.reject(t);
                 });
 
@@ -106,15 +314,28 @@ public class DefaultBinaryStoreManager implements BinaryStoreManager {
     @Override
     public Promise<FileInfo> loadFile(final UUID id) {
 
+        if (!statements.isInitialized()) {
+            return whenPrepared(() -> loadFile(id));
+        }
+
+        FileInfo cached = (counted ? warmCache.getFile(id) : warmCache.peekFile(id));
+        if (cached != null) {
+            return when.resolve(cached);
+        }
+
         Metrics.Context context = fileMetrics.timeRead();
+        JfrEvents.FileLoad event = (JfrEvents.AVAILABLE ? JfrEvents.FileLoad.begin(id) : null);
         BoundStatement select = statements.getLoadFile().bind(id);
 
-        return session.executeAsync(select)
+        return metadataLane.execute(() -> fileHedger.execute(select))
                 .then(result -> {
                     Row row = result.one();
 
                     if (row == null) {
                         context.stop();
+                        if (event != null) {
+                            event.commit(false);
+                        }
                         return when.resolve(null);
                     }
 
@@ -124,15 +345,31 @@ public class DefaultBinaryStoreManager implements BinaryStoreManager {
                             .setContentType(row.getString("contentType"))
                             .setLength(row.getLong("length"))
                             .setChunkSize(row.getInt("chunkSize"))
+                            .setBlockSize(row.getInt("blockSize"))
                             .setUploadDate(row.getLong("uploadDate"))
-                            .setMetadata(row.getMap("metadata", String.class, String.class));
+                            .setMetadata(row.getMap("metadata", String.class, String.class))
+                            .setSha256(row.getString("sha256"))
+                            .setTtl(row.getInt("ttl"));
+
+                    String status = row.getString("status");
+                    if (status != null) {
+                        fileInfo.setStatus(FileStatus.valueOf(status));
+                    }
+
+                    warmCache.offerFile(fileInfo);
 
                     context.stop();
+                    if (event != null) {
+                        event.commit(true);
+                    }
                     return when.resolve(fileInfo);
 
                 })
                 .otherwise(t -> {
                     context.error();
+                    if (event != null) {
+                        event.commit(false);
+                    }
                     return when.reject(t);
                 });
 
@@ -141,35 +378,348 @@ public class DefaultBinaryStoreManager implements BinaryStoreManager {
     @Override
     public Promise<ChunkInfo> loadChunk(final UUID id, final int n) {
 
+        if (!statements.isInitialized()) {
+            return whenPrepared(() -> loadChunk(id, n));
+        }
+
+        ChunkInfo cached = getCachedChunk(id, n);
+        if (cached != null) {
+            return when.resolve(cached);
+        }
+
         Metrics.Context context = chunkMetrics.timeRead();
+        JfrEvents.ChunkRead event = (JfrEvents.AVAILABLE ? JfrEvents.ChunkRead.begin(id, n, 0, Integer.MAX_VALUE) : null);
         BoundStatement select = statements.getLoadChunk().bind(id, n);
 
-        return session.executeAsync(select)
+        return chunkLane.execute(() -> chunkHedger.execute(select))
                 .then(result -> {
                     Row row = result.one();
 
                     if (row == null) {
                         context.stop();
+                        if (event != null) {
+                            event.commit(0, false);
+                        }
                         return when.resolve(null);
                     }
 
+                    // The reader returns the array to the pool once the chunk is delivered
                     ByteBuffer bb = row.getBytes("data");
-                    byte[] data = new byte[bb.remaining()];
+                    byte[] data = bufferPool.acquire(bb.remaining());
                     bb.get(data);
 
+                    ChunkInfo chunkInfo = new ChunkInfo()
+                            .setId(id)
+                            .setNum(n)
+                            .setData(data)
+                            .setChecksum(row.isNull("checksum") ? null : row.getInt("checksum"));
+
+                    warmCache.offerChunk(chunkInfo);
+
+                    context.stop(data.length);
+                    if (event != null) {
+                        event.commit(data.length, false);
+                    }
+                    return when.resolve(chunkInfo);
+
+                })
+                .otherwise(t -> {
+                    context.error();
+                    if (event != null) {
+                        event.commit(0, true);
+                    }
+                    return when.reject(t);
+                });
+
+    }
+
+    @Override
+    public Promise<ChunkInfo> loadBlocks(final UUID id, final int n, final int fromBlock, final int toBlock) {
+
+        if (!statements.isInitialized()) {
+            return whenPrepared(() -> loadBlocks(id, n, fromBlock, toBlock));
+        }
+
+        // Only whole chunks are cached, the partial first and last chunks of a range are always read
+        boolean whole = (fromBlock <= 0 && toBlock == Integer.MAX_VALUE);
+        if (whole) {
+            ChunkInfo cached = getCachedChunk(id, n);
+            if (cached != null) {
+                return when.resolve(cached);
+            }
+        }
+
+        Metrics.Context context = chunkMetrics.timeRead();
+        JfrEvents.ChunkRead event = (JfrEvents.AVAILABLE ? JfrEvents.ChunkRead.begin(id, n, fromBlock, toBlock) : null);
+        BoundStatement select = statements.getLoadBlocks().bind(id, n, fromBlock, toBlock);
+
+        return chunkLane.execute(() -> chunkHedger.execute(select))
+                .then(result -> {
+                    List<Row> rows = result.all();
+
+                    if (rows.isEmpty()) {
+                        context.stop();
+                        if (event != null) {
+                            event.commit(0, false);
+                        }
+                        return when.resolve(null);
+                    }
+
+                    int length = 0;
+                    for (Row row : rows) {
+                        length += row.getBytes("data").remaining();
+                    }
+
+                    byte[] data = bufferPool.acquire(length);
+                    int offset = 0;
+                    for (Row row : rows) {
+                        ByteBuffer bb = row.getBytes("data");
+                        int remaining = bb.remaining();
+                        bb.get(data, offset, remaining);
+                        offset += remaining;
+                    }
+
                     ChunkInfo chunkInfo = new ChunkInfo()
                             .setId(id)
                             .setNum(n)
                             .setData(data);
 
-                    context.stop();
+                    // The checksum is static so every row carries the whole chunk's value, only usable for whole chunks
+                    Row first = rows.get(0);
+                    if (whole && !first.isNull("checksum")) {
+                        chunkInfo.setChecksum(first.getInt("checksum"));
+                    }
+
+                    if (whole) {
+                        warmCache.offerChunk(chunkInfo);
+                    }
+
+                    context.stop(length);
+                    if (event != null) {
+                        event.commit(length, false);
+                    }
                     return when.resolve(chunkInfo);
 
                 })
+                .otherwise(t -> {
+                    context.error();
+                    if (event != null) {
+                        event.commit(0, true);
+                    }
+                    return when.reject(t);
+                });
+
+    }
+
+    @Override
+    public Promise<Void> deleteFile(final UUID id) {
+
+        if (id == null) {
+            throw new IllegalArgumentException("id was null");
+        }
+
+        return loadFile(id)
+                .then(fileInfo -> {
+                    if (fileInfo == null) {
+                        return when.resolve(null);
+                    }
+
+                    Metrics.Context context = fileMetrics.timeDelete();
+                    BoundStatement delete = statements.getDeleteFile().bind(id);
+
+                    return metadataLane.execute(delete)
+                            .then(rs -> {
+                                context.stop();
+                                warmCache.invalidate(id);
+
+                                // The chunks are unreachable without the file row, so don't make the caller wait
+                                Promise<Void> p = (fileInfo.getBlockSize() > 0
+                                        ? deleteBlocks(id, 0, fileInfo.getChunkCount())
+                                        : deleteChunks(id, fileInfo.getChunkCount()));
+
+                                p.otherwise(t -> {
+                                            logger.error("Error deleting chunks for file " + id, t);
+                                            return null;
+                                        });
+
+                                return null;
+                            })
+                            .otherwise(t -> {
+                                context.error();
+                                return when.reject(t);
+                            });
+                });
+
+    }
+
+    @Override
+    public Promise<Void> deleteChunks(final UUID id, final int count) {
+
+        if (id == null) {
+            throw new IllegalArgumentException("id was null");
+        }
+
+        if (!statements.isInitialized()) {
+            return whenPrepared(() -> deleteChunks(id, count));
+        }
+
+        warmCache.invalidate(id);
+
+        if (statements.getDeleteChunks() != null) {
+            // Wide layout, a single partition tombstone covers every chunk
+            return executeChunkDelete(statements.getDeleteChunks().bind(id));
+        }
+
+        return deleteChunks(id, 0, count);
+
+    }
+
+    private Promise<Void> deleteChunks(final UUID id, final int n, final int count) {
+
+        if (n >= count) {
+            return when.resolve(null);
+        }
+
+        // One partition per chunk, delete sequentially to avoid flooding the cluster with tombstones
+        return executeChunkDelete(statements.getDeleteChunk().bind(id, n))
+                .then(aVoid -> deleteChunks(id, n + 1, count));
+
+    }
+
+    private Promise<Void> deleteBlocks(final UUID id, final int n, final int count) {
+
+        if (n >= count) {
+            return when.resolve(null);
+        }
+
+        // Each chunk's blocks share a partition, so one tombstone per chunk
+        return executeChunkDelete(statements.getDeleteBlocks().bind(id, n))
+                .then(aVoid -> deleteBlocks(id, n + 1, count));
+
+    }
+
+    private Promise<Void> executeChunkDelete(BoundStatement delete) {
+
+        final Metrics.Context context = chunkMetrics.timeDelete();
+
+        return chunkLane.execute(delete)
+                .then(rs -> {
+                    context.stop();
+                    return null;
+                })
                 .otherwise(t -> {
                     context.error();
                     return when.reject(t);
                 });
 
     }
+
+    private ChunkInfo getCachedChunk(UUID id, int n) {
+        return (counted ? warmCache.getChunk(id, n) : warmCache.peekChunk(id, n));
+    }
+
+    /**
+     * Runs an operation once the statements are prepared, after a lazy startup requests can arrive before they are
+     */
+    private <T> Promise<T> whenPrepared(Supplier<Promise<T>> operation) {
+        return keyspaces.getStatements(statements.getKeyspace())
+                .then(prepared -> operation.get());
+    }
+
+    @Override
+    public BinaryStoreManager forKeyspace(String keyspace) {
+
+        if (keyspace == null || keyspace.equals(keyspaces.getDefaultKeyspace())) {
+            return root;
+        }
+
+        if (!keyspaces.isAllowed(keyspace)) {
+            throw new IllegalArgumentException("Keyspace " + keyspace + " is not allowed");
+        }
+
+        return new KeyspaceManager(keyspace);
+
+    }
+
+    @Override
+    public BinaryStoreManager uncounted() {
+        return (counted ? new DefaultBinaryStoreManager(this) : this);
+    }
+
+    /**
+     * Runs the operations of a keyspace on a manager of its statements, once they are prepared
+     */
+    private class KeyspaceManager implements BinaryStoreManager {
+
+        private final String keyspace;
+
+        private KeyspaceManager(String keyspace) {
+            this.keyspace = keyspace;
+        }
+
+        private <T> Promise<T> execute(Function<BinaryStoreManager, Promise<T>> operation) {
+
+            // Prepared statements are used straight away, only the first requests of a keyspace wait for them
+            BinaryStoreStatements prepared = keyspaces.getPreparedStatements(keyspace);
+            if (prepared != null) {
+                return operation.apply(getManager(prepared));
+            }
+
+            return keyspaces.getStatements(keyspace)
+                    .then(keyspaceStatements -> operation.apply(getManager(keyspaceStatements)));
+
+        }
+
+        private DefaultBinaryStoreManager getManager(BinaryStoreStatements keyspaceStatements) {
+            return keyspaceManagers.computeIfAbsent(keyspace, k -> new DefaultBinaryStoreManager(root, keyspaceStatements));
+        }
+
+        @Override
+        public Promise<Void> storeFile(FileInfo fileInfo) {
+            return execute(manager -> manager.storeFile(fileInfo));
+        }
+
+        @Override
+        public Promise<Void> storeChunk(ChunkInfo chunkInfo) {
+            return execute(manager -> manager.storeChunk(chunkInfo));
+        }
+
+        @Override
+        public Promise<FileInfo> loadFile(UUID id) {
+            return execute(manager -> manager.loadFile(id));
+        }
+
+        @Override
+        public Promise<ChunkInfo> loadChunk(UUID id, int n) {
+            return execute(manager -> manager.loadChunk(id, n));
+        }
+
+        @Override
+        public Promise<ChunkInfo> loadBlocks(UUID id, int n, int fromBlock, int toBlock) {
+            return execute(manager -> manager.loadBlocks(id, n, fromBlock, toBlock));
+        }
+
+        @Override
+        public Promise<Void> deleteFile(UUID id) {
+            return execute(manager -> manager.deleteFile(id));
+        }
+
+        @Override
+        public Promise<Void> deleteChunks(UUID id, int count) {
+            return execute(manager -> manager.deleteChunks(id, count));
+        }
+
+        @Override
+        public BinaryStoreManager forKeyspace(String keyspace) {
+            return root.forKeyspace(keyspace);
+        }
+
+        @Override
+        public BinaryStoreManager uncounted() {
+            // Only the default keyspace's files are cached
+            return this;
+        }
+
+    }
+
 }
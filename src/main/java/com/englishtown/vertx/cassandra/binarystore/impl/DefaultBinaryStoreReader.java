@@ -1,13 +1,33 @@
 package com.englishtown.vertx.cassandra.binarystore.impl;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
 import com.englishtown.vertx.cassandra.binarystore.*;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
 import com.google.common.primitives.Ints;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
 import javax.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.BinaryStoreReader}
@@ -15,84 +35,279 @@ import java.util.UUID;
 public class DefaultBinaryStoreReader implements BinaryStoreReader {
 
     private final BinaryStoreManager binaryStoreManager;
+    private final ChunkScheduler scheduler;
+    private final MemoryBudget budget;
+    private final ChunkBufferPool bufferPool;
+    private final TenantQuotas quotas;
+    private final When when;
+    private final boolean verifyChecksums;
+    private final int readAhead;
+    private final Timer verifyTimer;
+    private final Counter checksumErrors;
+    private final Timer firstByteTimer;
+    private final Timer pauseTimer;
+    private final Meter readBytes;
+    private final Histogram chunksPerRead;
     private static final Logger logger = LoggerFactory.getLogger(DefaultBinaryStoreReader.class);
-    ;
+
+    public DefaultBinaryStoreReader(BinaryStoreManager binaryStoreManager, BinaryStoreConfigurator configurator, MetricRegistry registry, When when) {
+        this(binaryStoreManager, configurator, new DirectChunkScheduler(),
+                new DefaultMemoryBudget(new MemoryBudgetOptions(), registry, when),
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), new UnlimitedTenantQuotas(), registry, when);
+    }
 
     @Inject
-    public DefaultBinaryStoreReader(BinaryStoreManager binaryStoreManager) {
+    public DefaultBinaryStoreReader(
+            BinaryStoreManager binaryStoreManager,
+            BinaryStoreConfigurator configurator,
+            ChunkScheduler scheduler,
+            MemoryBudget budget,
+            ChunkBufferPool bufferPool,
+            TenantQuotas quotas,
+            MetricRegistry registry,
+            When when) {
+        this.binaryStoreManager = binaryStoreManager;
+        this.scheduler = scheduler;
+        this.budget = budget;
+        this.bufferPool = bufferPool;
+        this.quotas = quotas;
+        this.when = when;
+        this.verifyChecksums = configurator.isVerifyChecksums();
+        this.readAhead = configurator.getReadAhead();
+        this.verifyTimer = registry.timer(name(Metrics.BASE_NAME, "checksums", "verify"));
+        this.checksumErrors = registry.counter(name(Metrics.BASE_NAME, "checksums", "errors"));
+        this.firstByteTimer = registry.timer(name(Metrics.BASE_NAME, "reads", "ttfb"));
+        this.pauseTimer = registry.timer(name(Metrics.BASE_NAME, "reads", "paused"));
+        this.readBytes = registry.meter(name(Metrics.BASE_NAME, "reads", "bytes"));
+        this.chunksPerRead = registry.histogram(name(Metrics.BASE_NAME, "reads", "chunks"));
+    }
+
+    /**
+     * A reader of another keyspace's files, sharing the scheduler, budget, pool, quotas and metrics of the parent
+     */
+    private DefaultBinaryStoreReader(DefaultBinaryStoreReader parent, BinaryStoreManager binaryStoreManager) {
         this.binaryStoreManager = binaryStoreManager;
+        this.scheduler = parent.scheduler;
+        this.budget = parent.budget;
+        this.bufferPool = parent.bufferPool;
+        this.quotas = parent.quotas;
+        this.when = parent.when;
+        this.verifyChecksums = parent.verifyChecksums;
+        this.readAhead = parent.readAhead;
+        this.verifyTimer = parent.verifyTimer;
+        this.checksumErrors = parent.checksumErrors;
+        this.firstByteTimer = parent.firstByteTimer;
+        this.pauseTimer = parent.pauseTimer;
+        this.readBytes = parent.readBytes;
+        this.chunksPerRead = parent.chunksPerRead;
+    }
+
+    @Override
+    public BinaryStoreReader forKeyspace(String keyspace) {
+        BinaryStoreManager manager = binaryStoreManager.forKeyspace(keyspace);
+        return (manager == binaryStoreManager ? this : new DefaultBinaryStoreReader(this, manager));
     }
 
     @Override
     public FileReader read(UUID id) {
-        return innerRead(id, null);
+        return innerRead(id, binaryStoreManager.loadFile(id), null);
+    }
+
+    @Override
+    public FileReader read(FileInfo fileInfo) {
+        return innerRead(fileInfo.getId(), when.resolve(fileInfo), null);
     }
 
     @Override
     public FileReader readRange(UUID id, ContentRange range) {
-        return innerRead(id, range);
+        return innerRead(id, binaryStoreManager.loadFile(id), range);
+    }
+
+    @Override
+    public FileReader readRange(FileInfo fileInfo, ContentRange range) {
+        return innerRead(fileInfo.getId(), when.resolve(fileInfo), range);
     }
 
-    private FileReader innerRead(UUID id, final ContentRange range) {
+    @Override
+    public FileReader readRanges(UUID id, List<ContentRange> ranges) {
+        return innerReadRanges(id, binaryStoreManager.loadFile(id), ranges);
+    }
 
-        final FileReader reader = new FileReader();
+    @Override
+    public FileReader readRanges(FileInfo fileInfo, List<ContentRange> ranges) {
+        return innerReadRanges(fileInfo.getId(), when.resolve(fileInfo), ranges);
+    }
 
-        binaryStoreManager.loadFile(id)
-                .then(fileInfo -> {
-                    if (fileInfo == null) {
-                        reader.handleEnd(FileReader.Result.NOT_FOUND);
-                        return null;
-                    }
+    private FileReader innerReadRanges(UUID id, Promise<FileInfo> file, final List<ContentRange> ranges) {
 
-                    if (range == null) {
-                        reader.handleFile(new FileReadInfo().setFile(fileInfo));
-                        loadChunks(0, fileInfo.getChunkCount(), fileInfo, reader);
-                    } else {
-                        RangeInfo rangeInfo = new RangeInfo(range, fileInfo);
-                        ContentRange updatedRange = new ContentRange()
-                                .setFrom(rangeInfo.getFrom())
-                                .setTo(rangeInfo.getTo());
+        final MeteredFileReader reader = new MeteredFileReader(id);
 
-                        reader.handleFile(new FileReadInfo().setFile(fileInfo).setRange(updatedRange));
-                        loadRangeChunks(rangeInfo.getStartChunk(), rangeInfo, fileInfo, reader);
+        file.then(fileInfo -> {
+            if (reader.isEnded()) {
+                // Cancelled before the file record arrived
+                return null;
+            }
+            if (fileInfo == null || fileInfo.getStatus() == FileStatus.PENDING) {
+                reader.handleEnd(FileReader.Result.NOT_FOUND);
+                return null;
+            }
+
+            List<RangeInfo> parts = mergeRanges(ranges, fileInfo);
+            List<ContentRange> partRanges = new ArrayList<>();
+            List<Integer> chunks = new ArrayList<>();
+
+            for (RangeInfo part : parts) {
+                partRanges.add(part.getRange());
+                for (int n = part.getStartChunk(); n <= part.getEndChunk(); n++) {
+                    // Neighbouring parts can end and start in the same chunk
+                    if (chunks.isEmpty() || chunks.get(chunks.size() - 1) != n) {
+                        chunks.add(n);
                     }
+                }
+            }
 
-                    return null;
-                })
-                .otherwise(t -> {
-                    reader.handleException(t);
-                    return null;
-                });
+            reader.handleFile(new FileReadInfo().setFile(fileInfo).setRanges(partRanges));
+            loadPartChunks(new PartsRead(parts), new ChunkWindow(reader, fileInfo, chunks), reader);
+
+            return null;
+        }).otherwise(t -> {
+            reader.handleException(t);
+            reader.handleEnd(FileReader.Result.ERROR);
+            return null;
+        });
 
         return reader;
 
     }
 
-    private void loadChunks(final int n, final int count, final FileInfo fileInfo, final FileReader reader) {
+    private List<RangeInfo> mergeRanges(List<ContentRange> ranges, FileInfo fileInfo) {
+
+        List<ContentRange> sorted = new ArrayList<>();
+        for (ContentRange range : ranges) {
+            // Drop ranges that start past the end of the file
+            if (range.getFrom() >= 0 && range.getFrom() < fileInfo.getLength()) {
+                long to = (range.getTo() >= 0 && range.getTo() < fileInfo.getLength() ? range.getTo() : fileInfo.getLength() - 1);
+                if (to >= range.getFrom()) {
+                    sorted.add(new ContentRange().setFrom(range.getFrom()).setTo(to));
+                }
+            }
+        }
+
+        sorted.sort((r1, r2) -> Long.compare(r1.getFrom(), r2.getFrom()));
+
+        List<RangeInfo> parts = new ArrayList<>();
+        ContentRange current = null;
+
+        for (ContentRange range : sorted) {
+            if (current != null && range.getFrom() <= current.getTo() + 1) {
+                current.setTo(Math.max(current.getTo(), range.getTo()));
+            } else {
+                if (current != null) {
+                    parts.add(new RangeInfo(current, fileInfo));
+                }
+                current = range;
+            }
+        }
+        if (current != null) {
+            parts.add(new RangeInfo(current, fileInfo));
+        }
+
+        return parts;
+    }
+
+    private FileReader innerRead(UUID id, Promise<FileInfo> file, final ContentRange range) {
+
+        final MeteredFileReader reader = new MeteredFileReader(id);
+
+        file.then(fileInfo -> {
+            if (reader.isEnded()) {
+                // Cancelled before the file record arrived
+                return null;
+            }
+            if (fileInfo == null || fileInfo.getStatus() == FileStatus.PENDING) {
+                reader.handleEnd(FileReader.Result.NOT_FOUND);
+                return null;
+            }
+
+            if (range == null) {
+                reader.handleFile(new FileReadInfo().setFile(fileInfo));
+                // Only a full read sees every byte, so the file hash can't be checked for ranges
+                Hasher fileHasher = (verifyChecksums && fileInfo.getSha256() != null ? Hashing.sha256().newHasher() : null);
+                ChunkWindow window = new ChunkWindow(reader, fileInfo, 0, fileInfo.getChunkCount() - 1);
+                loadChunks(0, fileInfo.getChunkCount(), fileInfo, window, fileHasher, reader);
+            } else {
+                RangeInfo rangeInfo = new RangeInfo(range, fileInfo, fileInfo.getBlockSize());
+                ContentRange updatedRange = new ContentRange()
+                        .setFrom(rangeInfo.getFrom())
+                        .setTo(rangeInfo.getTo());
+
+                reader.handleFile(new FileReadInfo().setFile(fileInfo).setRange(updatedRange));
+                ChunkWindow window = new ChunkWindow(reader, fileInfo, rangeInfo);
+                loadRangeChunks(rangeInfo.getStartChunk(), rangeInfo, fileInfo, window, reader);
+            }
+
+            return null;
+        }).otherwise(t -> {
+            reader.handleException(t);
+            reader.handleEnd(FileReader.Result.ERROR);
+            return null;
+        });
+
+        return reader;
+
+    }
+
+    private void loadChunks(
+            final int n,
+            final int count,
+            final FileInfo fileInfo,
+            final ChunkWindow window,
+            final Hasher fileHasher,
+            final FileReader reader
+    ) {
 
         if (n == count) {
-            reader.handleEnd(FileReader.Result.OK);
+            endChunks(fileInfo, fileHasher, reader);
+            return;
+        }
+
+        if (reader.isEnded()) {
+            // Cancelled while paused
             return;
         }
 
         if (reader.isPaused()) {
-            reader.resumeHandler(event -> loadChunks(n, count, fileInfo, reader));
+            reader.resumeHandler(event -> loadChunks(n, count, fileInfo, window, fileHasher, reader));
             return;
         }
 
-        binaryStoreManager.loadChunk(fileInfo.getId(), n)
+        window.take()
                 .then(chunkInfo -> {
+                    if (reader.isEnded()) {
+                        release(chunkInfo);
+                        return null;
+                    }
                     if (chunkInfo != null) {
-                        reader.handleData(chunkInfo.getData());
-                        loadChunks(n + 1, count, fileInfo, reader);
+                        if (!verifyChunk(chunkInfo, fileHasher, reader)) {
+                            release(chunkInfo);
+                            return null;
+                        }
+                        // The chunk's array is written as it is and goes back to the pool once written
+                        reader.handleData(bufferPool.lend(chunkInfo.getData()));
+                        loadChunks(n + 1, count, fileInfo, window, fileHasher, reader);
                     } else {
-                        reader.handleEnd(FileReader.Result.OK);
+                        // Short of the file's chunk count, such as chunks that expired before their file record
+                        Throwable t = new Throwable("Error while reading chunk " + n + ". It came back as null.");
+                        reader.handleException(t);
+                        reader.handleEnd(FileReader.Result.ERROR);
                     }
                     return null;
                 })
                 .otherwise(t -> {
-                    logger.error("Error loading chunk", t);
-                    reader.handleEnd(FileReader.Result.ERROR);
+                    if (!reader.isEnded()) {
+                        logger.error("Error loading chunk", t);
+                        reader.handleEnd(FileReader.Result.ERROR);
+                    }
                     return null;
                 });
     }
@@ -101,6 +316,7 @@ public class DefaultBinaryStoreReader implements BinaryStoreReader {
             final int n,
             final RangeInfo rangeInfo,
             final FileInfo fileInfo,
+            final ChunkWindow window,
             final FileReader reader
     ) {
 
@@ -109,26 +325,481 @@ public class DefaultBinaryStoreReader implements BinaryStoreReader {
             return;
         }
 
-        binaryStoreManager.loadChunk(fileInfo.getId(), n)
+        if (reader.isEnded()) {
+            // Cancelled while paused
+            return;
+        }
+
+        if (reader.isPaused()) {
+            reader.resumeHandler(event -> loadRangeChunks(n, rangeInfo, fileInfo, window, reader));
+            return;
+        }
+
+        window.take()
                 .then(chunkInfo -> {
+                    if (reader.isEnded()) {
+                        release(chunkInfo);
+                        return null;
+                    }
                     if (chunkInfo == null) {
                         Throwable t = new Throwable("Error while reading chunk " + n + ". It came back as null.");
                         reader.handleException(t);
                         reader.handleEnd(FileReader.Result.ERROR);
                     } else {
-                        reader.handleData(rangeInfo.getRequiredBytesFromChunk(n, chunkInfo.getData()));
-                        loadRangeChunks(n + 1, rangeInfo, fileInfo, reader);
+                        if (!verifyChunk(chunkInfo, null, reader)) {
+                            release(chunkInfo);
+                            return null;
+                        }
+                        byte[] data = rangeInfo.getRequiredBytesFromChunk(n, chunkInfo.getData());
+                        if (data == chunkInfo.getData()) {
+                            reader.handleData(bufferPool.lend(data));
+                        } else {
+                            reader.handleData(data);
+                            bufferPool.release(chunkInfo.getData());
+                        }
+                        loadRangeChunks(n + 1, rangeInfo, fileInfo, window, reader);
                     }
                     return null;
                 })
                 .otherwise(t -> {
-                    reader.handleException(t);
-                    reader.handleEnd(FileReader.Result.ERROR);
+                    if (!reader.isEnded()) {
+                        reader.handleException(t);
+                        reader.handleEnd(FileReader.Result.ERROR);
+                    }
                     return null;
                 });
 
     }
 
+    private void loadPartChunks(final PartsRead read, final ChunkWindow window, final FileReader reader) {
+
+        if (read.part >= read.parts.size()) {
+            reader.handleEnd(FileReader.Result.OK);
+            return;
+        }
+
+        if (reader.isEnded()) {
+            // Cancelled while paused
+            return;
+        }
+
+        if (reader.isPaused()) {
+            reader.resumeHandler(event -> loadPartChunks(read, window, reader));
+            return;
+        }
+
+        RangeInfo part = read.parts.get(read.part);
+        if (read.n == part.getStartChunk()) {
+            reader.handlePart(part.getRange());
+        }
+
+        if (read.loaded == read.n) {
+            // The previous part ended in this chunk
+            handlePartData(read, window, reader);
+            return;
+        }
+
+        final int n = read.n;
+
+        window.take()
+                .then(chunkInfo -> {
+                    if (reader.isEnded()) {
+                        release(chunkInfo);
+                        return null;
+                    }
+                    if (chunkInfo == null) {
+                        Throwable t = new Throwable("Error while reading chunk " + n + ". It came back as null.");
+                        reader.handleException(t);
+                        reader.handleEnd(FileReader.Result.ERROR);
+                    } else {
+                        if (!verifyChunk(chunkInfo, null, reader)) {
+                            release(chunkInfo);
+                            return null;
+                        }
+                        // The previous chunk is kept until the next one arrives, neighbouring parts can share it
+                        read.loaded = n;
+                        read.data = window.keep(chunkInfo.getData());
+                        handlePartData(read, window, reader);
+                    }
+                    return null;
+                })
+                .otherwise(t -> {
+                    if (!reader.isEnded()) {
+                        reader.handleException(t);
+                        reader.handleEnd(FileReader.Result.ERROR);
+                    }
+                    return null;
+                });
+
+    }
+
+    private void handlePartData(PartsRead read, ChunkWindow window, FileReader reader) {
+
+        RangeInfo part = read.parts.get(read.part);
+        byte[] data = part.getRequiredBytesFromChunk(read.n, read.data);
+        if (data == read.data) {
+            // A whole chunk is inside one part, no other part can share it
+            reader.handleData(bufferPool.lend(window.lend()));
+            read.data = null;
+        } else {
+            reader.handleData(data);
+        }
+
+        if (read.n < part.getEndChunk()) {
+            read.n++;
+        } else if (++read.part < read.parts.size()) {
+            read.n = read.parts.get(read.part).getStartChunk();
+        }
+
+        loadPartChunks(read, window, reader);
+    }
+
+    /**
+     * Returns the array of a chunk that won't be delivered to the pool
+     */
+    private void release(ChunkInfo chunkInfo) {
+        if (chunkInfo != null && chunkInfo.getData() != null) {
+            bufferPool.release(chunkInfo.getData());
+        }
+    }
+
+    private boolean verifyChunk(ChunkInfo chunkInfo, Hasher fileHasher, FileReader reader) {
+
+        if (!verifyChecksums) {
+            return true;
+        }
+
+        Timer.Context context = verifyTimer.time();
+        boolean valid;
+        try {
+            valid = (chunkInfo.getChecksum() == null
+                    || chunkInfo.getChecksum() == Hashing.crc32c().hashBytes(chunkInfo.getData()).asInt());
+            if (fileHasher != null) {
+                fileHasher.putBytes(chunkInfo.getData());
+            }
+        } finally {
+            context.stop();
+        }
+
+        if (!valid) {
+            checksumErrors.inc();
+            reader.handleException(new IllegalStateException("Checksum mismatch for chunk " + chunkInfo.getNum()
+                    + " of file " + chunkInfo.getId()));
+            reader.handleEnd(FileReader.Result.ERROR);
+        }
+
+        return valid;
+    }
+
+    private void endChunks(FileInfo fileInfo, Hasher fileHasher, FileReader reader) {
+
+        if (fileHasher != null) {
+            // The data has already been streamed, all that is left is to report the result as failed
+            String sha256 = BaseEncoding.base16().lowerCase().encode(fileHasher.hash().asBytes());
+            if (!sha256.equals(fileInfo.getSha256())) {
+                checksumErrors.inc();
+                reader.handleException(new IllegalStateException("Checksum mismatch for file " + fileInfo.getId()));
+                reader.handleEnd(FileReader.Result.ERROR);
+                return;
+            }
+        }
+
+        reader.handleEnd(FileReader.Result.OK);
+    }
+
+    /**
+     * Chunks requested ahead of the consumer.  The window is only topped up when the next chunk is taken, so a paused
+     * consumer holds at most {@code readAhead} chunks beyond the one being delivered.
+     * <p>
+     * Each chunk takes its bytes from the memory budget before it is requested and returns them when the next chunk is
+     * taken, so the read ahead of every reader together stays within the budget.  Chunks are requested no faster than
+     * the file's tenant quota allows.
+     * <p>
+     * The window is closed when its read ends, chunks still loading ahead then go back to the buffer pool as they
+     * arrive.
+     */
+    private class ChunkWindow {
+
+        private final MeteredFileReader reader;
+        private final FileInfo fileInfo;
+        private final List<Integer> chunks;
+        private final RangeInfo range;
+        private final TenantQuotas.Quota quota;
+        private final Deque<Load> loading = new ArrayDeque<>();
+        private Load delivered;
+        private byte[] kept;
+        private int next;
+
+        public ChunkWindow(MeteredFileReader reader, FileInfo fileInfo, int firstChunk, int lastChunk) {
+            this(reader, fileInfo, new ArrayList<>(), null);
+            for (int n = firstChunk; n <= lastChunk; n++) {
+                chunks.add(n);
+            }
+        }
+
+        public ChunkWindow(MeteredFileReader reader, FileInfo fileInfo, List<Integer> chunks) {
+            this(reader, fileInfo, chunks, null);
+        }
+
+        /**
+         * Window over a single range, only the blocks the range overlaps are loaded from its first and last chunks
+         *
+         * @param reader
+         * @param fileInfo
+         * @param range
+         */
+        public ChunkWindow(MeteredFileReader reader, FileInfo fileInfo, RangeInfo range) {
+            this(reader, fileInfo, new ArrayList<>(), range);
+            for (int n = range.getStartChunk(); n <= range.getEndChunk(); n++) {
+                chunks.add(n);
+            }
+        }
+
+        private ChunkWindow(MeteredFileReader reader, FileInfo fileInfo, List<Integer> chunks, RangeInfo range) {
+            this.reader = reader;
+            this.fileInfo = fileInfo;
+            this.chunks = chunks;
+            this.range = range;
+            this.quota = quotas.forFile(fileInfo);
+            reader.window = this;
+        }
+
+        /**
+         * Takes the next chunk in sequence
+         *
+         * @return
+         */
+        public Promise<ChunkInfo> take() {
+
+            // The consumer is done with the chunk it was last given
+            if (delivered != null) {
+                reader.release(delivered.bytes);
+                delivered = null;
+            }
+
+            if (loading.isEmpty()) {
+                loading.add(load(chunks.get(next++)));
+            }
+
+            delivered = loading.poll();
+
+            while (loading.size() < readAhead && next < chunks.size()) {
+                loading.add(load(chunks.get(next++)));
+            }
+
+            return delivered.promise;
+        }
+
+        /**
+         * Holds on to a delivered chunk's array until the next one is kept or the window is closed
+         *
+         * @param data
+         * @return
+         */
+        public byte[] keep(byte[] data) {
+            if (kept != null) {
+                bufferPool.release(kept);
+            }
+            kept = data;
+            return data;
+        }
+
+        /**
+         * Hands over the kept array without returning it to the pool
+         *
+         * @return
+         */
+        public byte[] lend() {
+            byte[] data = kept;
+            kept = null;
+            return data;
+        }
+
+        /**
+         * Returns the kept array and the arrays of chunks still loading ahead to the pool
+         */
+        public void close() {
+            keep(null);
+            for (Load load : loading) {
+                load.promise.then(chunkInfo -> {
+                    release(chunkInfo);
+                    return null;
+                });
+            }
+            loading.clear();
+        }
+
+        private Load load(int n) {
+
+            reader.chunks++;
+
+            long bytes = Math.min(fileInfo.getChunkSize(), fileInfo.getLength() - (long) n * fileInfo.getChunkSize());
+
+            if (fileInfo.getBlockSize() <= 0) {
+                return new Load(bytes, () -> binaryStoreManager.loadChunk(fileInfo.getId(), n));
+            }
+
+            int fromBlock = (range != null && n == range.getStartChunk() ? range.getStartBlock() : 0);
+            int toBlock = (range != null && n == range.getEndChunk() ? range.getEndBlock() : Integer.MAX_VALUE);
+            bytes = Math.min(bytes, ((long) toBlock - fromBlock + 1) * fileInfo.getBlockSize());
+
+            return new Load(bytes, () -> binaryStoreManager.loadBlocks(fileInfo.getId(), n, fromBlock, toBlock));
+        }
+
+        /**
+         * A chunk being loaded and the bytes it holds in the memory budget
+         */
+        private class Load {
+
+            private final long bytes;
+            private final Promise<ChunkInfo> promise;
+
+            public Load(long bytes, Supplier<Promise<ChunkInfo>> query) {
+                this.bytes = bytes;
+                this.promise = quota.submit(bytes, () -> {
+                    // Only chunks that have to wait for the budget go through another promise
+                    if (reader.tryAcquire(bytes)) {
+                        return reader.stream.submit(bytes, query);
+                    }
+                    return reader.acquire(bytes).then(aVoid -> reader.stream.submit(bytes, query));
+                });
+            }
+
+        }
+
+    }
+
+    /**
+     * File reader that records time to first byte, bytes delivered, time spent paused by the consumer and chunks
+     * loaded per read.  Only clock reads and counter updates are added to the data path.  The same figures are
+     * committed as a flight recorder event when one is being recorded.
+     */
+    private class MeteredFileReader extends FileReader {
+
+        private final long started = System.nanoTime();
+        private final ChunkScheduler.Stream stream = scheduler.open();
+        private final JfrEvents.FileRead event;
+        private long pausedAt;
+        private long paused;
+        private long firstByte;
+        private long bytes;
+        private long held;
+        private int chunks;
+        private ChunkWindow window;
+
+        public MeteredFileReader(UUID id) {
+            event = (JfrEvents.AVAILABLE ? JfrEvents.FileRead.begin(id) : null);
+        }
+
+        @Override
+        public FileReader pause() {
+            if (!isPaused() && !isEnded()) {
+                pausedAt = System.nanoTime();
+            }
+            return super.pause();
+        }
+
+        @Override
+        public FileReader resume() {
+            if (pausedAt != 0) {
+                long time = System.nanoTime() - pausedAt;
+                pauseTimer.update(time, TimeUnit.NANOSECONDS);
+                paused += time;
+                pausedAt = 0;
+            }
+            return super.resume();
+        }
+
+        @Override
+        public void handleData(Buffer data) {
+            if (firstByte == 0) {
+                firstByte = Math.max(1, System.nanoTime() - started);
+                firstByteTimer.update(firstByte, TimeUnit.NANOSECONDS);
+            }
+            bytes += data.length();
+            readBytes.mark(data.length());
+            super.handleData(data);
+        }
+
+        /**
+         * Takes bytes from the memory budget for a chunk if they are available now
+         *
+         * @param bytes
+         * @return
+         */
+        public boolean tryAcquire(long bytes) {
+            if (budget.tryAcquire(bytes)) {
+                held += bytes;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Takes bytes from the memory budget for a chunk, waiting while other streams use it up
+         *
+         * @param bytes
+         * @return
+         */
+        public Promise<Void> acquire(long bytes) {
+            return budget.acquire(bytes).then(aVoid -> {
+                if (isEnded()) {
+                    // The read ended while waiting, nothing will return the bytes
+                    budget.release(bytes);
+                    throw new CancellationException("File read has ended");
+                }
+                held += bytes;
+                return null;
+            });
+        }
+
+        public void release(long bytes) {
+            if (!isEnded()) {
+                held -= bytes;
+                budget.release(bytes);
+            }
+        }
+
+        @Override
+        public void handleEnd(Result result) {
+            if (!isEnded()) {
+                // Chunks loaded ahead are no longer wanted
+                stream.close();
+                if (window != null) {
+                    window.close();
+                }
+                budget.release(held);
+                held = 0;
+                if (result != Result.NOT_FOUND) {
+                    chunksPerRead.update(chunks);
+                }
+                if (event != null) {
+                    event.commit(bytes, chunks, firstByte, paused, result.name());
+                }
+            }
+            super.handleEnd(result);
+        }
+
+    }
+
+    /**
+     * Progress of a multi-range read
+     */
+    private static class PartsRead {
+
+        private final List<RangeInfo> parts;
+        private int part;
+        private int n;
+        private int loaded = -1;
+        private byte[] data;
+
+        public PartsRead(List<RangeInfo> parts) {
+            this.parts = parts;
+            this.n = (parts.isEmpty() ? 0 : parts.get(0).getStartChunk());
+        }
+
+    }
+
     private static class RangeInfo {
 
         private final int startChunk;
@@ -137,11 +808,25 @@ public class DefaultBinaryStoreReader implements BinaryStoreReader {
         private final int startPos;
         private final int endPos;
 
+        private final int startBlock;
+        private final int endBlock;
+        private final int startOffset;
+
         private final long from;
         private final long to;
 
 
         public RangeInfo(ContentRange range, FileInfo fileInfo) throws IllegalArgumentException {
+            this(range, fileInfo, 0);
+        }
+
+        /**
+         * @param range
+         * @param fileInfo
+         * @param blockSize size of the blocks the first and last chunks are loaded as, 0 if they are loaded whole
+         * @throws IllegalArgumentException
+         */
+        public RangeInfo(ContentRange range, FileInfo fileInfo, int blockSize) throws IllegalArgumentException {
 
             long from = range.getFrom();
             long to = fileInfo.getLength() - 1;
@@ -156,6 +841,12 @@ public class DefaultBinaryStoreReader implements BinaryStoreReader {
             startPos = Ints.checkedCast(from - (startChunk * chunkSize));
             endPos = Ints.checkedCast(to - (endChunk * chunkSize));
 
+            startBlock = (blockSize > 0 ? startPos / blockSize : 0);
+            endBlock = (blockSize > 0 ? endPos / blockSize : Integer.MAX_VALUE);
+
+            // The data of the start chunk begins at its first loaded block
+            startOffset = startBlock * Math.max(blockSize, 0);
+
             this.from = from;
             this.to = to;
         }
@@ -169,11 +860,13 @@ public class DefaultBinaryStoreReader implements BinaryStoreReader {
              *                4. If it's none of these then we want the whole chunk
              *
              * The +1s are there because Arrays.copyOfRange end position parameter is exclusive.
+             *
+             * Positions in the start chunk are shifted by the start offset when only its later blocks were loaded.
              */
 
             // If this is the start chunk and not the end chunk, we want to take all the bytes from start position to the end of the chunk
             if (chunkNumber == startChunk && chunkNumber != endChunk) {
-                return Arrays.copyOfRange(chunk, startPos, chunk.length);
+                return Arrays.copyOfRange(chunk, startPos - startOffset, chunk.length);
             }
 
 
@@ -184,13 +877,17 @@ public class DefaultBinaryStoreReader implements BinaryStoreReader {
 
             // In the instance that this is *both* the start and end chunk, then we want to only return the bytes between start and end pos
             if (chunkNumber == startChunk && chunkNumber == endChunk) {
-                return Arrays.copyOfRange(chunk, startPos, endPos + 1);
+                return Arrays.copyOfRange(chunk, startPos - startOffset, endPos - startOffset + 1);
             }
 
             // Finally, we get here if this chunk is neither a start or end chunk, in which case we want the whole thing.
             return chunk;
         }
 
+        public ContentRange getRange() {
+            return new ContentRange().setFrom(from).setTo(to);
+        }
+
         public int getStartChunk() {
             return startChunk;
         }
@@ -199,6 +896,14 @@ public class DefaultBinaryStoreReader implements BinaryStoreReader {
             return endChunk;
         }
 
+        public int getStartBlock() {
+            return startBlock;
+        }
+
+        public int getEndBlock() {
+            return endBlock;
+        }
+
         public long getFrom() {
             return from;
         }
@@ -0,0 +1,143 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.CassandraConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreSessions;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreStatements;
+import com.englishtown.vertx.cassandra.impl.DefaultCassandraSession;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import com.englishtown.vertx.cassandra.promises.impl.DefaultWhenCassandraSession;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.BinaryStoreSessions}
+ */
+public class DefaultBinaryStoreSessions implements BinaryStoreSessions {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultBinaryStoreSessions.class);
+
+    private final WhenCassandraSession session;
+    private final WhenCassandraSession metadataSession;
+    private final WhenCassandraSession chunkSession;
+    private final When when;
+
+    public DefaultBinaryStoreSessions(WhenCassandraSession session, When when) {
+        this(session, session, session, when);
+    }
+
+    @Inject
+    public DefaultBinaryStoreSessions(
+            WhenCassandraSession session,
+            CassandraConfigurator cassandraConfigurator,
+            BinaryStoreConfigurator configurator,
+            When when,
+            Vertx vertx) {
+        this(session,
+                configurator.getMetadataLaneOptions().isSeparateSession()
+                        ? createSession(cassandraConfigurator, when, vertx) : session,
+                configurator.getChunkLaneOptions().isSeparateSession()
+                        ? createSession(cassandraConfigurator, when, vertx) : session,
+                when);
+    }
+
+    public DefaultBinaryStoreSessions(
+            WhenCassandraSession session,
+            WhenCassandraSession metadataSession,
+            WhenCassandraSession chunkSession,
+            When when) {
+        this.session = session;
+        this.metadataSession = metadataSession;
+        this.chunkSession = chunkSession;
+        this.when = when;
+    }
+
+    // A second cluster instance has its own connection pools, so a lane never waits for the other's stream ids
+    private static WhenCassandraSession createSession(CassandraConfigurator cassandraConfigurator, When when, Vertx vertx) {
+        return new DefaultWhenCassandraSession(new DefaultCassandraSession(Cluster.builder(), cassandraConfigurator, vertx), when, vertx);
+    }
+
+    @Override
+    public WhenCassandraSession getMetadataSession() {
+        return metadataSession;
+    }
+
+    @Override
+    public WhenCassandraSession getChunkSession() {
+        return chunkSession;
+    }
+
+    @Override
+    public Promise<Void> init(BinaryStoreStatements statements) {
+
+        List<Promise<Void>> promises = new ArrayList<>();
+
+        if (metadataSession != session) {
+            promises.add(prepare(metadataSession, Arrays.asList(
+                    statements.getLoadFile(),
+                    statements.getStoreFile(),
+                    statements.getDeleteFile())));
+        }
+
+        if (chunkSession != session) {
+            promises.add(prepare(chunkSession, Arrays.asList(
+                    statements.getLoadChunk(),
+                    statements.getStoreChunk(),
+                    statements.getDeleteChunk(),
+                    statements.getDeleteChunks(),
+                    statements.getLoadBlocks(),
+                    statements.getStoreBlock(),
+                    statements.getDeleteBlocks())));
+        }
+
+        return when.all(promises).then(results -> null);
+    }
+
+    private Promise<Void> prepare(WhenCassandraSession target, List<PreparedStatement> statements) {
+
+        // Queries are keyspace qualified, so the ids match the statements bound from the shared session
+        return target.ready().then(aVoid -> {
+            List<Promise<PreparedStatement>> promises = new ArrayList<>();
+            for (PreparedStatement statement : statements) {
+                if (statement != null) {
+                    promises.add(target.prepareAsync(statement.getQueryString()));
+                }
+            }
+            return when.all(promises).then(results -> null);
+        });
+
+    }
+
+    /**
+     * Closes the separate sessions, the shared one belongs to the caller
+     */
+    @Override
+    public void close() {
+        if (metadataSession != session) {
+            close(metadataSession);
+        }
+        if (chunkSession != session) {
+            close(chunkSession);
+        }
+    }
+
+    private static void close(WhenCassandraSession session) {
+        try {
+            session.close();
+        } catch (Exception e) {
+            // Shutting down, the other session still gets closed
+            logger.error("Error closing a lane session", e);
+        }
+    }
+
+}
@@ -5,39 +5,68 @@ import com.datastax.driver.core.policies.LoadBalancingPolicy;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.englishtown.promises.Promise;
 import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
 import com.englishtown.vertx.cassandra.binarystore.BinaryStoreStatements;
+import com.englishtown.vertx.cassandra.binarystore.ChunkLayout;
+import com.englishtown.vertx.cassandra.binarystore.TableOptions;
 import com.englishtown.vertx.cassandra.keyspacebuilder.CreateKeyspace;
 import com.englishtown.vertx.cassandra.keyspacebuilder.KeyspaceBuilder;
 import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import com.englishtown.vertx.cassandra.tablebuilder.AlterTable;
+import com.englishtown.vertx.cassandra.tablebuilder.BuiltTableStatement;
+import com.englishtown.vertx.cassandra.tablebuilder.CreateTable;
 import com.englishtown.vertx.cassandra.tablebuilder.PrimaryKeyType;
 import com.englishtown.vertx.cassandra.tablebuilder.TableBuilder;
 import com.google.common.base.Strings;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.gt;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.gte;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.lte;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.token;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.ttl;
 
 /**
  * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.BinaryStoreStatements}
  */
 public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
 
+    private static final Logger logger = LoggerFactory.getLogger(DefaultBinaryStoreStatements.class);
+
     private final WhenCassandraSession session;
+    private final BinaryStoreConfigurator configurator;
     private final When when;
-    private boolean isInitialized;
+    // Written once every statement is assigned, so a thread that sees it set also sees the statements
+    private volatile boolean isInitialized;
     private String keyspace;
+    private ChunkLayout chunkLayout;
     private PreparedStatement storeChunk;
     private PreparedStatement storeFile;
     private PreparedStatement loadChunk;
     private PreparedStatement loadFile;
+    private PreparedStatement deleteFile;
+    private PreparedStatement deleteChunk;
+    private PreparedStatement deleteChunks;
+    private PreparedStatement scanChunks;
+    private PreparedStatement scanBlocks;
+    private PreparedStatement storeBlock;
+    private PreparedStatement loadBlocks;
+    private PreparedStatement deleteBlocks;
 
 
     @Inject
-    public DefaultBinaryStoreStatements(WhenCassandraSession session, When when) {
+    public DefaultBinaryStoreStatements(WhenCassandraSession session, BinaryStoreConfigurator configurator, When when) {
         this.session = session;
+        this.configurator = configurator;
         this.when = when;
     }
 
@@ -82,6 +111,22 @@ public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
         return keyspace;
     }
 
+    @Override
+    public boolean hasSchema(String keyspace) {
+
+        KeyspaceMetadata kmd = session.getMetadata().getKeyspace(keyspace);
+
+        return kmd != null
+                && kmd.getTable("files") != null
+                && kmd.getTable("chunks") != null
+                && kmd.getTable("chunk_blocks") != null;
+    }
+
+    @Override
+    public ChunkLayout getChunkLayout() {
+        return chunkLayout;
+    }
+
     @Override
     public PreparedStatement getLoadChunk() {
         return loadChunk;
@@ -126,6 +171,94 @@ public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
         return this;
     }
 
+    @Override
+    public PreparedStatement getDeleteFile() {
+        return deleteFile;
+    }
+
+    @Override
+    public BinaryStoreStatements setDeleteFile(PreparedStatement deleteFile) {
+        this.deleteFile = deleteFile;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement getDeleteChunk() {
+        return deleteChunk;
+    }
+
+    @Override
+    public BinaryStoreStatements setDeleteChunk(PreparedStatement deleteChunk) {
+        this.deleteChunk = deleteChunk;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement getDeleteChunks() {
+        return deleteChunks;
+    }
+
+    @Override
+    public BinaryStoreStatements setDeleteChunks(PreparedStatement deleteChunks) {
+        this.deleteChunks = deleteChunks;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement getScanChunks() {
+        return scanChunks;
+    }
+
+    @Override
+    public BinaryStoreStatements setScanChunks(PreparedStatement scanChunks) {
+        this.scanChunks = scanChunks;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement getScanBlocks() {
+        return scanBlocks;
+    }
+
+    @Override
+    public BinaryStoreStatements setScanBlocks(PreparedStatement scanBlocks) {
+        this.scanBlocks = scanBlocks;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement getStoreBlock() {
+        return storeBlock;
+    }
+
+    @Override
+    public BinaryStoreStatements setStoreBlock(PreparedStatement storeBlock) {
+        this.storeBlock = storeBlock;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement getLoadBlocks() {
+        return loadBlocks;
+    }
+
+    @Override
+    public BinaryStoreStatements setLoadBlocks(PreparedStatement loadBlocks) {
+        this.loadBlocks = loadBlocks;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement getDeleteBlocks() {
+        return deleteBlocks;
+    }
+
+    @Override
+    public BinaryStoreStatements setDeleteBlocks(PreparedStatement deleteBlocks) {
+        this.deleteBlocks = deleteBlocks;
+        return this;
+    }
+
     private Promise<KeyspaceMetadata> ensureKeyspace() {
 
         final Metadata metadata = session.getMetadata();
@@ -168,35 +301,142 @@ public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
 
     private void ensureTables(List<Promise<ResultSet>> promises, KeyspaceMetadata kmd) {
 
-        if (kmd == null || kmd.getTable("files") == null) {
-            Statement statement = TableBuilder.create(keyspace, "files")
-                    .ifNotExists()
-                    .column("id", "uuid")
-                    .column("filename", "text")
-                    .column("contentType", "text")
-                    .column("chunkSize", "int")
-                    .column("length", "bigint")
-                    .column("uploadDate", "bigint")
-                    .column("metadata", "map<text, text>")
-                    .primaryKey("id");
-
-            promises.add(session.executeAsync(statement));
+        TableMetadata files = (kmd == null ? null : kmd.getTable("files"));
+
+        CreateTable createFiles = TableBuilder.create(keyspace, "files")
+                .ifNotExists()
+                .column("id", "uuid")
+                .column("filename", "text")
+                .column("contentType", "text")
+                .column("chunkSize", "int")
+                .column("blockSize", "int")
+                .column("length", "bigint")
+                .column("uploadDate", "bigint")
+                .column("metadata", "map<text, text>")
+                .column("status", "text")
+                .column("sha256", "text")
+                .primaryKey("id");
+
+        if (files == null) {
+            promises.add(session.executeAsync(withOptions(createFiles)));
+        } else {
+            addMissingColumns(promises, files, createFiles);
+            reconcileOptions(promises, files);
+        }
+
+        TableMetadata chunks = (kmd == null ? null : kmd.getTable("chunks"));
+
+        if (chunks == null) {
+            chunkLayout = configurator.getChunkLayout();
+        } else {
+            // The live schema wins over configuration for an existing table
+            chunkLayout = (chunks.getClusteringColumns().isEmpty() ? ChunkLayout.PARTITIONED : ChunkLayout.WIDE);
         }
 
-        if (kmd == null || kmd.getTable("chunks") == null) {
-            Statement statement = TableBuilder.create(keyspace, "chunks")
+        CreateTable createChunks = TableBuilder.create(keyspace, "chunks")
+                .ifNotExists()
+                .column("files_id", "uuid")
+                .column("n", "int")
+                .column("data", "blob")
+                .column("checksum", "int")
+                .primaryKey("files_id", PrimaryKeyType.PARTITIONING)
+                .primaryKey("n", (chunkLayout == ChunkLayout.WIDE ? PrimaryKeyType.CLUSTERING : PrimaryKeyType.PARTITIONING));
+
+        if (chunks == null) {
+            promises.add(session.executeAsync(withOptions(createChunks)));
+        } else {
+            addMissingColumns(promises, chunks, createChunks);
+            reconcileOptions(promises, chunks);
+        }
+
+        TableMetadata chunkBlocks = (kmd == null ? null : kmd.getTable("chunk_blocks"));
+
+        if (chunkBlocks == null) {
+            // Chunks of files written with a block size, each block is a row of the chunk's partition.  The checksum
+            // covers the whole chunk so it is shared by the partition.
+            CreateTable createChunkBlocks = TableBuilder.create(keyspace, "chunk_blocks")
                     .ifNotExists()
                     .column("files_id", "uuid")
                     .column("n", "int")
+                    .column("b", "int")
                     .column("data", "blob")
+                    .staticColumn("checksum", "int")
                     .primaryKey("files_id", PrimaryKeyType.PARTITIONING)
-                    .primaryKey("n", PrimaryKeyType.PARTITIONING);
+                    .primaryKey("n", PrimaryKeyType.PARTITIONING)
+                    .primaryKey("b", PrimaryKeyType.CLUSTERING);
+
+            promises.add(session.executeAsync(withOptions(createChunkBlocks)));
+        } else {
+            reconcileOptions(promises, chunkBlocks);
+        }
+
+    }
+
+    private void addMissingColumns(List<Promise<ResultSet>> promises, TableMetadata table, CreateTable create) {
 
-            promises.add(session.executeAsync(statement));
+        // Tables created by earlier versions lack newer columns, existing rows read them as null
+        for (BuiltTableStatement.Column column : create.getColumns()) {
+            if (table.getColumn(column.getName()) == null) {
+                AlterTable alter = TableBuilder.alter(keyspace, create.getTable()).addColumn(column.getName(), column.getType());
+                promises.add(session.executeAsync(alter));
+            }
         }
 
     }
 
+    private void reconcileOptions(List<Promise<ResultSet>> promises, TableMetadata table) {
+
+        // Only configured options are reconciled, anything else may have been tuned by hand
+        TableOptions options = configurator.getTableOptions().get(table.getName());
+        if (options == null || options.isEmpty()) {
+            return;
+        }
+
+        String alter = TableOptionsCql.alter(keyspace, table.getName(), options, table.getOptions());
+        if (alter != null) {
+            logger.info("Updating options of table " + keyspace + "." + table.getName() + ": " + alter);
+            promises.add(session.executeAsync(new SimpleStatement(alter)));
+        }
+
+    }
+
+    private Statement withOptions(CreateTable create) {
+
+        String with = TableOptionsCql.withClause(getCreateOptions(create.getTable()));
+        if (with.isEmpty()) {
+            return create;
+        }
+
+        return new SimpleStatement(create.buildQueryString().append(with).toString());
+    }
+
+    private TableOptions getCreateOptions(String table) {
+
+        TableOptions configured = configurator.getTableOptions().get(table);
+        int defaultTtl = configurator.getDefaultTtl();
+
+        if (defaultTtl <= 0 || (configured != null && configured.getCompaction() != null)) {
+            return (configured == null ? new TableOptions() : configured);
+        }
+
+        // Mostly expiring data, so use time windows (aiming for ~24 windows per ttl) that drop whole sstables once
+        // everything in them has expired instead of compacting expired data over and over
+        int windowHours = Math.max(1, (int) Math.ceil(defaultTtl / 3600.0 / 24));
+
+        Map<String, String> compaction = new LinkedHashMap<>();
+        compaction.put("class", "TimeWindowCompactionStrategy");
+        compaction.put("compaction_window_unit", "HOURS");
+        compaction.put("compaction_window_size", String.valueOf(windowHours));
+
+        TableOptions options = new TableOptions().setCompaction(compaction);
+        if (configured != null) {
+            options.setCompression(configured.getCompression())
+                    .setCaching(configured.getCaching())
+                    .setBloomFilterFpChance(configured.getBloomFilterFpChance());
+        }
+        return options;
+    }
+
     public Promise<Void> initPreparedStatements() {
 
         List<Promise<Void>> promises = new ArrayList<>();
@@ -206,10 +446,14 @@ public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
                 .value("id", bindMarker())
                 .value("length", bindMarker())
                 .value("chunkSize", bindMarker())
+                .value("blockSize", bindMarker())
                 .value("uploadDate", bindMarker())
                 .value("filename", bindMarker())
                 .value("contentType", bindMarker())
-                .value("metadata", bindMarker());
+                .value("metadata", bindMarker())
+                .value("sha256", bindMarker())
+                .value("status", bindMarker())
+                .using(ttl(bindMarker()));
 
         promises.add(session.prepareAsync(query)
                 .then(ps -> {
@@ -217,9 +461,20 @@ public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
                     return null;
                 }));
 
+        // The row's remaining ttl is read back so a copy of the record expires with it
         query = QueryBuilder
                 .select()
-                .all()
+                .column("id")
+                .column("length")
+                .column("chunkSize")
+                .column("blockSize")
+                .column("uploadDate")
+                .column("filename")
+                .column("contentType")
+                .column("metadata")
+                .column("sha256")
+                .column("status")
+                .ttl("length").as("ttl")
                 .from(keyspace, "files")
                 .where(eq("id", bindMarker()));
 
@@ -233,7 +488,9 @@ public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
                 .insertInto(keyspace, "chunks")
                 .value("files_id", bindMarker())
                 .value("n", bindMarker())
-                .value("data", bindMarker());
+                .value("data", bindMarker())
+                .value("checksum", bindMarker())
+                .using(ttl(bindMarker()));
 
         promises.add(session.prepareAsync(query).then(ps -> {
             setStoreChunk(ps);
@@ -241,7 +498,7 @@ public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
         }));
 
         query = QueryBuilder
-                .select("data")
+                .select("data", "checksum")
                 .from(keyspace, "chunks")
                 .where(eq("files_id", bindMarker()))
                 .and(eq("n", bindMarker()));
@@ -251,6 +508,109 @@ public class DefaultBinaryStoreStatements implements BinaryStoreStatements {
             return null;
         }));
 
+        query = QueryBuilder
+                .delete()
+                .from(keyspace, "files")
+                .where(eq("id", bindMarker()));
+
+        promises.add(session.prepareAsync(query).then(ps -> {
+            setDeleteFile(ps);
+            return null;
+        }));
+
+        query = QueryBuilder
+                .delete()
+                .from(keyspace, "chunks")
+                .where(eq("files_id", bindMarker()))
+                .and(eq("n", bindMarker()));
+
+        promises.add(session.prepareAsync(query).then(ps -> {
+            setDeleteChunk(ps);
+            return null;
+        }));
+
+        if (chunkLayout == ChunkLayout.WIDE) {
+            query = QueryBuilder
+                    .delete()
+                    .from(keyspace, "chunks")
+                    .where(eq("files_id", bindMarker()));
+
+            promises.add(session.prepareAsync(query).then(ps -> {
+                setDeleteChunks(ps);
+                return null;
+            }));
+        }
+
+        query = QueryBuilder
+                .insertInto(keyspace, "chunk_blocks")
+                .value("files_id", bindMarker())
+                .value("n", bindMarker())
+                .value("b", bindMarker())
+                .value("data", bindMarker())
+                .value("checksum", bindMarker())
+                .using(ttl(bindMarker()));
+
+        promises.add(session.prepareAsync(query).then(ps -> {
+            setStoreBlock(ps);
+            return null;
+        }));
+
+        query = QueryBuilder
+                .select("data", "checksum")
+                .from(keyspace, "chunk_blocks")
+                .where(eq("files_id", bindMarker()))
+                .and(eq("n", bindMarker()))
+                .and(gte("b", bindMarker()))
+                .and(lte("b", bindMarker()));
+
+        promises.add(session.prepareAsync(query).then(ps -> {
+            setLoadBlocks(ps);
+            return null;
+        }));
+
+        query = QueryBuilder
+                .delete()
+                .from(keyspace, "chunk_blocks")
+                .where(eq("files_id", bindMarker()))
+                .and(eq("n", bindMarker()));
+
+        promises.add(session.prepareAsync(query).then(ps -> {
+            setDeleteBlocks(ps);
+            return null;
+        }));
+
+        String partitionToken = (chunkLayout == ChunkLayout.WIDE ? token("files_id") : token("files_id", "n"));
+
+        query = QueryBuilder
+                .select()
+                .column("files_id")
+                .column("n")
+                .writeTime("data")
+                .from(keyspace, "chunks")
+                .where(gt(partitionToken, bindMarker()))
+                .and(lte(partitionToken, bindMarker()));
+
+        promises.add(session.prepareAsync(query).then(ps -> {
+            setScanChunks(ps);
+            return null;
+        }));
+
+        // The checksum is static, so a distinct select returns a single row per chunk however many blocks it has
+        query = QueryBuilder
+                .select()
+                .distinct()
+                .column("files_id")
+                .column("n")
+                .writeTime("checksum")
+                .from(keyspace, "chunk_blocks")
+                .where(gt(token("files_id", "n"), bindMarker()))
+                .and(lte(token("files_id", "n"), bindMarker()));
+
+        promises.add(session.prepareAsync(query).then(ps -> {
+            setScanBlocks(ps);
+            return null;
+        }));
+
         return when.all(promises).then(voids -> null);
     }
 
@@ -1,15 +1,15 @@
 package com.englishtown.vertx.cassandra.binarystore.impl;
 
+import com.codahale.metrics.MetricRegistry;
 import com.englishtown.promises.Deferred;
 import com.englishtown.promises.Promise;
 import com.englishtown.promises.When;
 import com.englishtown.vertx.cassandra.binarystore.*;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.Pump;
 import io.vertx.core.streams.ReadStream;
 
 import javax.inject.Inject;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
 /**
@@ -18,119 +18,96 @@ import java.util.UUID;
 public class DefaultBinaryStoreWriter implements BinaryStoreWriter {
 
     private final BinaryStoreManager binaryStoreManager;
+    private final BinaryStoreConfigurator configurator;
+    private final ChunkScheduler scheduler;
+    private final MemoryBudget budget;
+    private final ChunkBufferPool bufferPool;
+    private final TenantQuotas quotas;
+    private final MetricRegistry registry;
     private final When when;
     public static final int DEFAULT_CHUNK_SIZE = 1024000;
 
+    public DefaultBinaryStoreWriter(BinaryStoreManager binaryStoreManager, BinaryStoreConfigurator configurator, MetricRegistry registry, When when) {
+        this(binaryStoreManager, configurator, new DirectChunkScheduler(),
+                new DefaultMemoryBudget(new MemoryBudgetOptions(), registry, when),
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), new UnlimitedTenantQuotas(), registry, when);
+    }
+
     @Inject
-    public DefaultBinaryStoreWriter(BinaryStoreManager binaryStoreManager, When when) {
+    public DefaultBinaryStoreWriter(
+            BinaryStoreManager binaryStoreManager,
+            BinaryStoreConfigurator configurator,
+            ChunkScheduler scheduler,
+            MemoryBudget budget,
+            ChunkBufferPool bufferPool,
+            TenantQuotas quotas,
+            MetricRegistry registry,
+            When when) {
         this.binaryStoreManager = binaryStoreManager;
+        this.configurator = configurator;
+        this.scheduler = scheduler;
+        this.budget = budget;
+        this.bufferPool = bufferPool;
+        this.quotas = quotas;
+        this.registry = registry;
         this.when = when;
     }
 
     @Override
     public Promise<FileInfo> write(final FileInfo fileInfo, final ReadStream<Buffer> rs) {
 
-        // Copy file info to a writeable version and fill in missing fields
-        FileInfo writeableFileInfo = new FileInfo()
-                .setId((fileInfo.getId() == null ? UUID.randomUUID() : fileInfo.getId()))
-                .setFileName(fileInfo.getFileName())
-                .setChunkSize((fileInfo.getChunkSize() <= 0 ? DEFAULT_CHUNK_SIZE : fileInfo.getChunkSize()))
-                .setContentType((fileInfo.getContentType() == null ? getContentType(fileInfo.getFileName()) : fileInfo.getContentType()))
-                .setMetadata(fileInfo.getMetadata())
-                .setUploadDate((fileInfo.getUploadDate() == 0 ? System.currentTimeMillis() : fileInfo.getUploadDate()));
-
-        return innerWrite(writeableFileInfo, rs);
-
-    }
+        FileWriter writer = open(fileInfo);
+        Deferred<FileInfo> d = when.defer();
 
-    private <T> Promise<FileInfo> innerWrite(final FileInfo fileInfo, final ReadStream<Buffer> rs) {
+        // The read stream is paused while chunks are being stored
+        Pump pump = Pump.pump(rs, writer);
 
-        WriteInfo info = new WriteInfo();
-        List<Promise<Void>> promises = new ArrayList<>();
-        Deferred<FileInfo> d = when.defer();
+        // A failed chunk fails the upload, the paused read stream would otherwise never drain or end
+        writer.exceptionHandler(t -> {
+            pump.stop();
+            rs.endHandler(null);
+            d.reject(t);
+        });
 
-        // NOTE: There is no throttling on ReadStream data.
-        // This shouldn't be a problem, but could consider calling pause/resume on rs when writing chunks.
-        rs.handler(data -> handleData(data, info, fileInfo, promises));
+        pump.start();
 
         rs.endHandler(event -> {
-            handleEnd(info.buffer, info.num, fileInfo, promises);
-            d.resolve(when.all(promises).then(voids -> when.resolve(fileInfo)));
+            writer.end();
+            d.resolve(writer.getResult());
         });
 
         rs.exceptionHandler(t -> d.reject(t));
 
         return d.getPromise();
-    }
-
-    private void handleEnd(
-            Buffer buffer,
-            int num,
-            FileInfo fileInfo,
-            List<Promise<Void>> promises) {
-
-        if (buffer.length() > 0) {
-            long newLen = buffer.length() + fileInfo.getLength();
-            fileInfo.setLength(newLen);
-
-            ChunkInfo chunkInfo = new ChunkInfo()
-                    .setId(fileInfo.getId())
-                    .setNum(num)
-                    .setData(buffer.getBytes());
-
-            promises.add(binaryStoreManager.storeChunk(chunkInfo));
-        }
-
-        promises.add(binaryStoreManager.storeFile(fileInfo));
 
     }
 
-    private void handleData(
-            Buffer data,
-            WriteInfo info,
-            FileInfo fileInfo,
-            List<Promise<Void>> promises) {
-
-        int newLength = info.buffer.length() + data.length();
-        if (newLength < fileInfo.getChunkSize()) {
-            // Just append
-            info.buffer.appendBuffer(data);
-
-        } else {
-            // Have at least a full chunk
-            Buffer chunk = Buffer.buffer();
-            chunk.appendBuffer(info.buffer);
-
-            if (newLength == fileInfo.getChunkSize()) {
-                // Exactly one chunk
-                chunk.appendBuffer(data);
-                info.buffer = Buffer.buffer();
-
-            } else {
-                // Will have some remainder to keep in buffer
-                int len = fileInfo.getChunkSize() - info.buffer.length();
-                chunk.appendBytes(data.getBytes(0, len));
-
-                // Add additional chunk to a new buffer
-                Buffer remaining = Buffer.buffer();
-                remaining.appendBytes(data.getBytes(len, data.length()));
-
-                info.buffer = remaining;
-            }
+    @Override
+    public FileWriter open(FileInfo fileInfo) {
 
-            ChunkInfo chunkInfo = new ChunkInfo()
-                    .setId(fileInfo.getId())
-                    .setNum(info.num)
-                    .setData(chunk.getBytes());
+        // Copy file info to a writeable version and fill in missing fields
+        FileInfo writeableFileInfo = new FileInfo()
+                .setId((fileInfo.getId() == null ? UUID.randomUUID() : fileInfo.getId()))
+                .setFileName(fileInfo.getFileName())
+                .setChunkSize((fileInfo.getChunkSize() <= 0 ? DEFAULT_CHUNK_SIZE : fileInfo.getChunkSize()))
+                .setContentType((fileInfo.getContentType() == null ? getContentType(fileInfo.getFileName()) : fileInfo.getContentType()))
+                .setBlockSize((fileInfo.getBlockSize() <= 0 ? configurator.getBlockSize() : fileInfo.getBlockSize()))
+                .setMetadata(fileInfo.getMetadata())
+                .setTtl((fileInfo.getTtl() <= 0 ? configurator.getDefaultTtl() : fileInfo.getTtl()))
+                .setUploadDate((fileInfo.getUploadDate() == 0 ? System.currentTimeMillis() : fileInfo.getUploadDate()));
 
-            // Increase num of chunks and total file length
-            info.num += 1;
-            long totalLen = fileInfo.getChunkSize() + fileInfo.getLength();
-            fileInfo.setLength(totalLen);
+        return new DefaultFileWriter(writeableFileInfo, binaryStoreManager, scheduler.open(), budget, bufferPool,
+                quotas.forFile(writeableFileInfo), registry, when);
 
-            promises.add(binaryStoreManager.storeChunk(chunkInfo));
+    }
 
+    @Override
+    public BinaryStoreWriter forKeyspace(String keyspace) {
+        BinaryStoreManager manager = binaryStoreManager.forKeyspace(keyspace);
+        if (manager == binaryStoreManager) {
+            return this;
         }
+        return new DefaultBinaryStoreWriter(manager, configurator, scheduler, budget, bufferPool, quotas, registry, when);
     }
 
     private String getContentType(String name) {
@@ -173,9 +150,4 @@ public class DefaultBinaryStoreWriter implements BinaryStoreWriter {
 
     }
 
-    private static class WriteInfo {
-        Buffer buffer = Buffer.buffer();
-        int num = 0;
-    }
-
 }
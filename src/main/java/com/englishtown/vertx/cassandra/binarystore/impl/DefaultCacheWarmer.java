@@ -0,0 +1,309 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.*;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.CacheWarmer}
+ */
+public class DefaultCacheWarmer implements CacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultCacheWarmer.class);
+    private static final String HEADER = "# Most read binary store chunks, <files_id> <n>\n";
+
+    private final BinaryStoreManager binaryStoreManager;
+    private final WarmCache warmCache;
+    private final ChunkBufferPool bufferPool;
+    private final WarmCacheOptions options;
+    private final Vertx vertx;
+    private final When when;
+
+    private final Counter prefetched;
+    private final Counter errors;
+
+    private long timerId = -1;
+    private Prefetch current;
+
+    @Inject
+    public DefaultCacheWarmer(
+            BinaryStoreManager binaryStoreManager,
+            WarmCache warmCache,
+            ChunkBufferPool bufferPool,
+            BinaryStoreConfigurator configurator,
+            MetricRegistry registry,
+            Vertx vertx,
+            When when) {
+        // Prefetching isn't a read, counted it would keep the chunks it warms popular
+        this.binaryStoreManager = binaryStoreManager.uncounted();
+        this.warmCache = warmCache;
+        this.bufferPool = bufferPool;
+        this.options = configurator.getWarmCacheOptions();
+        this.vertx = vertx;
+        this.when = when;
+
+        prefetched = registry.counter(name(Metrics.BASE_NAME, "warmcache", "prefetched"));
+        errors = registry.counter(name(Metrics.BASE_NAME, "warmcache", "errors"));
+    }
+
+    @Override
+    public void start() {
+
+        if (!options.isEnabled() || timerId >= 0) {
+            return;
+        }
+
+        prefetch().then(count -> {
+            logger.debug("Prefetched " + count + " popular chunks");
+            return null;
+        }).otherwise(t -> {
+            logger.error("Error prefetching popular chunks", t);
+            return null;
+        });
+
+        timerId = vertx.setPeriodic(options.getPersistInterval(), id -> persist().otherwise(t -> {
+            logger.error("Error persisting popular chunks", t);
+            return null;
+        }));
+
+    }
+
+    @Override
+    public Promise<Void> stop() {
+
+        if (timerId < 0) {
+            return when.resolve(null);
+        }
+
+        vertx.cancelTimer(timerId);
+        timerId = -1;
+        if (current != null) {
+            current.cancelled = true;
+        }
+
+        // Shutdown waits for the write, so it doesn't need to block the event loop
+        return persist().otherwise(t -> {
+            logger.error("Error persisting popular chunks", t);
+            return null;
+        });
+
+    }
+
+    @Override
+    public Promise<Void> persist() {
+
+        if (!options.isEnabled()) {
+            return when.resolve(null);
+        }
+
+        Deferred<Void> d = when.defer();
+
+        vertx.fileSystem().writeFile(options.getPath(), popularChunks(), result -> {
+            if (result.succeeded()) {
+                d.resolve((Void) null);
+            } else {
+                errors.inc();
+                d.reject(result.cause());
+            }
+        });
+
+        return d.getPromise();
+    }
+
+    private Buffer popularChunks() {
+        Buffer buffer = Buffer.buffer(HEADER);
+        for (ChunkInfo chunkInfo : warmCache.getPopularChunks()) {
+            buffer.appendString(chunkInfo.getId() + " " + chunkInfo.getNum() + "\n");
+        }
+        return buffer;
+    }
+
+    @Override
+    public Promise<Integer> prefetch() {
+
+        if (!options.isEnabled()) {
+            return when.resolve(0);
+        }
+        if (current != null) {
+            return when.reject(new IllegalStateException("A prefetch is already in progress"));
+        }
+
+        Prefetch prefetch = new Prefetch();
+        current = prefetch;
+
+        return read()
+                .then(keys -> prefetch(prefetch, keys, 0))
+                .then(
+                        aVoid -> {
+                            current = null;
+                            return when.resolve(prefetch.count);
+                        },
+                        t -> {
+                            current = null;
+                            errors.inc();
+                            return when.reject(t);
+                        });
+
+    }
+
+    private Promise<List<ChunkInfo>> read() {
+
+        Deferred<List<ChunkInfo>> d = when.defer();
+
+        vertx.fileSystem().exists(options.getPath(), exists -> {
+            if (exists.failed() || !exists.result()) {
+                // First start on this node, nothing to warm
+                d.resolve(new ArrayList<>());
+                return;
+            }
+            vertx.fileSystem().readFile(options.getPath(), result -> {
+                if (result.succeeded()) {
+                    d.resolve(parse(result.result().toString()));
+                } else {
+                    d.reject(result.cause());
+                }
+            });
+        });
+
+        return d.getPromise();
+    }
+
+    /**
+     * The keys of a popularity file, lines that don't parse are skipped so a file cut short by a crash still warms
+     */
+    List<ChunkInfo> parse(String content) {
+
+        List<ChunkInfo> keys = new ArrayList<>();
+
+        for (String line : content.split("\n")) {
+            if (keys.size() >= options.getMaxKeys()) {
+                break;
+            }
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(" ");
+            try {
+                if (parts.length == 2) {
+                    keys.add(new ChunkInfo().setId(UUID.fromString(parts[0])).setNum(Integer.parseInt(parts[1])));
+                }
+            } catch (IllegalArgumentException e) {
+                logger.debug("Skipping popular chunk " + line);
+            }
+        }
+
+        return keys;
+    }
+
+    private Promise<Void> prefetch(Prefetch prefetch, List<ChunkInfo> keys, int i) {
+
+        if (prefetch.cancelled || prefetch.full || i >= keys.size()) {
+            return when.resolve(null);
+        }
+
+        ChunkInfo key = keys.get(i);
+
+        return loadFile(prefetch, key.getId())
+                .then(fileInfo -> {
+                    if (fileInfo == null || fileInfo.getStatus() != FileStatus.COMMITTED
+                            || key.getNum() < 0 || key.getNum() >= fileInfo.getChunkCount()) {
+                        return when.resolve(null);
+                    }
+
+                    // Keys are most read first, so once the cache is full the rest would only evict better ones
+                    long length = Math.min(fileInfo.getChunkSize(),
+                            fileInfo.getLength() - (long) key.getNum() * fileInfo.getChunkSize());
+                    if (prefetch.bytes + length > options.getMaxBytes()) {
+                        prefetch.full = true;
+                        return when.resolve(null);
+                    }
+                    return prefetchChunk(fileInfo, key.getNum(), prefetch).then(aVoid -> throttle());
+                })
+                .otherwise(t -> {
+                    // A failed chunk only stays cold, the rest are still worth warming
+                    errors.inc();
+                    logger.debug("Error prefetching chunk " + key.getNum() + " of file " + key.getId(), t);
+                    return null;
+                })
+                .then(aVoid -> prefetch(prefetch, keys, i + 1));
+
+    }
+
+    private Promise<FileInfo> loadFile(Prefetch prefetch, UUID id) {
+
+        // Popular files have several popular chunks, their record is only loaded once
+        if (prefetch.files.containsKey(id)) {
+            return when.resolve(prefetch.files.get(id));
+        }
+
+        return binaryStoreManager.loadFile(id)
+                .then(fileInfo -> {
+                    prefetch.files.put(id, fileInfo);
+                    if (fileInfo != null) {
+                        warmCache.putFile(fileInfo);
+                    }
+                    return when.resolve(fileInfo);
+                });
+    }
+
+    private Promise<Void> prefetchChunk(FileInfo fileInfo, int n, Prefetch prefetch) {
+
+        Promise<ChunkInfo> p = (fileInfo.getBlockSize() > 0
+                ? binaryStoreManager.loadBlocks(fileInfo.getId(), n, 0, Integer.MAX_VALUE)
+                : binaryStoreManager.loadChunk(fileInfo.getId(), n));
+
+        return p.then(chunkInfo -> {
+            if (chunkInfo != null) {
+                // The cache keeps a copy, the loaded array goes back to the pool
+                warmCache.putChunk(chunkInfo);
+                bufferPool.release(chunkInfo.getData());
+                prefetch.bytes += chunkInfo.getData().length;
+                prefetch.count++;
+                prefetched.inc();
+            }
+            return null;
+        });
+    }
+
+    private Promise<Void> throttle() {
+        // Chunks are loaded one at a time at a bounded rate, so warming never competes with live traffic
+
+        long delay = 1000L / options.getPrefetchPerSecond();
+        if (delay <= 0) {
+            return when.resolve(null);
+        }
+
+        Deferred<Void> d = when.defer();
+        vertx.setTimer(delay, id -> d.resolve((Void) null));
+        return d.getPromise();
+    }
+
+    private static class Prefetch {
+
+        final Map<UUID, FileInfo> files = new HashMap<>();
+
+        int count;
+        long bytes;
+        boolean full;
+        boolean cancelled;
+
+    }
+
+}
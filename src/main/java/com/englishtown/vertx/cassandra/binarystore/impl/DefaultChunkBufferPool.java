@@ -0,0 +1,248 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.BufferPoolOptions;
+import com.englishtown.vertx.cassandra.binarystore.ChunkBufferPool;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+import javax.inject.Inject;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.ChunkBufferPool}
+ */
+public class DefaultChunkBufferPool implements ChunkBufferPool {
+
+    private static final int MAX_SIZE_CLASSES = 64;
+
+    private final BufferPoolOptions options;
+    private final Meter allocated;
+    private final Meter reused;
+
+    // Chunk data must be exactly the chunk's length, nearly every chunk of a file has its chunk size
+    private final Map<Integer, SizeClass> classes = new HashMap<>();
+    // With leak detection, the stack that took each array, meant for tests as it costs an exception per array
+    private final Map<byte[], Throwable> leased;
+    private final Set<Loan> loans = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<ByteBuf> unreachable = new ReferenceQueue<>();
+    private long pooledBytes;
+    private long tick;
+
+    @Inject
+    public DefaultChunkBufferPool(BinaryStoreConfigurator configurator, MetricRegistry registry) {
+        this(configurator.getBufferPoolOptions(), registry);
+    }
+
+    public DefaultChunkBufferPool(BufferPoolOptions options, MetricRegistry registry) {
+        this.options = options;
+        this.leased = (options.isLeakDetection() ? new IdentityHashMap<>() : null);
+
+        allocated = registry.meter(name(Metrics.BASE_NAME, "buffers", "allocated"));
+        reused = registry.meter(name(Metrics.BASE_NAME, "buffers", "reused"));
+
+        if (options.isEnabled()) {
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, "buffers", "pooled"), this::getPooledBytes);
+        }
+    }
+
+    @Override
+    public byte[] acquire(int size) {
+
+        reclaim();
+
+        if (!isPooled(size)) {
+            return new byte[size];
+        }
+
+        byte[] buffer = null;
+
+        synchronized (this) {
+            SizeClass sizeClass = classes.get(size);
+            if (sizeClass != null) {
+                // An emptied class is kept, so the size stays recently used while its buffers are out
+                sizeClass.used = ++tick;
+                buffer = sizeClass.idle.pollLast();
+            }
+            if (buffer != null) {
+                pooledBytes -= size;
+                reused.mark(size);
+            } else {
+                allocated.mark(size);
+                buffer = new byte[size];
+            }
+            if (leased != null) {
+                leased.put(buffer, new Throwable("Buffer of " + size + " bytes acquired here"));
+            }
+        }
+
+        return buffer;
+    }
+
+    @Override
+    public void release(byte[] buffer) {
+
+        if (!isPooled(buffer.length)) {
+            return;
+        }
+
+        int size = buffer.length;
+
+        synchronized (this) {
+            if (leased != null && leased.remove(buffer) == null) {
+                throw new IllegalStateException("Buffer of " + size + " bytes was released twice or not acquired from the pool");
+            }
+
+            SizeClass sizeClass = classes.get(size);
+
+            if (sizeClass == null) {
+                // A size not seen before only takes free room, so odd sized last chunks never push out common sizes
+                if (pooledBytes + size > options.getMaxPooledBytes() || !hasRoomForClass()) {
+                    return;
+                }
+                sizeClass = new SizeClass();
+                sizeClass.used = ++tick;
+                classes.put(size, sizeClass);
+            }
+
+            while (pooledBytes + size > options.getMaxPooledBytes()) {
+                Integer stalest = findStalerThan(sizeClass);
+                if (stalest == null) {
+                    // Buffers of this size are the least used, keep the pool as it is
+                    return;
+                }
+                SizeClass evicted = classes.remove(stalest);
+                pooledBytes -= (long) stalest * evicted.idle.size();
+            }
+
+            sizeClass.idle.addLast(buffer);
+            pooledBytes += size;
+        }
+    }
+
+    @Override
+    public Buffer lend(byte[] buffer) {
+        // Write streams don't report when a buffer is written, the array is taken back once the buffer is collected
+        ByteBuf byteBuf = Unpooled.wrappedBuffer(buffer);
+        if (isPooled(buffer.length)) {
+            loans.add(new Loan(byteBuf, buffer, unreachable));
+        }
+        return Buffer.buffer(byteBuf);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return options.isEnabled();
+    }
+
+    /**
+     * Takes back the arrays of lent buffers that are no longer referred to, also done on every acquire
+     */
+    public void reclaim() {
+        Loan loan;
+        while ((loan = (Loan) unreachable.poll()) != null) {
+            loans.remove(loan);
+            release(loan.buffer);
+        }
+    }
+
+    /**
+     * Bytes of idle buffers in the pool
+     *
+     * @return
+     */
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * Buffers acquired and not yet released, only tracked with leak detection
+     *
+     * @return
+     */
+    public synchronized int getLeased() {
+        return (leased == null ? 0 : leased.size());
+    }
+
+    /**
+     * Arrays lent out in buffers and not yet taken back
+     *
+     * @return
+     */
+    public int getLent() {
+        return loans.size();
+    }
+
+    /**
+     * Where each buffer not yet released was acquired, only tracked with leak detection
+     *
+     * @return
+     */
+    public synchronized List<Throwable> getLeaks() {
+        return (leased == null ? new ArrayList<>() : new ArrayList<>(leased.values()));
+    }
+
+    private boolean isPooled(int size) {
+        return options.isEnabled() && size >= options.getMinSize() && size <= options.getMaxPooledBytes();
+    }
+
+    private boolean hasRoomForClass() {
+        if (classes.size() >= MAX_SIZE_CLASSES) {
+            classes.values().removeIf(sizeClass -> sizeClass.idle.isEmpty());
+        }
+        return classes.size() < MAX_SIZE_CLASSES;
+    }
+
+    private Integer findStalerThan(SizeClass sizeClass) {
+        Integer stalest = null;
+        long used = sizeClass.used;
+        for (Map.Entry<Integer, SizeClass> entry : classes.entrySet()) {
+            if (entry.getValue().used < used) {
+                used = entry.getValue().used;
+                stalest = entry.getKey();
+            }
+        }
+        return stalest;
+    }
+
+    /**
+     * An array lent out in a buffer, queued once the buffer is unreachable
+     */
+    private static class Loan extends PhantomReference<ByteBuf> {
+
+        private final byte[] buffer;
+
+        public Loan(ByteBuf byteBuf, byte[] buffer, ReferenceQueue<ByteBuf> queue) {
+            super(byteBuf, queue);
+            this.buffer = buffer;
+        }
+
+    }
+
+    /**
+     * Idle buffers of one size
+     */
+    private static class SizeClass {
+
+        private final Deque<byte[]> idle = new ArrayDeque<>();
+        private long used;
+
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.ChunkScheduler;
+import com.englishtown.vertx.cassandra.binarystore.ChunkSchedulerOptions;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import javax.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.ChunkScheduler}
+ */
+public class DefaultChunkScheduler implements ChunkScheduler {
+
+    private final ChunkSchedulerOptions options;
+    private final Timer waitTimer;
+    private final When when;
+    private final ChunkScheduler direct = new DirectChunkScheduler();
+
+    private final Deque<DefaultStream> active = new ArrayDeque<>();
+    private int inFlight;
+    private int queued;
+
+    @Inject
+    public DefaultChunkScheduler(BinaryStoreConfigurator configurator, MetricRegistry registry, When when) {
+        this(configurator.getChunkSchedulerOptions(), registry, when);
+    }
+
+    public DefaultChunkScheduler(ChunkSchedulerOptions options, MetricRegistry registry, When when) {
+        this.options = options;
+        this.when = when;
+
+        waitTimer = registry.timer(name(Metrics.BASE_NAME, "scheduler", "wait"));
+
+        if (options.isEnabled()) {
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, "scheduler", "queued"), this::getQueued);
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, "scheduler", "inflight"), this::getInFlight);
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, "scheduler", "streams"), this::getActiveStreams);
+        }
+    }
+
+    @Override
+    public Stream open() {
+        return (options.isEnabled() ? new DefaultStream() : direct.open());
+    }
+
+    /**
+     * Operations waiting for their stream's turn
+     *
+     * @return
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Operations started and not yet finished
+     *
+     * @return
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Streams with operations waiting
+     *
+     * @return
+     */
+    public synchronized int getActiveStreams() {
+        return active.size();
+    }
+
+    /**
+     * Takes the operations that can start now, must hold the lock
+     *
+     * @return
+     */
+    private List<Task<?>> poll() {
+
+        List<Task<?>> ready = Collections.emptyList();
+
+        // Deficit round robin, every stream with work gets the same bytes per round whatever its chunk size
+        while (inFlight < options.getMaxInFlight() && !active.isEmpty()) {
+
+            DefaultStream stream = active.peekFirst();
+            Task<?> task = stream.tasks.peekFirst();
+
+            if (stream.deficit < task.bytes) {
+                // Not enough allowance left, top it up for the stream's next turn
+                stream.deficit += options.getQuantum();
+                active.addLast(active.pollFirst());
+                continue;
+            }
+
+            stream.deficit -= task.bytes;
+            stream.tasks.pollFirst();
+            queued--;
+
+            // An idle stream doesn't keep its allowance
+            if (stream.tasks.isEmpty()) {
+                active.pollFirst();
+                stream.deficit = 0;
+            }
+
+            inFlight++;
+            if (ready.isEmpty()) {
+                ready = new ArrayList<>();
+            }
+            ready.add(task);
+        }
+
+        return ready;
+    }
+
+    private void start(List<Task<?>> tasks) {
+        for (Task<?> task : tasks) {
+            task.start();
+        }
+    }
+
+    private void complete() {
+        List<Task<?>> ready;
+        synchronized (this) {
+            inFlight--;
+            ready = poll();
+        }
+        start(ready);
+    }
+
+    private class DefaultStream implements Stream {
+
+        private final Deque<Task<?>> tasks = new ArrayDeque<>();
+        private long deficit;
+        private boolean closed;
+
+        @Override
+        public <T> Promise<T> submit(long bytes, Supplier<Promise<T>> operation) {
+
+            Task<T> task = new Task<>(bytes, operation, when.defer(), Vertx.currentContext());
+            List<Task<?>> ready;
+
+            synchronized (DefaultChunkScheduler.this) {
+                if (closed) {
+                    return when.reject(new CancellationException("Chunk scheduler stream was closed"));
+                }
+                if (tasks.isEmpty()) {
+                    active.addLast(this);
+                }
+                tasks.addLast(task);
+                queued++;
+                ready = poll();
+            }
+
+            start(ready);
+            return task.deferred.getPromise();
+        }
+
+        @Override
+        public void close() {
+
+            List<Task<?>> dropped;
+
+            synchronized (DefaultChunkScheduler.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (tasks.isEmpty()) {
+                    return;
+                }
+                dropped = new ArrayList<>(tasks);
+                queued -= tasks.size();
+                tasks.clear();
+                active.remove(this);
+            }
+
+            for (Task<?> task : dropped) {
+                task.runOnContext(() -> task.deferred.reject(new CancellationException("Chunk scheduler stream was closed")));
+            }
+        }
+
+    }
+
+    private class Task<T> {
+
+        private final long bytes;
+        private final Supplier<Promise<T>> operation;
+        private final Deferred<T> deferred;
+        private final Context context;
+        private final long submitted = System.nanoTime();
+
+        public Task(long bytes, Supplier<Promise<T>> operation, Deferred<T> deferred, Context context) {
+            this.bytes = bytes;
+            this.operation = operation;
+            this.deferred = deferred;
+            this.context = context;
+        }
+
+        public void start() {
+            // On the submitting context, whichever operation's completion let this one start
+            waitTimer.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+            runOnContext(this::run);
+        }
+
+        private void run() {
+
+            Promise<T> promise;
+            try {
+                promise = operation.get();
+            } catch (RuntimeException e) {
+                promise = when.reject(e);
+            }
+
+            promise.then(
+                    result -> {
+                        complete();
+                        runOnContext(() -> deferred.resolve(result));
+                        return null;
+                    },
+                    t -> {
+                        complete();
+                        runOnContext(() -> deferred.reject(t));
+                        return null;
+                    });
+        }
+
+        private void runOnContext(Runnable action) {
+            if (context == null || context == Vertx.currentContext()) {
+                action.run();
+            } else {
+                context.runOnContext(aVoid -> action.run());
+            }
+        }
+
+    }
+
+}
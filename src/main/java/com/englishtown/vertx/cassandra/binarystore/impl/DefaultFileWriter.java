@@ -0,0 +1,322 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreManager;
+import com.englishtown.vertx.cassandra.binarystore.ChunkBufferPool;
+import com.englishtown.vertx.cassandra.binarystore.ChunkInfo;
+import com.englishtown.vertx.cassandra.binarystore.ChunkScheduler;
+import com.englishtown.vertx.cassandra.binarystore.FileInfo;
+import com.englishtown.vertx.cassandra.binarystore.FileStatus;
+import com.englishtown.vertx.cassandra.binarystore.FileWriter;
+import com.englishtown.vertx.cassandra.binarystore.MemoryBudget;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import com.englishtown.vertx.cassandra.binarystore.TenantQuotas;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.FileWriter}
+ */
+public class DefaultFileWriter implements FileWriter {
+
+    private final FileInfo fileInfo;
+    private final BinaryStoreManager binaryStoreManager;
+    private final ChunkScheduler.Stream stream;
+    private final MemoryBudget budget;
+    private final ChunkBufferPool bufferPool;
+    private final TenantQuotas.Quota quota;
+    private final When when;
+    private final Timer checksumTimer;
+    private final Timer firstByteTimer;
+    private final Meter writeBytes;
+    private final long started = System.nanoTime();
+    private final int ttl;
+    private final JfrEvents.FileWrite event;
+    private long firstChunk;
+
+    private final List<Promise<Void>> promises = new ArrayList<>();
+    private final Deferred<FileInfo> result;
+    private final Hasher fileHasher = Hashing.sha256().newHasher();
+
+    private Buffer buffer = Buffer.buffer();
+    private byte[] chunk;
+    private int position;
+    private int num;
+    private int stored;
+    private boolean ended;
+
+    private long maxSize;
+    private long inFlight;
+    private boolean waitingForBudget;
+    private Handler<Void> drainHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    public DefaultFileWriter(
+            FileInfo fileInfo,
+            BinaryStoreManager binaryStoreManager,
+            ChunkScheduler.Stream stream,
+            MemoryBudget budget,
+            ChunkBufferPool bufferPool,
+            TenantQuotas.Quota quota,
+            MetricRegistry registry,
+            When when) {
+        this.fileInfo = fileInfo;
+        this.binaryStoreManager = binaryStoreManager;
+        this.stream = stream;
+        this.budget = budget;
+        this.bufferPool = bufferPool;
+        this.quota = quota;
+        this.checksumTimer = registry.timer(name(Metrics.BASE_NAME, "checksums", "compute"));
+        this.firstByteTimer = registry.timer(name(Metrics.BASE_NAME, "writes", "ttfb"));
+        this.writeBytes = registry.meter(name(Metrics.BASE_NAME, "writes", "bytes"));
+        this.when = when;
+        this.result = when.defer();
+        this.maxSize = (long) fileInfo.getChunkSize() * DEFAULT_WRITE_QUEUE_MAX_CHUNKS;
+        this.ttl = fileInfo.getTtl();
+        this.event = (JfrEvents.AVAILABLE ? JfrEvents.FileWrite.begin(fileInfo.getId()) : null);
+
+        // Record the upload as pending first so readers never see a file whose chunks are still being written
+        promises.add(binaryStoreManager.storeFile(new FileInfo(fileInfo).setStatus(FileStatus.PENDING)));
+    }
+
+    @Override
+    public FileInfo getFileInfo() {
+        return fileInfo;
+    }
+
+    @Override
+    public Promise<FileInfo> getResult() {
+        return result.getPromise();
+    }
+
+    @Override
+    public FileWriter exceptionHandler(Handler<Throwable> handler) {
+        exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public FileWriter write(Buffer data) {
+
+        if (ended) {
+            throw new IllegalStateException("File writer has already been ended");
+        }
+
+        if (bufferPool.isEnabled()) {
+            writePooled(data);
+            return this;
+        }
+
+        buffer.appendBuffer(data);
+
+        // A single write can hold several chunks
+        int chunkSize = fileInfo.getChunkSize();
+        while (buffer.length() >= chunkSize) {
+            Buffer remaining = buffer.getBuffer(chunkSize, buffer.length());
+            storeChunk(buffer.getBytes(0, chunkSize), false);
+            buffer = remaining;
+        }
+
+        return this;
+    }
+
+    /**
+     * Copies the data straight into pooled chunk sized arrays, rather than growing a buffer and copying chunks out
+     *
+     * @param data
+     */
+    private void writePooled(Buffer data) {
+
+        int chunkSize = fileInfo.getChunkSize();
+        int offset = 0;
+
+        while (offset < data.length()) {
+            if (chunk == null) {
+                chunk = bufferPool.acquire(chunkSize);
+                position = 0;
+            }
+
+            int length = Math.min(chunkSize - position, data.length() - offset);
+            data.getBytes(offset, offset + length, chunk, position);
+            offset += length;
+            position += length;
+
+            if (position == chunkSize) {
+                storeChunk(chunk, true);
+                chunk = null;
+            }
+        }
+
+    }
+
+    @Override
+    public void end() {
+
+        if (ended) {
+            return;
+        }
+        ended = true;
+
+        if (buffer.length() > 0) {
+            storeChunk(buffer.getBytes(), false);
+            buffer = Buffer.buffer();
+        }
+
+        if (chunk != null) {
+            // Chunk data is exactly the chunk's length, the last chunk is copied out of its pooled array
+            storeChunk(Arrays.copyOf(chunk, position), false);
+            bufferPool.release(chunk);
+            chunk = null;
+        }
+
+        fileInfo.setSha256(BaseEncoding.base16().lowerCase().encode(fileHasher.hash().asBytes()));
+
+        // Only commit once every chunk is persisted, a failed upload stays pending
+        Promise<FileInfo> p = when.all(promises)
+                .then(voids -> binaryStoreManager.storeFile(fileInfo.setTtl(getRemainingTtl())))
+                .then(aVoid -> when.resolve(fileInfo));
+
+        if (event != null) {
+            p.then(
+                    info -> {
+                        event.commit(fileInfo.getLength(), num, firstChunk, true);
+                        return null;
+                    },
+                    t -> {
+                        event.commit(fileInfo.getLength(), num, firstChunk, false);
+                        return null;
+                    });
+        }
+
+        result.resolve(p);
+
+    }
+
+    @Override
+    public FileWriter setWriteQueueMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        // The pump also stops while the chunks of all uploads and downloads use up the memory budget
+        return inFlight >= maxSize || budget.isExhausted();
+    }
+
+    @Override
+    public FileWriter drainHandler(Handler<Void> handler) {
+        drainHandler = handler;
+        checkDrained();
+        return this;
+    }
+
+    /**
+     * Seconds left, rounded up, until the upload's rows expire, counted from when it was opened so the chunks and the
+     * committed record all expire together however long the upload takes
+     */
+    private int getRemainingTtl() {
+        if (ttl <= 0) {
+            return ttl;
+        }
+        long elapsed = System.nanoTime() - started;
+        long remaining = TimeUnit.SECONDS.toNanos(ttl) - elapsed;
+        return (int) Math.max(1, (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void storeChunk(byte[] data, boolean pooled) {
+
+        ChunkInfo chunkInfo = new ChunkInfo()
+                .setId(fileInfo.getId())
+                .setNum(num++)
+                .setData(data)
+                .setChecksum(checksum(data))
+                .setBlockSize(fileInfo.getBlockSize())
+                .setTtl(getRemainingTtl());
+
+        fileInfo.setLength(fileInfo.getLength() + data.length);
+        inFlight += data.length;
+        // The chunk is already in memory, it is counted even if it takes the budget over
+        budget.reserve(data.length);
+
+        // A chunk held back by the tenant's quota stays in flight, so the write queue fills and the upload pauses
+        promises.add(quota.submit(data.length, () -> stream.submit(data.length, () -> binaryStoreManager.storeChunk(chunkInfo)))
+                .then(
+                        aVoid -> {
+                            // Time until the first chunk of the upload is persisted
+                            if (stored++ == 0) {
+                                firstChunk = System.nanoTime() - started;
+                                firstByteTimer.update(firstChunk, TimeUnit.NANOSECONDS);
+                            }
+                            writeBytes.mark(data.length);
+                            inFlight -= data.length;
+                            budget.release(data.length);
+                            if (pooled) {
+                                bufferPool.release(data);
+                            }
+                            checkDrained();
+                            return when.resolve(aVoid);
+                        },
+                        t -> {
+                            // A failed write may still be queued on a connection, its array is left to the garbage collector
+                            inFlight -= data.length;
+                            budget.release(data.length);
+                            // The upload can't commit without this chunk, no need to wait for it to end
+                            result.reject(t);
+                            if (exceptionHandler != null) {
+                                exceptionHandler.handle(t);
+                            }
+                            return when.reject(t);
+                        }));
+
+    }
+
+    private int checksum(byte[] data) {
+
+        // Hash the chunk bytes once as they are cut, chunks are cut in order so the file hash can be rolled forward
+        Timer.Context context = checksumTimer.time();
+        try {
+            fileHasher.putBytes(data);
+            return Hashing.crc32c().hashBytes(data).asInt();
+        } finally {
+            context.stop();
+        }
+
+    }
+
+    private void checkDrained() {
+        if (drainHandler != null && inFlight <= maxSize / 2) {
+            if (budget.isExhausted()) {
+                // Other streams hold the budget, resume once they release some of it
+                if (!waitingForBudget) {
+                    waitingForBudget = true;
+                    budget.whenAvailable().then(aVoid -> {
+                        waitingForBudget = false;
+                        checkDrained();
+                        return null;
+                    });
+                }
+                return;
+            }
+            Handler<Void> handler = drainHandler;
+            drainHandler = null;
+            handler.handle(null);
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.MemoryBudget;
+import com.englishtown.vertx.cassandra.binarystore.MemoryBudgetOptions;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import javax.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.MemoryBudget}
+ */
+public class DefaultMemoryBudget implements MemoryBudget {
+
+    private final MemoryBudgetOptions options;
+    private final Timer waitTimer;
+    private final When when;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private long used;
+
+    @Inject
+    public DefaultMemoryBudget(BinaryStoreConfigurator configurator, MetricRegistry registry, When when) {
+        this(configurator.getMemoryBudgetOptions(), registry, when);
+    }
+
+    public DefaultMemoryBudget(MemoryBudgetOptions options, MetricRegistry registry, When when) {
+        this.options = options;
+        this.when = when;
+
+        waitTimer = registry.timer(name(Metrics.BASE_NAME, "memory", "wait"));
+
+        if (options.isEnabled()) {
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, "memory", "used"), this::getUsed);
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, "memory", "max"), options::getMaxBytes);
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, "memory", "waiting"), () -> (long) getWaiting());
+        }
+    }
+
+    @Override
+    public Promise<Void> acquire(long bytes) {
+
+        if (!options.isEnabled()) {
+            return when.resolve(null);
+        }
+
+        Waiter waiter;
+
+        synchronized (this) {
+            if (waiters.isEmpty() && fits(bytes)) {
+                used += bytes;
+                return when.resolve(null);
+            }
+            // Waiters queue in order so large chunks are not starved by small ones
+            waiter = new Waiter(bytes, when.defer(), Vertx.currentContext());
+            waiters.addLast(waiter);
+        }
+
+        return waiter.deferred.getPromise();
+    }
+
+    @Override
+    public boolean tryAcquire(long bytes) {
+
+        if (!options.isEnabled()) {
+            return true;
+        }
+
+        synchronized (this) {
+            if (waiters.isEmpty() && fits(bytes)) {
+                used += bytes;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void reserve(long bytes) {
+        if (options.isEnabled()) {
+            synchronized (this) {
+                used += bytes;
+            }
+        }
+    }
+
+    @Override
+    public void release(long bytes) {
+
+        if (!options.isEnabled()) {
+            return;
+        }
+
+        List<Waiter> granted;
+        synchronized (this) {
+            used -= bytes;
+            granted = poll();
+        }
+
+        for (Waiter waiter : granted) {
+            waiter.grant();
+        }
+    }
+
+    @Override
+    public synchronized boolean isExhausted() {
+        return options.isEnabled() && used >= options.getMaxBytes();
+    }
+
+    @Override
+    public Promise<Void> whenAvailable() {
+        return acquire(0);
+    }
+
+    @Override
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * Requests waiting for bytes
+     *
+     * @return
+     */
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    private boolean fits(long bytes) {
+        if (bytes == 0) {
+            return used < options.getMaxBytes();
+        }
+        return used + bytes <= options.getMaxBytes() || used == 0;
+    }
+
+    private List<Waiter> poll() {
+
+        List<Waiter> granted = Collections.emptyList();
+
+        while (!waiters.isEmpty() && fits(waiters.peekFirst().bytes)) {
+            Waiter waiter = waiters.pollFirst();
+            used += waiter.bytes;
+            if (granted.isEmpty()) {
+                granted = new ArrayList<>();
+            }
+            granted.add(waiter);
+        }
+
+        return granted;
+    }
+
+    private class Waiter {
+
+        private final long bytes;
+        private final Deferred<Void> deferred;
+        private final Context context;
+        private final long queued = System.nanoTime();
+
+        public Waiter(long bytes, Deferred<Void> deferred, Context context) {
+            this.bytes = bytes;
+            this.deferred = deferred;
+            this.context = context;
+        }
+
+        public void grant() {
+            waitTimer.update(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+            // Bytes are usually released from another event loop
+            if (context == null || context == Vertx.currentContext()) {
+                deferred.resolve((Void) null);
+            } else {
+                context.runOnContext(aVoid -> deferred.resolve((Void) null));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.englishtown.vertx.cassandra.binarystore.*;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.MetricsExporter}
+ */
+public class DefaultMetricsExporter implements MetricsExporter {
+
+    public static final String PROMETHEUS_PREFIX = "binarystore";
+
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.98, 0.99, 0.999};
+    private static final double SECONDS_PER_NANO = 1.0 / TimeUnit.SECONDS.toNanos(1);
+
+    private final MetricRegistry registry;
+    private final MetricsOptions options;
+    private final BinaryStoreStatements statements;
+    private JmxReporter jmxReporter;
+
+    @Inject
+    public DefaultMetricsExporter(MetricRegistry registry, BinaryStoreConfigurator configurator, BinaryStoreStatements statements) {
+        this.registry = registry;
+        this.options = configurator.getMetricsOptions();
+        this.statements = statements;
+    }
+
+    @Override
+    public void start() {
+
+        if (!options.isJmxEnabled() || jmxReporter != null) {
+            return;
+        }
+
+        jmxReporter = JmxReporter.forRegistry(registry)
+                .inDomain(options.getJmxDomain())
+                .filter(MetricFilter.ALL)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .build();
+        jmxReporter.start();
+
+    }
+
+    @Override
+    public void stop() {
+        if (jmxReporter != null) {
+            jmxReporter.stop();
+            jmxReporter = null;
+        }
+    }
+
+    @Override
+    public String scrape() {
+
+        // Every sample of a metric name has to follow its TYPE line, files and chunks share names
+        Map<String, Family> families = new TreeMap<>();
+        String prefix = Metrics.BASE_NAME + ".";
+
+        for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                addMetric(families, entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Family family : families.values()) {
+            sb.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (String sample : family.samples) {
+                sb.append(sample).append('\n');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private void addMetric(Map<String, Family> families, String name, Metric metric) {
+
+        String[] parts = name.split("\\.");
+        String label = null;
+        String labelValue = null;
+        int first = 0;
+
+        if (parts.length > 2 && (parts[1].equals("lane") || parts[1].equals("tenant"))) {
+            // <lane>.lane.<metric> and <tenant>.tenant.<metric>, the segment naming the lane or tenant is dropped
+            label = parts[1];
+            labelValue = parts[0];
+            first = 1;
+        } else if (parts.length > 1 && (parts[0].equals("files") || parts[0].equals("chunks"))) {
+            // <files|chunks>.<metric> from Metrics and the hedgers
+            label = "type";
+            labelValue = parts[0];
+            first = 1;
+        }
+
+        // Segments naming one of several files, chunks, lanes or tenants become labels, so their series share a family
+        StringBuilder sb = new StringBuilder(PROMETHEUS_PREFIX);
+        for (int i = first; i < parts.length; i++) {
+            sb.append('_').append(sanitize(parts[i]));
+        }
+        String base = sb.toString();
+
+        String labels = getLabels(label, labelValue);
+        Long sum = (metric instanceof HdrMetricRegistry.Summed ? ((HdrMetricRegistry.Summed) metric).getSum() : null);
+
+        if (metric instanceof Timer) {
+            Timer timer = (Timer) metric;
+            addSummary(families, base + "_seconds", labels, timer.getSnapshot(), timer.getCount(), sum, SECONDS_PER_NANO);
+        } else if (metric instanceof Histogram) {
+            Histogram histogram = (Histogram) metric;
+            addSummary(families, base, labels, histogram.getSnapshot(), histogram.getCount(), sum, 1);
+        } else if (metric instanceof Meter) {
+            addSample(families, base + "_total", "counter", base + "_total" + labels(labels, null), ((Meter) metric).getCount());
+        } else if (metric instanceof Counter) {
+            // Counters such as the requests in flight go down as well as up
+            addSample(families, base, "gauge", base + labels(labels, null), ((Counter) metric).getCount());
+        } else if (metric instanceof Gauge) {
+            Object value = ((Gauge<?>) metric).getValue();
+            if (value instanceof Number) {
+                addSample(families, base, "gauge", base + labels(labels, null), ((Number) value).doubleValue());
+            }
+        }
+
+    }
+
+    private void addSummary(Map<String, Family> families, String name, String labels, Snapshot snapshot, long count,
+                            Long sum, double factor) {
+
+        for (double quantile : QUANTILES) {
+            addSample(families, name, "summary", name + labels(labels, "quantile=\"" + quantile + "\""), snapshot.getValue(quantile) * factor);
+        }
+
+        if (sum != null) {
+            addSample(families, name, "summary", name + "_sum" + labels(labels, null), sum * factor);
+        }
+        addSample(families, name, "summary", name + "_count" + labels(labels, null), count);
+
+    }
+
+    private void addSample(Map<String, Family> families, String name, String type, String series, double value) {
+
+        Family family = families.get(name);
+        if (family == null) {
+            family = new Family(name, type);
+            families.put(name, family);
+        } else if (!family.type.equals(type)) {
+            // Two kinds of metric ended up with the same name, keep the first rather than emit an invalid family
+            return;
+        }
+
+        family.samples.add(series + " " + format(value));
+    }
+
+    private String getLabels(String label, String value) {
+
+        StringBuilder sb = new StringBuilder();
+
+        String keyspace = statements.getKeyspace();
+        if (keyspace != null) {
+            sb.append("keyspace=\"").append(escape(keyspace)).append('"');
+        }
+        if (label != null) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(label).append("=\"").append(escape(value)).append('"');
+        }
+
+        return sb.toString();
+    }
+
+    private static String labels(String labels, String extra) {
+
+        if (extra != null) {
+            labels = (labels.isEmpty() ? extra : labels + "," + extra);
+        }
+
+        return (labels.isEmpty() ? "" : "{" + labels + "}");
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static String sanitize(String part) {
+        return part.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class Family {
+
+        private final String name;
+        private final String type;
+        private final List<String> samples = new ArrayList<>();
+
+        public Family(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+    }
+
+}
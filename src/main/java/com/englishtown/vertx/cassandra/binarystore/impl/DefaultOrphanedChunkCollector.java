@@ -0,0 +1,306 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TokenRange;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.*;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.inject.Inject;
+import java.math.BigInteger;
+import java.util.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.OrphanedChunkCollector}
+ */
+public class DefaultOrphanedChunkCollector implements OrphanedChunkCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultOrphanedChunkCollector.class);
+    private static final int MAX_CACHED_FILES = 1000;
+
+    private final WhenCassandraSession session;
+    private final BinaryStoreStatements statements;
+    private final BinaryStoreManager binaryStoreManager;
+    private final OrphanedChunkCollectorOptions options;
+    private final Vertx vertx;
+    private final When when;
+
+    private final Counter scannedChunks;
+    private final Counter reclaimedChunks;
+    private final Counter reclaimedBytes;
+    private final Counter errors;
+
+    private long timerId = -1;
+    private Sweep current;
+
+    @Inject
+    public DefaultOrphanedChunkCollector(
+            WhenCassandraSession session,
+            BinaryStoreStatements statements,
+            BinaryStoreManager binaryStoreManager,
+            BinaryStoreConfigurator configurator,
+            MetricRegistry registry,
+            Vertx vertx,
+            When when) {
+        this.session = session;
+        this.statements = statements;
+        this.binaryStoreManager = binaryStoreManager;
+        this.options = configurator.getOrphanedChunkCollectorOptions();
+        this.vertx = vertx;
+        this.when = when;
+
+        scannedChunks = registry.counter(name(Metrics.BASE_NAME, "gc", "scanned", "chunks"));
+        reclaimedChunks = registry.counter(name(Metrics.BASE_NAME, "gc", "reclaimed", "chunks"));
+        reclaimedBytes = registry.counter(name(Metrics.BASE_NAME, "gc", "reclaimed", "bytes"));
+        errors = registry.counter(name(Metrics.BASE_NAME, "gc", "errors"));
+    }
+
+    @Override
+    public void start() {
+
+        if (!options.isEnabled() || timerId >= 0) {
+            return;
+        }
+
+        timerId = vertx.setPeriodic(options.getInterval(), id -> {
+            if (current != null) {
+                // Previous sweep is still running
+                return;
+            }
+            sweep().otherwise(t -> {
+                logger.error("Error sweeping orphaned chunks", t);
+                return null;
+            });
+        });
+
+    }
+
+    @Override
+    public void stop() {
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+        if (current != null) {
+            current.cancelled = true;
+        }
+    }
+
+    @Override
+    public Promise<Long> sweep() {
+
+        if (current != null) {
+            return when.reject(new IllegalStateException("A sweep is already in progress"));
+        }
+
+        long cutoff = (System.currentTimeMillis() - options.getGracePeriod()) * 1000;
+        Sweep sweep = new Sweep(getTokenRanges(), cutoff);
+        current = sweep;
+
+        // Walks the token ring one range at a time, first over the chunks table and then over the block chunks
+        return scan(sweep, statements.getScanChunks(), statements.getDeleteChunk(), 0, null)
+                .then(aVoid -> scan(sweep, statements.getScanBlocks(), statements.getDeleteBlocks(), 0, null))
+                .then(
+                        aVoid -> {
+                            current = null;
+                            logger.debug("Orphaned chunk sweep reclaimed " + sweep.chunks + " chunks, about " + sweep.bytes + " bytes");
+                            return when.resolve(sweep.chunks);
+                        },
+                        t -> {
+                            current = null;
+                            errors.inc();
+                            return when.reject(t);
+                        });
+
+    }
+
+    private List<TokenRange> getTokenRanges() {
+
+        Metadata metadata = session.getMetadata();
+        List<TokenRange> ranges = new ArrayList<>();
+
+        for (TokenRange range : metadata.getTokenRanges()) {
+            for (TokenRange unwrapped : range.unwrap()) {
+                if (!unwrapped.isEmpty()) {
+                    ranges.add(unwrapped);
+                }
+            }
+        }
+
+        Collections.sort(ranges);
+        return ranges;
+    }
+
+    private Promise<Void> scan(Sweep sweep, PreparedStatement scan, PreparedStatement delete, int index, PagingState pagingState) {
+
+        if (sweep.cancelled || index >= sweep.ranges.size()) {
+            return when.resolve(null);
+        }
+
+        TokenRange range = sweep.ranges.get(index);
+
+        BoundStatement select = scan.bind()
+                .setToken(0, range.getStart())
+                .setToken(1, getEnd(range));
+
+        select.setFetchSize(options.getPageSize());
+        if (pagingState != null) {
+            select.setPagingState(pagingState);
+        }
+
+        return session.executeAsync(select)
+                .then(rs -> {
+                    PagingState next = rs.getExecutionInfo().getPagingState();
+
+                    // Only consume the current page, iterating further would block on fetching the next one
+                    int count = rs.getAvailableWithoutFetching();
+                    List<Row> rows = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        rows.add(rs.one());
+                    }
+                    scannedChunks.inc(count);
+
+                    return collect(sweep, delete, rows, 0)
+                            .then(aVoid -> throttle(count))
+                            .then(aVoid -> (next == null
+                                    ? scan(sweep, scan, delete, index + 1, null)
+                                    : scan(sweep, scan, delete, index, next)));
+                });
+
+    }
+
+    private Token getEnd(TokenRange range) {
+
+        Token end = range.getEnd();
+        if (end.compareTo(range.getStart()) > 0) {
+            return end;
+        }
+
+        // An unwrapped range ending at the minimum token covers everything up to the maximum token
+        Object value = end.getValue();
+        if (value instanceof Long) {
+            return session.getMetadata().newToken(String.valueOf(Long.MAX_VALUE));
+        }
+        if (value instanceof BigInteger) {
+            return session.getMetadata().newToken(BigInteger.ONE.shiftLeft(127).toString());
+        }
+        return end;
+    }
+
+    private Promise<Void> collect(Sweep sweep, PreparedStatement delete, List<Row> rows, int i) {
+
+        if (sweep.cancelled || i >= rows.size()) {
+            return when.resolve(null);
+        }
+
+        Row row = rows.get(i);
+        UUID id = row.getUUID(0);
+        int n = row.getInt(1);
+
+        Promise<Void> p;
+
+        // A block chunk written without a checksum has no write time to go by, so it is left alone
+        if (row.isNull(2) || row.getLong(2) > sweep.cutoff) {
+            // Could still be part of an upload in progress
+            p = when.resolve(null);
+        } else {
+            p = getOrphanedChunkSize(sweep, id)
+                    .then(chunkSize -> (chunkSize > 0 ? reclaim(sweep, delete, id, n, chunkSize) : when.resolve(null)));
+        }
+
+        return p.then(aVoid -> collect(sweep, delete, rows, i + 1));
+    }
+
+    /**
+     * The chunk size of a file if its chunks are orphaned, or 0 if it is still in use
+     */
+    private Promise<Integer> getOrphanedChunkSize(Sweep sweep, UUID id) {
+
+        Integer chunkSize = sweep.files.get(id);
+        if (chunkSize != null) {
+            return when.resolve(chunkSize);
+        }
+
+        return binaryStoreManager.loadFile(id)
+                .then(fileInfo -> {
+                    if (fileInfo == null) {
+                        sweep.files.put(id, DefaultBinaryStoreWriter.DEFAULT_CHUNK_SIZE);
+                        return when.resolve(DefaultBinaryStoreWriter.DEFAULT_CHUNK_SIZE);
+                    }
+
+                    if (fileInfo.getStatus() != FileStatus.PENDING || fileInfo.getUploadDate() * 1000 > sweep.cutoff) {
+                        sweep.files.put(id, 0);
+                        return when.resolve(0);
+                    }
+
+                    // An upload that never committed, drop its file record along with the chunks
+                    int orphanedChunkSize = (fileInfo.getChunkSize() > 0 ? fileInfo.getChunkSize() : DefaultBinaryStoreWriter.DEFAULT_CHUNK_SIZE);
+                    return session.executeAsync(statements.getDeleteFile().bind(id))
+                            .then(rs -> {
+                                sweep.files.put(id, orphanedChunkSize);
+                                return when.resolve(orphanedChunkSize);
+                            });
+                });
+    }
+
+    private Promise<Void> reclaim(Sweep sweep, PreparedStatement delete, UUID id, int n, int chunkSize) {
+
+        // The scan only reads keys, so the bytes are estimated rather than reading each blob just to delete it
+        return session.executeAsync(delete.bind(id, n))
+                .then(rs -> {
+                    sweep.chunks++;
+                    sweep.bytes += chunkSize;
+                    reclaimedChunks.inc();
+                    reclaimedBytes.inc(chunkSize);
+                    return null;
+                });
+    }
+
+    private Promise<Void> throttle(int count) {
+
+        long delay = count * 1000L / Math.max(1, options.getMaxRowsPerSecond());
+        if (delay <= 0) {
+            return when.resolve(null);
+        }
+
+        Deferred<Void> d = when.defer();
+        vertx.setTimer(delay, id -> d.resolve((Void) null));
+        return d.getPromise();
+    }
+
+    private static class Sweep {
+
+        final List<TokenRange> ranges;
+        final long cutoff;
+        final Map<UUID, Integer> files = new LinkedHashMap<UUID, Integer>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Integer> eldest) {
+                return size() > MAX_CACHED_FILES;
+            }
+        };
+
+        long chunks;
+        long bytes;
+        boolean cancelled;
+
+        Sweep(List<TokenRange> ranges, long cutoff) {
+            this.ranges = ranges;
+            this.cutoff = cutoff;
+        }
+    }
+
+}
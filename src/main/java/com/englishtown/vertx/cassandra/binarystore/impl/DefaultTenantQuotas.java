@@ -0,0 +1,188 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.FileInfo;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import com.englishtown.vertx.cassandra.binarystore.QuotaOptions;
+import com.englishtown.vertx.cassandra.binarystore.TenantQuotaOptions;
+import com.englishtown.vertx.cassandra.binarystore.TenantQuotas;
+import io.vertx.core.Vertx;
+
+import javax.inject.Inject;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.TenantQuotas}
+ */
+public class DefaultTenantQuotas implements TenantQuotas {
+
+    private static final Quota UNLIMITED = new UnlimitedTenantQuotas().forFile(null);
+
+    private final QuotaOptions options;
+    private final MetricRegistry registry;
+    private final Vertx vertx;
+    private final When when;
+
+    private final ConcurrentMap<String, DefaultQuota> quotas = new ConcurrentHashMap<>();
+
+    @Inject
+    public DefaultTenantQuotas(BinaryStoreConfigurator configurator, MetricRegistry registry, Vertx vertx, When when) {
+        this(configurator.getQuotaOptions(), registry, vertx, when);
+    }
+
+    public DefaultTenantQuotas(QuotaOptions options, MetricRegistry registry, Vertx vertx, When when) {
+        this.options = options;
+        this.registry = registry;
+        this.vertx = vertx;
+        this.when = when;
+    }
+
+    @Override
+    public Quota forFile(FileInfo fileInfo) {
+
+        if (!options.isEnabled()) {
+            return UNLIMITED;
+        }
+
+        String tenant = getTenant(fileInfo);
+        DefaultQuota quota = quotas.get(tenant);
+
+        if (quota == null) {
+            // Tenants come from file metadata, beyond the limit they share the default tenant's quota and metrics
+            if (quotas.size() >= options.getMaxTenants() && !options.getTenants().containsKey(tenant)) {
+                tenant = options.getDefaultTenant();
+            }
+            quota = quotas.computeIfAbsent(tenant, t -> new DefaultQuota(t, options.getQuota(t)));
+        }
+
+        return quota;
+    }
+
+    private String getTenant(FileInfo fileInfo) {
+        String tenant = (fileInfo.getMetadata() == null ? null : fileInfo.getMetadata().get(options.getTenantField()));
+        return (tenant == null || tenant.isEmpty() ? options.getDefaultTenant() : tenant);
+    }
+
+    /**
+     * Metric names take the tenant as a segment, so it may not contain dots
+     *
+     * @param tenant
+     * @return
+     */
+    static String metricName(String tenant) {
+        return tenant.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    /**
+     * A token bucket that can go into debt
+     */
+    static class TokenBucket {
+
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long updated;
+
+        /**
+         * @param rate     tokens added per second, 0 for no limit
+         * @param capacity tokens the bucket holds when full
+         * @param now      current time in nanoseconds
+         */
+        public TokenBucket(double rate, double capacity, long now) {
+            this.rate = rate;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.updated = now;
+        }
+
+        /**
+         * Takes tokens from the bucket
+         *
+         * @param amount
+         * @param now    current time in nanoseconds
+         * @return nanoseconds until the bucket is out of debt
+         */
+        public synchronized long take(double amount, long now) {
+
+            if (rate <= 0) {
+                return 0;
+            }
+
+            tokens = Math.min(capacity, tokens + (now - updated) * rate / TimeUnit.SECONDS.toNanos(1));
+            updated = now;
+            tokens -= amount;
+
+            return (tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * TimeUnit.SECONDS.toNanos(1)));
+        }
+
+    }
+
+    private class DefaultQuota implements Quota {
+
+        private final String tenant;
+        private final TokenBucket bytes;
+        private final TokenBucket ops;
+        private final Meter bytesMeter;
+        private final Meter opsMeter;
+        private final Timer throttled;
+
+        public DefaultQuota(String tenant, TenantQuotaOptions quota) {
+            this.tenant = tenant;
+
+            long now = System.nanoTime();
+            bytes = new TokenBucket(quota.getBytesPerSecond(), quota.getBytesPerSecond() * quota.getBurstSeconds(), now);
+            ops = new TokenBucket(quota.getOpsPerSecond(), Math.max(1, quota.getOpsPerSecond() * quota.getBurstSeconds()), now);
+
+            String metric = metricName(tenant);
+            bytesMeter = registry.meter(name(Metrics.BASE_NAME, metric, "tenant", "bytes"));
+            opsMeter = registry.meter(name(Metrics.BASE_NAME, metric, "tenant", "ops"));
+            throttled = registry.timer(name(Metrics.BASE_NAME, metric, "tenant", "throttled"));
+        }
+
+        @Override
+        public String getTenant() {
+            return tenant;
+        }
+
+        @Override
+        public <T> Promise<T> submit(long size, Supplier<Promise<T>> operation) {
+
+            bytesMeter.mark(size);
+            opsMeter.mark();
+
+            long now = System.nanoTime();
+            // Tokens are taken straight away, later operations wait behind this one's debt so they start in order
+            long delay = Math.max(bytes.take(size, now), ops.take(1, now));
+
+            if (delay == 0) {
+                return operation.get();
+            }
+
+            throttled.update(delay, TimeUnit.NANOSECONDS);
+
+            // The timer runs on the calling context, so the operation starts where it would have without the quota
+            Deferred<T> d = when.defer();
+            vertx.setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(delay)), id -> {
+                try {
+                    d.resolve(operation.get());
+                } catch (RuntimeException e) {
+                    d.reject(e);
+                }
+            });
+            return d.getPromise();
+        }
+
+    }
+
+}
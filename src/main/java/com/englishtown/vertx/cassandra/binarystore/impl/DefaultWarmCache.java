@@ -0,0 +1,300 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.vertx.cassandra.binarystore.*;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Default implementation of {@link com.englishtown.vertx.cassandra.binarystore.WarmCache}
+ */
+public class DefaultWarmCache implements WarmCache {
+
+    // Loaded entries are only cached from their second read on, so a one off read of a large file doesn't push out
+    // the hot chunks
+    private static final int ADMIT_READS = 2;
+    private static final int FILE_RECORD = -1;
+
+    private final WarmCacheOptions options;
+    private final ChunkBufferPool bufferPool;
+    private final Counter hits;
+    private final Counter misses;
+
+    private final Cache<UUID, FileInfo> files;
+    private final Cache<Key, ChunkInfo> chunks;
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final CountMinSketch sketch;
+    private final Set<Key> candidates = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    @Inject
+    public DefaultWarmCache(BinaryStoreConfigurator configurator, ChunkBufferPool bufferPool, MetricRegistry registry) {
+        this(configurator.getWarmCacheOptions(), bufferPool, registry);
+    }
+
+    public DefaultWarmCache(WarmCacheOptions options, ChunkBufferPool bufferPool, MetricRegistry registry) {
+        this.options = options;
+        this.bufferPool = bufferPool;
+
+        hits = registry.counter(name(Metrics.BASE_NAME, "warmcache", "hits"));
+        misses = registry.counter(name(Metrics.BASE_NAME, "warmcache", "misses"));
+
+        files = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(1, options.getMaxKeys()))
+                .expireAfterWrite(options.getExpireAfter(), TimeUnit.MILLISECONDS)
+                .build();
+
+        // A single segment, Guava splits the weight between segments and chunks are large compared with the cache
+        chunks = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(options.getMaxBytes())
+                .weigher((Key key, ChunkInfo chunkInfo) -> chunkInfo.getData().length)
+                .expireAfterWrite(options.getExpireAfter(), TimeUnit.MILLISECONDS)
+                .removalListener(notification -> cachedBytes.addAndGet(-notification.getValue().getData().length))
+                .build();
+
+        // Wide enough that the candidates rarely collide
+        sketch = new CountMinSketch(options.isEnabled() ? options.getMaxKeys() * 16 : 0);
+
+        if (options.isEnabled()) {
+            Metrics.registerGauge(registry, name(Metrics.BASE_NAME, "warmcache", "bytes"), this::getCachedBytes);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return options.isEnabled();
+    }
+
+    @Override
+    public FileInfo getFile(UUID id) {
+
+        if (!options.isEnabled()) {
+            return null;
+        }
+
+        count(new Key(id, FILE_RECORD));
+
+        FileInfo cached = peekFile(id);
+        if (cached == null) {
+            misses.inc();
+            return null;
+        }
+
+        hits.inc();
+        return cached;
+    }
+
+    @Override
+    public FileInfo peekFile(UUID id) {
+
+        if (!options.isEnabled()) {
+            return null;
+        }
+
+        FileInfo cached = files.getIfPresent(id);
+        return (cached == null ? null : new FileInfo(cached));
+    }
+
+    @Override
+    public void offerFile(FileInfo fileInfo) {
+        if (options.isEnabled() && estimate(new Key(fileInfo.getId(), FILE_RECORD)) >= ADMIT_READS) {
+            putFile(fileInfo);
+        }
+    }
+
+    @Override
+    public void putFile(FileInfo fileInfo) {
+        // A pending upload's record changes once it commits
+        if (options.isEnabled() && fileInfo.getStatus() == FileStatus.COMMITTED) {
+            files.put(fileInfo.getId(), new FileInfo(fileInfo));
+        }
+    }
+
+    @Override
+    public ChunkInfo getChunk(UUID id, int n) {
+
+        if (!options.isEnabled()) {
+            return null;
+        }
+
+        count(new Key(id, n));
+
+        ChunkInfo cached = peekChunk(id, n);
+        if (cached == null) {
+            misses.inc();
+            return null;
+        }
+
+        hits.inc();
+        return cached;
+    }
+
+    @Override
+    public ChunkInfo peekChunk(UUID id, int n) {
+
+        if (!options.isEnabled()) {
+            return null;
+        }
+
+        ChunkInfo cached = chunks.getIfPresent(new Key(id, n));
+        if (cached == null) {
+            return null;
+        }
+
+        // Cached arrays never leave the cache, readers get a pooled copy they can return to the pool as usual
+        byte[] data = bufferPool.acquire(cached.getData().length);
+        System.arraycopy(cached.getData(), 0, data, 0, data.length);
+
+        return copy(cached, data);
+    }
+
+    @Override
+    public void offerChunk(ChunkInfo chunkInfo) {
+        if (options.isEnabled() && estimate(new Key(chunkInfo.getId(), chunkInfo.getNum())) >= ADMIT_READS) {
+            putChunk(chunkInfo);
+        }
+    }
+
+    @Override
+    public void putChunk(ChunkInfo chunkInfo) {
+
+        if (!options.isEnabled() || chunkInfo.getData().length > options.getMaxBytes()) {
+            return;
+        }
+
+        // The caller's array may be returned to the pool, so the cache keeps an array of its own
+        ChunkInfo cached = copy(chunkInfo, chunkInfo.getData().clone());
+
+        cachedBytes.addAndGet(cached.getData().length);
+        chunks.put(new Key(chunkInfo.getId(), chunkInfo.getNum()), cached);
+    }
+
+    private static ChunkInfo copy(ChunkInfo chunkInfo, byte[] data) {
+        return new ChunkInfo()
+                .setId(chunkInfo.getId())
+                .setNum(chunkInfo.getNum())
+                .setData(data)
+                .setChecksum(chunkInfo.getChecksum())
+                .setTtl(chunkInfo.getTtl())
+                .setBlockSize(chunkInfo.getBlockSize());
+    }
+
+    @Override
+    public void invalidate(UUID id) {
+
+        if (!options.isEnabled()) {
+            return;
+        }
+
+        files.invalidate(id);
+
+        List<Key> keys = new ArrayList<>();
+        for (Key key : chunks.asMap().keySet()) {
+            if (key.id.equals(id)) {
+                keys.add(key);
+            }
+        }
+        chunks.invalidateAll(keys);
+    }
+
+    @Override
+    public List<ChunkInfo> getPopularChunks() {
+
+        List<Key> keys = sortedCandidates();
+        List<ChunkInfo> popular = new ArrayList<>();
+
+        for (Key key : keys.subList(0, Math.min(options.getMaxKeys(), keys.size()))) {
+            popular.add(new ChunkInfo().setId(key.id).setNum(key.n));
+        }
+
+        return popular;
+    }
+
+    @Override
+    public long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    private void count(Key key) {
+
+        // Every chunk read passes through here, so nothing on this path takes a lock
+        sketch.add(key.hashCode());
+
+        if (key.n == FILE_RECORD || options.getMaxKeys() == 0) {
+            return;
+        }
+
+        candidates.add(key);
+
+        // Pruning only once twice the keys are held spreads the sort over many reads, and one thread prunes at a time
+        if (candidates.size() > 2 * options.getMaxKeys() && pruning.compareAndSet(false, true)) {
+            try {
+                List<Key> keys = sortedCandidates();
+                candidates.removeAll(keys.subList(options.getMaxKeys(), keys.size()));
+            } finally {
+                pruning.set(false);
+            }
+        }
+    }
+
+    private int estimate(Key key) {
+        return sketch.estimate(key.hashCode());
+    }
+
+    /**
+     * The candidates by their current estimate, highest first
+     */
+    private List<Key> sortedCandidates() {
+        // Estimates keep changing under concurrent reads, so each key's is taken once before sorting
+        List<Key> keys = new ArrayList<>(candidates);
+        Map<Key, Integer> estimates = new HashMap<>();
+        for (Key key : keys) {
+            estimates.put(key, estimate(key));
+        }
+        keys.sort((a, b) -> Integer.compare(estimates.get(b), estimates.get(a)));
+        return keys;
+    }
+
+    private static final class Key {
+
+        private final UUID id;
+        private final int n;
+
+        private Key(UUID id, int n) {
+            this.id = id;
+            this.n = n;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (!(obj instanceof Key)) return false;
+
+            Key other = (Key) obj;
+            return n == other.n && Objects.equals(id, other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id.hashCode() + n;
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.promises.Promise;
+import com.englishtown.vertx.cassandra.binarystore.ChunkScheduler;
+
+import java.util.function.Supplier;
+
+/**
+ * {@link ChunkScheduler} that starts every chunk operation as soon as it is submitted
+ */
+public class DirectChunkScheduler implements ChunkScheduler {
+
+    private static final Stream STREAM = new Stream() {
+        @Override
+        public <T> Promise<T> submit(long bytes, Supplier<Promise<T>> operation) {
+            return operation.get();
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Override
+    public Stream open() {
+        return STREAM;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.vertx.cassandra.binarystore.ChunkInfo;
+import com.englishtown.vertx.cassandra.binarystore.FileInfo;
+import com.englishtown.vertx.cassandra.binarystore.WarmCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link WarmCache} that caches nothing, so every read goes to Cassandra
+ */
+public class DisabledWarmCache implements WarmCache {
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public FileInfo getFile(UUID id) {
+        return null;
+    }
+
+    @Override
+    public FileInfo peekFile(UUID id) {
+        return null;
+    }
+
+    @Override
+    public void offerFile(FileInfo fileInfo) {
+    }
+
+    @Override
+    public void putFile(FileInfo fileInfo) {
+    }
+
+    @Override
+    public ChunkInfo getChunk(UUID id, int n) {
+        return null;
+    }
+
+    @Override
+    public ChunkInfo peekChunk(UUID id, int n) {
+        return null;
+    }
+
+    @Override
+    public void offerChunk(ChunkInfo chunkInfo) {
+    }
+
+    @Override
+    public void putChunk(ChunkInfo chunkInfo) {
+    }
+
+    @Override
+    public void invalidate(UUID id) {
+    }
+
+    @Override
+    public List<ChunkInfo> getPopularChunks() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public long getCachedBytes() {
+        return 0;
+    }
+
+}
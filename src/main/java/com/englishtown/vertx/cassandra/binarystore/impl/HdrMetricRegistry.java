@@ -0,0 +1,86 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Metric registry whose timers and histograms record into an {@link HdrReservoir} instead of the default decaying
+ * sample, so tail latencies are not lost to sampling.  They also keep the sum of the values recorded, see
+ * {@link Summed}.
+ */
+public class HdrMetricRegistry extends MetricRegistry {
+
+    @Override
+    public Timer timer(String name) {
+        return getOrRegister(name, Timer.class, new SummedTimer(new HdrReservoir()));
+    }
+
+    @Override
+    public Histogram histogram(String name) {
+        return getOrRegister(name, Histogram.class, new SummedHistogram(new HdrReservoir()));
+    }
+
+    private <T extends Metric> T getOrRegister(String name, Class<T> type, T metric) {
+
+        Metric existing = getMetrics().get(name);
+
+        if (existing == null) {
+            try {
+                return register(name, metric);
+            } catch (IllegalArgumentException e) {
+                // Registered concurrently
+                existing = getMetrics().get(name);
+            }
+        }
+
+        if (type.isInstance(existing)) {
+            return type.cast(existing);
+        }
+
+        throw new IllegalArgumentException(name + " is already used for a different type of metric");
+    }
+
+    /**
+     * A timer or histogram that keeps the sum of every value it recorded, in nanoseconds for timers
+     */
+    public interface Summed {
+
+        long getSum();
+
+    }
+
+    private static class SummedTimer extends Timer implements Summed {
+
+        private final HdrReservoir reservoir;
+
+        public SummedTimer(HdrReservoir reservoir) {
+            super(reservoir);
+            this.reservoir = reservoir;
+        }
+
+        @Override
+        public long getSum() {
+            return reservoir.getSum();
+        }
+
+    }
+
+    private static class SummedHistogram extends Histogram implements Summed {
+
+        private final HdrReservoir reservoir;
+
+        public SummedHistogram(HdrReservoir reservoir) {
+            super(reservoir);
+            this.reservoir = reservoir;
+        }
+
+        @Override
+        public long getSum() {
+            return reservoir.getSum();
+        }
+
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reservoir that counts values in HdrHistogram style log-linear buckets.
+ * <p>
+ * Each power of two range is split into 64 buckets, so quantiles are within 1% of the recorded values whatever their
+ * magnitude.  Recording is a single atomic increment with no allocation or locking, and memory is fixed at two
+ * arrays of bucket counts.  Snapshots cover the current and the previous window, so quantiles follow the recent load
+ * rather than the whole uptime.  The sum of every value recorded is kept as well, for summaries that report a total.
+ */
+public class HdrReservoir implements Reservoir {
+
+    public static final long DEFAULT_WINDOW_SECONDS = 60;
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int LENGTH = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 2) * SUB_BUCKET_HALF_COUNT;
+
+    private final Clock clock;
+    private final long window;
+
+    private volatile AtomicLongArray current = new AtomicLongArray(LENGTH);
+    private volatile AtomicLongArray previous = new AtomicLongArray(LENGTH);
+    private volatile long rotateAt;
+    private final LongAdder sum = new LongAdder();
+
+    public HdrReservoir() {
+        this(DEFAULT_WINDOW_SECONDS, TimeUnit.SECONDS, Clock.defaultClock());
+    }
+
+    public HdrReservoir(long window, TimeUnit unit, Clock clock) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be > 0");
+        }
+        this.clock = clock;
+        this.window = unit.toNanos(window);
+        this.rotateAt = clock.getTick() + this.window;
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        rotate();
+        current.incrementAndGet(indexOf(value));
+        sum.add(value);
+    }
+
+    /**
+     * Sum of every value recorded, unlike the snapshots not limited to the recent windows
+     *
+     * @return
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        rotate();
+
+        AtomicLongArray current = this.current;
+        AtomicLongArray previous = this.previous;
+
+        long[] counts = new long[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            counts[i] = current.get(i) + previous.get(i);
+        }
+
+        return new HdrSnapshot(counts);
+    }
+
+    private void rotate() {
+
+        long now = clock.getTick();
+        if (now < rotateAt) {
+            return;
+        }
+
+        synchronized (this) {
+            if (now < rotateAt) {
+                return;
+            }
+            // Nothing recorded in the last window carries over when a whole window went by without rotating
+            previous = (now - rotateAt < window ? current : new AtomicLongArray(LENGTH));
+            current = new AtomicLongArray(LENGTH);
+            rotateAt = now + window;
+        }
+
+    }
+
+    static int indexOf(long value) {
+
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+
+        if (value < 2 * SUB_BUCKET_HALF_COUNT) {
+            return (int) value;
+        }
+
+        // Keep the top SUB_BUCKET_BITS bits, the shift picks the power of two range
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    static long valueOf(int index) {
+
+        if (index < 2 * SUB_BUCKET_HALF_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        long low = (long) (index - shift * SUB_BUCKET_HALF_COUNT) << shift;
+
+        // The middle of the bucket
+        return low + ((1L << shift) >> 1);
+    }
+
+    private static class HdrSnapshot extends Snapshot {
+
+        private final long[] counts;
+        private final long count;
+
+        public HdrSnapshot(long[] counts) {
+            this.counts = counts;
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            this.count = count;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+
+            if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+                throw new IllegalArgumentException(quantile + " is not in [0..1]");
+            }
+
+            if (count == 0) {
+                return 0.0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return valueOf(i);
+                }
+            }
+
+            return getMax();
+        }
+
+        @Override
+        public long[] getValues() {
+
+            long[] values = new long[size()];
+            int v = 0;
+            for (int i = 0; i < counts.length && v < values.length; i++) {
+                long value = valueOf(i);
+                for (long c = 0; c < counts[i] && v < values.length; c++) {
+                    values[v++] = value;
+                }
+            }
+
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return valueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public double getMean() {
+
+            if (count == 0) {
+                return 0;
+            }
+
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += (double) counts[i] * valueOf(i);
+            }
+
+            return sum / count;
+        }
+
+        @Override
+        public long getMin() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    return valueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public double getStdDev() {
+
+            if (count <= 1) {
+                return 0;
+            }
+
+            double mean = getMean();
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                double diff = valueOf(i) - mean;
+                sum += counts[i] * diff * diff;
+            }
+
+            return Math.sqrt(sum / (count - 1));
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (long value : getValues()) {
+                    out.printf("%d%n", value);
+                }
+            }
+        }
+    }
+
+}
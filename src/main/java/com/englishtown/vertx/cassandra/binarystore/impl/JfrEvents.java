@@ -0,0 +1,270 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.UUID;
+
+/**
+ * Java Flight Recorder events for file and chunk operations.
+ * <p>
+ * Every event is disabled by default and only recorded once a recording enables it, for example with
+ * {@code jcmd <pid> JFR.start settings=binarystore.jfc} where the settings file turns on the {@code binarystore.*}
+ * events.  While disabled, {@code begin} methods return null after a single flag check, so call sites do no other
+ * work.  Callers check {@link #AVAILABLE} first so the event classes are never loaded on a JVM without the
+ * {@code jdk.jfr} API.
+ */
+public final class JfrEvents {
+
+    public static final boolean AVAILABLE = isAvailable();
+
+    private JfrEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static String toString(UUID id) {
+        return (id == null ? null : id.toString());
+    }
+
+    @Name("binarystore.FileLoad")
+    @Label("File Load")
+    @Description("Query for a file record")
+    @Category("Binary Store")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class FileLoad extends Event {
+
+        private static final EventType TYPE = EventType.getEventType(FileLoad.class);
+
+        @Label("File Id")
+        String fileId;
+
+        @Label("Found")
+        boolean found;
+
+        public static FileLoad begin(UUID id) {
+            if (!TYPE.isEnabled()) {
+                return null;
+            }
+            FileLoad event = new FileLoad();
+            event.fileId = JfrEvents.toString(id);
+            event.begin();
+            return event;
+        }
+
+        public void commit(boolean found) {
+            this.found = found;
+            commit();
+        }
+    }
+
+    @Name("binarystore.ChunkRead")
+    @Label("Chunk Read")
+    @Description("Query for a chunk, or the blocks of a chunk, until its data is copied out of the result")
+    @Category("Binary Store")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class ChunkRead extends Event {
+
+        private static final EventType TYPE = EventType.getEventType(ChunkRead.class);
+
+        @Label("File Id")
+        String fileId;
+
+        @Label("Chunk")
+        int chunk;
+
+        @Label("First Block")
+        int fromBlock;
+
+        @Label("Last Block")
+        int toBlock;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Failed")
+        boolean failed;
+
+        public static ChunkRead begin(UUID id, int n, int fromBlock, int toBlock) {
+            if (!TYPE.isEnabled()) {
+                return null;
+            }
+            ChunkRead event = new ChunkRead();
+            event.fileId = JfrEvents.toString(id);
+            event.chunk = n;
+            event.fromBlock = fromBlock;
+            event.toBlock = toBlock;
+            event.begin();
+            return event;
+        }
+
+        public void commit(long bytes, boolean failed) {
+            this.bytes = bytes;
+            this.failed = failed;
+            commit();
+        }
+    }
+
+    @Name("binarystore.ChunkWrite")
+    @Label("Chunk Write")
+    @Description("Insert of a chunk, or of all the blocks of a chunk")
+    @Category("Binary Store")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class ChunkWrite extends Event {
+
+        private static final EventType TYPE = EventType.getEventType(ChunkWrite.class);
+
+        @Label("File Id")
+        String fileId;
+
+        @Label("Chunk")
+        int chunk;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Blocks")
+        int blocks;
+
+        @Label("Failed")
+        boolean failed;
+
+        public static ChunkWrite begin(UUID id, int n, long bytes, int blocks) {
+            if (!TYPE.isEnabled()) {
+                return null;
+            }
+            ChunkWrite event = new ChunkWrite();
+            event.fileId = JfrEvents.toString(id);
+            event.chunk = n;
+            event.bytes = bytes;
+            event.blocks = blocks;
+            event.begin();
+            return event;
+        }
+
+        public void commit(boolean failed) {
+            this.failed = failed;
+            commit();
+        }
+    }
+
+    @Name("binarystore.FileRead")
+    @Label("File Read")
+    @Description("Read of a file, or ranges of it, from the reader being returned until its result")
+    @Category("Binary Store")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class FileRead extends Event {
+
+        private static final EventType TYPE = EventType.getEventType(FileRead.class);
+
+        @Label("File Id")
+        String fileId;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Chunks")
+        int chunks;
+
+        @Label("Time To First Byte")
+        @Timespan
+        long timeToFirstByte;
+
+        @Label("Time Paused")
+        @Description("Time the consumer held the reader paused")
+        @Timespan
+        long timePaused;
+
+        @Label("Result")
+        String result;
+
+        public static FileRead begin(UUID id) {
+            if (!TYPE.isEnabled()) {
+                return null;
+            }
+            FileRead event = new FileRead();
+            event.fileId = JfrEvents.toString(id);
+            event.begin();
+            return event;
+        }
+
+        public void commit(long bytes, int chunks, long timeToFirstByte, long timePaused, String result) {
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.timeToFirstByte = timeToFirstByte;
+            this.timePaused = timePaused;
+            this.result = result;
+            commit();
+        }
+    }
+
+    @Name("binarystore.FileWrite")
+    @Label("File Write")
+    @Description("Write of a file from the writer being opened until it is committed or fails")
+    @Category("Binary Store")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class FileWrite extends Event {
+
+        private static final EventType TYPE = EventType.getEventType(FileWrite.class);
+
+        @Label("File Id")
+        String fileId;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Chunks")
+        int chunks;
+
+        @Label("Time To First Chunk")
+        @Description("Time until the first chunk was stored")
+        @Timespan
+        long timeToFirstChunk;
+
+        @Label("Committed")
+        boolean committed;
+
+        public static FileWrite begin(UUID id) {
+            if (!TYPE.isEnabled()) {
+                return null;
+            }
+            FileWrite event = new FileWrite();
+            event.fileId = JfrEvents.toString(id);
+            event.begin();
+            return event;
+        }
+
+        public void commit(long bytes, int chunks, long timeToFirstChunk, boolean committed) {
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.timeToFirstChunk = timeToFirstChunk;
+            this.committed = committed;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,587 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.ChunkLayout;
+import com.englishtown.vertx.cassandra.binarystore.BufferPoolOptions;
+import com.englishtown.vertx.cassandra.binarystore.ChunkSchedulerOptions;
+import com.englishtown.vertx.cassandra.binarystore.MemoryBudgetOptions;
+import com.englishtown.vertx.cassandra.binarystore.QuotaOptions;
+import com.englishtown.vertx.cassandra.binarystore.TableOptions;
+import com.englishtown.vertx.cassandra.binarystore.TenantQuotaOptions;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitOptions;
+import com.englishtown.vertx.cassandra.binarystore.HedgingOptions;
+import com.englishtown.vertx.cassandra.binarystore.KeyspaceOptions;
+import com.englishtown.vertx.cassandra.binarystore.LaneOptions;
+import com.englishtown.vertx.cassandra.binarystore.MetricsOptions;
+import com.englishtown.vertx.cassandra.binarystore.OrphanedChunkCollectorOptions;
+import com.englishtown.vertx.cassandra.binarystore.WarmCacheOptions;
+import com.google.common.base.Strings;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Json implementation of {@link com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator}
+ */
+public class JsonBinaryStoreConfigurator implements BinaryStoreConfigurator {
+
+    public static final String CONFIG_CHUNK_LAYOUT = "chunkLayout";
+    public static final String CONFIG_DEFAULT_TTL = "defaultTtl";
+    public static final String CONFIG_BLOCK_SIZE = "blockSize";
+    public static final String CONFIG_VERIFY_CHECKSUMS = "verifyChecksums";
+    public static final String CONFIG_READ_AHEAD = "readAhead";
+    public static final String CONFIG_ORPHANED_CHUNK_COLLECTOR = "orphanedChunkCollector";
+    public static final String CONFIG_METRICS = "metrics";
+    public static final String CONFIG_HEDGING = "hedging";
+    public static final String CONFIG_CONCURRENCY_LIMIT = "concurrencyLimit";
+    public static final String CONFIG_LANES = "lanes";
+    public static final String CONFIG_LANES_METADATA = "metadata";
+    public static final String CONFIG_LANES_CHUNKS = "chunks";
+    public static final String CONFIG_CHUNK_SCHEDULER = "chunkScheduler";
+    public static final String CONFIG_MEMORY_BUDGET = "memoryBudget";
+    public static final String CONFIG_BUFFER_POOL = "bufferPool";
+    public static final String CONFIG_QUOTAS = "quotas";
+    public static final String CONFIG_KEYSPACES = "keyspaces";
+    public static final String CONFIG_TABLES = "tables";
+    public static final String CONFIG_LAZY_STARTUP = "lazyStartup";
+    public static final String CONFIG_WARM_CACHE = "warmCache";
+    public static final String CONFIG_ENABLED = "enabled";
+    public static final String CONFIG_HEDGING_PERCENTILE = "percentile";
+    public static final String CONFIG_HEDGING_MIN_DELAY = "minDelay";
+    public static final String CONFIG_HEDGING_MAX_DELAY = "maxDelay";
+    public static final String CONFIG_HEDGING_MIN_SAMPLES = "minSamples";
+    public static final String CONFIG_HEDGING_BUDGET = "budget";
+    public static final String CONFIG_CONCURRENCY_LIMIT_INITIAL_LIMIT = "initialLimit";
+    public static final String CONFIG_CONCURRENCY_LIMIT_MIN_LIMIT = "minLimit";
+    public static final String CONFIG_CONCURRENCY_LIMIT_MAX_LIMIT = "maxLimit";
+    public static final String CONFIG_CONCURRENCY_LIMIT_SMOOTHING = "smoothing";
+    public static final String CONFIG_CONCURRENCY_LIMIT_TOLERANCE = "tolerance";
+    public static final String CONFIG_LANES_SEPARATE_SESSION = "separateSession";
+    public static final String CONFIG_CHUNK_SCHEDULER_MAX_IN_FLIGHT = "maxInFlight";
+    public static final String CONFIG_CHUNK_SCHEDULER_QUANTUM = "quantum";
+    public static final String CONFIG_MEMORY_BUDGET_MAX_BYTES = "maxBytes";
+    public static final String CONFIG_BUFFER_POOL_MAX_POOLED_BYTES = "maxPooledBytes";
+    public static final String CONFIG_BUFFER_POOL_MIN_SIZE = "minSize";
+    public static final String CONFIG_BUFFER_POOL_LEAK_DETECTION = "leakDetection";
+    public static final String CONFIG_QUOTAS_TENANT_FIELD = "tenantField";
+    public static final String CONFIG_QUOTAS_DEFAULT_TENANT = "defaultTenant";
+    public static final String CONFIG_QUOTAS_MAX_TENANTS = "maxTenants";
+    public static final String CONFIG_QUOTAS_TENANTS = "tenants";
+    public static final String CONFIG_QUOTAS_BYTES_PER_SECOND = "bytesPerSecond";
+    public static final String CONFIG_QUOTAS_OPS_PER_SECOND = "opsPerSecond";
+    public static final String CONFIG_QUOTAS_BURST_SECONDS = "burstSeconds";
+    public static final String CONFIG_KEYSPACES_ALLOWED = "allowed";
+    public static final String CONFIG_KEYSPACES_ALLOW_ANY = "allowAny";
+    public static final String CONFIG_KEYSPACES_MAX_KEYSPACES = "maxKeyspaces";
+    public static final String CONFIG_TABLES_COMPRESSION = "compression";
+    public static final String CONFIG_TABLES_COMPACTION = "compaction";
+    public static final String CONFIG_TABLES_CACHING = "caching";
+    public static final String CONFIG_TABLES_BLOOM_FILTER_FP_CHANCE = "bloomFilterFpChance";
+    public static final String CONFIG_WARM_CACHE_PATH = "path";
+    public static final String CONFIG_WARM_CACHE_MAX_BYTES = "maxBytes";
+    public static final String CONFIG_WARM_CACHE_MAX_KEYS = "maxKeys";
+    public static final String CONFIG_WARM_CACHE_PERSIST_INTERVAL = "persistInterval";
+    public static final String CONFIG_WARM_CACHE_PREFETCH_PER_SECOND = "prefetchPerSecond";
+    public static final String CONFIG_WARM_CACHE_EXPIRE_AFTER = "expireAfter";
+    public static final String CONFIG_ORPHANED_CHUNK_COLLECTOR_INTERVAL = "interval";
+    public static final String CONFIG_ORPHANED_CHUNK_COLLECTOR_GRACE_PERIOD = "gracePeriod";
+    public static final String CONFIG_ORPHANED_CHUNK_COLLECTOR_PAGE_SIZE = "pageSize";
+    public static final String CONFIG_ORPHANED_CHUNK_COLLECTOR_MAX_ROWS_PER_SECOND = "maxRowsPerSecond";
+    public static final String CONFIG_METRICS_JMX_ENABLED = "jmxEnabled";
+    public static final String CONFIG_METRICS_JMX_DOMAIN = "jmxDomain";
+    public static final String CONFIG_METRICS_PROMETHEUS_ENABLED = "prometheusEnabled";
+    public static final String CONFIG_METRICS_PROMETHEUS_PATH = "prometheusPath";
+
+    private static final List<String> TABLES = Arrays.asList("files", "chunks", "chunk_blocks");
+
+    protected ChunkLayout chunkLayout = ChunkLayout.PARTITIONED;
+    protected int defaultTtl;
+    protected int blockSize;
+    protected boolean verifyChecksums;
+    protected int readAhead;
+    protected OrphanedChunkCollectorOptions orphanedChunkCollectorOptions = new OrphanedChunkCollectorOptions();
+    protected MetricsOptions metricsOptions = new MetricsOptions();
+    protected HedgingOptions hedgingOptions = new HedgingOptions();
+    protected ConcurrencyLimitOptions concurrencyLimitOptions = new ConcurrencyLimitOptions();
+    protected LaneOptions metadataLaneOptions = new LaneOptions();
+    protected LaneOptions chunkLaneOptions = new LaneOptions();
+    protected ChunkSchedulerOptions chunkSchedulerOptions = new ChunkSchedulerOptions();
+    protected MemoryBudgetOptions memoryBudgetOptions = new MemoryBudgetOptions();
+    protected BufferPoolOptions bufferPoolOptions = new BufferPoolOptions();
+    protected QuotaOptions quotaOptions = new QuotaOptions();
+    protected KeyspaceOptions keyspaceOptions = new KeyspaceOptions();
+    protected Map<String, TableOptions> tableOptions = new HashMap<>();
+    protected boolean lazyStartup;
+    protected WarmCacheOptions warmCacheOptions = new WarmCacheOptions();
+
+    @Inject
+    public JsonBinaryStoreConfigurator(Vertx vertx) {
+        this(vertx.getOrCreateContext().config());
+    }
+
+    public JsonBinaryStoreConfigurator(JsonObject config) {
+        init(config == null ? new JsonObject() : config);
+    }
+
+    protected void init(JsonObject config) {
+        initChunkLayout(config);
+        initDefaultTtl(config);
+        initBlockSize(config);
+        initVerifyChecksums(config);
+        initReadAhead(config);
+        initOrphanedChunkCollector(config);
+        initMetrics(config);
+        initHedging(config);
+        initConcurrencyLimit(config);
+        initLanes(config);
+        initChunkScheduler(config);
+        initMemoryBudget(config);
+        initBufferPool(config);
+        initQuotas(config);
+        initKeyspaces(config);
+        initTables(config);
+        initLazyStartup(config);
+        initWarmCache(config);
+    }
+
+    protected void initChunkLayout(JsonObject config) {
+        String layout = config.getString(CONFIG_CHUNK_LAYOUT);
+        if (!Strings.isNullOrEmpty(layout)) {
+            chunkLayout = ChunkLayout.valueOf(layout.toUpperCase());
+        }
+    }
+
+    protected void initDefaultTtl(JsonObject config) {
+        defaultTtl = config.getInteger(CONFIG_DEFAULT_TTL, 0);
+        if (defaultTtl < 0) {
+            throw new IllegalArgumentException(CONFIG_DEFAULT_TTL + " must be >= 0");
+        }
+    }
+
+    protected void initBlockSize(JsonObject config) {
+        blockSize = config.getInteger(CONFIG_BLOCK_SIZE, 0);
+        if (blockSize < 0) {
+            throw new IllegalArgumentException(CONFIG_BLOCK_SIZE + " must be >= 0");
+        }
+    }
+
+    protected void initVerifyChecksums(JsonObject config) {
+        verifyChecksums = config.getBoolean(CONFIG_VERIFY_CHECKSUMS, false);
+    }
+
+    protected void initReadAhead(JsonObject config) {
+        readAhead = config.getInteger(CONFIG_READ_AHEAD, 0);
+        if (readAhead < 0) {
+            throw new IllegalArgumentException(CONFIG_READ_AHEAD + " must be >= 0");
+        }
+    }
+
+    protected void initOrphanedChunkCollector(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_ORPHANED_CHUNK_COLLECTOR);
+        if (json == null) {
+            return;
+        }
+
+        orphanedChunkCollectorOptions = new OrphanedChunkCollectorOptions()
+                .setEnabled(json.getBoolean(CONFIG_ENABLED, false))
+                .setInterval(json.getLong(CONFIG_ORPHANED_CHUNK_COLLECTOR_INTERVAL, OrphanedChunkCollectorOptions.DEFAULT_INTERVAL))
+                .setGracePeriod(json.getLong(CONFIG_ORPHANED_CHUNK_COLLECTOR_GRACE_PERIOD, OrphanedChunkCollectorOptions.DEFAULT_GRACE_PERIOD))
+                .setPageSize(json.getInteger(CONFIG_ORPHANED_CHUNK_COLLECTOR_PAGE_SIZE, OrphanedChunkCollectorOptions.DEFAULT_PAGE_SIZE))
+                .setMaxRowsPerSecond(json.getInteger(CONFIG_ORPHANED_CHUNK_COLLECTOR_MAX_ROWS_PER_SECOND, OrphanedChunkCollectorOptions.DEFAULT_MAX_ROWS_PER_SECOND));
+    }
+
+    protected void initMetrics(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_METRICS);
+        if (json == null) {
+            return;
+        }
+
+        metricsOptions = new MetricsOptions()
+                .setJmxEnabled(json.getBoolean(CONFIG_METRICS_JMX_ENABLED, false))
+                .setJmxDomain(json.getString(CONFIG_METRICS_JMX_DOMAIN, MetricsOptions.DEFAULT_JMX_DOMAIN))
+                .setPrometheusEnabled(json.getBoolean(CONFIG_METRICS_PROMETHEUS_ENABLED, false))
+                .setPrometheusPath(json.getString(CONFIG_METRICS_PROMETHEUS_PATH, MetricsOptions.DEFAULT_PROMETHEUS_PATH));
+    }
+
+    protected void initHedging(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_HEDGING);
+        if (json == null) {
+            return;
+        }
+
+        hedgingOptions = new HedgingOptions()
+                .setEnabled(json.getBoolean(CONFIG_ENABLED, false))
+                .setPercentile(json.getDouble(CONFIG_HEDGING_PERCENTILE, HedgingOptions.DEFAULT_PERCENTILE))
+                .setMinDelay(json.getLong(CONFIG_HEDGING_MIN_DELAY, HedgingOptions.DEFAULT_MIN_DELAY))
+                .setMaxDelay(json.getLong(CONFIG_HEDGING_MAX_DELAY, HedgingOptions.DEFAULT_MAX_DELAY))
+                .setMinSamples(json.getInteger(CONFIG_HEDGING_MIN_SAMPLES, HedgingOptions.DEFAULT_MIN_SAMPLES))
+                .setBudget(json.getDouble(CONFIG_HEDGING_BUDGET, HedgingOptions.DEFAULT_BUDGET));
+
+        if (hedgingOptions.getPercentile() <= 0 || hedgingOptions.getPercentile() >= 1) {
+            throw new IllegalArgumentException(CONFIG_HEDGING_PERCENTILE + " must be > 0 and < 1");
+        }
+        if (hedgingOptions.getMinDelay() < 1 || hedgingOptions.getMaxDelay() < hedgingOptions.getMinDelay()) {
+            throw new IllegalArgumentException(CONFIG_HEDGING_MIN_DELAY + " must be >= 1 and <= " + CONFIG_HEDGING_MAX_DELAY);
+        }
+        if (hedgingOptions.getBudget() <= 0 || hedgingOptions.getBudget() > 1) {
+            throw new IllegalArgumentException(CONFIG_HEDGING_BUDGET + " must be > 0 and <= 1");
+        }
+    }
+
+    protected void initConcurrencyLimit(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_CONCURRENCY_LIMIT);
+        if (json != null) {
+            concurrencyLimitOptions = toConcurrencyLimitOptions(json);
+        }
+    }
+
+    protected void initLanes(JsonObject config) {
+        JsonObject lanes = config.getJsonObject(CONFIG_LANES, new JsonObject());
+        metadataLaneOptions = toLaneOptions(config, lanes.getJsonObject(CONFIG_LANES_METADATA, new JsonObject()));
+        chunkLaneOptions = toLaneOptions(config, lanes.getJsonObject(CONFIG_LANES_CHUNKS, new JsonObject()));
+    }
+
+    protected LaneOptions toLaneOptions(JsonObject config, JsonObject json) {
+        // The lane's concurrency limit is merged over the shared one
+        JsonObject limit = config.getJsonObject(CONFIG_CONCURRENCY_LIMIT, new JsonObject()).copy()
+                .mergeIn(json.getJsonObject(CONFIG_CONCURRENCY_LIMIT, new JsonObject()));
+
+        return new LaneOptions()
+                .setConcurrencyLimitOptions(toConcurrencyLimitOptions(limit))
+                .setSeparateSession(json.getBoolean(CONFIG_LANES_SEPARATE_SESSION, false));
+    }
+
+    protected ConcurrencyLimitOptions toConcurrencyLimitOptions(JsonObject json) {
+        ConcurrencyLimitOptions options = new ConcurrencyLimitOptions()
+                .setEnabled(json.getBoolean(CONFIG_ENABLED, false))
+                .setInitialLimit(json.getInteger(CONFIG_CONCURRENCY_LIMIT_INITIAL_LIMIT, ConcurrencyLimitOptions.DEFAULT_INITIAL_LIMIT))
+                .setMinLimit(json.getInteger(CONFIG_CONCURRENCY_LIMIT_MIN_LIMIT, ConcurrencyLimitOptions.DEFAULT_MIN_LIMIT))
+                .setMaxLimit(json.getInteger(CONFIG_CONCURRENCY_LIMIT_MAX_LIMIT, ConcurrencyLimitOptions.DEFAULT_MAX_LIMIT))
+                .setSmoothing(json.getDouble(CONFIG_CONCURRENCY_LIMIT_SMOOTHING, ConcurrencyLimitOptions.DEFAULT_SMOOTHING))
+                .setTolerance(json.getDouble(CONFIG_CONCURRENCY_LIMIT_TOLERANCE, ConcurrencyLimitOptions.DEFAULT_TOLERANCE));
+
+        if (options.getMinLimit() < 1 || options.getMaxLimit() < options.getMinLimit()
+                || options.getInitialLimit() < options.getMinLimit() || options.getInitialLimit() > options.getMaxLimit()) {
+            throw new IllegalArgumentException("concurrency limits must satisfy 1 <= " + CONFIG_CONCURRENCY_LIMIT_MIN_LIMIT
+                    + " <= " + CONFIG_CONCURRENCY_LIMIT_INITIAL_LIMIT + " <= " + CONFIG_CONCURRENCY_LIMIT_MAX_LIMIT);
+        }
+        if (options.getSmoothing() <= 0 || options.getSmoothing() > 1) {
+            throw new IllegalArgumentException(CONFIG_CONCURRENCY_LIMIT_SMOOTHING + " must be > 0 and <= 1");
+        }
+        if (options.getTolerance() < 1) {
+            throw new IllegalArgumentException(CONFIG_CONCURRENCY_LIMIT_TOLERANCE + " must be >= 1");
+        }
+        return options;
+    }
+
+    protected void initChunkScheduler(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_CHUNK_SCHEDULER);
+        if (json == null) {
+            return;
+        }
+
+        chunkSchedulerOptions = new ChunkSchedulerOptions()
+                .setEnabled(json.getBoolean(CONFIG_ENABLED, false))
+                .setMaxInFlight(json.getInteger(CONFIG_CHUNK_SCHEDULER_MAX_IN_FLIGHT, ChunkSchedulerOptions.DEFAULT_MAX_IN_FLIGHT))
+                .setQuantum(json.getInteger(CONFIG_CHUNK_SCHEDULER_QUANTUM, ChunkSchedulerOptions.DEFAULT_QUANTUM));
+
+        if (chunkSchedulerOptions.getMaxInFlight() <= 0) {
+            throw new IllegalArgumentException(CONFIG_CHUNK_SCHEDULER_MAX_IN_FLIGHT + " must be > 0");
+        }
+        if (chunkSchedulerOptions.getQuantum() < 1024) {
+            throw new IllegalArgumentException(CONFIG_CHUNK_SCHEDULER_QUANTUM + " must be >= 1024");
+        }
+    }
+
+    protected void initMemoryBudget(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_MEMORY_BUDGET);
+        if (json == null) {
+            return;
+        }
+
+        memoryBudgetOptions = new MemoryBudgetOptions()
+                .setEnabled(json.getBoolean(CONFIG_ENABLED, false))
+                .setMaxBytes(json.getLong(CONFIG_MEMORY_BUDGET_MAX_BYTES, MemoryBudgetOptions.DEFAULT_MAX_BYTES));
+
+        if (memoryBudgetOptions.getMaxBytes() <= 0) {
+            throw new IllegalArgumentException(CONFIG_MEMORY_BUDGET_MAX_BYTES + " must be > 0");
+        }
+    }
+
+    protected void initBufferPool(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_BUFFER_POOL);
+        if (json == null) {
+            return;
+        }
+
+        bufferPoolOptions = new BufferPoolOptions()
+                .setEnabled(json.getBoolean(CONFIG_ENABLED, false))
+                .setMaxPooledBytes(json.getLong(CONFIG_BUFFER_POOL_MAX_POOLED_BYTES, BufferPoolOptions.DEFAULT_MAX_POOLED_BYTES))
+                .setMinSize(json.getInteger(CONFIG_BUFFER_POOL_MIN_SIZE, BufferPoolOptions.DEFAULT_MIN_SIZE))
+                .setLeakDetection(json.getBoolean(CONFIG_BUFFER_POOL_LEAK_DETECTION, false));
+
+        if (bufferPoolOptions.getMaxPooledBytes() < 0) {
+            throw new IllegalArgumentException(CONFIG_BUFFER_POOL_MAX_POOLED_BYTES + " must be >= 0");
+        }
+        if (bufferPoolOptions.getMinSize() < 0) {
+            throw new IllegalArgumentException(CONFIG_BUFFER_POOL_MIN_SIZE + " must be >= 0");
+        }
+    }
+
+    protected void initQuotas(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_QUOTAS);
+        if (json == null) {
+            return;
+        }
+
+        // The default limits are fields of the quotas object, each tenant's own limits are merged over them
+        quotaOptions = new QuotaOptions()
+                .setEnabled(json.getBoolean(CONFIG_ENABLED, false))
+                .setTenantField(json.getString(CONFIG_QUOTAS_TENANT_FIELD, QuotaOptions.DEFAULT_TENANT_FIELD))
+                .setDefaultTenant(json.getString(CONFIG_QUOTAS_DEFAULT_TENANT, QuotaOptions.DEFAULT_TENANT))
+                .setMaxTenants(json.getInteger(CONFIG_QUOTAS_MAX_TENANTS, QuotaOptions.DEFAULT_MAX_TENANTS))
+                .setDefaultQuota(toTenantQuotaOptions(json));
+
+        JsonObject tenants = json.getJsonObject(CONFIG_QUOTAS_TENANTS, new JsonObject());
+        for (String tenant : tenants.fieldNames()) {
+            quotaOptions.getTenants().put(tenant, toTenantQuotaOptions(json.copy().mergeIn(tenants.getJsonObject(tenant))));
+        }
+
+        if (quotaOptions.getMaxTenants() <= 0) {
+            throw new IllegalArgumentException(CONFIG_QUOTAS_MAX_TENANTS + " must be > 0");
+        }
+    }
+
+    protected TenantQuotaOptions toTenantQuotaOptions(JsonObject json) {
+        TenantQuotaOptions options = new TenantQuotaOptions()
+                .setBytesPerSecond(json.getLong(CONFIG_QUOTAS_BYTES_PER_SECOND, 0L))
+                .setOpsPerSecond(json.getDouble(CONFIG_QUOTAS_OPS_PER_SECOND, 0.0))
+                .setBurstSeconds(json.getDouble(CONFIG_QUOTAS_BURST_SECONDS, TenantQuotaOptions.DEFAULT_BURST_SECONDS));
+
+        if (options.getBytesPerSecond() < 0) {
+            throw new IllegalArgumentException(CONFIG_QUOTAS_BYTES_PER_SECOND + " must be >= 0");
+        }
+        if (options.getOpsPerSecond() < 0) {
+            throw new IllegalArgumentException(CONFIG_QUOTAS_OPS_PER_SECOND + " must be >= 0");
+        }
+        if (options.getBurstSeconds() <= 0) {
+            throw new IllegalArgumentException(CONFIG_QUOTAS_BURST_SECONDS + " must be > 0");
+        }
+        return options;
+    }
+
+    protected void initKeyspaces(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_KEYSPACES);
+        if (json == null) {
+            return;
+        }
+
+        keyspaceOptions = new KeyspaceOptions()
+                .setAllowAny(json.getBoolean(CONFIG_KEYSPACES_ALLOW_ANY, false))
+                .setMaxKeyspaces(json.getInteger(CONFIG_KEYSPACES_MAX_KEYSPACES, KeyspaceOptions.DEFAULT_MAX_KEYSPACES));
+
+        JsonArray allowed = json.getJsonArray(CONFIG_KEYSPACES_ALLOWED, new JsonArray());
+        for (int i = 0; i < allowed.size(); i++) {
+            String keyspace = allowed.getString(i);
+            if (!KeyspaceOptions.isValidName(keyspace)) {
+                throw new IllegalArgumentException(CONFIG_KEYSPACES_ALLOWED + " has an invalid keyspace name " + keyspace);
+            }
+            keyspaceOptions.getAllowed().add(keyspace);
+        }
+
+        if (keyspaceOptions.getMaxKeyspaces() <= 0) {
+            throw new IllegalArgumentException(CONFIG_KEYSPACES_MAX_KEYSPACES + " must be > 0");
+        }
+    }
+
+    protected void initTables(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_TABLES, new JsonObject());
+        for (String table : json.fieldNames()) {
+            if (!TABLES.contains(table)) {
+                throw new IllegalArgumentException(CONFIG_TABLES + " has an unknown table " + table);
+            }
+            tableOptions.put(table, toTableOptions(json.getJsonObject(table)));
+        }
+    }
+
+    protected TableOptions toTableOptions(JsonObject json) {
+        TableOptions options = new TableOptions();
+
+        // Sub-options are those of the CQL table option, "compression": false stores the table uncompressed
+        Object compression = json.getValue(CONFIG_TABLES_COMPRESSION);
+        if (Boolean.FALSE.equals(compression)) {
+            options.disableCompression();
+        } else if (compression != null) {
+            options.setCompression(toMap(json.getJsonObject(CONFIG_TABLES_COMPRESSION)));
+        }
+
+        if (json.containsKey(CONFIG_TABLES_COMPACTION)) {
+            options.setCompaction(toMap(json.getJsonObject(CONFIG_TABLES_COMPACTION)));
+            if (!options.getCompaction().containsKey("class")) {
+                throw new IllegalArgumentException(CONFIG_TABLES_COMPACTION + " must have a class");
+            }
+        }
+
+        if (json.containsKey(CONFIG_TABLES_CACHING)) {
+            options.setCaching(toMap(json.getJsonObject(CONFIG_TABLES_CACHING)));
+        }
+
+        Double bloomFilterFpChance = json.getDouble(CONFIG_TABLES_BLOOM_FILTER_FP_CHANCE);
+        if (bloomFilterFpChance != null && (bloomFilterFpChance <= 0 || bloomFilterFpChance > 1)) {
+            throw new IllegalArgumentException(CONFIG_TABLES_BLOOM_FILTER_FP_CHANCE + " must be > 0 and <= 1");
+        }
+        options.setBloomFilterFpChance(bloomFilterFpChance);
+
+        return options;
+    }
+
+    private static Map<String, String> toMap(JsonObject json) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String name : json.fieldNames()) {
+            map.put(name, String.valueOf(json.getValue(name)));
+        }
+        return map;
+    }
+
+    protected void initLazyStartup(JsonObject config) {
+        lazyStartup = config.getBoolean(CONFIG_LAZY_STARTUP, false);
+    }
+
+    protected void initWarmCache(JsonObject config) {
+        JsonObject json = config.getJsonObject(CONFIG_WARM_CACHE);
+        if (json == null) {
+            return;
+        }
+
+        warmCacheOptions = new WarmCacheOptions()
+                .setEnabled(json.getBoolean(CONFIG_ENABLED, false))
+                .setPath(json.getString(CONFIG_WARM_CACHE_PATH, WarmCacheOptions.DEFAULT_PATH))
+                .setMaxBytes(json.getLong(CONFIG_WARM_CACHE_MAX_BYTES, WarmCacheOptions.DEFAULT_MAX_BYTES))
+                .setMaxKeys(json.getInteger(CONFIG_WARM_CACHE_MAX_KEYS, WarmCacheOptions.DEFAULT_MAX_KEYS))
+                .setPersistInterval(json.getLong(CONFIG_WARM_CACHE_PERSIST_INTERVAL, WarmCacheOptions.DEFAULT_PERSIST_INTERVAL))
+                .setPrefetchPerSecond(json.getInteger(CONFIG_WARM_CACHE_PREFETCH_PER_SECOND, WarmCacheOptions.DEFAULT_PREFETCH_PER_SECOND))
+                .setExpireAfter(json.getLong(CONFIG_WARM_CACHE_EXPIRE_AFTER, WarmCacheOptions.DEFAULT_EXPIRE_AFTER));
+
+        if (warmCacheOptions.getPath() == null || warmCacheOptions.getPath().isEmpty()) {
+            throw new IllegalArgumentException(CONFIG_WARM_CACHE_PATH + " must not be empty");
+        }
+        if (warmCacheOptions.getMaxBytes() < 0) {
+            throw new IllegalArgumentException(CONFIG_WARM_CACHE_MAX_BYTES + " must be >= 0");
+        }
+        if (warmCacheOptions.getMaxKeys() < 0) {
+            throw new IllegalArgumentException(CONFIG_WARM_CACHE_MAX_KEYS + " must be >= 0");
+        }
+        if (warmCacheOptions.getPersistInterval() <= 0) {
+            throw new IllegalArgumentException(CONFIG_WARM_CACHE_PERSIST_INTERVAL + " must be > 0");
+        }
+        if (warmCacheOptions.getPrefetchPerSecond() <= 0) {
+            throw new IllegalArgumentException(CONFIG_WARM_CACHE_PREFETCH_PER_SECOND + " must be > 0");
+        }
+        if (warmCacheOptions.getExpireAfter() <= 0) {
+            throw new IllegalArgumentException(CONFIG_WARM_CACHE_EXPIRE_AFTER + " must be > 0");
+        }
+    }
+
+    @Override
+    public ChunkLayout getChunkLayout() {
+        return chunkLayout;
+    }
+
+    @Override
+    public int getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    @Override
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public boolean isVerifyChecksums() {
+        return verifyChecksums;
+    }
+
+    @Override
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    @Override
+    public OrphanedChunkCollectorOptions getOrphanedChunkCollectorOptions() {
+        return orphanedChunkCollectorOptions;
+    }
+
+    @Override
+    public MetricsOptions getMetricsOptions() {
+        return metricsOptions;
+    }
+
+    @Override
+    public HedgingOptions getHedgingOptions() {
+        return hedgingOptions;
+    }
+
+    @Override
+    public ConcurrencyLimitOptions getConcurrencyLimitOptions() {
+        return concurrencyLimitOptions;
+    }
+
+    @Override
+    public LaneOptions getMetadataLaneOptions() {
+        return metadataLaneOptions;
+    }
+
+    @Override
+    public LaneOptions getChunkLaneOptions() {
+        return chunkLaneOptions;
+    }
+
+    @Override
+    public ChunkSchedulerOptions getChunkSchedulerOptions() {
+        return chunkSchedulerOptions;
+    }
+
+    @Override
+    public MemoryBudgetOptions getMemoryBudgetOptions() {
+        return memoryBudgetOptions;
+    }
+
+    @Override
+    public BufferPoolOptions getBufferPoolOptions() {
+        return bufferPoolOptions;
+    }
+
+    @Override
+    public QuotaOptions getQuotaOptions() {
+        return quotaOptions;
+    }
+
+    @Override
+    public KeyspaceOptions getKeyspaceOptions() {
+        return keyspaceOptions;
+    }
+
+    @Override
+    public Map<String, TableOptions> getTableOptions() {
+        return tableOptions;
+    }
+
+    @Override
+    public boolean isLazyStartup() {
+        return lazyStartup;
+    }
+
+    @Override
+    public WarmCacheOptions getWarmCacheOptions() {
+        return warmCacheOptions;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.vertx.cassandra.binarystore.MetricsExporter;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+
+import javax.inject.Inject;
+
+/**
+ * Serves {@link MetricsExporter#scrape()} to Prometheus from {@code GET} requests
+ */
+public class MetricsHttpHandler implements Handler<HttpServerRequest> {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsExporter exporter;
+
+    @Inject
+    public MetricsHttpHandler(MetricsExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    @Override
+    public void handle(HttpServerRequest request) {
+
+        HttpServerResponse response = request.response();
+
+        if (request.method() != HttpMethod.GET) {
+            response.setStatusCode(405).putHeader("Allow", "GET").end();
+            return;
+        }
+
+        response.putHeader("Content-Type", CONTENT_TYPE)
+                .end(exporter.scrape());
+
+    }
+
+}
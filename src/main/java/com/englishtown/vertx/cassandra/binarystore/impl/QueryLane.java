@@ -0,0 +1,84 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.binarystore.LaneOptions;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+
+import java.util.function.Supplier;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A lane of queries with its own session, limit on queries in flight and latency timer
+ */
+public class QueryLane {
+
+    private final String name;
+    private final WhenCassandraSession session;
+    private final ConcurrencyLimiter limiter;
+    private final Timer latency;
+    private final When when;
+
+    public QueryLane(String name, WhenCassandraSession session, LaneOptions options, MetricRegistry registry, When when) {
+        this.name = name;
+        this.session = session;
+        this.when = when;
+
+        limiter = new ConcurrencyLimiter(options.getConcurrencyLimitOptions(), registry, name, when);
+        latency = registry.timer(name(Metrics.BASE_NAME, name, "lane", "latency"));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public WhenCassandraSession getSession() {
+        return session;
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Executes a statement on the lane's session
+     *
+     * @param statement
+     * @return
+     */
+    public Promise<ResultSet> execute(Statement statement) {
+        return execute(() -> session.executeAsync(statement));
+    }
+
+    /**
+     * Runs a query in the lane, for queries that don't go straight to the session such as hedged reads
+     *
+     * @param query starts the query
+     * @param <T>
+     * @return
+     */
+    public <T> Promise<T> execute(Supplier<Promise<T>> query) {
+
+        // Only queries let through by the limiter are timed
+        return limiter.execute(() -> {
+            Timer.Context context = latency.time();
+            return query.get().then(
+                    result -> {
+                        context.stop();
+                        return when.resolve(result);
+                    },
+                    t -> {
+                        context.stop();
+                        return when.reject(t);
+                    });
+        });
+
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.vertx.cassandra.CassandraSession;
+import com.englishtown.vertx.cassandra.binarystore.HedgingOptions;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Sends a second copy of a read that has not answered within a percentile of recent latencies, the first answer wins
+ */
+public class ReadHedger {
+
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long HEDGE = 1_000_000;
+    private static final long MAX_SAVED = 10 * HEDGE;
+
+    private final WhenCassandraSession session;
+    private final HedgingOptions options;
+    private final ConcurrencyLimiter limiter;
+    private final Timer latencies;
+    private final Meter fired;
+    private final Meter won;
+    private final Meter skipped;
+    private final When when;
+
+    // Millionths of a hedge, starting with a burst's worth
+    private final AtomicLong saved = new AtomicLong(MAX_SAVED);
+
+    private volatile long delay;
+    private volatile long delayUpdatedAt;
+
+    public ReadHedger(WhenCassandraSession session, HedgingOptions options, ConcurrencyLimiter limiter, Metrics metrics,
+                      MetricRegistry registry, String type, When when) {
+        this.session = session;
+        this.options = options;
+        this.limiter = limiter;
+        this.latencies = metrics.getReadTimer();
+        this.when = when;
+
+        fired = registry.meter(name(Metrics.BASE_NAME, type, "hedges", "fired"));
+        won = registry.meter(name(Metrics.BASE_NAME, type, "hedges", "won"));
+        skipped = registry.meter(name(Metrics.BASE_NAME, type, "hedges", "skipped"));
+    }
+
+    public Promise<ResultSet> execute(Statement statement) {
+
+        if (!options.isEnabled()) {
+            return session.executeAsync(statement);
+        }
+
+        CassandraSession cassandraSession = session.getSession();
+        Vertx vertx = cassandraSession.getVertx();
+        Context context = vertx.getOrCreateContext();
+        Hedge hedge = new Hedge(vertx, when.defer());
+
+        // The copy is routed by the load balancing policy again, usually to another replica
+        statement.setIdempotent(true);
+        send(cassandraSession, statement, context, hedge, false);
+        // Every read earns a fraction of a hedge, so hedging backs off when every read is slow
+        long earned = Math.round(options.getBudget() * HEDGE);
+        saved.updateAndGet(s -> Math.min(MAX_SAVED, s + earned));
+
+        // Timers run on the calling context, as do the results, so the hedge state is only touched from one thread
+        hedge.timerId = vertx.setTimer(getDelay(), id -> {
+            hedge.timerId = -1;
+            if (hedge.done) {
+                return;
+            }
+            if (!spend()) {
+                skipped.mark();
+                return;
+            }
+            // The copy holds a slot in the lane like any other query until it answers or is cancelled
+            if (!limiter.tryAcquireSlot()) {
+                saved.addAndGet(HEDGE);
+                skipped.mark();
+                return;
+            }
+            fired.mark();
+            send(cassandraSession, statement, context, hedge, true);
+        });
+
+        return hedge.deferred.getPromise();
+    }
+
+    /**
+     * Milliseconds to wait before hedging, the configured percentile of recent latencies refreshed at most once a second
+     *
+     * @return
+     */
+    long getDelay() {
+
+        long now = System.nanoTime();
+
+        if (delay == 0 || now - delayUpdatedAt > DELAY_REFRESH_NANOS) {
+            long millis = options.getMaxDelay();
+            Snapshot snapshot = latencies.getSnapshot();
+            if (snapshot.size() >= options.getMinSamples()) {
+                millis = TimeUnit.NANOSECONDS.toMillis((long) snapshot.getValue(options.getPercentile()));
+            }
+            delay = Math.max(options.getMinDelay(), Math.min(options.getMaxDelay(), millis));
+            delayUpdatedAt = now;
+        }
+
+        return delay;
+    }
+
+    /**
+     * Takes a whole hedge from the budget if one is saved up
+     */
+    private boolean spend() {
+        long current;
+        do {
+            current = saved.get();
+            if (current < HEDGE) {
+                return false;
+            }
+        } while (!saved.compareAndSet(current, current - HEDGE));
+        return true;
+    }
+
+    private void send(CassandraSession cassandraSession, Statement statement, Context context, Hedge hedge, boolean secondary) {
+
+        ResultSetFuture future;
+        try {
+            future = cassandraSession.executeAsync(statement);
+        } catch (RuntimeException e) {
+            if (secondary) {
+                limiter.releaseSlot();
+            }
+            throw e;
+        }
+        hedge.futures.add(future);
+        hedge.outstanding++;
+
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                if (secondary) {
+                    limiter.releaseSlot();
+                }
+                context.runOnContext(aVoid -> hedge.succeed(result, secondary));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // Also called when the copy is cancelled because the other one answered first
+                if (secondary) {
+                    limiter.releaseSlot();
+                }
+                context.runOnContext(aVoid -> hedge.fail(t));
+            }
+        });
+
+    }
+
+    private class Hedge {
+
+        private final Vertx vertx;
+        private final Deferred<ResultSet> deferred;
+        private final List<ResultSetFuture> futures = new ArrayList<>(2);
+        private int outstanding;
+        private long timerId = -1;
+        private boolean done;
+
+        public Hedge(Vertx vertx, Deferred<ResultSet> deferred) {
+            this.vertx = vertx;
+            this.deferred = deferred;
+        }
+
+        public void succeed(ResultSet result, boolean secondary) {
+            outstanding--;
+            if (done) {
+                return;
+            }
+            if (secondary) {
+                won.mark();
+            }
+            finish();
+            deferred.resolve(result);
+        }
+
+        public void fail(Throwable t) {
+            outstanding--;
+            // The other copy may still answer
+            if (done || outstanding > 0) {
+                return;
+            }
+            finish();
+            deferred.reject(t);
+        }
+
+        private void finish() {
+            done = true;
+            if (timerId >= 0) {
+                vertx.cancelTimer(timerId);
+                timerId = -1;
+            }
+            for (ResultSetFuture future : futures) {
+                if (!future.isDone()) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.datastax.driver.core.TableOptionsMetadata;
+import com.englishtown.vertx.cassandra.binarystore.TableOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the CQL applying {@link TableOptions} and compares them with the options of a live table
+ */
+final class TableOptionsCql {
+
+    private static final String CLASS = "class";
+
+    private TableOptionsCql() {
+    }
+
+    /**
+     * The {@code WITH} clause of a {@code CREATE TABLE}
+     *
+     * @param options
+     * @return the clause with a leading space, or an empty string if no option is set
+     */
+    static String withClause(TableOptions options) {
+        return clause(assignments(options, null));
+    }
+
+    /**
+     * The {@code ALTER TABLE} setting the options that differ from the live table's
+     *
+     * @param keyspace
+     * @param table
+     * @param options
+     * @param live     the live table's options
+     * @return the statement, or null if every set option matches
+     */
+    static String alter(String keyspace, String table, TableOptions options, TableOptionsMetadata live) {
+        List<String> assignments = assignments(options, live);
+        if (assignments.isEmpty()) {
+            return null;
+        }
+        return "ALTER TABLE " + keyspace + "." + table + clause(assignments);
+    }
+
+    private static String clause(List<String> assignments) {
+        return (assignments.isEmpty() ? "" : " WITH " + String.join(" AND ", assignments));
+    }
+
+    private static List<String> assignments(TableOptions options, TableOptionsMetadata live) {
+
+        List<String> assignments = new ArrayList<>();
+
+        if (options.getCompression() != null
+                && (live == null || !matchesCompression(options.getCompression(), live.getCompression()))) {
+            assignments.add("compression = " + map(options.getCompression()));
+        }
+
+        if (options.getCompaction() != null
+                && (live == null || !matches(options.getCompaction(), live.getCompaction()))) {
+            assignments.add("compaction = " + map(options.getCompaction()));
+        }
+
+        if (options.getCaching() != null
+                && (live == null || !matches(options.getCaching(), live.getCaching()))) {
+            assignments.add("caching = " + map(options.getCaching()));
+        }
+
+        Double fpChance = options.getBloomFilterFpChance();
+        if (fpChance != null
+                && (live == null || Math.abs(fpChance - live.getBloomFilterFalsePositiveChance()) > 1e-9)) {
+            assignments.add("bloom_filter_fp_chance = " + fpChance);
+        }
+
+        return assignments;
+    }
+
+    private static boolean matchesCompression(Map<String, String> expected, Map<String, String> actual) {
+
+        // Cassandra 3 reports disabled compression as enabled: false, earlier versions as an empty compressor
+        if ("false".equalsIgnoreCase(expected.get("enabled"))) {
+            return actual == null
+                    || actual.isEmpty()
+                    || "false".equalsIgnoreCase(actual.get("enabled"))
+                    || "".equals(actual.get("sstable_compression"));
+        }
+
+        return matches(expected, actual);
+    }
+
+    /**
+     * Whether every expected sub-option has the same value in the live table, which also reports defaults
+     */
+    static boolean matches(Map<String, String> expected, Map<String, String> actual) {
+
+        if (actual == null) {
+            return false;
+        }
+
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            String value = actual.get(entry.getKey());
+            if (value == null) {
+                return false;
+            }
+            if (CLASS.equals(entry.getKey())) {
+                // Classes are configured by short name and reported fully qualified
+                if (!value.equals(entry.getValue()) && !value.endsWith("." + entry.getValue())) {
+                    return false;
+                }
+            } else if (!value.equalsIgnoreCase(entry.getValue()) && !sameNumber(value, entry.getValue())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean sameNumber(String a, String b) {
+        try {
+            return Double.parseDouble(a) == Double.parseDouble(b);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A CQL map literal, numbers are left unquoted
+     */
+    static String map(Map<String, String> values) {
+
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(quote(entry.getKey())).append(": ");
+            sb.append(isNumber(entry.getValue()) ? entry.getValue() : quote(entry.getValue()));
+        }
+        return sb.append("}").toString();
+    }
+
+    private static boolean isNumber(String value) {
+        return value.matches("-?\\d+(\\.\\d+)?");
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+}
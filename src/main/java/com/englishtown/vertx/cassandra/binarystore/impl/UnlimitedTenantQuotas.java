@@ -0,0 +1,31 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.promises.Promise;
+import com.englishtown.vertx.cassandra.binarystore.FileInfo;
+import com.englishtown.vertx.cassandra.binarystore.TenantQuotas;
+
+import java.util.function.Supplier;
+
+/**
+ * {@link TenantQuotas} that start every chunk operation as soon as it is submitted
+ */
+public class UnlimitedTenantQuotas implements TenantQuotas {
+
+    private static final Quota QUOTA = new Quota() {
+        @Override
+        public String getTenant() {
+            return null;
+        }
+
+        @Override
+        public <T> Promise<T> submit(long bytes, Supplier<Promise<T>> operation) {
+            return operation.get();
+        }
+    };
+
+    @Override
+    public Quota forFile(FileInfo fileInfo) {
+        return QUOTA;
+    }
+
+}
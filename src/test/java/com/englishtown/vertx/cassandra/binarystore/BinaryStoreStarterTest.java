@@ -1,5 +1,6 @@
 package com.englishtown.vertx.cassandra.binarystore;
 
+import com.codahale.metrics.MetricRegistry;
 import com.englishtown.promises.*;
 import com.englishtown.vertx.cassandra.CassandraSession;
 import io.vertx.core.Context;
@@ -11,12 +12,14 @@ import org.junit.Test;
 import org.junit.contrib.java.lang.system.EnvironmentVariables;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -30,13 +33,28 @@ public class BinaryStoreStarterTest {
     @Mock
     private CassandraSession session;
     @Mock
+    private BinaryStoreSessions sessions;
+    @Mock
     private BinaryStoreStatements statements;
     @Mock
+    private BinaryStoreKeyspaces keyspaces;
+    @Mock
+    private OrphanedChunkCollector collector;
+    @Mock
+    private CacheWarmer cacheWarmer;
+    @Mock
+    private MetricsExporter metricsExporter;
+    @Mock
+    private BinaryStoreConfigurator configurator;
+    @Mock
     private Vertx vertx;
     @Mock
     private Context context;
 
     private JsonObject config = new JsonObject();
+    @Spy
+    private MetricRegistry registry = new MetricRegistry();
+    @Spy
     private When when = WhenFactory.createSync();
 
     @InjectMocks
@@ -69,11 +87,16 @@ public class BinaryStoreStarterTest {
 
     private void run(String expectedKeyspace) {
 
-        when(statements.init(anyString())).thenReturn(when.resolve(null));
+        Promise<Void> initialized = when.resolve(null);
+        when(keyspaces.init(anyString())).thenReturn(initialized);
+        when(keyspaces.whenInitialized()).thenReturn(initialized);
 
         Promise<?> p = starter.run();
 
-        verify(statements).init(eq(expectedKeyspace));
+        verify(keyspaces).init(eq(expectedKeyspace));
+        verify(collector).start();
+        verify(cacheWarmer).start();
+        verify(metricsExporter).start();
 
         assertNotNull(p);
         State<?> state = p.inspect();
@@ -81,9 +104,97 @@ public class BinaryStoreStarterTest {
 
     }
 
+    @Test
+    public void run_lazy() {
+
+        Deferred<Void> init = when.defer();
+        when(configurator.isLazyStartup()).thenReturn(true);
+        when(statements.hasSchema(BinaryStoreStarter.DEFAULT_KEYSPACE)).thenReturn(true);
+        when(keyspaces.init(anyString())).thenReturn(init.getPromise());
+        when(keyspaces.whenInitialized()).thenReturn(init.getPromise());
+
+        // Ready while the schema is still being verified
+        Promise<?> p = starter.run();
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        verify(metricsExporter).start();
+        verify(collector, never()).start();
+        verify(cacheWarmer, never()).start();
+        assertEquals(1, registry.timer("et.cass.binarystore.startup.ready").getCount());
+        assertEquals(0, registry.timer("et.cass.binarystore.startup.prepared").getCount());
+
+        init.resolve((Void) null);
+
+        verify(collector).start();
+        verify(cacheWarmer).start();
+        assertEquals(1, registry.timer("et.cass.binarystore.startup.prepared").getCount());
+
+    }
+
+    @Test
+    public void run_lazy_without_schema() {
+
+        Deferred<Void> init = when.defer();
+        when(configurator.isLazyStartup()).thenReturn(true);
+        when(keyspaces.init(anyString())).thenReturn(init.getPromise());
+        when(keyspaces.whenInitialized()).thenReturn(init.getPromise());
+
+        // A keyspace the driver doesn't know yet is created before the store is ready
+        Promise<?> p = starter.run();
+
+        assertEquals(HandlerState.PENDING, p.inspect().getState());
+        init.resolve((Void) null);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void run_lazy_retried_by_request() {
+
+        Deferred<Void> init = when.defer();
+        Deferred<Void> initialized = when.defer();
+        when(configurator.isLazyStartup()).thenReturn(true);
+        when(statements.hasSchema(BinaryStoreStarter.DEFAULT_KEYSPACE)).thenReturn(true);
+        when(keyspaces.init(anyString())).thenReturn(init.getPromise());
+        when(keyspaces.whenInitialized()).thenReturn(initialized.getPromise());
+
+        starter.run();
+        init.reject(new RuntimeException("Unavailable"));
+        verify(collector, never()).start();
+
+        // A request initializes the keyspace after the startup attempt failed
+        initialized.resolve((Void) null);
+
+        verify(collector).start();
+        verify(cacheWarmer).start();
+
+    }
+
     @Test
     public void close() throws Exception {
         starter.close();
+        verify(collector).stop();
+        verify(cacheWarmer).stop();
+        verify(sessions).close();
+        verify(session).close();
+        verify(metricsExporter).stop();
+    }
+
+    @Test
+    public void stop() throws Exception {
+        Deferred<Void> persisted = when.defer();
+        when(cacheWarmer.stop()).thenReturn(persisted.getPromise());
+
+        Promise<Void> p = starter.stop();
+
+        // The sessions stay open until the popular chunks are written
+        verify(sessions, never()).close();
+        assertEquals(HandlerState.PENDING, p.inspect().getState());
+
+        persisted.resolve((Void) null);
+
+        verify(sessions).close();
         verify(session).close();
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
     }
-}
\ No newline at end of file
+}
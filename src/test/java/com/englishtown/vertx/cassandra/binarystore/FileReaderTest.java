@@ -0,0 +1,185 @@
+package com.englishtown.vertx.cassandra.binarystore;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link FileReader}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class FileReaderTest {
+
+    @Mock
+    WriteStream<Buffer> ws;
+    @Mock
+    Handler<AsyncResult<FileReader.Result>> completionHandler;
+    @Mock
+    Handler<Void> resumeHandler;
+    @Mock
+    Handler<Void> endHandler;
+    @Captor
+    ArgumentCaptor<Handler<Void>> drainCaptor;
+    @Captor
+    ArgumentCaptor<Handler<Throwable>> exceptionCaptor;
+    @Captor
+    ArgumentCaptor<AsyncResult<FileReader.Result>> resultCaptor;
+
+    FileReader reader;
+
+    @Before
+    public void setUp() throws Exception {
+        reader = new FileReader();
+    }
+
+    @Test
+    public void testPipeTo() throws Exception {
+
+        reader.pipeTo(ws, completionHandler);
+
+        reader.handleData("chunk 0".getBytes());
+        reader.handleData("chunk 1".getBytes());
+        reader.handleEnd(FileReader.Result.OK);
+
+        verify(ws).write(Buffer.buffer("chunk 0"));
+        verify(ws).write(Buffer.buffer("chunk 1"));
+        verify(ws).end();
+        verify(completionHandler).handle(resultCaptor.capture());
+        assertTrue(resultCaptor.getValue().succeeded());
+        assertEquals(FileReader.Result.OK, resultCaptor.getValue().result());
+
+    }
+
+    @Test
+    public void testPipeToWritesWithoutCopying() throws Exception {
+
+        ArgumentCaptor<Buffer> captor = ArgumentCaptor.forClass(Buffer.class);
+        reader.pipeTo(ws, completionHandler);
+
+        byte[] data = "chunk 0".getBytes();
+        reader.handleData(data);
+
+        verify(ws).write(captor.capture());
+        assertSame(data, captor.getValue().getByteBuf().array());
+
+    }
+
+    @Test
+    public void testPipeToPausesWhileWriteQueueFull() throws Exception {
+
+        when(ws.writeQueueFull()).thenReturn(true);
+        reader.pipeTo(ws, completionHandler);
+
+        reader.handleData("chunk 0".getBytes());
+
+        // The next chunk load waits for the write stream to drain
+        assertTrue(reader.isPaused());
+        reader.resumeHandler(resumeHandler);
+        verify(ws).drainHandler(drainCaptor.capture());
+
+        drainCaptor.getValue().handle(null);
+
+        assertFalse(reader.isPaused());
+        verify(resumeHandler).handle(null);
+
+    }
+
+    @Test
+    public void testPipeToNotFound() throws Exception {
+
+        reader.pipeTo(ws, completionHandler);
+        reader.handleEnd(FileReader.Result.NOT_FOUND);
+
+        // The caller responds before the stream is ended
+        InOrder inOrder = inOrder(completionHandler, ws);
+        inOrder.verify(completionHandler).handle(resultCaptor.capture());
+        inOrder.verify(ws).end();
+        assertEquals(FileReader.Result.NOT_FOUND, resultCaptor.getValue().result());
+
+    }
+
+    @Test
+    public void testPipeToReadError() throws Exception {
+
+        Throwable t = new RuntimeException("Unit test");
+        reader.pipeTo(ws, completionHandler);
+
+        reader.handleException(t);
+        reader.handleEnd(FileReader.Result.ERROR);
+
+        InOrder inOrder = inOrder(completionHandler, ws);
+        inOrder.verify(completionHandler).handle(resultCaptor.capture());
+        inOrder.verify(ws).end();
+        assertTrue(resultCaptor.getValue().failed());
+        assertEquals(t, resultCaptor.getValue().cause());
+
+    }
+
+    @Test
+    public void testPipeToWriteError() throws Exception {
+
+        Throwable t = new RuntimeException("Unit test");
+        reader.pipeTo(ws, completionHandler);
+        verify(ws).exceptionHandler(exceptionCaptor.capture());
+
+        exceptionCaptor.getValue().handle(t);
+
+        // Reading stops and later data is dropped
+        assertTrue(reader.isEnded());
+        reader.handleData("chunk 0".getBytes());
+        reader.handleEnd(FileReader.Result.OK);
+
+        verify(ws, never()).write(any());
+        verify(ws, never()).end();
+        verify(completionHandler, times(1)).handle(resultCaptor.capture());
+        assertEquals(t, resultCaptor.getValue().cause());
+
+    }
+
+    @Test
+    public void testPipeToCancelled() throws Exception {
+
+        reader.pipeTo(ws, completionHandler);
+        reader.handleData("chunk 0".getBytes());
+
+        reader.cancel();
+        reader.cancel();
+        reader.handleEnd(FileReader.Result.OK);
+
+        // Ended once, after the caller has had a chance to give up on the stream
+        InOrder inOrder = inOrder(completionHandler, ws);
+        inOrder.verify(completionHandler, times(1)).handle(resultCaptor.capture());
+        inOrder.verify(ws, times(1)).end();
+        assertTrue(resultCaptor.getValue().succeeded());
+        assertEquals(FileReader.Result.CANCELLED, resultCaptor.getValue().result());
+
+    }
+
+    @Test
+    public void testPipeToKeepsEndHandler() throws Exception {
+
+        reader.endHandler(endHandler);
+        reader.pipeTo(ws, completionHandler);
+        reader.handleEnd(FileReader.Result.OK);
+
+        InOrder inOrder = inOrder(ws, completionHandler, endHandler);
+        inOrder.verify(ws).end();
+        inOrder.verify(completionHandler).handle(any());
+        inOrder.verify(endHandler).handle(null);
+
+    }
+
+}
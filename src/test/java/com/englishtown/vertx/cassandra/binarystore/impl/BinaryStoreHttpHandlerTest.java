@@ -0,0 +1,409 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.*;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link BinaryStoreHttpHandler}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class BinaryStoreHttpHandlerTest {
+
+    @Mock
+    BinaryStoreManager binaryStoreManager;
+    @Mock
+    BinaryStoreReader binaryStoreReader;
+    @Mock
+    HttpServerRequest request;
+
+    HttpServerResponse response;
+    When when = WhenFactory.createSync();
+    UUID uuid = UUID.fromString("739a6466-adf8-11e3-aca6-425861b86ab6");
+    FileInfo fileInfo;
+    BinaryStoreHttpHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+
+        // Fluent response methods return the response
+        Answer<Object> returnsSelf = invocation -> (invocation.getMethod().getReturnType().isInstance(invocation.getMock())
+                ? invocation.getMock()
+                : RETURNS_DEFAULTS.answer(invocation));
+        response = mock(HttpServerResponse.class, returnsSelf);
+
+        fileInfo = new FileInfo()
+                .setId(uuid)
+                .setContentType("image/jpeg")
+                .setChunkSize(100)
+                .setLength(1000)
+                .setUploadDate(1400000000000L)
+                .setSha256("abc123");
+
+        when(request.response()).thenReturn(response);
+        when(request.method()).thenReturn(HttpMethod.GET);
+        when(request.path()).thenReturn("/files/" + uuid);
+        when(binaryStoreManager.loadFile(uuid)).thenReturn(when.resolve(fileInfo));
+
+        handler = new BinaryStoreHttpHandler(binaryStoreManager, binaryStoreReader);
+    }
+
+    @Test
+    public void testGet() throws Exception {
+
+        FileReader reader = new FileReader();
+        when(binaryStoreReader.read(fileInfo)).thenReturn(reader);
+
+        handler.handle(request);
+
+        verify(response).putHeader("ETag", "\"abc123\"");
+        verify(response).putHeader("Last-Modified", "Tue, 13 May 2014 16:53:20 GMT");
+        verify(response).putHeader("Accept-Ranges", "bytes");
+        verify(response).putHeader("Content-Type", "image/jpeg");
+        verify(response).putHeader("Content-Length", "1000");
+        verify(response, never()).setStatusCode(anyInt());
+
+        // The file data is piped to the response
+        reader.handleData("data".getBytes());
+        reader.handleEnd(FileReader.Result.OK);
+
+        verify(response).write(Buffer.buffer("data"));
+        verify(response).end();
+
+    }
+
+    @Test
+    public void testHead() throws Exception {
+
+        when(request.method()).thenReturn(HttpMethod.HEAD);
+        when(request.getHeader("Range")).thenReturn("bytes=0-9");
+
+        handler.handle(request);
+
+        verify(response).putHeader("Content-Length", "1000");
+        verify(response).end();
+        verifyZeroInteractions(binaryStoreReader);
+
+    }
+
+    @Test
+    public void testIfNoneMatch() throws Exception {
+
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\", \"abc123\"");
+
+        handler.handle(request);
+
+        // Answered without reading any chunks
+        verify(response).setStatusCode(304);
+        verify(response).putHeader("ETag", "\"abc123\"");
+        verify(response).end();
+        verifyZeroInteractions(binaryStoreReader);
+
+    }
+
+    @Test
+    public void testIfNoneMatchChanged() throws Exception {
+
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\"");
+        when(request.getHeader("If-Modified-Since")).thenReturn("Tue, 13 May 2014 16:53:20 GMT");
+        when(binaryStoreReader.read(fileInfo)).thenReturn(new FileReader());
+
+        handler.handle(request);
+
+        // If-None-Match takes precedence over If-Modified-Since
+        verify(response, never()).setStatusCode(304);
+        verify(binaryStoreReader).read(fileInfo);
+
+    }
+
+    @Test
+    public void testIfModifiedSince() throws Exception {
+
+        when(request.getHeader("If-Modified-Since")).thenReturn("Tue, 13 May 2014 16:53:20 GMT");
+
+        handler.handle(request);
+
+        verify(response).setStatusCode(304);
+        verifyZeroInteractions(binaryStoreReader);
+
+    }
+
+    @Test
+    public void testRange() throws Exception {
+
+        when(request.getHeader("Range")).thenReturn("bytes=100-199");
+        when(binaryStoreReader.readRange(any(FileInfo.class), any())).thenReturn(new FileReader());
+
+        handler.handle(request);
+
+        verify(response).setStatusCode(206);
+        verify(response).putHeader("Content-Range", "bytes 100-199/1000");
+        verify(response).putHeader("Content-Length", "100");
+        verify(binaryStoreReader).readRange(fileInfo, new ContentRange().setFrom(100).setTo(199));
+
+    }
+
+    @Test
+    public void testRangeWithStaleIfRange() throws Exception {
+
+        when(request.getHeader("Range")).thenReturn("bytes=100-199");
+        when(request.getHeader("If-Range")).thenReturn("\"other\"");
+        when(binaryStoreReader.read(fileInfo)).thenReturn(new FileReader());
+
+        handler.handle(request);
+
+        // The file changed since the client's copy, so the whole file is sent
+        verify(response, never()).setStatusCode(206);
+        verify(binaryStoreReader).read(fileInfo);
+
+    }
+
+    @Test
+    public void testRangeNotSatisfiable() throws Exception {
+
+        when(request.getHeader("Range")).thenReturn("bytes=1000-1100");
+
+        handler.handle(request);
+
+        verify(response).setStatusCode(416);
+        verify(response).putHeader("Content-Range", "bytes */1000");
+        verify(response).end();
+        verifyZeroInteractions(binaryStoreReader);
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMultipleRanges() throws Exception {
+
+        List<ContentRange> ranges = Arrays.asList(
+                new ContentRange().setFrom(0).setTo(1),
+                new ContentRange().setFrom(998).setTo(999));
+
+        FileReader reader = new FileReader();
+        when(request.getHeader("Range")).thenReturn("bytes=0-1,-2");
+        when(binaryStoreReader.readRanges(fileInfo, ranges)).thenReturn(reader);
+
+        handler.handle(request);
+
+        // The reader reports the ranges it will send before loading any chunks
+        reader.handleFile(new FileReadInfo().setFile(fileInfo).setRanges(ranges));
+
+        ArgumentCaptor<String> lengthCaptor = ArgumentCaptor.forClass(String.class);
+        verify(response).setStatusCode(206);
+        verify(response).putHeader("Content-Type", "multipart/byteranges; boundary=BINARYSTORE_BYTERANGES");
+        verify(response).putHeader(eq("Content-Length"), lengthCaptor.capture());
+
+        Buffer body = Buffer.buffer();
+        doAnswer(invocation -> {
+            body.appendString((String) invocation.getArguments()[0]);
+            return response;
+        }).when(response).write(anyString());
+        doAnswer(invocation -> {
+            body.appendBuffer((Buffer) invocation.getArguments()[0]);
+            return response;
+        }).when(response).write(any(Buffer.class));
+        doAnswer(invocation -> body.appendString((String) invocation.getArguments()[0])).when(response).end(anyString());
+
+        reader.handlePart(ranges.get(0));
+        reader.handleData("ab".getBytes());
+        reader.handlePart(ranges.get(1));
+        reader.handleData("yz".getBytes());
+        reader.handleEnd(FileReader.Result.OK);
+
+        assertEquals("--BINARYSTORE_BYTERANGES\r\n"
+                + "Content-Type: image/jpeg\r\n"
+                + "Content-Range: bytes 0-1/1000\r\n"
+                + "\r\n"
+                + "ab"
+                + "\r\n--BINARYSTORE_BYTERANGES\r\n"
+                + "Content-Type: image/jpeg\r\n"
+                + "Content-Range: bytes 998-999/1000\r\n"
+                + "\r\n"
+                + "yz"
+                + "\r\n--BINARYSTORE_BYTERANGES--\r\n", body.toString());
+        assertEquals(String.valueOf(body.length()), lengthCaptor.getValue());
+
+    }
+
+    @Test
+    public void testReadErrorAfterHeaders() throws Exception {
+
+        FileReader reader = new FileReader();
+        when(binaryStoreReader.read(fileInfo)).thenReturn(reader);
+
+        handler.handle(request);
+        reader.handleData("data".getBytes());
+        when(response.headWritten()).thenReturn(true);
+        reader.handleEnd(FileReader.Result.ERROR);
+
+        // A truncated body must not look complete, the connection is closed before the reader ends the response
+        InOrder inOrder = inOrder(response);
+        inOrder.verify(response).close();
+        inOrder.verify(response).end();
+        verify(response, never()).setStatusCode(500);
+
+    }
+
+    @Test
+    public void testReadErrorBeforeHeaders() throws Exception {
+
+        FileReader reader = new FileReader();
+        when(binaryStoreReader.read(fileInfo)).thenReturn(reader);
+
+        handler.handle(request);
+        reader.handleEnd(FileReader.Result.ERROR);
+
+        verify(response).setStatusCode(500);
+        verify(response).end();
+        verify(response, never()).close();
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testClientDisconnects() throws Exception {
+
+        FileReader reader = new FileReader();
+        when(binaryStoreReader.read(fileInfo)).thenReturn(reader);
+
+        handler.handle(request);
+        reader.handleData("data".getBytes());
+
+        ArgumentCaptor<Handler<Void>> closeCaptor = ArgumentCaptor.forClass((Class) Handler.class);
+        verify(response).closeHandler(closeCaptor.capture());
+        when(response.closed()).thenReturn(true);
+        closeCaptor.getValue().handle(null);
+
+        // The read is cancelled rather than left paused
+        assertTrue(reader.isEnded());
+        verify(response, never()).setStatusCode(anyInt());
+        verify(response, never()).close();
+
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+
+        when(binaryStoreManager.loadFile(uuid)).thenReturn(when.resolve(null));
+
+        handler.handle(request);
+
+        verify(response).setStatusCode(404);
+        verify(response).end();
+
+        // Pending uploads are not served either
+        reset(response);
+        when(response.setStatusCode(anyInt())).thenReturn(response);
+        when(binaryStoreManager.loadFile(uuid)).thenReturn(when.resolve(new FileInfo(fileInfo).setStatus(FileStatus.PENDING)));
+
+        handler.handle(request);
+
+        verify(response).setStatusCode(404);
+        verifyZeroInteractions(binaryStoreReader);
+
+    }
+
+    @Test
+    public void testInvalidPath() throws Exception {
+
+        when(request.path()).thenReturn("/files/not-a-uuid");
+        handler.handle(request);
+
+        verify(response).setStatusCode(404);
+        verifyZeroInteractions(binaryStoreManager);
+
+    }
+
+    @Test
+    public void testMethodNotAllowed() throws Exception {
+
+        when(request.method()).thenReturn(HttpMethod.PUT);
+        handler.handle(request);
+
+        verify(response).setStatusCode(405);
+        verify(response).putHeader("Allow", "GET, HEAD");
+
+    }
+
+    @Test
+    public void testKeyspace() throws Exception {
+
+        BinaryStoreManager tenantManager = mock(BinaryStoreManager.class);
+        BinaryStoreReader tenantReader = mock(BinaryStoreReader.class);
+        FileReader reader = new FileReader();
+
+        when(request.getParam("keyspace")).thenReturn("tenant_a");
+        when(binaryStoreManager.forKeyspace("tenant_a")).thenReturn(tenantManager);
+        when(binaryStoreReader.forKeyspace("tenant_a")).thenReturn(tenantReader);
+        when(tenantManager.loadFile(uuid)).thenReturn(when.resolve(fileInfo));
+        when(tenantReader.read(fileInfo)).thenReturn(reader);
+
+        handler.handle(request);
+
+        verify(tenantReader).read(fileInfo);
+        verify(binaryStoreManager, never()).loadFile(any(UUID.class));
+        verify(response).putHeader("Content-Length", "1000");
+
+    }
+
+    @Test
+    public void testKeyspaceNotAllowed() throws Exception {
+
+        when(request.getParam("keyspace")).thenReturn("tenant_b");
+        when(binaryStoreManager.forKeyspace("tenant_b")).thenThrow(new IllegalArgumentException());
+
+        handler.handle(request);
+
+        verify(response).setStatusCode(404);
+        verify(binaryStoreManager, never()).loadFile(any(UUID.class));
+
+    }
+
+    @Test
+    public void testParseRanges() throws Exception {
+
+        assertNull(handler.parseRanges(null, 1000));
+        assertNull(handler.parseRanges("items=0-10", 1000));
+        assertNull(handler.parseRanges("bytes=10-5", 1000));
+        assertNull(handler.parseRanges("bytes=abc", 1000));
+
+        assertEquals(Collections.singletonList(new ContentRange().setFrom(500).setTo(999)),
+                handler.parseRanges("bytes=500-", 1000));
+        assertEquals(Collections.singletonList(new ContentRange().setFrom(900).setTo(999)),
+                handler.parseRanges("bytes=-100", 1000));
+        assertEquals(Collections.singletonList(new ContentRange().setFrom(0).setTo(999)),
+                handler.parseRanges("bytes=-5000", 1000));
+        assertEquals(Collections.singletonList(new ContentRange().setFrom(990).setTo(999)),
+                handler.parseRanges("bytes=990-2000", 1000));
+        assertEquals(Arrays.asList(new ContentRange().setFrom(0).setTo(0), new ContentRange().setFrom(5).setTo(9)),
+                handler.parseRanges("bytes=0-0, 5-9, 2000-3000", 1000));
+        assertTrue(handler.parseRanges("bytes=1000-", 1000).isEmpty());
+        assertTrue(handler.parseRanges("bytes=-0", 1000).isEmpty());
+
+    }
+
+}
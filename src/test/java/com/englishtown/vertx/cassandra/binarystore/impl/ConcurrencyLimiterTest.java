@@ -0,0 +1,177 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitExceededException;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitOptions;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ConcurrencyLimiter}
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    MetricRegistry registry = new MetricRegistry();
+    ConcurrencyLimitOptions options = new ConcurrencyLimitOptions()
+            .setEnabled(true)
+            .setInitialLimit(20)
+            .setMinLimit(4)
+            .setMaxLimit(100);
+    When when = WhenFactory.createSync();
+    ConcurrencyLimiter limiter;
+
+    @Before
+    public void setUp() throws Exception {
+        limiter = new ConcurrencyLimiter(options, registry, "queries", when);
+    }
+
+    @Test
+    public void testRejectsBeyondLimit() throws Exception {
+
+        options.setInitialLimit(2);
+        limiter = new ConcurrencyLimiter(options, registry, "queries", when);
+
+        Deferred<String> d1 = when.defer();
+        Deferred<String> d2 = when.defer();
+
+        Promise<String> p1 = limiter.execute(d1::getPromise);
+        limiter.execute(d2::getPromise);
+        Promise<String> p3 = limiter.execute(() -> {
+            fail("Query beyond the limit should not start");
+            return null;
+        });
+
+        assertEquals(HandlerState.REJECTED, p3.inspect().getState());
+        ConcurrencyLimitExceededException e = (ConcurrencyLimitExceededException) p3.inspect().getReason();
+        assertEquals(2, e.getLimit());
+        assertEquals(1, registry.meter("et.cass.binarystore.queries.lane.rejected").getCount());
+        assertEquals(2, limiter.getInFlight());
+
+        d1.resolve("done");
+        assertEquals("done", p1.inspect().getValue());
+        assertEquals(1, limiter.getInFlight());
+
+        Promise<String> p4 = limiter.execute(() -> when.resolve("next"));
+        assertEquals(HandlerState.FULFILLED, p4.inspect().getState());
+
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsSteady() throws Exception {
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(RTT, limiter.getLimit(), false);
+        }
+
+        assertTrue(limiter.getLimit() > 20);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.onSample(RTT, limiter.getLimit(), false);
+        }
+
+        assertEquals(100, limiter.getLimit());
+
+    }
+
+    @Test
+    public void testLimitShrinksWhenLatencyRises() throws Exception {
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(RTT, limiter.getLimit(), false);
+        }
+        int steady = limiter.getLimit();
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(RTT * 10, limiter.getLimit(), false);
+        }
+
+        assertTrue(limiter.getLimit() < steady);
+
+    }
+
+    @Test
+    public void testLimitHeldWhenNotBusy() throws Exception {
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(RTT, 1, false);
+        }
+
+        assertEquals(20, limiter.getLimit());
+
+    }
+
+    @Test
+    public void testTimeoutsBackOff() throws Exception {
+
+        Promise<String> p = limiter.execute(() -> when.reject(new OperationTimedOutException(new InetSocketAddress(9042))));
+
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+        assertEquals(18, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(RTT, 1, true);
+        }
+
+        assertEquals(4, limiter.getLimit());
+
+    }
+
+    @Test
+    public void testOtherErrorsDoNotBackOff() throws Exception {
+
+        Promise<String> p = limiter.execute(() -> when.reject(new IllegalStateException()));
+
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+        assertEquals(20, limiter.getLimit());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGauges() throws Exception {
+
+        Gauge<Integer> limit = registry.getGauges().get("et.cass.binarystore.queries.lane.limit");
+        Gauge<Integer> inFlight = registry.getGauges().get("et.cass.binarystore.queries.lane.inflight");
+
+        limiter.execute(() -> when.defer().getPromise());
+
+        assertEquals(20, (int) limit.getValue());
+        assertEquals(1, (int) inFlight.getValue());
+
+        // A new limiter takes over the gauges
+        new ConcurrencyLimiter(options.setInitialLimit(10), registry, "queries", when);
+        assertEquals(10, (int) ((Gauge<Integer>) registry.getGauges().get("et.cass.binarystore.queries.lane.limit")).getValue());
+
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        options.setEnabled(false).setInitialLimit(4);
+        limiter = new ConcurrencyLimiter(options, new MetricRegistry(), "queries", when);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.execute(() -> when.defer().getPromise());
+        }
+
+        Promise<String> p = limiter.execute(() -> when.resolve("ok"));
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreSessions;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreStatements;
+import com.englishtown.vertx.cassandra.binarystore.KeyspaceOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link DefaultBinaryStoreKeyspaces}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultBinaryStoreKeyspacesTest {
+
+    @Mock
+    BinaryStoreStatements statements;
+    @Mock
+    BinaryStoreSessions sessions;
+
+    When when = WhenFactory.createSync();
+    KeyspaceOptions options = new KeyspaceOptions().setAllowed(new ArrayList<>(Arrays.asList("tenant_a", "tenant_b")));
+    List<BinaryStoreStatements> created = new ArrayList<>();
+    List<Deferred<Void>> inits = new ArrayList<>();
+    DefaultBinaryStoreKeyspaces keyspaces;
+
+    @Before
+    public void setUp() throws Exception {
+
+        when(statements.getKeyspace()).thenReturn("binarystore");
+        when(statements.isInitialized()).thenReturn(true);
+        when(sessions.init(any(BinaryStoreStatements.class))).thenReturn(when.resolve(null));
+
+        keyspaces = new DefaultBinaryStoreKeyspaces(statements, this::createStatements, sessions, options, when);
+    }
+
+    private BinaryStoreStatements createStatements() {
+        BinaryStoreStatements keyspaceStatements = mock(BinaryStoreStatements.class);
+        Deferred<Void> d = when.defer();
+        when(keyspaceStatements.init(anyString())).thenReturn(d.getPromise());
+        created.add(keyspaceStatements);
+        inits.add(d);
+        return keyspaceStatements;
+    }
+
+    @Test
+    public void testDefaultKeyspace() throws Exception {
+
+        assertEquals("binarystore", keyspaces.getDefaultKeyspace());
+        assertTrue(keyspaces.isAllowed("binarystore"));
+        assertSame(statements, keyspaces.getPreparedStatements("binarystore"));
+        assertSame(statements, keyspaces.getStatements("binarystore").inspect().getValue());
+        assertTrue(created.isEmpty());
+
+    }
+
+    @Test
+    public void testLazyInit() throws Exception {
+
+        Deferred<Void> d1 = when.defer();
+        Deferred<Void> d2 = when.defer();
+        when(statements.isInitialized()).thenReturn(false);
+        when(statements.init("binarystore")).thenReturn(d1.getPromise()).thenReturn(d2.getPromise());
+
+        // Requests made while the default keyspace is initialized wait for it
+        Promise<Void> init = keyspaces.init("binarystore");
+        Promise<BinaryStoreStatements> p1 = keyspaces.getStatements("binarystore");
+        assertEquals(HandlerState.PENDING, p1.inspect().getState());
+
+        d1.reject(new RuntimeException("Unavailable"));
+        assertEquals(HandlerState.REJECTED, init.inspect().getState());
+        assertEquals(HandlerState.REJECTED, p1.inspect().getState());
+        assertEquals(HandlerState.PENDING, keyspaces.whenInitialized().inspect().getState());
+
+        // The next request tries again
+        Promise<BinaryStoreStatements> p2 = keyspaces.getStatements("binarystore");
+        d2.resolve((Void) null);
+
+        assertSame(statements, p2.inspect().getValue());
+        assertEquals(HandlerState.FULFILLED, keyspaces.whenInitialized().inspect().getState());
+        verify(statements, times(2)).init("binarystore");
+        verify(sessions).init(statements);
+
+    }
+
+    @Test
+    public void testPreparedOnce() throws Exception {
+
+        assertNull(keyspaces.getPreparedStatements("tenant_a"));
+
+        // Requests arriving while the keyspace is prepared wait for the same statements
+        Promise<BinaryStoreStatements> p1 = keyspaces.getStatements("tenant_a");
+        Promise<BinaryStoreStatements> p2 = keyspaces.getStatements("tenant_a");
+
+        assertEquals(1, created.size());
+        assertEquals(HandlerState.PENDING, p1.inspect().getState());
+        verify(created.get(0)).init("tenant_a");
+
+        inits.get(0).resolve((Void) null);
+
+        BinaryStoreStatements tenantStatements = created.get(0);
+        assertSame(tenantStatements, p1.inspect().getValue());
+        assertSame(tenantStatements, p2.inspect().getValue());
+        assertSame(tenantStatements, keyspaces.getPreparedStatements("tenant_a"));
+        verify(sessions).init(tenantStatements);
+
+        keyspaces.getStatements("tenant_a");
+        assertEquals(1, created.size());
+        assertEquals(1, keyspaces.getPreparedCount());
+
+    }
+
+    @Test
+    public void testFailedPreparationIsRetried() throws Exception {
+
+        Promise<BinaryStoreStatements> p1 = keyspaces.getStatements("tenant_a");
+        inits.get(0).reject(new RuntimeException("Unavailable"));
+
+        assertEquals(HandlerState.REJECTED, p1.inspect().getState());
+        assertNull(keyspaces.getPreparedStatements("tenant_a"));
+
+        Promise<BinaryStoreStatements> p2 = keyspaces.getStatements("tenant_a");
+        inits.get(1).resolve((Void) null);
+
+        assertEquals(2, created.size());
+        assertSame(created.get(1), p2.inspect().getValue());
+
+    }
+
+    @Test
+    public void testKeyspaceNotAllowed() throws Exception {
+
+        assertFalse(keyspaces.isAllowed("tenant_c"));
+        assertFalse(keyspaces.isAllowed(null));
+
+        Promise<BinaryStoreStatements> p = keyspaces.getStatements("tenant_c");
+
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+        assertTrue(p.inspect().getReason() instanceof IllegalArgumentException);
+        assertTrue(created.isEmpty());
+
+    }
+
+    @Test
+    public void testAllowAny() throws Exception {
+
+        options.setAllowAny(true);
+
+        assertTrue(keyspaces.isAllowed("tenant_c"));
+
+        // Names are built into queries
+        assertFalse(keyspaces.isAllowed("tenant_c; DROP KEYSPACE binarystore"));
+        assertFalse(keyspaces.isAllowed("\"Tenant\""));
+
+    }
+
+    @Test
+    public void testMaxKeyspaces() throws Exception {
+
+        options.setMaxKeyspaces(2);
+
+        keyspaces.getStatements("tenant_a");
+        Promise<BinaryStoreStatements> p = keyspaces.getStatements("tenant_b");
+
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+        assertTrue(p.inspect().getReason() instanceof IllegalStateException);
+        assertEquals(1, created.size());
+
+    }
+
+}
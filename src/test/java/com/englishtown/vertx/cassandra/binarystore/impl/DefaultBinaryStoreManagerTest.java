@@ -1,16 +1,28 @@
 package com.englishtown.vertx.cassandra.binarystore.impl;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.datastax.driver.core.*;
+import com.englishtown.promises.Deferred;
 import com.englishtown.promises.HandlerState;
 import com.englishtown.promises.Promise;
 import com.englishtown.promises.When;
 import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreManager;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreSessions;
 import com.englishtown.vertx.cassandra.binarystore.BinaryStoreStatements;
+import com.englishtown.vertx.cassandra.binarystore.BufferPoolOptions;
 import com.englishtown.vertx.cassandra.binarystore.ChunkInfo;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitExceededException;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitOptions;
 import com.englishtown.vertx.cassandra.binarystore.FileInfo;
+import com.englishtown.vertx.cassandra.binarystore.FileStatus;
+import com.englishtown.vertx.cassandra.binarystore.HedgingOptions;
+import com.englishtown.vertx.cassandra.binarystore.KeyspaceOptions;
+import com.englishtown.vertx.cassandra.binarystore.LaneOptions;
+import com.englishtown.vertx.cassandra.binarystore.WarmCache;
 import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
 import org.junit.Before;
 import org.junit.Test;
@@ -21,6 +33,8 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 import java.util.function.Function;
 
@@ -74,6 +88,26 @@ public class DefaultBinaryStoreManagerTest {
     @Mock
     Counter chunkWriterErrorCount;
 
+    @Mock
+    Timer fileDeleteTimer;
+    @Mock
+    Timer.Context fileDeleteTimerContext;
+    @Mock
+    Counter fileDeleteErrorCount;
+    @Mock
+    Timer chunkDeleteTimer;
+    @Mock
+    Timer.Context chunkDeleteTimerContext;
+    @Mock
+    Counter chunkDeleteErrorCount;
+
+    @Mock
+    Counter chunkInFlightCount;
+    @Mock
+    Meter chunkReadBytes;
+    @Mock
+    Meter chunkWriteBytes;
+
     @Captor
     ArgumentCaptor<Function<ResultSet, Promise<ResultSet>>> fulfilledCaptor;
     @Captor
@@ -88,6 +122,16 @@ public class DefaultBinaryStoreManagerTest {
 
         when = WhenFactory.createSync();
 
+        // In flight counters and byte meters
+        Timer laneTimer = mock(Timer.class);
+        when(laneTimer.time()).thenReturn(mock(Timer.Context.class));
+        when(registry.timer(anyString())).thenReturn(laneTimer);
+        when(registry.counter(anyString())).thenReturn(mock(Counter.class));
+        when(registry.meter(anyString())).thenReturn(mock(Meter.class));
+        when(registry.counter("et.cass.binarystore.chunks.inflight")).thenReturn(chunkInFlightCount);
+        when(registry.meter("et.cass.binarystore.chunks.read.bytes")).thenReturn(chunkReadBytes);
+        when(registry.meter("et.cass.binarystore.chunks.write.bytes")).thenReturn(chunkWriteBytes);
+
         when(registry.timer("et.cass.binarystore.files.read.success")).thenReturn(fileReadTimer);
         when(registry.counter("et.cass.binarystore.files.read.errors")).thenReturn(fileReadErrorCount);
         when(registry.timer("et.cass.binarystore.files.write.success")).thenReturn(fileWriteTimer);
@@ -98,12 +142,20 @@ public class DefaultBinaryStoreManagerTest {
         when(registry.timer("et.cass.binarystore.chunks.write.success")).thenReturn(chunkWriteTimer);
         when(registry.counter("et.cass.binarystore.chunks.write.errors")).thenReturn(chunkWriterErrorCount);
 
+        when(registry.timer("et.cass.binarystore.files.delete.success")).thenReturn(fileDeleteTimer);
+        when(registry.counter("et.cass.binarystore.files.delete.errors")).thenReturn(fileDeleteErrorCount);
+        when(registry.timer("et.cass.binarystore.chunks.delete.success")).thenReturn(chunkDeleteTimer);
+        when(registry.counter("et.cass.binarystore.chunks.delete.errors")).thenReturn(chunkDeleteErrorCount);
+
         when(fileReadTimer.time()).thenReturn(fileReadTimerContext);
         when(fileWriteTimer.time()).thenReturn(fileWriteTimerContext);
         when(chunkReadTimer.time()).thenReturn(chunkReadTimerContext);
         when(chunkWriteTimer.time()).thenReturn(chunkWriteTimerContext);
+        when(fileDeleteTimer.time()).thenReturn(fileDeleteTimerContext);
+        when(chunkDeleteTimer.time()).thenReturn(chunkDeleteTimerContext);
 
         when(session.executeAsync(any(Statement.class))).thenReturn(when.resolve(resultSet));
+        when(binaryStoreStatements.isInitialized()).thenReturn(true);
 
         bsm = new DefaultBinaryStoreManager(session, binaryStoreStatements, registry, when);
     }
@@ -132,7 +184,7 @@ public class DefaultBinaryStoreManagerTest {
 
         // Set up interactions
         when(binaryStoreStatements.getStoreFile()).thenReturn(preparedStatement);
-        when(preparedStatement.bind(uuid, 1000L, 100, 123456789L, "testfile.jpg", "image/jpeg", null)).thenReturn(boundStatement);
+        when(preparedStatement.bind(uuid, 1000L, 100, 0, 123456789L, "testfile.jpg", "image/jpeg", null, null, "COMMITTED", 0)).thenReturn(boundStatement);
 
         // When we call storeFile
         Promise<Void> p = bsm.storeFile(fileInfo);
@@ -141,7 +193,7 @@ public class DefaultBinaryStoreManagerTest {
         verify(fileWriteTimer).time();
 
         verify(binaryStoreStatements).getStoreFile();
-        verify(preparedStatement).bind(uuid, 1000L, 100, 123456789L, "testfile.jpg", "image/jpeg", null);
+        verify(preparedStatement).bind(uuid, 1000L, 100, 0, 123456789L, "testfile.jpg", "image/jpeg", null, null, "COMMITTED", 0);
         verify(session).executeAsync(any(BoundStatement.class));
 
         // Then we expect the timer to be stopped and for our callback to have the success method called
@@ -159,7 +211,7 @@ public class DefaultBinaryStoreManagerTest {
 
         // Set up interactions
         when(binaryStoreStatements.getStoreFile()).thenReturn(preparedStatement);
-        when(preparedStatement.bind(uuid, 1000L, 100, 123456789L, "testfile.jpg", "image/jpeg", null)).thenReturn(boundStatement);
+        when(preparedStatement.bind(uuid, 1000L, 100, 0, 123456789L, "testfile.jpg", "image/jpeg", null, null, "COMMITTED", 0)).thenReturn(boundStatement);
         sessionReject();
 
         // When we call storeFile
@@ -176,6 +228,47 @@ public class DefaultBinaryStoreManagerTest {
 
     }
 
+    @Test
+    public void testStoringAFileWithTtl() throws Exception {
+
+        // Create our FileInfo that expires after a day
+        FileInfo fileInfo = createFileInfo().setTtl(86400);
+
+        // Set up interactions
+        when(binaryStoreStatements.getStoreFile()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(uuid, 1000L, 100, 0, 123456789L, "testfile.jpg", "image/jpeg", null, null, "COMMITTED", 86400)).thenReturn(boundStatement);
+
+        // When we call storeFile
+        Promise<Void> p = bsm.storeFile(fileInfo);
+
+        // Then we expect the ttl to be bound to the insert
+        verify(preparedStatement).bind(uuid, 1000L, 100, 0, 123456789L, "testfile.jpg", "image/jpeg", null, null, "COMMITTED", 86400);
+        verify(session).executeAsync(eq(boundStatement));
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void testStoringAPendingFile() throws Exception {
+
+        // An upload that has just started has no length yet
+        FileInfo fileInfo = createFileInfo().setLength(0).setStatus(FileStatus.PENDING);
+
+        when(binaryStoreStatements.getStoreFile()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(uuid, 0L, 100, 0, 123456789L, "testfile.jpg", "image/jpeg", null, null, "PENDING", 0)).thenReturn(boundStatement);
+
+        Promise<Void> p = bsm.storeFile(fileInfo);
+
+        verify(preparedStatement).bind(uuid, 0L, 100, 0, 123456789L, "testfile.jpg", "image/jpeg", null, null, "PENDING", 0);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStoringAnEmptyCommittedFile() throws Exception {
+        bsm.storeFile(createFileInfo().setLength(0));
+    }
+
     @Test
     public void testStoringAChunk() throws Exception {
         // Create our chunk info
@@ -184,7 +277,7 @@ public class DefaultBinaryStoreManagerTest {
 
         // Set up interactions
         when(binaryStoreStatements.getStoreChunk()).thenReturn(preparedStatement);
-        when(preparedStatement.bind(uuid, 1, byteBuffer)).thenReturn(boundStatement);
+        when(preparedStatement.bind(uuid, 1, byteBuffer, null, 0)).thenReturn(boundStatement);
 
         // When we call storeChunk
         Promise<Void> p = bsm.storeChunk(chunkInfo);
@@ -196,6 +289,9 @@ public class DefaultBinaryStoreManagerTest {
         // We also ensure that the error count was *not* called
         verifyZeroInteractions(chunkWriterErrorCount);
         verify(chunkWriteTimerContext).stop();
+        verify(chunkWriteBytes).mark(17);
+        verify(chunkInFlightCount).inc();
+        verify(chunkInFlightCount).dec();
         assertEquals(HandlerState.FULFILLED, p.inspect().getState());
 
     }
@@ -208,7 +304,7 @@ public class DefaultBinaryStoreManagerTest {
 
         // Set up interactions
         when(binaryStoreStatements.getStoreChunk()).thenReturn(preparedStatement);
-        when(preparedStatement.bind(uuid, 1, byteBuffer)).thenReturn(boundStatement);
+        when(preparedStatement.bind(uuid, 1, byteBuffer, null, 0)).thenReturn(boundStatement);
         sessionReject();
 
         // When we call storeChunk
@@ -218,7 +314,7 @@ public class DefaultBinaryStoreManagerTest {
         verify(chunkWriteTimer).time();
 
         verify(binaryStoreStatements).getStoreChunk();
-        verify(preparedStatement).bind(uuid, 1, byteBuffer);
+        verify(preparedStatement).bind(uuid, 1, byteBuffer, null, 0);
         verify(session).executeAsync(any(BoundStatement.class));
 
         // Then we expect the timer to be stopped and for our callback to have the success method called
@@ -247,6 +343,7 @@ public class DefaultBinaryStoreManagerTest {
         when(row.getInt("chunkSize")).thenReturn(100);
         when(row.getLong("uploadDate")).thenReturn(123456789L);
         when(row.getMap("metadata", String.class, String.class)).thenReturn(null);
+        when(row.getInt("ttl")).thenReturn(3600);
 
         // When we call loadFile
         Promise<FileInfo> p = bsm.loadFile(uuid);
@@ -265,6 +362,26 @@ public class DefaultBinaryStoreManagerTest {
         assertEquals(HandlerState.FULFILLED, p.inspect().getState());
         assertNotNull(p.inspect().getValue());
 
+        // Rows written before upload states existed have no status and are committed
+        assertEquals(FileStatus.COMMITTED, p.inspect().getValue().getStatus());
+
+        // The row's remaining ttl is read back
+        assertEquals(3600, p.inspect().getValue().getTtl());
+
+    }
+
+    @Test
+    public void testLoadingAPendingFile() throws Exception {
+
+        when(preparedStatement.bind(uuid)).thenReturn(boundStatement);
+        Row row = mockFileRow();
+        when(row.getString("status")).thenReturn("PENDING");
+
+        Promise<FileInfo> p = bsm.loadFile(uuid);
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        assertEquals(FileStatus.PENDING, p.inspect().getValue().getStatus());
+
     }
 
     @Test
@@ -336,6 +453,8 @@ public class DefaultBinaryStoreManagerTest {
         // with the correct ChunkInfo object.
         verifyZeroInteractions(chunkReadErrorCount);
         verify(chunkReadTimerContext).stop();
+        verify(chunkReadBytes).mark(17);
+        verify(chunkInFlightCount).dec();
         assertEquals(HandlerState.FULFILLED, p.inspect().getState());
 
     }
@@ -385,6 +504,377 @@ public class DefaultBinaryStoreManagerTest {
 
     }
 
+    @Test
+    public void testDeletingAFile() throws Exception {
+        // Set up interactions, the file has 10 chunks
+        mockFileRow();
+        when(binaryStoreStatements.getDeleteFile()).thenReturn(preparedStatement);
+        when(binaryStoreStatements.getDeleteChunk()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(any())).thenReturn(boundStatement);
+        when(preparedStatement.bind(eq(uuid), anyInt())).thenReturn(boundStatement);
+
+        // When we call deleteFile
+        Promise<Void> p = bsm.deleteFile(uuid);
+
+        // Then we expect the file to be loaded, the file row to be deleted and then each chunk partition deleted
+        verify(preparedStatement, times(2)).bind(uuid);
+        for (int n = 0; n < 10; n++) {
+            verify(preparedStatement).bind(uuid, n);
+        }
+        verify(session, times(12)).executeAsync(any(BoundStatement.class));
+
+        verify(fileDeleteTimerContext).stop();
+        verify(chunkDeleteTimerContext, times(10)).stop();
+        verifyZeroInteractions(fileDeleteErrorCount, chunkDeleteErrorCount);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void testDeletingAFileWithWideLayout() throws Exception {
+        // Set up interactions, with a wide layout a single statement removes all chunks
+        mockFileRow();
+        when(binaryStoreStatements.getDeleteFile()).thenReturn(preparedStatement);
+        when(binaryStoreStatements.getDeleteChunks()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(any())).thenReturn(boundStatement);
+
+        // When we call deleteFile
+        Promise<Void> p = bsm.deleteFile(uuid);
+
+        // Then we expect the load, the file delete and a single chunk partition delete
+        verify(session, times(3)).executeAsync(any(BoundStatement.class));
+        verify(binaryStoreStatements, never()).getDeleteChunk();
+        verify(fileDeleteTimerContext).stop();
+        verify(chunkDeleteTimerContext).stop();
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void testDeletingAFileThatDoesNotExist() throws Exception {
+        // Set up interactions
+        when(binaryStoreStatements.getLoadFile()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(uuid)).thenReturn(boundStatement);
+        when(resultSet.one()).thenReturn(null);
+
+        // When we call deleteFile
+        Promise<Void> p = bsm.deleteFile(uuid);
+
+        // Then we expect only the load to have been executed
+        verify(session).executeAsync(any(BoundStatement.class));
+        verifyZeroInteractions(fileDeleteTimer, chunkDeleteTimer);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void testDeletingAFileUnsuccessfully() throws Exception {
+        // Set up interactions, loading succeeds but the delete fails
+        mockFileRow();
+        when(binaryStoreStatements.getDeleteFile()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(any())).thenReturn(boundStatement);
+        when(session.executeAsync(any(Statement.class)))
+                .thenReturn(when.resolve(resultSet))
+                .thenReturn(when.reject(new Throwable("This is an error")));
+
+        // When we call deleteFile
+        Promise<Void> p = bsm.deleteFile(uuid);
+
+        // Then we expect the error count to be incremented and no chunks deleted
+        verify(fileDeleteErrorCount).inc();
+        verify(fileDeleteTimerContext).stop();
+        verifyZeroInteractions(chunkDeleteTimer);
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void testStoringAChunkInBlocks() throws Exception {
+        // A 17 byte chunk stored as 8 byte blocks
+        byte[] data = "This is some data".getBytes();
+        ChunkInfo chunkInfo = new ChunkInfo().setId(uuid).setNum(1).setData(data).setChecksum(42).setBlockSize(8);
+
+        when(binaryStoreStatements.getStoreBlock()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(anyVararg())).thenReturn(boundStatement);
+
+        Promise<Void> p = bsm.storeChunk(chunkInfo);
+
+        // Then we expect each block to be inserted on its own, all carrying the chunk checksum
+        verify(preparedStatement).bind(uuid, 1, 0, ByteBuffer.wrap(data, 0, 8), 42, 0);
+        verify(preparedStatement).bind(uuid, 1, 1, ByteBuffer.wrap(data, 8, 8), 42, 0);
+        verify(preparedStatement).bind(uuid, 1, 2, ByteBuffer.wrap(data, 16, 1), 42, 0);
+        verify(session, times(3)).executeAsync(any(BoundStatement.class));
+        verify(binaryStoreStatements, never()).getStoreChunk();
+        verify(chunkWriteTimerContext).stop();
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void testLoadingBlocks() throws Exception {
+
+        when(binaryStoreStatements.getLoadBlocks()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(uuid, 1, 0, Integer.MAX_VALUE)).thenReturn(boundStatement);
+        when(preparedStatement.bind(uuid, 1, 1, 1)).thenReturn(boundStatement);
+
+        Row r1 = mock(Row.class);
+        Row r2 = mock(Row.class);
+        when(r1.getBytes("data")).thenAnswer(invocation -> ByteBuffer.wrap("This is ".getBytes()));
+        when(r2.getBytes("data")).thenAnswer(invocation -> ByteBuffer.wrap("some data".getBytes()));
+        when(r1.getInt("checksum")).thenReturn(42);
+        when(resultSet.all()).thenReturn(Arrays.asList(r1, r2));
+
+        // When we load the whole chunk
+        Promise<ChunkInfo> p = bsm.loadBlocks(uuid, 1, 0, Integer.MAX_VALUE);
+
+        // Then we expect the blocks to be joined in order and the chunk checksum returned
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        assertArrayEquals("This is some data".getBytes(), p.inspect().getValue().getData());
+        assertEquals(42, p.inspect().getValue().getChecksum().intValue());
+        verify(chunkReadTimerContext).stop();
+
+        // A partial chunk can't be verified against the chunk checksum
+        when(resultSet.all()).thenReturn(Collections.singletonList(r2));
+        p = bsm.loadBlocks(uuid, 1, 1, 1);
+
+        assertArrayEquals("some data".getBytes(), p.inspect().getValue().getData());
+        assertNull(p.inspect().getValue().getChecksum());
+
+    }
+
+    @Test
+    public void testDeletingAFileWithBlocks() throws Exception {
+        // Set up interactions, the file has 10 chunks stored as blocks
+        Row row = mockFileRow();
+        when(row.getInt("blockSize")).thenReturn(10);
+        when(binaryStoreStatements.getDeleteFile()).thenReturn(preparedStatement);
+        when(binaryStoreStatements.getDeleteBlocks()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(any())).thenReturn(boundStatement);
+        when(preparedStatement.bind(eq(uuid), anyInt())).thenReturn(boundStatement);
+
+        Promise<Void> p = bsm.deleteFile(uuid);
+
+        // Then we expect one partition delete per chunk from the blocks table
+        for (int n = 0; n < 10; n++) {
+            verify(preparedStatement).bind(uuid, n);
+        }
+        verify(binaryStoreStatements, never()).getDeleteChunk();
+        verify(chunkDeleteTimerContext, times(10)).stop();
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void testQueriesBeyondLimitAreRejected() throws Exception {
+
+        LaneOptions laneOptions = new LaneOptions().setConcurrencyLimitOptions(new ConcurrencyLimitOptions()
+                .setEnabled(true)
+                .setInitialLimit(1)
+                .setMinLimit(1));
+        bsm = new DefaultBinaryStoreManager(session, session, binaryStoreStatements,
+                new DefaultBinaryStoreKeyspaces(binaryStoreStatements, when), new HedgingOptions(), laneOptions, laneOptions,
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), registry, when);
+
+        Deferred<ResultSet> pending = when.defer();
+        when(session.executeAsync(any(Statement.class))).thenReturn(pending.getPromise());
+        when(binaryStoreStatements.getLoadChunk()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(uuid, 0)).thenReturn(boundStatement);
+
+        // When a second query is started while the first is in flight
+        Promise<ChunkInfo> first = bsm.loadChunk(uuid, 0);
+        Promise<ChunkInfo> second = bsm.loadChunk(uuid, 0);
+
+        // Then it fails fast without reaching the session
+        verify(session, times(1)).executeAsync(any(Statement.class));
+        assertEquals(HandlerState.REJECTED, second.inspect().getState());
+        assertTrue(second.inspect().getReason() instanceof ConcurrencyLimitExceededException);
+
+        // And the first releases its slot once answered
+        pending.resolve(resultSet);
+        assertEquals(HandlerState.FULFILLED, first.inspect().getState());
+
+        bsm.loadChunk(uuid, 0);
+        verify(session, times(2)).executeAsync(any(Statement.class));
+
+    }
+
+    @Test
+    public void testMetadataLaneIsSeparateFromChunkLane() throws Exception {
+
+        WhenCassandraSession metadataSession = mock(WhenCassandraSession.class);
+        LaneOptions laneOptions = new LaneOptions().setConcurrencyLimitOptions(new ConcurrencyLimitOptions()
+                .setEnabled(true)
+                .setInitialLimit(1)
+                .setMinLimit(1));
+        bsm = new DefaultBinaryStoreManager(metadataSession, session, binaryStoreStatements,
+                new DefaultBinaryStoreKeyspaces(binaryStoreStatements, when), new HedgingOptions(), laneOptions, laneOptions,
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), registry, when);
+
+        Deferred<ResultSet> pending = when.defer();
+        when(session.executeAsync(any(Statement.class))).thenReturn(pending.getPromise());
+        when(metadataSession.executeAsync(any(Statement.class))).thenReturn(when.resolve(resultSet));
+        when(binaryStoreStatements.getLoadChunk()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(uuid, 0)).thenReturn(boundStatement);
+        mockFileRow();
+        when(preparedStatement.bind(uuid)).thenReturn(boundStatement);
+
+        // When the chunk lane is full
+        bsm.loadChunk(uuid, 0);
+        assertEquals(HandlerState.REJECTED, bsm.loadChunk(uuid, 0).inspect().getState());
+
+        // Then file lookups still go through on their own session
+        Promise<FileInfo> p = bsm.loadFile(uuid);
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        verify(metadataSession).executeAsync(boundStatement);
+        verify(session, times(1)).executeAsync(any(Statement.class));
+        verify(registry, atLeastOnce()).timer("et.cass.binarystore.metadata.lane.latency");
+        verify(registry, atLeastOnce()).timer("et.cass.binarystore.chunks.lane.latency");
+
+    }
+
+    @Test
+    public void testForKeyspace() throws Exception {
+
+        BinaryStoreStatements tenantStatements = mock(BinaryStoreStatements.class);
+        BinaryStoreSessions sessions = mock(BinaryStoreSessions.class);
+        PreparedStatement tenantLoadFile = mock(PreparedStatement.class);
+        BoundStatement tenantSelect = mock(BoundStatement.class);
+
+        when(binaryStoreStatements.getKeyspace()).thenReturn("binarystore");
+        when(tenantStatements.init("tenant_a")).thenReturn(when.resolve(null));
+        when(tenantStatements.isInitialized()).thenReturn(true);
+        when(sessions.init(tenantStatements)).thenReturn(when.resolve(null));
+        when(tenantStatements.getLoadFile()).thenReturn(tenantLoadFile);
+        when(tenantLoadFile.bind(uuid)).thenReturn(tenantSelect);
+        when(resultSet.one()).thenReturn(null);
+
+        KeyspaceOptions options = new KeyspaceOptions().setAllowed(Collections.singletonList("tenant_a"));
+        bsm = new DefaultBinaryStoreManager(session, session, binaryStoreStatements,
+                new DefaultBinaryStoreKeyspaces(binaryStoreStatements, () -> tenantStatements, sessions, options, when),
+                new HedgingOptions(), new LaneOptions(), new LaneOptions(),
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), registry, when);
+
+        // The default keyspace is served by the manager itself
+        assertSame(bsm, bsm.forKeyspace(null));
+        assertSame(bsm, bsm.forKeyspace("binarystore"));
+
+        // Another keyspace's statements are prepared on first use
+        BinaryStoreManager tenant = bsm.forKeyspace("tenant_a");
+        assertEquals(HandlerState.FULFILLED, tenant.loadFile(uuid).inspect().getState());
+        assertEquals(HandlerState.FULFILLED, tenant.loadFile(uuid).inspect().getState());
+
+        verify(tenantStatements, times(1)).init("tenant_a");
+        verify(session, times(2)).executeAsync(tenantSelect);
+        verify(binaryStoreStatements, never()).getLoadFile();
+        assertSame(bsm, tenant.forKeyspace(null));
+
+        try {
+            bsm.forKeyspace("tenant_b");
+            fail("Keyspaces not allowed should be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+    }
+
+    @Test
+    public void testWaitsForLazyInit() throws Exception {
+
+        // Started lazily, the statements are still being prepared
+        BinaryStoreSessions sessions = mock(BinaryStoreSessions.class);
+        Deferred<Void> init = when.defer();
+        when(binaryStoreStatements.isInitialized()).thenReturn(false);
+        when(binaryStoreStatements.getKeyspace()).thenReturn("binarystore");
+        when(binaryStoreStatements.init("binarystore")).thenReturn(init.getPromise());
+        when(sessions.init(binaryStoreStatements)).thenReturn(when.resolve(null));
+
+        DefaultBinaryStoreKeyspaces keyspaces = new DefaultBinaryStoreKeyspaces(binaryStoreStatements, () -> null, sessions,
+                new KeyspaceOptions(), when);
+        keyspaces.init("binarystore");
+
+        bsm = new DefaultBinaryStoreManager(session, session, binaryStoreStatements, keyspaces,
+                new HedgingOptions(), new LaneOptions(), new LaneOptions(),
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), registry, when);
+
+        mockFileRow();
+        when(preparedStatement.bind(uuid)).thenReturn(boundStatement);
+
+        Promise<FileInfo> p = bsm.loadFile(uuid);
+        assertEquals(HandlerState.PENDING, p.inspect().getState());
+        verify(session, never()).executeAsync(any(Statement.class));
+
+        // The request goes out once they are ready
+        when(binaryStoreStatements.isInitialized()).thenReturn(true);
+        init.resolve((Void) null);
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        verify(session).executeAsync(boundStatement);
+
+    }
+
+    @Test
+    public void testWarmCache() throws Exception {
+
+        WarmCache warmCache = mock(WarmCache.class);
+        bsm = new DefaultBinaryStoreManager(session, session, binaryStoreStatements,
+                new DefaultBinaryStoreKeyspaces(binaryStoreStatements, when), new HedgingOptions(), new LaneOptions(),
+                new LaneOptions(), new DefaultChunkBufferPool(new BufferPoolOptions(), registry), warmCache, registry, when);
+
+        // Cached chunks are served without a query
+        ChunkInfo cached = new ChunkInfo().setId(uuid).setNum(1).setData(new byte[10]);
+        when(warmCache.getChunk(uuid, 1)).thenReturn(cached);
+
+        assertSame(cached, bsm.loadChunk(uuid, 1).inspect().getValue());
+        assertSame(cached, bsm.loadBlocks(uuid, 1, 0, Integer.MAX_VALUE).inspect().getValue());
+        verify(session, never()).executeAsync(any(Statement.class));
+
+        // Loaded records are offered to the cache, partial chunks are neither looked up nor cached
+        mockFileRow();
+        when(preparedStatement.bind(uuid)).thenReturn(boundStatement);
+        FileInfo fileInfo = bsm.loadFile(uuid).inspect().getValue();
+        verify(warmCache).offerFile(fileInfo);
+
+        when(binaryStoreStatements.getLoadBlocks()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(uuid, 1, 1, 1)).thenReturn(boundStatement);
+        Row row = mock(Row.class);
+        when(row.getBytes("data")).thenReturn(ByteBuffer.wrap("some data".getBytes()));
+        when(resultSet.all()).thenReturn(Collections.singletonList(row));
+
+        bsm.loadBlocks(uuid, 1, 1, 1);
+        verify(warmCache, times(2)).getChunk(uuid, 1);
+        verify(warmCache, never()).offerChunk(any(ChunkInfo.class));
+
+        // Loads the store makes itself look the cache up without counting a read
+        when(warmCache.peekChunk(uuid, 1)).thenReturn(cached);
+        BinaryStoreManager uncounted = bsm.uncounted();
+        assertSame(cached, uncounted.loadChunk(uuid, 1).inspect().getValue());
+        assertSame(cached, uncounted.loadBlocks(uuid, 1, 0, Integer.MAX_VALUE).inspect().getValue());
+        uncounted.loadFile(uuid);
+        verify(warmCache, times(2)).getChunk(uuid, 1);
+        verify(warmCache).getFile(uuid);
+        verify(warmCache).peekFile(uuid);
+
+        // A deleted file is dropped
+        when(binaryStoreStatements.getDeleteFile()).thenReturn(preparedStatement);
+        when(binaryStoreStatements.getDeleteChunk()).thenReturn(preparedStatement);
+        when(preparedStatement.bind(eq(uuid), anyInt())).thenReturn(boundStatement);
+
+        bsm.deleteFile(uuid);
+        verify(warmCache, atLeastOnce()).invalidate(uuid);
+
+    }
+
+    private Row mockFileRow() {
+        when(binaryStoreStatements.getLoadFile()).thenReturn(preparedStatement);
+
+        Row row = mock(Row.class);
+        when(resultSet.one()).thenReturn(row);
+        when(row.getLong("length")).thenReturn(1000L);
+        when(row.getInt("chunkSize")).thenReturn(100);
+        return row;
+    }
+
     private FileInfo createFileInfo() {
         return new FileInfo()
                 .setChunkSize(100)
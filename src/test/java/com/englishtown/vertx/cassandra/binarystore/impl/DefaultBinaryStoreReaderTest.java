@@ -1,7 +1,12 @@
 package com.englishtown.vertx.cassandra.binarystore.impl;
 
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.promises.Deferred;
 import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
 import com.englishtown.vertx.cassandra.binarystore.*;
+import com.google.common.hash.Hashing;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import org.junit.Before;
@@ -12,11 +17,17 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import java.util.function.Function;
 
 import static com.englishtown.vertx.cassandra.binarystore.FileReader.Result;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -29,6 +40,8 @@ public class DefaultBinaryStoreReaderTest {
     @Mock
     BinaryStoreManager binaryStoreManager;
     @Mock
+    BinaryStoreConfigurator configurator;
+    @Mock
     Handler<Buffer> dataHandler;
     @Mock
     Handler<Void> endHandler;
@@ -54,6 +67,7 @@ public class DefaultBinaryStoreReaderTest {
     @Captor
     ArgumentCaptor<FileReadInfo> fileHandlerArgumentCaptor;
 
+    private MetricRegistry registry = new MetricRegistry();
     private UUID uuid = UUID.fromString("739a6466-adf8-11e3-aca6-425861b86ab6");
     private DefaultBinaryStoreReader dbsr;
     private FileInfo fileInfo;
@@ -68,7 +82,7 @@ public class DefaultBinaryStoreReaderTest {
         when(fileInfoPromise.<FileInfo>then(any())).thenReturn(fileInfoPromise);
         when(chunkInfoPromise.<ChunkInfo>then(any())).thenReturn(chunkInfoPromise);
 
-        dbsr = new DefaultBinaryStoreReader(binaryStoreManager);
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, registry, WhenFactory.createSync());
     }
 
     @Test
@@ -109,12 +123,50 @@ public class DefaultBinaryStoreReaderTest {
         // Then we expect loadChunks to be called again
         verify(binaryStoreManager).loadChunk(eq(uuid), eq(1));
 
-        // And this time we say nothing is found
+        // And this time we say nothing is found, short of the file's chunk count
         chunkInfoFulfilledCaptor.getValue().apply(null);
 
-        // We expect our end handler to be called with the OK result
-        verify(resultHandler).handle(Result.OK);
+        // We expect the missing chunk to fail the read rather than end it as if complete
+        verify(exceptionHandler).handle(any(Throwable.class));
+        verify(resultHandler).handle(Result.ERROR);
         verify(endHandler).handle(null);
+
+        // The read is measured from the reader being returned
+        assertEquals(1, registry.timer("et.cass.binarystore.reads.ttfb").getCount());
+        assertEquals(data.length, registry.meter("et.cass.binarystore.reads.bytes").getCount());
+        assertEquals(1, registry.histogram("et.cass.binarystore.reads.chunks").getCount());
+        assertEquals(2, registry.histogram("et.cass.binarystore.reads.chunks").getSnapshot().getMax());
+    }
+
+    @Test
+    public void testReadLoadedFile() throws Exception {
+
+        fileInfo.setLength(100L);
+        FileReader fileReader = dbsr.read(fileInfo);
+        fileReader.resultHandler(resultHandler);
+
+        // The file record is not loaded again
+        verify(binaryStoreManager, never()).loadFile(any(UUID.class));
+        verify(binaryStoreManager).loadChunk(eq(uuid), eq(0));
+
+        verify(chunkInfoPromise).then(chunkInfoFulfilledCaptor.capture());
+        chunkInfoFulfilledCaptor.getValue().apply(new ChunkInfo().setId(uuid).setNum(0).setData(new byte[100]));
+
+        verify(resultHandler).handle(Result.OK);
+    }
+
+    @Test
+    public void testReadRecordsPauseTime() throws Exception {
+
+        FileReader fileReader = dbsr.read(uuid);
+
+        fileReader.pause();
+        fileReader.pause();
+        fileReader.resume();
+        fileReader.resume();
+
+        // Only the time from the first pause to the first resume counts
+        assertEquals(1, registry.timer("et.cass.binarystore.reads.paused").getCount());
     }
 
     @Test
@@ -166,8 +218,100 @@ public class DefaultBinaryStoreReaderTest {
         verify(fileInfoPromise).otherwise(fileInfoRejectedCaptor.capture());
         fileInfoRejectedCaptor.getValue().apply(t);
 
-        // Then we expect our exception handler to be called
+        // Then we expect our exception handler to be called and the read to end
         verify(exceptionHandler).handle(t);
+        verify(resultHandler).handle(Result.ERROR);
+        verify(endHandler).handle(null);
+    }
+
+    @Test
+    public void testReadRangesWithFileReadFailure() throws Exception {
+
+        FileReader fileReader = dbsr.readRanges(uuid, Arrays.asList(new ContentRange().setFrom(0).setTo(1)));
+        fileReader.resultHandler(resultHandler);
+        fileReader.exceptionHandler(exceptionHandler);
+
+        Throwable t = new Throwable("Error");
+        verify(fileInfoPromise).otherwise(fileInfoRejectedCaptor.capture());
+        fileInfoRejectedCaptor.getValue().apply(t);
+
+        verify(exceptionHandler).handle(t);
+        verify(resultHandler).handle(Result.ERROR);
+    }
+
+    @Test
+    public void testReadVerifiesChecksums() throws Exception {
+
+        when(configurator.isVerifyChecksums()).thenReturn(true);
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, registry, WhenFactory.createSync());
+        byte[] data = "This is chunk 0".getBytes();
+        fileInfo.setSha256(Hashing.sha256().hashBytes(data).toString()).setLength(data.length);
+
+        FileReader fileReader = dbsr.read(uuid);
+        fileReader.handler(dataHandler);
+        fileReader.resultHandler(resultHandler);
+        fileReader.exceptionHandler(exceptionHandler);
+
+        verify(fileInfoPromise).then(fileInfoFulfilledCaptor.capture());
+        fileInfoFulfilledCaptor.getValue().apply(fileInfo);
+
+        // When a chunk matching its checksum is loaded
+        verify(chunkInfoPromise).then(chunkInfoFulfilledCaptor.capture());
+        int checksum = Hashing.crc32c().hashBytes(data).asInt();
+        chunkInfoFulfilledCaptor.getValue().apply(new ChunkInfo().setId(uuid).setNum(0).setData(data).setChecksum(checksum));
+
+        // Then the data is streamed and the file hash matches
+        verify(dataHandler).handle(eq(Buffer.buffer(data)));
+        verify(resultHandler).handle(Result.OK);
+        verifyZeroInteractions(exceptionHandler);
+        assertEquals(1, registry.timer("et.cass.binarystore.checksums.verify").getCount());
+    }
+
+    @Test
+    public void testReadWithCorruptChunk() throws Exception {
+
+        when(configurator.isVerifyChecksums()).thenReturn(true);
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, registry, WhenFactory.createSync());
+        byte[] data = "This is chunk 0".getBytes();
+
+        FileReader fileReader = dbsr.read(uuid);
+        fileReader.handler(dataHandler);
+        fileReader.resultHandler(resultHandler);
+        fileReader.exceptionHandler(exceptionHandler);
+
+        verify(fileInfoPromise).then(fileInfoFulfilledCaptor.capture());
+        fileInfoFulfilledCaptor.getValue().apply(fileInfo);
+
+        // When a chunk whose data does not match its checksum is loaded
+        verify(chunkInfoPromise).then(chunkInfoFulfilledCaptor.capture());
+        chunkInfoFulfilledCaptor.getValue().apply(new ChunkInfo().setId(uuid).setNum(0).setData(data).setChecksum(42));
+
+        // Then the corrupt data is never streamed and the read fails
+        verifyZeroInteractions(dataHandler);
+        verify(exceptionHandler).handle(any(IllegalStateException.class));
+        verify(resultHandler).handle(Result.ERROR);
+        verify(binaryStoreManager, never()).loadChunk(eq(uuid), eq(1));
+        assertEquals(1, registry.counter("et.cass.binarystore.checksums.errors").getCount());
+    }
+
+    @Test
+    public void testReadPendingFile() throws Exception {
+
+        // When we read a file whose upload has not been committed yet
+        FileReader fileReader = dbsr.read(uuid);
+        fileReader.handler(dataHandler);
+        fileReader.resultHandler(resultHandler);
+        fileReader.endHandler(endHandler);
+        fileReader.fileHandler(fileHandler);
+
+        verify(fileInfoPromise).then(fileInfoFulfilledCaptor.capture());
+        fileInfoFulfilledCaptor.getValue().apply(fileInfo.setStatus(FileStatus.PENDING));
+
+        // Then we expect it to be treated as not found without loading any chunks
+        verify(resultHandler).handle(Result.NOT_FOUND);
+        verify(endHandler).handle(null);
+        verifyZeroInteractions(fileHandler);
+        verify(binaryStoreManager, never()).loadChunk(any(), anyInt());
     }
 
     @Test
@@ -374,6 +518,386 @@ public class DefaultBinaryStoreReaderTest {
         verify(endHandler).handle(null);
     }
 
+    @Test
+    public void testRangeReadWithSlowConsumer() throws Exception {
+        rangeReadWithSlowConsumer(0);
+    }
+
+    @Test
+    public void testRangeReadWithSlowConsumerAndReadAhead() throws Exception {
+        rangeReadWithSlowConsumer(2);
+    }
+
+    private void rangeReadWithSlowConsumer(int readAhead) throws Exception {
+
+        When when = WhenFactory.createSync();
+        when(configurator.getReadAhead()).thenReturn(readAhead);
+        Deferred<FileInfo> fileDeferred = when.defer();
+        when(binaryStoreManager.loadFile(any())).thenReturn(fileDeferred.getPromise());
+        when(binaryStoreManager.loadChunk(any(), anyInt())).thenAnswer(invocation -> when.resolve(new ChunkInfo()
+                .setId(uuid)
+                .setNum((Integer) invocation.getArguments()[1])
+                .setData(new byte[100])));
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, registry, when);
+
+        // A consumer that pauses after every chunk it receives, like a slow http client whose write queue is full
+        FileReader fileReader = dbsr.readRange(uuid, new ContentRange().setFrom(50).setTo(949));
+        List<Buffer> received = new ArrayList<>();
+        fileReader.resultHandler(resultHandler);
+        fileReader.handler(buffer -> {
+            received.add(buffer);
+            fileReader.pause();
+        });
+        fileDeferred.resolve(fileInfo);
+
+        // Then while it is paused only the read ahead window is loaded, not the rest of the range
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, received.size());
+            verify(binaryStoreManager, times(Math.min(10, i + readAhead))).loadChunk(eq(uuid), anyInt());
+            fileReader.resume();
+        }
+
+        // and the range completes once the consumer has drained it
+        assertEquals(50, received.get(0).length());
+        assertEquals(50, received.get(9).length());
+        verify(resultHandler).handle(Result.OK);
+
+    }
+
+    @Test
+    public void testReadAheadWithinMemoryBudget() throws Exception {
+
+        When when = WhenFactory.createSync();
+        when(configurator.getReadAhead()).thenReturn(4);
+        Deferred<FileInfo> fileDeferred = when.defer();
+        when(binaryStoreManager.loadFile(any())).thenReturn(fileDeferred.getPromise());
+        when(binaryStoreManager.loadChunk(any(), anyInt())).thenAnswer(invocation -> when.resolve(new ChunkInfo()
+                .setId(uuid)
+                .setNum((Integer) invocation.getArguments()[1])
+                .setData(new byte[100])));
+
+        // Room for two of the 100 byte chunks
+        MemoryBudget budget = new DefaultMemoryBudget(new MemoryBudgetOptions().setEnabled(true).setMaxBytes(200), registry, when);
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, new DirectChunkScheduler(), budget,
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), new UnlimitedTenantQuotas(), registry, when);
+
+        FileReader fileReader = dbsr.read(uuid);
+        List<Buffer> received = new ArrayList<>();
+        fileReader.resultHandler(resultHandler);
+        fileReader.handler(buffer -> {
+            received.add(buffer);
+            fileReader.pause();
+        });
+        fileDeferred.resolve(fileInfo);
+
+        // Then the read ahead stops at the budget rather than at the window
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, received.size());
+            verify(binaryStoreManager, times(Math.min(10, i + 1))).loadChunk(eq(uuid), anyInt());
+            assertTrue(budget.getUsed() <= 200);
+            fileReader.resume();
+        }
+
+        // and every byte is returned once the read ends
+        verify(resultHandler).handle(Result.OK);
+        assertEquals(0, budget.getUsed());
+
+    }
+
+    @Test
+    public void testCancelReturnsMemoryBudget() throws Exception {
+
+        When when = WhenFactory.createSync();
+        when(configurator.getReadAhead()).thenReturn(2);
+        Deferred<FileInfo> fileDeferred = when.defer();
+        when(binaryStoreManager.loadFile(any())).thenReturn(fileDeferred.getPromise());
+        when(binaryStoreManager.loadChunk(any(), anyInt())).thenAnswer(invocation -> when.resolve(new ChunkInfo()
+                .setId(uuid)
+                .setNum((Integer) invocation.getArguments()[1])
+                .setData(new byte[100])));
+
+        MemoryBudget budget = new DefaultMemoryBudget(new MemoryBudgetOptions().setEnabled(true).setMaxBytes(1000), registry, when);
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, new DirectChunkScheduler(), budget,
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), new UnlimitedTenantQuotas(), registry, when);
+
+        // A client that stops reading after the first chunk and then disconnects
+        FileReader fileReader = dbsr.read(uuid);
+        List<Buffer> received = new ArrayList<>();
+        fileReader.resultHandler(resultHandler);
+        fileReader.handler(buffer -> {
+            received.add(buffer);
+            fileReader.pause();
+        });
+        fileDeferred.resolve(fileInfo);
+
+        assertEquals(300, budget.getUsed());
+
+        fileReader.cancel();
+
+        // The read ahead is given back and nothing more is loaded
+        assertEquals(0, budget.getUsed());
+        verify(resultHandler).handle(Result.CANCELLED);
+        fileReader.resume();
+        assertEquals(1, received.size());
+        verify(binaryStoreManager, times(3)).loadChunk(eq(uuid), anyInt());
+
+    }
+
+    @Test
+    public void testCancelledReadsReleasePooledBuffers() throws Exception {
+
+        When when = WhenFactory.createSync();
+        when(configurator.getReadAhead()).thenReturn(2);
+        DefaultChunkBufferPool pool = new DefaultChunkBufferPool(new BufferPoolOptions()
+                .setEnabled(true)
+                .setMinSize(0)
+                .setLeakDetection(true), registry);
+        Deferred<FileInfo> fileDeferred = when.defer();
+        List<Deferred<ChunkInfo>> chunks = new ArrayList<>();
+        when(binaryStoreManager.loadFile(any())).thenReturn(fileDeferred.getPromise());
+        when(binaryStoreManager.loadChunk(any(), anyInt())).thenAnswer(invocation -> {
+            Deferred<ChunkInfo> d = when.defer();
+            chunks.add(d);
+            return d.getPromise();
+        });
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, new DirectChunkScheduler(),
+                new DefaultMemoryBudget(new MemoryBudgetOptions(), registry, when), pool, new UnlimitedTenantQuotas(), registry, when);
+
+        // Clients that stop reading after the first chunk, one of them part way through a multi-range read
+        List<FileReader> readers = Arrays.asList(
+                dbsr.read(uuid),
+                dbsr.readRanges(uuid, Arrays.asList(
+                        new ContentRange().setFrom(10).setTo(19),
+                        new ContentRange().setFrom(50).setTo(59),
+                        new ContentRange().setFrom(450).setTo(549))));
+        for (FileReader reader : readers) {
+            reader.handler(buffer -> reader.pause());
+        }
+        fileDeferred.resolve(fileInfo);
+
+        // The first chunk of each read arrives, the rest are still loading ahead when the clients disconnect
+        resolveChunk(chunks.get(0), pool, 0);
+        resolveChunk(chunks.get(3), pool, 0);
+        readers.forEach(FileReader::cancel);
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i != 0 && i != 3) {
+                resolveChunk(chunks.get(i), pool, i);
+            }
+        }
+
+        assertEquals(6, chunks.size());
+        DefaultChunkBufferPoolTest.awaitReclaimed(pool);
+        assertEquals(0, pool.getLeased());
+
+    }
+
+    private void resolveChunk(Deferred<ChunkInfo> d, DefaultChunkBufferPool pool, int n) {
+        d.resolve(new ChunkInfo().setId(uuid).setNum(n).setData(pool.acquire(100)));
+    }
+
+    @Test
+    public void testPooledBuffersAreReleased() throws Exception {
+
+        When when = WhenFactory.createSync();
+        DefaultChunkBufferPool pool = new DefaultChunkBufferPool(new BufferPoolOptions()
+                .setEnabled(true)
+                .setMinSize(0)
+                .setLeakDetection(true), registry);
+        Deferred<FileInfo> fileDeferred = when.defer();
+        when(binaryStoreManager.loadFile(any())).thenReturn(fileDeferred.getPromise());
+        when(binaryStoreManager.loadChunk(any(), anyInt())).thenAnswer(invocation -> {
+            int n = (Integer) invocation.getArguments()[1];
+            byte[] data = pool.acquire(100);
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (n * 100 + i);
+            }
+            return when.resolve(new ChunkInfo().setId(uuid).setNum(n).setData(data));
+        });
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, new DirectChunkScheduler(),
+                new DefaultMemoryBudget(new MemoryBudgetOptions(), registry, when), pool, new UnlimitedTenantQuotas(), registry, when);
+
+        Buffer whole = Buffer.buffer();
+        Buffer range = Buffer.buffer();
+        Buffer parts = Buffer.buffer();
+        dbsr.read(uuid).handler(whole::appendBuffer);
+        dbsr.readRange(uuid, new ContentRange().setFrom(150).setTo(349)).handler(range::appendBuffer);
+        dbsr.readRanges(uuid, Arrays.asList(
+                new ContentRange().setFrom(10).setTo(19),
+                new ContentRange().setFrom(50).setTo(59),
+                new ContentRange().setFrom(450).setTo(549))).handler(parts::appendBuffer);
+        fileDeferred.resolve(fileInfo);
+
+        // Chunk arrays are reused between reads without corrupting the data already delivered
+        assertEquals(1000, whole.length());
+        assertEquals((byte) 999, whole.getByte(999));
+        assertEquals(200, range.length());
+        assertEquals((byte) 150, range.getByte(0));
+        assertEquals(120, parts.length());
+        assertEquals((byte) 549, parts.getByte(119));
+
+        // and every one of them is returned to the pool, whole chunks once the buffers lent out are gone
+        DefaultChunkBufferPoolTest.awaitReclaimed(pool);
+        assertEquals(0, pool.getLeased());
+        assertTrue(pool.getPooledBytes() > 0);
+
+    }
+
+    @Test
+    public void testChunksAreNotCopied() throws Exception {
+
+        When when = WhenFactory.createSync();
+        DefaultChunkBufferPool pool = new DefaultChunkBufferPool(new BufferPoolOptions()
+                .setEnabled(true)
+                .setMinSize(0)
+                .setLeakDetection(true), registry);
+        Deferred<FileInfo> fileDeferred = when.defer();
+        List<byte[]> loaded = new ArrayList<>();
+        when(binaryStoreManager.loadFile(any())).thenReturn(fileDeferred.getPromise());
+        when(binaryStoreManager.loadChunk(any(), anyInt())).thenAnswer(invocation -> {
+            byte[] data = pool.acquire(100);
+            loaded.add(data);
+            return when.resolve(new ChunkInfo().setId(uuid).setNum((Integer) invocation.getArguments()[1]).setData(data));
+        });
+        dbsr = new DefaultBinaryStoreReader(binaryStoreManager, configurator, new DirectChunkScheduler(),
+                new DefaultMemoryBudget(new MemoryBudgetOptions(), registry, when), pool, new UnlimitedTenantQuotas(), registry, when);
+
+        List<Buffer> received = new ArrayList<>();
+        dbsr.read(uuid).handler(received::add);
+        fileDeferred.resolve(fileInfo);
+
+        // Each buffer wraps the pooled array its chunk was loaded into, which stays out of the pool while referred to
+        assertEquals(10, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertSame(loaded.get(i), received.get(i).getByteBuf().array());
+        }
+        System.gc();
+        pool.reclaim();
+        assertEquals(10, pool.getLent());
+
+    }
+
+    @Test
+    public void testReadRanges() throws Exception {
+
+        FileReader fileReader = dbsr.readRanges(uuid, Arrays.asList(
+                new ContentRange().setFrom(950).setTo(-1),
+                new ContentRange().setFrom(0).setTo(9),
+                new ContentRange().setFrom(5).setTo(19),
+                new ContentRange().setFrom(20).setTo(29),
+                new ContentRange().setFrom(150).setTo(160),
+                new ContentRange().setFrom(190).setTo(210),
+                new ContentRange().setFrom(5000).setTo(6000)));
+
+        List<ContentRange> parts = new ArrayList<>();
+        List<Buffer> partData = new ArrayList<>();
+        fileReader.fileHandler(fileHandler);
+        fileReader.resultHandler(resultHandler);
+        fileReader.partHandler(range -> {
+            parts.add(range);
+            partData.add(Buffer.buffer());
+        });
+        fileReader.handler(buffer -> partData.get(partData.size() - 1).appendBuffer(buffer));
+
+        resolveFileWithPositionalChunks();
+
+        // Overlapping and adjacent ranges are merged, parts come in order and unsatisfiable ranges are dropped
+        List<ContentRange> expected = Arrays.asList(
+                new ContentRange().setFrom(0).setTo(29),
+                new ContentRange().setFrom(150).setTo(160),
+                new ContentRange().setFrom(190).setTo(210),
+                new ContentRange().setFrom(950).setTo(999));
+        assertEquals(expected, parts);
+        verify(fileHandler).handle(fileHandlerArgumentCaptor.capture());
+        assertEquals(expected, fileHandlerArgumentCaptor.getValue().getRanges());
+
+        for (int i = 0; i < parts.size(); i++) {
+            ContentRange range = parts.get(i);
+            Buffer buffer = partData.get(i);
+            assertEquals(range.getTo() - range.getFrom() + 1, buffer.length());
+            for (int j = 0; j < buffer.length(); j++) {
+                assertEquals((byte) (range.getFrom() + j), buffer.getByte(j));
+            }
+        }
+
+        // Chunk 1 is shared by two parts but only loaded once
+        verify(binaryStoreManager, times(4)).loadChunk(eq(uuid), anyInt());
+        verify(binaryStoreManager, times(1)).loadChunk(uuid, 1);
+        verify(resultHandler).handle(Result.OK);
+
+    }
+
+    @Test
+    public void testReadRangesNotSatisfiable() throws Exception {
+
+        FileReader fileReader = dbsr.readRanges(uuid, Arrays.asList(new ContentRange().setFrom(1000).setTo(1100)));
+        fileReader.fileHandler(fileHandler);
+        fileReader.resultHandler(resultHandler);
+        fileReader.partHandler(range -> fail("No parts expected"));
+
+        resolveFileWithPositionalChunks();
+
+        verify(fileHandler).handle(fileHandlerArgumentCaptor.capture());
+        assertTrue(fileHandlerArgumentCaptor.getValue().getRanges().isEmpty());
+        verify(binaryStoreManager, never()).loadChunk(any(), anyInt());
+        verify(resultHandler).handle(Result.OK);
+
+    }
+
+    @Test
+    public void testRangeReadWithBlocks() throws Exception {
+
+        // Chunks stored as 10 byte blocks, every byte holds its own position in the file
+        fileInfo.setBlockSize(10);
+        When when = WhenFactory.createSync();
+        when(binaryStoreManager.loadBlocks(any(), anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            int n = (Integer) invocation.getArguments()[1];
+            int fromBlock = (Integer) invocation.getArguments()[2];
+            int toBlock = Math.min((Integer) invocation.getArguments()[3], 9);
+            byte[] data = new byte[(toBlock - fromBlock + 1) * 10];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (n * 100 + fromBlock * 10 + i);
+            }
+            return when.resolve(new ChunkInfo().setId(uuid).setNum(n).setData(data));
+        });
+
+        FileReader fileReader = dbsr.readRange(uuid, new ContentRange().setFrom(125).setTo(234));
+        Buffer received = Buffer.buffer();
+        fileReader.handler(received::appendBuffer);
+        fileReader.resultHandler(resultHandler);
+
+        verify(fileInfoPromise).then(fileInfoFulfilledCaptor.capture());
+        fileInfoFulfilledCaptor.getValue().apply(fileInfo);
+
+        // Only the blocks the range overlaps are fetched from its first and last chunks
+        verify(binaryStoreManager).loadBlocks(uuid, 1, 2, Integer.MAX_VALUE);
+        verify(binaryStoreManager).loadBlocks(uuid, 2, 0, 3);
+        verify(binaryStoreManager, never()).loadChunk(any(), anyInt());
+
+        assertEquals(110, received.length());
+        for (int i = 0; i < received.length(); i++) {
+            assertEquals((byte) (125 + i), received.getByte(i));
+        }
+        verify(resultHandler).handle(Result.OK);
+
+    }
+
+    private void resolveFileWithPositionalChunks() throws Exception {
+
+        // Every byte holds its own position in the file
+        When when = WhenFactory.createSync();
+        when(binaryStoreManager.loadChunk(any(), anyInt())).thenAnswer(invocation -> {
+            int n = (Integer) invocation.getArguments()[1];
+            byte[] data = new byte[100];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (n * 100 + i);
+            }
+            return when.resolve(new ChunkInfo().setId(uuid).setNum(n).setData(data));
+        });
+
+        verify(fileInfoPromise).then(fileInfoFulfilledCaptor.capture());
+        fileInfoFulfilledCaptor.getValue().apply(fileInfo);
+    }
+
     private FileInfo createFileInfo() {
         return new FileInfo()
                 .setChunkSize(100)
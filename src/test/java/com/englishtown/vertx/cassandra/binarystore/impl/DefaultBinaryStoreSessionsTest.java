@@ -0,0 +1,98 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreStatements;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link DefaultBinaryStoreSessions}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultBinaryStoreSessionsTest {
+
+    @Mock
+    WhenCassandraSession session;
+    @Mock
+    WhenCassandraSession metadataSession;
+    @Mock
+    BinaryStoreStatements statements;
+    @Mock
+    PreparedStatement loadFile;
+    @Mock
+    PreparedStatement loadChunk;
+
+    When when = WhenFactory.createSync();
+
+    @Before
+    public void setUp() throws Exception {
+        when(statements.getLoadFile()).thenReturn(loadFile);
+        when(statements.getLoadChunk()).thenReturn(loadChunk);
+        when(loadFile.getQueryString()).thenReturn("SELECT * FROM binarystore.files WHERE id=?;");
+        when(loadChunk.getQueryString()).thenReturn("SELECT * FROM binarystore.chunks WHERE id=? AND n=?;");
+        when(metadataSession.ready()).thenReturn(when.resolve(null));
+        when(metadataSession.prepareAsync(anyString())).thenReturn(when.resolve(loadFile));
+    }
+
+    @Test
+    public void testSharedSession() throws Exception {
+
+        DefaultBinaryStoreSessions sessions = new DefaultBinaryStoreSessions(session, when);
+
+        assertSame(session, sessions.getMetadataSession());
+        assertSame(session, sessions.getChunkSession());
+
+        Promise<Void> p = sessions.init(statements);
+        sessions.close();
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        verify(session, never()).prepareAsync(anyString());
+        verify(session, never()).close();
+
+    }
+
+    @Test
+    public void testSeparateMetadataSession() throws Exception {
+
+        DefaultBinaryStoreSessions sessions = new DefaultBinaryStoreSessions(session, metadataSession, session, when);
+
+        Promise<Void> p = sessions.init(statements);
+
+        // Only the metadata statements are prepared on the metadata session
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        verify(metadataSession).prepareAsync("SELECT * FROM binarystore.files WHERE id=?;");
+        verify(metadataSession, times(1)).prepareAsync(anyString());
+
+        sessions.close();
+        verify(metadataSession).close();
+        verify(session, never()).close();
+
+    }
+
+    @Test
+    public void testCloseFailure() throws Exception {
+
+        WhenCassandraSession chunkSession = mock(WhenCassandraSession.class);
+        doThrow(new IllegalStateException("Already closed")).when(metadataSession).close();
+        DefaultBinaryStoreSessions sessions = new DefaultBinaryStoreSessions(session, metadataSession, chunkSession, when);
+
+        // A session that fails to close doesn't keep the other one open
+        sessions.close();
+        verify(chunkSession).close();
+
+    }
+
+}
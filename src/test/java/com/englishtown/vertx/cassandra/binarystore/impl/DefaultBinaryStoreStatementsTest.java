@@ -7,6 +7,9 @@ import com.englishtown.promises.HandlerState;
 import com.englishtown.promises.Promise;
 import com.englishtown.promises.When;
 import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.ChunkLayout;
+import com.englishtown.vertx.cassandra.binarystore.TableOptions;
 import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
 import org.junit.Before;
 import org.junit.Test;
@@ -16,10 +19,17 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
@@ -50,6 +60,8 @@ public class DefaultBinaryStoreStatementsTest {
     Metadata metadata;
     @Mock
     ResultSet resultSet;
+    @Mock
+    BinaryStoreConfigurator configurator;
     @Captor
     ArgumentCaptor<Function<ResultSet, Promise<ResultSet>>> fulfilledCaptor;
 
@@ -67,6 +79,7 @@ public class DefaultBinaryStoreStatementsTest {
         when(configuration.getPolicies()).thenReturn(policies);
         when(policies.getLoadBalancingPolicy()).thenReturn(lbPolicy);
         when(lbPolicy.distance(any(Host.class))).thenReturn(HostDistance.LOCAL);
+        when(configurator.getChunkLayout()).thenReturn(ChunkLayout.PARTITIONED);
 
         when(session.prepareAsync(any(RegularStatement.class)))
                 .thenReturn(when.resolve(storeFile))
@@ -80,7 +93,7 @@ public class DefaultBinaryStoreStatementsTest {
     public void simpleStatementsRetentionTest() throws Exception {
 
         // Initialise
-        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, when);
+        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, configurator, when);
 
         // When we set our various fields on DefaultBinaryStoreStatements
         dbss.init(keyspace);
@@ -101,16 +114,183 @@ public class DefaultBinaryStoreStatementsTest {
     @Test
     public void testInit() throws Exception {
 
-        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, when);
+        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, configurator, when);
         assertFalse(dbss.isInitialized());
 
         Promise<Void> p = dbss.init(keyspace);
         assertEquals(HandlerState.FULFILLED, p.inspect().getState());
 
-        verify(session, times(3)).executeAsync(any(SimpleStatement.class));
-        verify(session, times(4)).prepareAsync(any(RegularStatement.class));
+        verify(session, times(4)).executeAsync(any(SimpleStatement.class));
+        verify(session, times(11)).prepareAsync(any(RegularStatement.class));
         assertTrue(dbss.isInitialized());
+        assertEquals(ChunkLayout.PARTITIONED, dbss.getChunkLayout());
+        assertNotNull(dbss.getDeleteChunk());
+        assertNull(dbss.getDeleteChunks());
+        assertNotNull(dbss.getStoreBlock());
+        assertNotNull(dbss.getLoadBlocks());
+        assertNotNull(dbss.getDeleteBlocks());
+        assertNotNull(dbss.getScanBlocks());
+
+    }
+
+    @Test
+    public void testInitWideLayout() throws Exception {
+
+        when(configurator.getChunkLayout()).thenReturn(ChunkLayout.WIDE);
+        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, configurator, when);
+
+        Promise<Void> p = dbss.init(keyspace);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+        // The wide layout also prepares the whole file chunk delete
+        verify(session, times(12)).prepareAsync(any(RegularStatement.class));
+        assertEquals(ChunkLayout.WIDE, dbss.getChunkLayout());
+        assertNotNull(dbss.getDeleteChunks());
+
+    }
+
+    @Test
+    public void testInitAddsMissingColumns() throws Exception {
+
+        // Tables created before upload states, checksums and blocks existed
+        KeyspaceMetadata kmd = mock(KeyspaceMetadata.class);
+        TableMetadata files = mock(TableMetadata.class);
+        TableMetadata chunks = mock(TableMetadata.class);
+        TableMetadata chunkBlocks = mock(TableMetadata.class);
+        ColumnMetadata column = mock(ColumnMetadata.class);
+        when(metadata.getKeyspace(keyspace)).thenReturn(kmd);
+        when(kmd.getTable("files")).thenReturn(files);
+        when(kmd.getTable("chunks")).thenReturn(chunks);
+        when(kmd.getTable("chunk_blocks")).thenReturn(chunkBlocks);
+        when(files.getColumn(anyString())).thenReturn(column);
+        when(files.getColumn("status")).thenReturn(null);
+        when(files.getColumn("sha256")).thenReturn(null);
+        when(files.getColumn("blockSize")).thenReturn(null);
+        when(chunks.getColumn(anyString())).thenReturn(column);
+        when(chunks.getColumn("checksum")).thenReturn(null);
+        when(chunks.getClusteringColumns()).thenReturn(Collections.emptyList());
+
+        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, configurator, when);
+        ArgumentCaptor<Statement> captor = ArgumentCaptor.forClass(Statement.class);
+
+        Promise<Void> p = dbss.init(keyspace);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+        verify(session, times(4)).executeAsync(captor.capture());
+        Set<String> queries = new HashSet<>();
+        for (Statement statement : captor.getAllValues()) {
+            queries.add(((RegularStatement) statement).getQueryString());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(
+                "ALTER TABLE test.keyspace.files ADD status text",
+                "ALTER TABLE test.keyspace.files ADD sha256 text",
+                "ALTER TABLE test.keyspace.files ADD blockSize int",
+                "ALTER TABLE test.keyspace.chunks ADD checksum int")), queries);
+
+    }
+
+    @Test
+    public void testInitWithDefaultTtl() throws Exception {
+
+        // A store of expiring data creates its tables with time window compaction
+        when(configurator.getDefaultTtl()).thenReturn(7 * 86400);
+        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, configurator, when);
+        ArgumentCaptor<Statement> captor = ArgumentCaptor.forClass(Statement.class);
+
+        Promise<Void> p = dbss.init(keyspace);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+        verify(session, times(4)).executeAsync(captor.capture());
+        for (Statement statement : captor.getAllValues().subList(1, 4)) {
+            String query = ((RegularStatement) statement).getQueryString();
+            assertTrue(query.contains("'class': 'TimeWindowCompactionStrategy'"));
+            assertTrue(query.contains("'compaction_window_size': 7"));
+        }
+
+    }
+
+    @Test
+    public void testInitWithTableOptions() throws Exception {
+
+        Map<String, TableOptions> tableOptions = new HashMap<>();
+        tableOptions.put("chunks", new TableOptions().disableCompression().setBloomFilterFpChance(0.1));
+        when(configurator.getTableOptions()).thenReturn(tableOptions);
+        when(configurator.getDefaultTtl()).thenReturn(7 * 86400);
+
+        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, configurator, when);
+        ArgumentCaptor<Statement> captor = ArgumentCaptor.forClass(Statement.class);
+
+        Promise<Void> p = dbss.init(keyspace);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+        verify(session, times(4)).executeAsync(captor.capture());
+        String chunks = ((RegularStatement) captor.getAllValues().get(2)).getQueryString();
+
+        assertTrue(chunks.contains("CREATE TABLE IF NOT EXISTS test.keyspace.chunks"));
+        assertTrue(chunks.contains(" WITH compression = {'enabled': 'false'} AND compaction = {'class': 'TimeWindowCompactionStrategy'"));
+        assertTrue(chunks.contains(" AND bloom_filter_fp_chance = 0.1"));
+
+        // Tables without options of their own keep the time window compaction alone
+        String files = ((RegularStatement) captor.getAllValues().get(1)).getQueryString();
+        assertFalse(files.contains("compression"));
+        assertTrue(files.contains("'class': 'TimeWindowCompactionStrategy'"));
+
+    }
+
+    @Test
+    public void testInitReconcilesTableOptions() throws Exception {
+
+        Map<String, String> compaction = new HashMap<>();
+        compaction.put("class", "LeveledCompactionStrategy");
+
+        Map<String, TableOptions> tableOptions = new HashMap<>();
+        tableOptions.put("files", new TableOptions().setCompaction(compaction));
+        tableOptions.put("chunks", new TableOptions().disableCompression().setBloomFilterFpChance(0.1));
+        when(configurator.getTableOptions()).thenReturn(tableOptions);
+
+        KeyspaceMetadata kmd = mock(KeyspaceMetadata.class);
+        TableMetadata files = mockTable(kmd, "files");
+        TableMetadata chunks = mockTable(kmd, "chunks");
+        mockTable(kmd, "chunk_blocks");
+        when(metadata.getKeyspace(keyspace)).thenReturn(kmd);
+        when(chunks.getClusteringColumns()).thenReturn(Collections.emptyList());
+
+        // The files table already matches, the chunks table is compressed with the default fp chance
+        TableOptionsMetadata filesOptions = files.getOptions();
+        when(filesOptions.getCompaction()).thenReturn(Collections.singletonMap("class",
+                "org.apache.cassandra.db.compaction.LeveledCompactionStrategy"));
+        TableOptionsMetadata chunksOptions = chunks.getOptions();
+        when(chunksOptions.getCompression()).thenReturn(Collections.singletonMap("class",
+                "org.apache.cassandra.io.compress.LZ4Compressor"));
+        when(chunksOptions.getBloomFilterFalsePositiveChance()).thenReturn(0.01);
+
+        DefaultBinaryStoreStatements dbss = new DefaultBinaryStoreStatements(session, configurator, when);
+        ArgumentCaptor<Statement> captor = ArgumentCaptor.forClass(Statement.class);
+
+        Promise<Void> p = dbss.init(keyspace);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+        verify(session, times(1)).executeAsync(captor.capture());
+        assertEquals("ALTER TABLE test.keyspace.chunks WITH compression = {'enabled': 'false'} AND bloom_filter_fp_chance = 0.1",
+                ((RegularStatement) captor.getValue()).getQueryString());
+
+        // Once applied there is nothing left to change
+        when(chunksOptions.getCompression()).thenReturn(Collections.singletonMap("enabled", "false"));
+        when(chunksOptions.getBloomFilterFalsePositiveChance()).thenReturn(0.1);
+
+        new DefaultBinaryStoreStatements(session, configurator, when).init(keyspace);
+        verify(session, times(1)).executeAsync(any(Statement.class));
+
+    }
 
+    private TableMetadata mockTable(KeyspaceMetadata kmd, String name) {
+        TableMetadata table = mock(TableMetadata.class);
+        when(kmd.getTable(name)).thenReturn(table);
+        when(table.getName()).thenReturn(name);
+        when(table.getColumn(anyString())).thenReturn(mock(ColumnMetadata.class));
+        TableOptionsMetadata options = mock(TableOptionsMetadata.class);
+        when(table.getOptions()).thenReturn(options);
+        return table;
     }
 
 }
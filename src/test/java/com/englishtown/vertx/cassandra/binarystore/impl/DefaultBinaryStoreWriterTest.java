@@ -1,13 +1,21 @@
 package com.englishtown.vertx.cassandra.binarystore.impl;
 
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.promises.Deferred;
 import com.englishtown.promises.HandlerState;
 import com.englishtown.promises.Promise;
 import com.englishtown.promises.When;
 import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
 import com.englishtown.vertx.cassandra.binarystore.BinaryStoreManager;
+import com.englishtown.vertx.cassandra.binarystore.BufferPoolOptions;
 import com.englishtown.vertx.cassandra.binarystore.ChunkInfo;
 import com.englishtown.vertx.cassandra.binarystore.FileInfo;
-import com.google.common.util.concurrent.FutureCallback;
+import com.englishtown.vertx.cassandra.binarystore.FileStatus;
+import com.englishtown.vertx.cassandra.binarystore.FileWriter;
+import com.englishtown.vertx.cassandra.binarystore.MemoryBudget;
+import com.englishtown.vertx.cassandra.binarystore.MemoryBudgetOptions;
+import com.google.common.hash.Hashing;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.streams.ReadStream;
@@ -19,9 +27,13 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -34,7 +46,13 @@ public class DefaultBinaryStoreWriterTest {
     @Mock
     BinaryStoreManager binaryStoreManager;
     @Mock
+    BinaryStoreConfigurator configurator;
+    @Mock
     ReadStream<Buffer> readStream;
+    @Mock
+    Handler<Void> drainHandler;
+    @Mock
+    Handler<Throwable> exceptionHandler;
 
     @Captor
     ArgumentCaptor<Handler<Buffer>> dataHandlerCaptor;
@@ -46,6 +64,7 @@ public class DefaultBinaryStoreWriterTest {
     ArgumentCaptor<FileInfo> fileInfoArgumentCaptor;
 
     When when;
+    MetricRegistry registry = new MetricRegistry();
     UUID uuid = UUID.fromString("739a6466-adf8-11e3-aca6-425861b86ab6");
     DefaultBinaryStoreWriter dbsw;
     FileInfo fileInfo;
@@ -57,7 +76,9 @@ public class DefaultBinaryStoreWriterTest {
     @Before
     public void setUp() throws Exception {
         when = WhenFactory.createSync();
-        dbsw = new DefaultBinaryStoreWriter(binaryStoreManager, when);
+        when(binaryStoreManager.storeFile(any())).thenReturn(when.resolve(null));
+        when(binaryStoreManager.storeChunk(any())).thenReturn(when.resolve(null));
+        dbsw = new DefaultBinaryStoreWriter(binaryStoreManager, configurator, registry, when);
         fileInfo = createFileInfo();
 
 //        verify(readStream).exceptionHandler(exceptionHandlerCaptor.capture());
@@ -78,15 +99,19 @@ public class DefaultBinaryStoreWriterTest {
         // and call the data handler set on the read stream
         dataHandlerCaptor.getValue().handle(buffer);
 
-        // Then we expect there to be no interactions with the binary store manager
-        verifyZeroInteractions(binaryStoreManager);
+        // Then we expect only the pending file to have been stored
+        verify(binaryStoreManager).storeFile(fileInfoArgumentCaptor.capture());
+        assertEquals(FileStatus.PENDING, fileInfoArgumentCaptor.getValue().getStatus());
+        verify(binaryStoreManager, never()).storeChunk(any());
 
         // When we call the end handler
         endHandlerCaptor.getValue().handle(null);
 
-        // We expect the binary store manager to be called to write our chunk and then our file
+        // We expect the binary store manager to be called to write our chunk and then commit our file
         verify(binaryStoreManager).storeChunk(eq(expectedChunkInfo));
-        verify(binaryStoreManager).storeFile(eq(fileInfo));
+        verify(binaryStoreManager, times(2)).storeFile(fileInfoArgumentCaptor.capture());
+        assertEquals(fileInfo, fileInfoArgumentCaptor.getValue());
+        assertEquals(FileStatus.COMMITTED, fileInfoArgumentCaptor.getValue().getStatus());
 
         // Then we expect our main callback to have its success method called with our file info object
         assertEquals(HandlerState.FULFILLED, p.inspect().getState());
@@ -124,7 +149,8 @@ public class DefaultBinaryStoreWriterTest {
 
         // We expect binary store manager to be called to store the final chunk and to store the file
         verify(binaryStoreManager).storeChunk(eq(expectedChunkInfo2));
-        verify(binaryStoreManager).storeFile(eq(fileInfo));
+        verify(binaryStoreManager, times(2)).storeFile(fileInfoArgumentCaptor.capture());
+        assertEquals(fileInfo, fileInfoArgumentCaptor.getValue());
 
         // Then we expect our main callback to have its success method called with our file info object
         assertEquals(HandlerState.FULFILLED, p.inspect().getState());
@@ -132,6 +158,114 @@ public class DefaultBinaryStoreWriterTest {
 
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testWritingWithDefaultTtl() throws Exception {
+        // The store has a default ttl of one day
+        when(configurator.getDefaultTtl()).thenReturn(86400);
+        Buffer buffer = Buffer.buffer("This is just a small amount of data");
+        ArgumentCaptor<ChunkInfo> chunkInfoArgumentCaptor = ArgumentCaptor.forClass(ChunkInfo.class);
+
+        // When we write a file without a ttl
+        Promise<FileInfo> p = dbsw.write(fileInfo, readStream);
+        verify(readStream).handler(dataHandlerCaptor.capture());
+        verify(readStream).endHandler(endHandlerCaptor.capture());
+        dataHandlerCaptor.getValue().handle(buffer);
+        endHandlerCaptor.getValue().handle(null);
+
+        // Then we expect both the chunk and the file to be stored with the default ttl
+        verify(binaryStoreManager).storeChunk(chunkInfoArgumentCaptor.capture());
+        verify(binaryStoreManager, times(2)).storeFile(fileInfoArgumentCaptor.capture());
+        assertEquals(86400, chunkInfoArgumentCaptor.getValue().getTtl());
+        assertEquals(86400, fileInfoArgumentCaptor.getValue().getTtl());
+
+        // and a ttl on the file itself to take precedence
+        BinaryStoreManager binaryStoreManager = mock(BinaryStoreManager.class);
+        ReadStream<Buffer> readStream = mock(ReadStream.class);
+        dbsw = new DefaultBinaryStoreWriter(binaryStoreManager, configurator, registry, when);
+        dbsw.write(createFileInfo().setTtl(60), readStream);
+        verify(readStream).endHandler(endHandlerCaptor.capture());
+        endHandlerCaptor.getValue().handle(null);
+        verify(binaryStoreManager, times(2)).storeFile(fileInfoArgumentCaptor.capture());
+        assertEquals(60, fileInfoArgumentCaptor.getValue().getTtl());
+
+    }
+
+    @Test
+    public void testWritingComputesChecksums() throws Exception {
+
+        Buffer buffer = Buffer.buffer();
+        for (int i = 0; i < 150; i++) {
+            buffer.appendByte((byte) i);
+        }
+        ArgumentCaptor<ChunkInfo> chunkInfoArgumentCaptor = ArgumentCaptor.forClass(ChunkInfo.class);
+
+        // When we write a file spanning two chunks
+        dbsw.write(fileInfo, readStream);
+        verify(readStream).handler(dataHandlerCaptor.capture());
+        verify(readStream).endHandler(endHandlerCaptor.capture());
+        dataHandlerCaptor.getValue().handle(buffer);
+        endHandlerCaptor.getValue().handle(null);
+
+        // Then each chunk carries the CRC32C of its data
+        verify(binaryStoreManager, times(2)).storeChunk(chunkInfoArgumentCaptor.capture());
+        for (ChunkInfo chunkInfo : chunkInfoArgumentCaptor.getAllValues()) {
+            assertEquals(Hashing.crc32c().hashBytes(chunkInfo.getData()).asInt(), chunkInfo.getChecksum().intValue());
+        }
+
+        // and the committed file the SHA-256 of the whole content
+        verify(binaryStoreManager, times(2)).storeFile(fileInfoArgumentCaptor.capture());
+        assertEquals(Hashing.sha256().hashBytes(buffer.getBytes()).toString(), fileInfoArgumentCaptor.getValue().getSha256());
+        assertEquals(2, registry.timer("et.cass.binarystore.checksums.compute").getCount());
+
+        // Chunks are stored synchronously here, only the first one is timed to first byte
+        assertEquals(1, registry.timer("et.cass.binarystore.writes.ttfb").getCount());
+        assertEquals(buffer.length(), registry.meter("et.cass.binarystore.writes.bytes").getCount());
+
+    }
+
+    @Test
+    public void testCommitWaitsForChunks() throws Exception {
+        Buffer buffer = Buffer.buffer("This is just a small amount of data");
+        Deferred<Void> chunkDeferred = when.defer();
+        when(binaryStoreManager.storeFile(any())).thenReturn(when.resolve(null));
+        when(binaryStoreManager.storeChunk(any())).thenReturn(chunkDeferred.getPromise());
+
+        // When the upload ends while the last chunk is still being written
+        Promise<FileInfo> p = dbsw.write(fileInfo, readStream);
+        verify(readStream).handler(dataHandlerCaptor.capture());
+        verify(readStream).endHandler(endHandlerCaptor.capture());
+        dataHandlerCaptor.getValue().handle(buffer);
+        endHandlerCaptor.getValue().handle(null);
+
+        // Then the file is still pending
+        verify(binaryStoreManager, times(1)).storeFile(any());
+        assertEquals(HandlerState.PENDING, p.inspect().getState());
+
+        // and is committed once the chunk is stored
+        chunkDeferred.resolve((Void) null);
+        verify(binaryStoreManager, times(2)).storeFile(fileInfoArgumentCaptor.capture());
+        assertEquals(FileStatus.COMMITTED, fileInfoArgumentCaptor.getValue().getStatus());
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+    }
+
+    @Test
+    public void testFailedChunkIsNotCommitted() throws Exception {
+        Buffer buffer = Buffer.buffer("This is just a small amount of data");
+        when(binaryStoreManager.storeFile(any())).thenReturn(when.resolve(null));
+        when(binaryStoreManager.storeChunk(any())).thenReturn(when.reject(new RuntimeException("Unit test")));
+
+        Promise<FileInfo> p = dbsw.write(fileInfo, readStream);
+        verify(readStream).handler(dataHandlerCaptor.capture());
+        verify(readStream).endHandler(endHandlerCaptor.capture());
+        dataHandlerCaptor.getValue().handle(buffer);
+        endHandlerCaptor.getValue().handle(null);
+
+        // Only the pending file was stored
+        verify(binaryStoreManager, times(1)).storeFile(any());
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testContentTypes() throws Exception {
@@ -140,14 +274,12 @@ public class DefaultBinaryStoreWriterTest {
         for (int i = 0; i < names.length; i++) {
             BinaryStoreManager binaryStoreManager = mock(BinaryStoreManager.class);
 
-            dbsw = new DefaultBinaryStoreWriter(binaryStoreManager, when);
+            dbsw = new DefaultBinaryStoreWriter(binaryStoreManager, configurator, registry, when);
             fileInfo = createFileInfo();
             fileInfo.setFileName(names[i]);
             fileInfo.setContentType(null);
 
-            ReadStream<Buffer> readStream = mock(ReadStream.class);
-            FutureCallback<FileInfo> callback = mock(FutureCallback.class);
-            ArgumentCaptor<Handler> endHandlerCaptor = ArgumentCaptor.forClass(Handler.class);
+            reset(readStream);
             ArgumentCaptor<FileInfo> fileInfoArgumentCaptor = ArgumentCaptor.forClass(FileInfo.class);
 
             // We try and write and capture the end handler
@@ -159,12 +291,202 @@ public class DefaultBinaryStoreWriterTest {
 
             // and expect binarystoremanager to have the storefile method called with a fileinfo object that has the
             // correct contentype on it.
-            verify(binaryStoreManager).storeFile(fileInfoArgumentCaptor.capture());
+            verify(binaryStoreManager, times(2)).storeFile(fileInfoArgumentCaptor.capture());
             assertEquals(types[i], fileInfoArgumentCaptor.getValue().getContentType());
         }
     }
 
 
+    @Test
+    public void testOpen() throws Exception {
+
+        // A single write spanning several chunks
+        Buffer buffer = Buffer.buffer();
+        for (int i = 0; i < 250; i++) {
+            buffer.appendByte((byte) i);
+        }
+        ArgumentCaptor<ChunkInfo> chunkInfoArgumentCaptor = ArgumentCaptor.forClass(ChunkInfo.class);
+
+        FileWriter writer = dbsw.open(fileInfo);
+        writer.write(buffer);
+
+        verify(binaryStoreManager, times(2)).storeChunk(chunkInfoArgumentCaptor.capture());
+        assertEquals(200, writer.getFileInfo().getLength());
+        assertEquals(HandlerState.PENDING, writer.getResult().inspect().getState());
+
+        // Ending the stream stores the remainder and commits the file
+        writer.end();
+
+        verify(binaryStoreManager, times(3)).storeChunk(chunkInfoArgumentCaptor.capture());
+        assertEquals(2, chunkInfoArgumentCaptor.getValue().getNum());
+        assertArrayEquals(buffer.getBytes(200, 250), chunkInfoArgumentCaptor.getValue().getData());
+        verify(binaryStoreManager, times(2)).storeFile(fileInfoArgumentCaptor.capture());
+        assertEquals(FileStatus.COMMITTED, fileInfoArgumentCaptor.getValue().getStatus());
+        assertEquals(250, fileInfoArgumentCaptor.getValue().getLength());
+        assertEquals(HandlerState.FULFILLED, writer.getResult().inspect().getState());
+
+    }
+
+    @Test
+    public void testOpenWriteQueueFull() throws Exception {
+
+        List<Deferred<Void>> chunks = new ArrayList<>();
+        when(binaryStoreManager.storeChunk(any())).thenAnswer(invocation -> {
+            Deferred<Void> d = when.defer();
+            chunks.add(d);
+            return d.getPromise();
+        });
+
+        FileWriter writer = dbsw.open(fileInfo).setWriteQueueMaxSize(200);
+
+        // The queue is full while two chunks are being stored
+        writer.write(Buffer.buffer(new byte[100]));
+        assertFalse(writer.writeQueueFull());
+        writer.write(Buffer.buffer(new byte[100]));
+        assertTrue(writer.writeQueueFull());
+        writer.drainHandler(drainHandler);
+
+        // and drains once it is down to half
+        chunks.get(0).resolve((Void) null);
+        verify(drainHandler).handle(null);
+        assertFalse(writer.writeQueueFull());
+
+    }
+
+    @Test
+    public void testOpenWithMemoryBudget() throws Exception {
+
+        List<Deferred<Void>> chunks = new ArrayList<>();
+        when(binaryStoreManager.storeChunk(any())).thenAnswer(invocation -> {
+            Deferred<Void> d = when.defer();
+            chunks.add(d);
+            return d.getPromise();
+        });
+
+        // Room for two chunks across both uploads
+        MemoryBudget budget = new DefaultMemoryBudget(new MemoryBudgetOptions().setEnabled(true).setMaxBytes(200), registry, when);
+        dbsw = new DefaultBinaryStoreWriter(binaryStoreManager, configurator, new DirectChunkScheduler(), budget,
+                new DefaultChunkBufferPool(new BufferPoolOptions(), registry), new UnlimitedTenantQuotas(), registry, when);
+
+        FileWriter other = dbsw.open(fileInfo);
+        FileWriter writer = dbsw.open(new FileInfo(fileInfo).setId(UUID.randomUUID()));
+
+        other.write(Buffer.buffer(new byte[100]));
+        writer.write(Buffer.buffer(new byte[100]));
+
+        // The upload's own queue has room, but the budget is used up
+        assertTrue(writer.writeQueueFull());
+        writer.drainHandler(drainHandler);
+        verify(drainHandler, never()).handle(null);
+
+        // It drains once the other upload stores its chunk
+        chunks.get(0).resolve((Void) null);
+        verify(drainHandler).handle(null);
+        assertFalse(writer.writeQueueFull());
+        assertEquals(100, budget.getUsed());
+
+    }
+
+    @Test
+    public void testOpenWithPooledBuffers() throws Exception {
+
+        List<byte[]> stored = new ArrayList<>();
+        when(binaryStoreManager.storeChunk(any())).thenAnswer(invocation -> {
+            stored.add(((ChunkInfo) invocation.getArguments()[0]).getData().clone());
+            return when.resolve(null);
+        });
+        DefaultChunkBufferPool pool = new DefaultChunkBufferPool(new BufferPoolOptions()
+                .setEnabled(true)
+                .setMinSize(0)
+                .setLeakDetection(true), registry);
+        dbsw = new DefaultBinaryStoreWriter(binaryStoreManager, configurator, new DirectChunkScheduler(),
+                new DefaultMemoryBudget(new MemoryBudgetOptions(), registry, when), pool, new UnlimitedTenantQuotas(), registry, when);
+
+        byte[] data = new byte[250];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        // Writes that don't line up with chunks
+        FileWriter writer = dbsw.open(fileInfo);
+        writer.write(Buffer.buffer(Arrays.copyOfRange(data, 0, 30)));
+        writer.write(Buffer.buffer(Arrays.copyOfRange(data, 30, 230)));
+        writer.write(Buffer.buffer(Arrays.copyOfRange(data, 230, 250)));
+        writer.end();
+
+        assertEquals(3, stored.size());
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 100), stored.get(0));
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 200), stored.get(1));
+        assertArrayEquals(Arrays.copyOfRange(data, 200, 250), stored.get(2));
+        assertEquals(HandlerState.FULFILLED, writer.getResult().inspect().getState());
+
+        // Each chunk sized array went back to the pool once its chunk was stored
+        assertEquals(0, pool.getLeased());
+        assertEquals(100, pool.getPooledBytes());
+
+    }
+
+    @Test
+    public void testOpenChunkFailure() throws Exception {
+
+        Throwable t = new RuntimeException("Unit test");
+        when(binaryStoreManager.storeChunk(any())).thenReturn(when.reject(t));
+
+        FileWriter writer = dbsw.open(fileInfo).exceptionHandler(exceptionHandler);
+        writer.write(Buffer.buffer(new byte[100]));
+
+        verify(exceptionHandler).handle(t);
+        assertEquals(HandlerState.REJECTED, writer.getResult().inspect().getState());
+
+        writer.end();
+        verify(binaryStoreManager, times(1)).storeFile(any());
+        assertEquals(HandlerState.REJECTED, writer.getResult().inspect().getState());
+
+    }
+
+    @Test
+    public void testWritePausesReadStream() throws Exception {
+
+        when(binaryStoreManager.storeChunk(any())).thenReturn(when.<Void>defer().getPromise());
+
+        dbsw.write(fileInfo, readStream);
+        verify(readStream).handler(dataHandlerCaptor.capture());
+
+        // Chunks that are never stored fill the write queue
+        for (int i = 0; i < FileWriter.DEFAULT_WRITE_QUEUE_MAX_CHUNKS; i++) {
+            dataHandlerCaptor.getValue().handle(Buffer.buffer(new byte[100]));
+        }
+
+        verify(readStream).pause();
+
+    }
+
+    @Test
+    public void testWriteFailsWhileReadStreamPaused() throws Exception {
+
+        Deferred<Void> chunkDeferred = when.defer();
+        when(binaryStoreManager.storeChunk(any())).thenReturn(chunkDeferred.getPromise());
+
+        Promise<FileInfo> p = dbsw.write(fileInfo, readStream);
+        verify(readStream).handler(dataHandlerCaptor.capture());
+
+        for (int i = 0; i < FileWriter.DEFAULT_WRITE_QUEUE_MAX_CHUNKS; i++) {
+            dataHandlerCaptor.getValue().handle(Buffer.buffer(new byte[100]));
+        }
+        verify(readStream).pause();
+
+        // The read stream stays paused and never ends, the failed chunk alone fails the upload
+        Throwable t = new RuntimeException("Unit test");
+        chunkDeferred.reject(t);
+
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+        assertEquals(t, p.inspect().getReason());
+        verify(readStream, atLeastOnce()).handler(null);
+        verify(readStream, never()).resume();
+        verify(binaryStoreManager, times(1)).storeFile(any());
+
+    }
+
     private FileInfo createFileInfo() {
         return new FileInfo()
                 .setChunkSize(100)
@@ -0,0 +1,235 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.*;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.FileSystem;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link DefaultCacheWarmer}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultCacheWarmerTest {
+
+    @Mock
+    BinaryStoreManager manager;
+    @Mock
+    ChunkBufferPool bufferPool;
+    @Mock
+    BinaryStoreConfigurator configurator;
+    @Mock
+    Vertx vertx;
+    @Mock
+    FileSystem fileSystem;
+
+    When when = WhenFactory.createSync();
+    MetricRegistry registry = new MetricRegistry();
+    WarmCacheOptions options = new WarmCacheOptions().setEnabled(true).setPath("popular.txt");
+    DefaultWarmCache warmCache;
+    DefaultCacheWarmer warmer;
+
+    UUID id = UUID.randomUUID();
+    UUID blocksId = UUID.randomUUID();
+    UUID deletedId = UUID.randomUUID();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+
+        when(configurator.getWarmCacheOptions()).thenReturn(options);
+        when(vertx.fileSystem()).thenReturn(fileSystem);
+        when(bufferPool.acquire(anyInt())).thenAnswer(invocation -> new byte[(Integer) invocation.getArguments()[0]]);
+
+        when(vertx.setTimer(anyLong(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<Long>) invocation.getArguments()[1]).handle(1L);
+            return 1L;
+        });
+        when(vertx.setPeriodic(anyLong(), any(Handler.class))).thenReturn(2L);
+
+        when(fileSystem.exists(anyString(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<Boolean>>) invocation.getArguments()[1]).handle(Future.succeededFuture(true));
+            return fileSystem;
+        });
+        when(fileSystem.writeFile(anyString(), any(Buffer.class), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<Void>>) invocation.getArguments()[2]).handle(Future.succeededFuture());
+            return fileSystem;
+        });
+
+        when(manager.loadFile(id)).thenReturn(when.resolve(new FileInfo().setId(id).setLength(300).setChunkSize(100)));
+        when(manager.loadFile(blocksId)).thenReturn(when.resolve(
+                new FileInfo().setId(blocksId).setLength(100).setChunkSize(100).setBlockSize(10)));
+        when(manager.loadFile(deletedId)).thenReturn(when.resolve(null));
+        when(manager.loadChunk(eq(id), anyInt())).thenAnswer(invocation -> when.resolve(new ChunkInfo()
+                .setId(id).setNum((Integer) invocation.getArguments()[1]).setData(new byte[100])));
+        when(manager.loadBlocks(blocksId, 0, 0, Integer.MAX_VALUE)).thenReturn(when.resolve(
+                new ChunkInfo().setId(blocksId).setNum(0).setData(new byte[100])));
+        when(manager.uncounted()).thenReturn(manager);
+
+        warmCache = new DefaultWarmCache(options, bufferPool, registry);
+        warmer = new DefaultCacheWarmer(manager, warmCache, bufferPool, configurator, registry, vertx, when);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockPopularFile(String content) {
+        when(fileSystem.readFile(anyString(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<Buffer>>) invocation.getArguments()[1]).handle(Future.succeededFuture(Buffer.buffer(content)));
+            return fileSystem;
+        });
+    }
+
+    @Test
+    public void testPersist() throws Exception {
+
+        for (int i = 0; i < 3; i++) {
+            warmCache.getChunk(id, 1);
+        }
+        warmCache.getChunk(id, 0);
+
+        Promise<Void> p = warmer.persist();
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+
+        ArgumentCaptor<Buffer> captor = ArgumentCaptor.forClass(Buffer.class);
+        verify(fileSystem).writeFile(eq("popular.txt"), captor.capture(), any());
+
+        String[] lines = captor.getValue().toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("#"));
+        assertEquals(id + " 1", lines[1]);
+        assertEquals(id + " 0", lines[2]);
+
+        assertEquals(2, warmer.parse(captor.getValue().toString()).size());
+
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+
+        mockPopularFile("# header\n"
+                + id + " 2\n"
+                + blocksId + " 0\n"
+                + deletedId + " 0\n"
+                + id + " 7\n"
+                + "not a key\n"
+                + id + " 0\n"
+                + id.toString().substring(0, 10));
+
+        Promise<Integer> p = warmer.prefetch();
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        assertEquals(Integer.valueOf(3), p.inspect().getValue());
+
+        // Prefetched chunks are served without Cassandra, missing files and chunks past the end are skipped
+        assertNotNull(warmCache.getChunk(id, 2));
+        assertNotNull(warmCache.getChunk(id, 0));
+        assertNotNull(warmCache.getChunk(blocksId, 0));
+        assertNotNull(warmCache.getFile(id));
+        assertEquals(300, warmCache.getCachedBytes());
+
+        verify(manager).uncounted();
+        verify(manager, times(1)).loadFile(id);
+        verify(manager, never()).loadChunk(id, 7);
+        verify(bufferPool, times(3)).release(any(byte[].class));
+        verify(vertx, times(3)).setTimer(eq(50L), any());
+        assertEquals(3, registry.counter("et.cass.binarystore.warmcache.prefetched").getCount());
+
+    }
+
+    @Test
+    public void testPrefetchStopsWhenFull() throws Exception {
+
+        options.setMaxBytes(150);
+        warmCache = new DefaultWarmCache(options, bufferPool, registry);
+        warmer = new DefaultCacheWarmer(manager, warmCache, bufferPool, configurator, registry, vertx, when);
+
+        mockPopularFile(id + " 0\n" + id + " 1\n" + id + " 2\n");
+
+        // The less popular chunks would only push out the more popular ones
+        assertEquals(Integer.valueOf(1), warmer.prefetch().inspect().getValue());
+        assertNotNull(warmCache.getChunk(id, 0));
+        verify(manager, never()).loadChunk(id, 1);
+
+    }
+
+    @Test
+    public void testPrefetchContinuesAfterError() throws Exception {
+
+        when(manager.loadChunk(id, 0)).thenReturn(when.reject(new RuntimeException("Timeout")));
+        mockPopularFile(id + " 0\n" + id + " 1\n");
+
+        Promise<Integer> p = warmer.prefetch();
+
+        assertEquals(Integer.valueOf(1), p.inspect().getValue());
+        assertEquals(1, registry.counter("et.cass.binarystore.warmcache.errors").getCount());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNothingPersisted() throws Exception {
+
+        doAnswer(invocation -> {
+            ((Handler<AsyncResult<Boolean>>) invocation.getArguments()[1]).handle(Future.succeededFuture(false));
+            return fileSystem;
+        }).when(fileSystem).exists(anyString(), any(Handler.class));
+
+        assertEquals(Integer.valueOf(0), warmer.prefetch().inspect().getValue());
+        verify(fileSystem, never()).readFile(anyString(), any());
+
+    }
+
+    @Test
+    public void testStartStop() throws Exception {
+
+        mockPopularFile("");
+
+        warmer.start();
+        warmer.start();
+        verify(vertx, times(1)).setPeriodic(eq(WarmCacheOptions.DEFAULT_PERSIST_INTERVAL), any());
+
+        // The latest counts survive a restart, written without blocking the event loop
+        Promise<Void> stopped = warmer.stop();
+        verify(vertx).cancelTimer(2L);
+        verify(fileSystem).writeFile(eq("popular.txt"), any(Buffer.class), any());
+        verify(fileSystem, never()).writeFileBlocking(anyString(), any(Buffer.class));
+        assertEquals(HandlerState.FULFILLED, stopped.inspect().getState());
+
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        options.setEnabled(false);
+
+        warmer.start();
+        warmer.stop();
+
+        assertEquals(Integer.valueOf(0), warmer.prefetch().inspect().getValue());
+        verifyZeroInteractions(fileSystem);
+
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.vertx.cassandra.binarystore.BufferPoolOptions;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DefaultChunkBufferPool}
+ */
+public class DefaultChunkBufferPoolTest {
+
+    MetricRegistry registry = new MetricRegistry();
+    BufferPoolOptions options = new BufferPoolOptions()
+            .setEnabled(true)
+            .setMinSize(100)
+            .setMaxPooledBytes(3000)
+            .setLeakDetection(true);
+    DefaultChunkBufferPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new DefaultChunkBufferPool(options, registry);
+    }
+
+    @Test
+    public void testReleasedBufferIsReused() throws Exception {
+
+        byte[] b1 = pool.acquire(1000);
+        assertEquals(1000, b1.length);
+        pool.release(b1);
+        assertEquals(1000, pool.getPooledBytes());
+
+        // Only a buffer of the exact size is handed out again
+        byte[] b2 = pool.acquire(999);
+        assertNotSame(b1, b2);
+        assertSame(b1, pool.acquire(1000));
+
+        assertEquals(0, pool.getPooledBytes());
+        assertEquals(1000, registry.meter("et.cass.binarystore.buffers.reused").getCount());
+        assertEquals(1999, registry.meter("et.cass.binarystore.buffers.allocated").getCount());
+
+    }
+
+    @Test
+    public void testSmallBuffersAreNotPooled() throws Exception {
+
+        byte[] b = pool.acquire(50);
+        pool.release(b);
+
+        assertEquals(0, pool.getPooledBytes());
+        assertEquals(0, pool.getLeased());
+
+    }
+
+    @Test
+    public void testFullPoolKeepsSizesInUse() throws Exception {
+
+        byte[] odd = pool.acquire(999);
+        byte[] c1 = pool.acquire(1000);
+        byte[] c2 = pool.acquire(1000);
+        byte[] c3 = pool.acquire(1000);
+
+        pool.release(odd);
+        pool.release(c1);
+        pool.release(c2);
+
+        // The odd sized buffer is dropped to make room for the chunk sized one
+        pool.release(c3);
+        assertEquals(3000, pool.getPooledBytes());
+        assertNotSame(odd, pool.acquire(999));
+
+        // A size not seen before does not push out a size in use
+        byte[] other = pool.acquire(500);
+        pool.release(other);
+        assertEquals(3000, pool.getPooledBytes());
+        assertNotSame(other, pool.acquire(500));
+
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+
+        byte[] b = pool.acquire(1000);
+        pool.acquire(2000);
+
+        assertEquals(2, pool.getLeased());
+        pool.release(b);
+        assertEquals(1, pool.getLeased());
+        assertTrue(pool.getLeaks().get(0).getMessage().contains("2000 bytes"));
+
+        try {
+            pool.release(b);
+            fail("Releasing a buffer twice should fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        try {
+            pool.release(new byte[1000]);
+            fail("Releasing a buffer not from the pool should fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+    }
+
+    @Test
+    public void testLentBufferIsNotCopied() throws Exception {
+
+        byte[] b = pool.acquire(1000);
+        b[999] = 42;
+
+        Buffer buffer = pool.lend(b);
+
+        assertSame(b, buffer.getByteBuf().array());
+        assertEquals(1000, buffer.length());
+        assertEquals(42, buffer.getByte(999));
+        assertEquals(1, pool.getLent());
+        assertEquals(1, pool.getLeased());
+
+    }
+
+    @Test
+    public void testLentArrayIsReclaimed() throws Exception {
+
+        byte[] b = pool.acquire(1000);
+        lendAndDrop(b);
+        awaitReclaimed(pool);
+
+        // Taken back once the buffer is gone, not before
+        assertEquals(0, pool.getLent());
+        assertEquals(0, pool.getLeased());
+        assertSame(b, pool.acquire(1000));
+
+    }
+
+    private void lendAndDrop(byte[] b) {
+        assertEquals(1000, pool.lend(b).length());
+    }
+
+    /**
+     * Collects garbage until every lent buffer is unreachable and its array taken back
+     */
+    static void awaitReclaimed(DefaultChunkBufferPool pool) throws InterruptedException {
+        for (int i = 0; i < 100 && pool.getLent() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            pool.reclaim();
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        pool = new DefaultChunkBufferPool(new BufferPoolOptions().setMinSize(0), new MetricRegistry());
+
+        byte[] b = pool.acquire(1000);
+        pool.release(b);
+
+        assertFalse(pool.isEnabled());
+        assertNotSame(b, pool.acquire(1000));
+        assertEquals(0, pool.getPooledBytes());
+
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.promises.Deferred;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.ChunkScheduler;
+import com.englishtown.vertx.cassandra.binarystore.ChunkSchedulerOptions;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DefaultChunkScheduler}
+ */
+public class DefaultChunkSchedulerTest {
+
+    private static final int MB = 1024 * 1024;
+
+    MetricRegistry registry = new MetricRegistry();
+    ChunkSchedulerOptions options = new ChunkSchedulerOptions()
+            .setEnabled(true)
+            .setMaxInFlight(1)
+            .setQuantum(256 * 1024);
+    When when = WhenFactory.createSync();
+    DefaultChunkScheduler scheduler;
+
+    List<String> started = new ArrayList<>();
+    List<Deferred<Void>> running = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new DefaultChunkScheduler(options, registry, when);
+    }
+
+    private Promise<Void> submit(ChunkScheduler.Stream stream, String name, long bytes) {
+        return stream.submit(bytes, () -> {
+            started.add(name);
+            Deferred<Void> d = when.defer();
+            running.add(d);
+            return d.getPromise();
+        });
+    }
+
+    private void finishNext() {
+        running.remove(0).resolve((Void) null);
+    }
+
+    @Test
+    public void testSmallStreamsAreNotStarvedByLargeOne() throws Exception {
+
+        ChunkScheduler.Stream video = scheduler.open();
+        ChunkScheduler.Stream image1 = scheduler.open();
+        ChunkScheduler.Stream image2 = scheduler.open();
+
+        for (int i = 0; i < 4; i++) {
+            submit(video, "video" + i, MB);
+        }
+        submit(image1, "image1", 64 * 1024);
+        submit(image2, "image2", 64 * 1024);
+
+        assertEquals(1, scheduler.getInFlight());
+        assertEquals(5, scheduler.getQueued());
+
+        for (int i = 0; i < 5; i++) {
+            finishNext();
+        }
+
+        // The images go out as soon as the first video chunk is done, rather than after the whole video
+        assertEquals("video0", started.get(0));
+        assertEquals("image1", started.get(1));
+        assertEquals("image2", started.get(2));
+        assertEquals(6, started.size());
+        assertEquals(0, scheduler.getActiveStreams());
+
+    }
+
+    @Test
+    public void testBandwidthIsSharedByBytes() throws Exception {
+
+        options.setMaxInFlight(1).setQuantum(MB);
+        ChunkScheduler.Stream large = scheduler.open();
+        ChunkScheduler.Stream small = scheduler.open();
+
+        // Keep the only slot busy while both streams queue up
+        submit(scheduler.open(), "blocker", 0);
+        for (int i = 0; i < 4; i++) {
+            submit(large, "large", MB);
+        }
+        for (int i = 0; i < 16; i++) {
+            submit(small, "small", MB / 4);
+        }
+
+        while (!running.isEmpty()) {
+            finishNext();
+        }
+
+        // Each round a stream sends a quantum's worth, one large chunk or four small ones
+        List<String> order = started.subList(1, 11);
+        assertEquals("large", order.get(0));
+        for (int i = 1; i < 5; i++) {
+            assertEquals("small", order.get(i));
+        }
+        assertEquals("large", order.get(5));
+
+    }
+
+    @Test
+    public void testMaxInFlight() throws Exception {
+
+        options.setMaxInFlight(2);
+        ChunkScheduler.Stream stream = scheduler.open();
+
+        Promise<Void> p1 = submit(stream, "1", 1024);
+        submit(stream, "2", 1024);
+        submit(stream, "3", 1024);
+
+        assertEquals(2, started.size());
+        assertEquals(HandlerState.PENDING, p1.inspect().getState());
+
+        finishNext();
+
+        assertEquals(HandlerState.FULFILLED, p1.inspect().getState());
+        assertEquals(3, started.size());
+
+    }
+
+    @Test
+    public void testFailedOperationFreesSlot() throws Exception {
+
+        ChunkScheduler.Stream stream = scheduler.open();
+
+        Promise<Void> p1 = submit(stream, "1", 1024);
+        submit(stream, "2", 1024);
+
+        running.remove(0).reject(new RuntimeException("Failed"));
+
+        assertEquals(HandlerState.REJECTED, p1.inspect().getState());
+        assertEquals(2, started.size());
+
+    }
+
+    @Test
+    public void testClose() throws Exception {
+
+        ChunkScheduler.Stream stream = scheduler.open();
+
+        submit(stream, "1", MB);
+        Promise<Void> p2 = submit(stream, "2", MB);
+
+        stream.close();
+
+        assertEquals(HandlerState.REJECTED, p2.inspect().getState());
+        assertTrue(p2.inspect().getReason() instanceof CancellationException);
+        assertEquals(0, scheduler.getQueued());
+
+        finishNext();
+        assertEquals(1, started.size());
+        assertEquals(0, scheduler.getInFlight());
+
+        Promise<Void> p3 = submit(stream, "3", MB);
+        assertEquals(HandlerState.REJECTED, p3.inspect().getState());
+
+    }
+
+    @Test
+    public void testTasksRunOnSubmittingContext() throws Exception {
+
+        Vertx vertx = Vertx.vertx();
+        try {
+            List<Context> contexts = new ArrayList<>();
+            Map<Context, Context> startedOn = new ConcurrentHashMap<>();
+            Map<Context, Context> resolvedOn = new ConcurrentHashMap<>();
+            BlockingQueue<Runnable> operations = new LinkedBlockingQueue<>();
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch resolved = new CountDownLatch(2);
+
+            // Created from the test thread, each call gives a new event loop context
+            contexts.add(vertx.getOrCreateContext());
+            contexts.add(vertx.getOrCreateContext());
+            assertNotSame(contexts.get(0), contexts.get(1));
+
+            for (Context context : contexts) {
+                context.runOnContext(aVoid -> scheduler.open().submit(1024, () -> {
+                    startedOn.put(context, Vertx.currentContext());
+                    Deferred<Void> d = when.defer();
+                    operations.add(() -> context.runOnContext(aVoid2 -> d.resolve((Void) null)));
+                    started.countDown();
+                    return d.getPromise();
+                }).then(result -> {
+                    resolvedOn.put(context, Vertx.currentContext());
+                    resolved.countDown();
+                    return null;
+                }));
+
+                // Wait for the first task to take the only slot before the second is submitted, so the order is fixed
+                assertTrue(started.await(5, TimeUnit.SECONDS));
+            }
+
+            // The second task is started by the first finishing on the other context
+            assertEquals(1, startedOn.size());
+            operations.poll(5, TimeUnit.SECONDS).run();
+            operations.poll(5, TimeUnit.SECONDS).run();
+            assertTrue(resolved.await(5, TimeUnit.SECONDS));
+
+            for (Context context : contexts) {
+                assertSame(context, startedOn.get(context));
+                assertSame(context, resolvedOn.get(context));
+            }
+        } finally {
+            vertx.close();
+        }
+
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        scheduler = new DefaultChunkScheduler(new ChunkSchedulerOptions(), new MetricRegistry(), when);
+        ChunkScheduler.Stream stream = scheduler.open();
+
+        for (int i = 0; i < 10; i++) {
+            submit(stream, "chunk", MB);
+        }
+
+        assertEquals(10, started.size());
+
+    }
+
+}
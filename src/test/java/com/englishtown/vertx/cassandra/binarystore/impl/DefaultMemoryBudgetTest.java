@@ -0,0 +1,129 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.MemoryBudgetOptions;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DefaultMemoryBudget}
+ */
+public class DefaultMemoryBudgetTest {
+
+    MetricRegistry registry = new MetricRegistry();
+    MemoryBudgetOptions options = new MemoryBudgetOptions()
+            .setEnabled(true)
+            .setMaxBytes(1000);
+    When when = WhenFactory.createSync();
+    DefaultMemoryBudget budget;
+
+    @Before
+    public void setUp() throws Exception {
+        budget = new DefaultMemoryBudget(options, registry, when);
+    }
+
+    @Test
+    public void testAcquireWaitsForRelease() throws Exception {
+
+        Promise<Void> p1 = budget.acquire(600);
+        Promise<Void> p2 = budget.acquire(600);
+
+        assertEquals(HandlerState.FULFILLED, p1.inspect().getState());
+        assertEquals(HandlerState.PENDING, p2.inspect().getState());
+        assertEquals(600, budget.getUsed());
+        assertEquals(1, budget.getWaiting());
+
+        budget.release(600);
+
+        assertEquals(HandlerState.FULFILLED, p2.inspect().getState());
+        assertEquals(600, budget.getUsed());
+        assertEquals(1, registry.timer("et.cass.binarystore.memory.wait").getCount());
+
+    }
+
+    @Test
+    public void testRequestsAreGrantedInOrder() throws Exception {
+
+        budget.acquire(900);
+        Promise<Void> large = budget.acquire(500);
+        Promise<Void> small = budget.acquire(50);
+
+        // The small request fits but does not overtake the large one
+        assertEquals(HandlerState.PENDING, small.inspect().getState());
+
+        budget.release(900);
+
+        assertEquals(HandlerState.FULFILLED, large.inspect().getState());
+        assertEquals(HandlerState.FULFILLED, small.inspect().getState());
+        assertEquals(550, budget.getUsed());
+
+    }
+
+    @Test
+    public void testRequestLargerThanBudget() throws Exception {
+
+        budget.acquire(100);
+        Promise<Void> p = budget.acquire(5000);
+
+        assertEquals(HandlerState.PENDING, p.inspect().getState());
+
+        budget.release(100);
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        assertTrue(budget.isExhausted());
+
+    }
+
+    @Test
+    public void testReserveAndWhenAvailable() throws Exception {
+
+        budget.reserve(1200);
+        assertTrue(budget.isExhausted());
+
+        Promise<Void> p = budget.whenAvailable();
+        budget.release(100);
+        assertEquals(HandlerState.PENDING, p.inspect().getState());
+
+        budget.release(200);
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        assertFalse(budget.isExhausted());
+        assertEquals(900, budget.getUsed());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGauges() throws Exception {
+
+        budget.acquire(300);
+
+        assertEquals(300L, ((Gauge<Long>) registry.getGauges().get("et.cass.binarystore.memory.used")).getValue().longValue());
+        assertEquals(1000L, ((Gauge<Long>) registry.getGauges().get("et.cass.binarystore.memory.max")).getValue().longValue());
+
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        MetricRegistry registry = new MetricRegistry();
+        budget = new DefaultMemoryBudget(new MemoryBudgetOptions().setMaxBytes(100), registry, when);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(HandlerState.FULFILLED, budget.acquire(100).inspect().getState());
+        }
+        budget.reserve(100);
+
+        assertFalse(budget.isExhausted());
+        assertEquals(0, budget.getUsed());
+        assertTrue(registry.getGauges().isEmpty());
+
+    }
+
+}
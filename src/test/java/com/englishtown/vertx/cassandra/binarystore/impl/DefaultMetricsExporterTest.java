@@ -0,0 +1,110 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreConfigurator;
+import com.englishtown.vertx.cassandra.binarystore.BinaryStoreStatements;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import com.englishtown.vertx.cassandra.binarystore.MetricsOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultMetricsExporter}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultMetricsExporterTest {
+
+    @Mock
+    BinaryStoreConfigurator configurator;
+    @Mock
+    BinaryStoreStatements statements;
+
+    MetricRegistry registry = new HdrMetricRegistry();
+    MetricsOptions options = new MetricsOptions();
+    DefaultMetricsExporter exporter;
+
+    @Before
+    public void setUp() throws Exception {
+        when(configurator.getMetricsOptions()).thenReturn(options);
+        when(statements.getKeyspace()).thenReturn("binarystore");
+        exporter = new DefaultMetricsExporter(registry, configurator, statements);
+    }
+
+    @Test
+    public void testScrape() throws Exception {
+
+        Metrics files = new Metrics(registry, "files");
+        Metrics chunks = new Metrics(registry, "chunks");
+        files.timeRead().stop();
+        chunks.timeRead().stop(100);
+        chunks.timeWrite().error();
+        registry.timer(MetricRegistry.name(Metrics.BASE_NAME, "reads", "ttfb")).update(2, TimeUnit.MILLISECONDS);
+        registry.counter("other.metric").inc();
+        registry.histogram(MetricRegistry.name(Metrics.BASE_NAME, "reads", "chunks")).update(3);
+        registry.histogram(MetricRegistry.name(Metrics.BASE_NAME, "reads", "chunks")).update(4);
+        registry.timer(MetricRegistry.name(Metrics.BASE_NAME, "chunks", "lane", "latency")).update(1, TimeUnit.SECONDS);
+        registry.meter(MetricRegistry.name(Metrics.BASE_NAME, "tenant_a", "tenant", "bytes")).mark(10);
+
+        String text = exporter.scrape();
+
+        // Both types share a single family
+        assertEquals(text.indexOf("# TYPE binarystore_read_success_seconds summary\n"),
+                text.lastIndexOf("# TYPE binarystore_read_success_seconds summary\n"));
+        assertTrue(text.contains("binarystore_read_success_seconds_count{keyspace=\"binarystore\",type=\"chunks\"} 1\n"));
+        assertTrue(text.contains("binarystore_read_success_seconds_count{keyspace=\"binarystore\",type=\"files\"} 1\n"));
+
+        assertTrue(text.contains("# TYPE binarystore_read_bytes_total counter\n"));
+        assertTrue(text.contains("binarystore_read_bytes_total{keyspace=\"binarystore\",type=\"chunks\"} 100\n"));
+        assertTrue(text.contains("binarystore_write_errors{keyspace=\"binarystore\",type=\"chunks\"} 1\n"));
+        assertTrue(text.contains("# TYPE binarystore_inflight gauge\n"));
+        assertTrue(text.contains("binarystore_inflight{keyspace=\"binarystore\",type=\"chunks\"} 0\n"));
+
+        // Durations are in seconds, only the files and chunks segments become labels
+        assertTrue(text.contains("binarystore_reads_ttfb_seconds{keyspace=\"binarystore\",quantile=\"0.99\"} 0.002"));
+        assertTrue(text.contains("binarystore_reads_ttfb_seconds_sum{keyspace=\"binarystore\"} 0.002\n"));
+        assertTrue(text.contains("binarystore_reads_ttfb_seconds_count{keyspace=\"binarystore\"} 1\n"));
+
+        // Histograms are summed as recorded
+        assertTrue(text.contains("binarystore_reads_chunks_sum{keyspace=\"binarystore\"} 7\n"));
+
+        // Lanes and tenants are labels of a shared family
+        assertTrue(text.contains("binarystore_lane_latency_seconds_sum{keyspace=\"binarystore\",lane=\"chunks\"} 1\n"));
+        assertTrue(text.contains("binarystore_tenant_bytes_total{keyspace=\"binarystore\",tenant=\"tenant_a\"} 10\n"));
+
+        // Only binary store metrics are exported
+        assertFalse(text.contains("other"));
+
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MetricsOptions.DEFAULT_JMX_DOMAIN, "name", "et.cass.binarystore.files.read.success");
+
+        // Disabled by default
+        new Metrics(registry, "files");
+        exporter.start();
+        assertFalse(server.isRegistered(name));
+
+        options.setJmxEnabled(true);
+        exporter.start();
+        assertTrue(server.isRegistered(name));
+
+        exporter.stop();
+        assertFalse(server.isRegistered(name));
+
+    }
+
+}
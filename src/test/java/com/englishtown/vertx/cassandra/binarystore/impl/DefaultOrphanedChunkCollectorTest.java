@@ -0,0 +1,289 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TokenRange;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.*;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.UUID;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link DefaultOrphanedChunkCollector}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultOrphanedChunkCollectorTest {
+
+    @Mock
+    WhenCassandraSession session;
+    @Mock
+    BinaryStoreStatements statements;
+    @Mock
+    BinaryStoreManager manager;
+    @Mock
+    BinaryStoreConfigurator configurator;
+    @Mock
+    Vertx vertx;
+    @Mock
+    Metadata metadata;
+    @Mock
+    PreparedStatement scanChunks;
+    @Mock
+    PreparedStatement deleteChunk;
+    @Mock
+    PreparedStatement scanBlocks;
+    @Mock
+    PreparedStatement deleteBlocks;
+    @Mock
+    BoundStatement scanBlocksStatement;
+    @Mock
+    ResultSet scanBlocksResult;
+    @Mock
+    BoundStatement scanStatement;
+    @Mock
+    BoundStatement deleteStatement;
+    @Mock
+    ResultSet scanResult;
+    @Mock
+    ResultSet deleteResult;
+    @Mock
+    ExecutionInfo executionInfo;
+
+    When when = WhenFactory.createSync();
+    MetricRegistry registry = new MetricRegistry();
+    OrphanedChunkCollectorOptions options = new OrphanedChunkCollectorOptions().setEnabled(true);
+    DefaultOrphanedChunkCollector collector;
+
+    UUID orphanId = UUID.randomUUID();
+    UUID liveId = UUID.randomUUID();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+
+        when(configurator.getOrphanedChunkCollectorOptions()).thenReturn(options);
+        when(session.getMetadata()).thenReturn(metadata);
+        TokenRange range = newTokenRange("-100", "100");
+        when(metadata.getTokenRanges()).thenReturn(Collections.singleton(range));
+
+        when(statements.getScanChunks()).thenReturn(scanChunks);
+        when(scanChunks.bind()).thenReturn(scanStatement);
+        when(scanStatement.setToken(anyInt(), any(Token.class))).thenReturn(scanStatement);
+        when(statements.getDeleteChunk()).thenReturn(deleteChunk);
+        when(deleteChunk.bind(any(), any())).thenReturn(deleteStatement);
+        when(statements.getScanBlocks()).thenReturn(scanBlocks);
+        when(scanBlocks.bind()).thenReturn(scanBlocksStatement);
+        when(scanBlocksStatement.setToken(anyInt(), any(Token.class))).thenReturn(scanBlocksStatement);
+        when(statements.getDeleteBlocks()).thenReturn(deleteBlocks);
+        when(deleteBlocks.bind(any(), any())).thenReturn(deleteStatement);
+
+        when(session.executeAsync(any(Statement.class))).thenReturn(when.resolve(deleteResult));
+        when(session.executeAsync(scanStatement)).thenReturn(when.resolve(scanResult));
+        when(scanResult.getExecutionInfo()).thenReturn(executionInfo);
+        when(session.executeAsync(scanBlocksStatement)).thenReturn(when.resolve(scanBlocksResult));
+        when(scanBlocksResult.getExecutionInfo()).thenReturn(executionInfo);
+
+        when(vertx.setTimer(anyLong(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<Long>) invocation.getArguments()[1]).handle(1L);
+            return 1L;
+        });
+
+        when(manager.loadFile(orphanId)).thenReturn(when.resolve(null));
+        when(manager.loadFile(liveId)).thenReturn(when.resolve(new FileInfo().setId(liveId)));
+
+        collector = new DefaultOrphanedChunkCollector(session, statements, manager, configurator, registry, vertx, when);
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+
+        long old = (System.currentTimeMillis() - options.getGracePeriod() - 1000) * 1000;
+        long recent = System.currentTimeMillis() * 1000;
+        UUID recentId = UUID.randomUUID();
+
+        Row r1 = mockRow(orphanId, 0, old);
+        Row r2 = mockRow(orphanId, 1, old);
+        Row r3 = mockRow(liveId, 0, old);
+        Row r4 = mockRow(recentId, 0, recent);
+
+        when(scanResult.getAvailableWithoutFetching()).thenReturn(4);
+        when(scanResult.one()).thenReturn(r1, r2, r3, r4);
+
+        Promise<Long> p = collector.sweep();
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        assertEquals(2L, p.inspect().getValue().longValue());
+
+        verify(manager, times(1)).loadFile(orphanId);
+        verify(manager, times(1)).loadFile(liveId);
+        verify(manager, never()).loadFile(recentId);
+        verify(deleteChunk).bind(orphanId, 0);
+        verify(deleteChunk).bind(orphanId, 1);
+        verify(deleteChunk, never()).bind(eq(liveId), any());
+
+        assertEquals(4, registry.counter(name(Metrics.BASE_NAME, "gc", "scanned", "chunks")).getCount());
+        assertEquals(2, registry.counter(name(Metrics.BASE_NAME, "gc", "reclaimed", "chunks")).getCount());
+
+        // Without a file record the bytes are estimated from the default chunk size
+        assertEquals(2L * DefaultBinaryStoreWriter.DEFAULT_CHUNK_SIZE,
+                registry.counter(name(Metrics.BASE_NAME, "gc", "reclaimed", "bytes")).getCount());
+
+        // Reclaiming never reads the blobs it deletes
+        verify(manager, never()).loadChunk(any(), anyInt());
+
+        // Throttled by the number of rows scanned
+        verify(vertx).setTimer(eq(4L), any());
+
+    }
+
+    @Test
+    public void testSweepBlocks() throws Exception {
+
+        long old = (System.currentTimeMillis() - options.getGracePeriod() - 1000) * 1000;
+        UUID noChecksumId = UUID.randomUUID();
+
+        // Chunks stored with a block size are scanned once per chunk, not once per block
+        Row r1 = mockRow(orphanId, 0, old);
+        Row r2 = mockRow(liveId, 0, old);
+        Row r3 = mock(Row.class);
+        when(r3.getUUID(0)).thenReturn(noChecksumId);
+        when(r3.isNull(2)).thenReturn(true);
+
+        when(scanBlocksResult.getAvailableWithoutFetching()).thenReturn(3);
+        when(scanBlocksResult.one()).thenReturn(r1, r2, r3);
+
+        Promise<Long> p = collector.sweep();
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        assertEquals(1L, p.inspect().getValue().longValue());
+
+        verify(deleteBlocks).bind(orphanId, 0);
+        verify(deleteBlocks, never()).bind(eq(liveId), any());
+        verify(manager, never()).loadFile(noChecksumId);
+        verify(deleteChunk, never()).bind(any(), any());
+        assertEquals(3, registry.counter(name(Metrics.BASE_NAME, "gc", "scanned", "chunks")).getCount());
+
+    }
+
+    @Test
+    public void testSweepStalePendingFile() throws Exception {
+
+        // An upload that started before the grace period and never committed
+        long old = (System.currentTimeMillis() - options.getGracePeriod() - 1000);
+        UUID pendingId = UUID.randomUUID();
+        FileInfo pending = new FileInfo().setId(pendingId).setStatus(FileStatus.PENDING).setUploadDate(old).setChunkSize(1000);
+
+        PreparedStatement deleteFile = mock(PreparedStatement.class);
+        when(statements.getDeleteFile()).thenReturn(deleteFile);
+        when(deleteFile.bind(any())).thenReturn(deleteStatement);
+        when(manager.loadFile(pendingId)).thenReturn(when.resolve(pending));
+
+        Row r1 = mockRow(pendingId, 0, old * 1000);
+        Row r2 = mockRow(pendingId, 1, old * 1000);
+        when(scanResult.getAvailableWithoutFetching()).thenReturn(1);
+        when(scanResult.one()).thenReturn(r1);
+
+        Promise<Long> p = collector.sweep();
+
+        assertEquals(HandlerState.FULFILLED, p.inspect().getState());
+        verify(deleteFile).bind(pendingId);
+        verify(deleteChunk).bind(pendingId, 0);
+        assertEquals(1000, registry.counter(name(Metrics.BASE_NAME, "gc", "reclaimed", "bytes")).getCount());
+
+        // A pending upload within the grace period is left alone
+        pending.setUploadDate(System.currentTimeMillis());
+        when(scanResult.one()).thenReturn(r2);
+
+        collector.sweep();
+
+        verify(deleteChunk, never()).bind(pendingId, 1);
+
+    }
+
+    @Test
+    public void testSweepError() throws Exception {
+
+        when(session.executeAsync(scanStatement)).thenReturn(when.reject(new RuntimeException("Unit test")));
+
+        Promise<Long> p = collector.sweep();
+
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+        assertEquals(1, registry.counter(name(Metrics.BASE_NAME, "gc", "errors")).getCount());
+
+        // A failed sweep does not block the next one
+        when(session.executeAsync(scanStatement)).thenReturn(when.resolve(scanResult));
+        assertEquals(HandlerState.FULFILLED, collector.sweep().inspect().getState());
+
+    }
+
+    @Test
+    public void testStartDisabled() throws Exception {
+        options.setEnabled(false);
+        collector.start();
+        verify(vertx, never()).setPeriodic(anyLong(), any());
+    }
+
+    @Test
+    public void testStartStop() throws Exception {
+        when(vertx.setPeriodic(anyLong(), any())).thenReturn(5L);
+
+        collector.start();
+        verify(vertx).setPeriodic(eq(options.getInterval()), any());
+
+        collector.stop();
+        verify(vertx).cancelTimer(5L);
+    }
+
+    private Row mockRow(UUID id, int n, long writeTime) {
+        Row row = mock(Row.class);
+        when(row.getUUID(0)).thenReturn(id);
+        when(row.getInt(1)).thenReturn(n);
+        when(row.getLong(2)).thenReturn(writeTime);
+        return row;
+    }
+
+    private TokenRange newTokenRange(String start, String end) throws Exception {
+
+        // The driver does not expose a way to build token ranges without a live cluster
+        Class<?> factoryClass = Class.forName("com.datastax.driver.core.Token$Factory");
+        Method getFactory = Token.class.getDeclaredMethod("getFactory", String.class);
+        getFactory.setAccessible(true);
+        Object factory = getFactory.invoke(null, "org.apache.cassandra.dht.Murmur3Partitioner");
+
+        Method fromString = factoryClass.getDeclaredMethod("fromString", String.class);
+        fromString.setAccessible(true);
+
+        Constructor<TokenRange> constructor = TokenRange.class.getDeclaredConstructor(Token.class, Token.class, factoryClass);
+        constructor.setAccessible(true);
+        return constructor.newInstance(fromString.invoke(factory, start), fromString.invoke(factory, end), factory);
+    }
+
+}
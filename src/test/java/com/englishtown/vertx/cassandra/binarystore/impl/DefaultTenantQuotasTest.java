@@ -0,0 +1,198 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.binarystore.FileInfo;
+import com.englishtown.vertx.cassandra.binarystore.QuotaOptions;
+import com.englishtown.vertx.cassandra.binarystore.TenantQuotas;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultTenantQuotas}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultTenantQuotasTest {
+
+    @Mock
+    Vertx vertx;
+
+    MetricRegistry registry = new MetricRegistry();
+    When when = WhenFactory.createSync();
+    List<Long> delays = new ArrayList<>();
+    List<Handler<Long>> timers = new ArrayList<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        when(vertx.setTimer(anyLong(), any())).thenAnswer(invocation -> {
+            delays.add((Long) invocation.getArguments()[0]);
+            timers.add((Handler<Long>) invocation.getArguments()[1]);
+            return (long) timers.size();
+        });
+    }
+
+    private DefaultTenantQuotas create(JsonObject config) {
+        JsonObject json = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_QUOTAS, config.put("enabled", true));
+        return new DefaultTenantQuotas(new JsonBinaryStoreConfigurator(json).getQuotaOptions(), registry, vertx, when);
+    }
+
+    private FileInfo file(String tenant) {
+        return new FileInfo().setMetadata(tenant == null ? null : Collections.singletonMap("tenant", tenant));
+    }
+
+    private Promise<String> submit(TenantQuotas.Quota quota, long bytes, List<String> started, String name) {
+        return quota.submit(bytes, () -> {
+            started.add(name);
+            return when.resolve(name);
+        });
+    }
+
+    @Test
+    public void testOpsQuota() throws Exception {
+
+        TenantQuotas.Quota quota = create(new JsonObject().put("opsPerSecond", 10)).forFile(file("web"));
+        List<String> started = new ArrayList<>();
+
+        // A second's worth of operations may burst
+        for (int i = 0; i < 10; i++) {
+            submit(quota, 100, started, "op" + i);
+        }
+        Promise<String> p = submit(quota, 100, started, "late");
+
+        assertEquals(10, started.size());
+        assertEquals(HandlerState.PENDING, p.inspect().getState());
+        assertEquals(1, delays.size());
+        assertTrue(delays.get(0) > 50 && delays.get(0) <= 100);
+
+        // It starts once the tenant's quota has refilled
+        timers.get(0).handle(1L);
+        assertEquals("late", started.get(10));
+        assertEquals("late", p.inspect().getValue());
+
+    }
+
+    @Test
+    public void testBytesQuotaDelaysInOrder() throws Exception {
+
+        TenantQuotas.Quota quota = create(new JsonObject().put("bytesPerSecond", 1000)).forFile(file("batch"));
+        List<String> started = new ArrayList<>();
+
+        submit(quota, 1000, started, "first");
+        submit(quota, 500, started, "second");
+        submit(quota, 500, started, "third");
+
+        // Each operation waits behind the debt of the ones before it, rather than being failed
+        assertEquals(1, started.size());
+        assertEquals(2, delays.size());
+        assertTrue(delays.get(0) > 450 && delays.get(0) <= 500);
+        assertTrue(delays.get(1) > 950 && delays.get(1) <= 1000);
+
+        assertEquals(2000, registry.meter("et.cass.binarystore.batch.tenant.bytes").getCount());
+        assertEquals(3, registry.meter("et.cass.binarystore.batch.tenant.ops").getCount());
+        assertEquals(2, registry.timer("et.cass.binarystore.batch.tenant.throttled").getCount());
+
+    }
+
+    @Test
+    public void testTenantsHaveSeparateQuotas() throws Exception {
+
+        DefaultTenantQuotas quotas = create(new JsonObject()
+                .put("bytesPerSecond", 1000)
+                .put("tenants", new JsonObject()
+                        .put("batch", new JsonObject().put("bytesPerSecond", 100))
+                        .put("video", new JsonObject().put("bytesPerSecond", 0))));
+        List<String> started = new ArrayList<>();
+
+        submit(quotas.forFile(file("batch")), 500, started, "batch");
+        submit(quotas.forFile(file("web")), 500, started, "web");
+        submit(quotas.forFile(file("video")), 5000, started, "video");
+        submit(quotas.forFile(file(null)), 500, started, "untagged");
+
+        // Only the batch tenant is over its own limit, the others keep their default or unlimited quotas
+        assertEquals(3, started.size());
+        assertFalse(started.contains("batch"));
+        assertEquals(1, delays.size());
+        assertTrue(delays.get(0) > 3900 && delays.get(0) <= 4000);
+
+        assertEquals("default", quotas.forFile(file(null)).getTenant());
+        assertSame(quotas.forFile(file("web")), quotas.forFile(file("web")));
+
+    }
+
+    @Test
+    public void testMaxTenants() throws Exception {
+
+        DefaultTenantQuotas quotas = create(new JsonObject()
+                .put("maxTenants", 2)
+                .put("tenants", new JsonObject().put("configured", new JsonObject())));
+
+        assertEquals("a", quotas.forFile(file("a")).getTenant());
+        assertEquals("b", quotas.forFile(file("b")).getTenant());
+
+        // Further tenants share the default quota, unless they have limits of their own
+        assertEquals("default", quotas.forFile(file("c")).getTenant());
+        assertEquals("configured", quotas.forFile(file("configured")).getTenant());
+        assertEquals("a", quotas.forFile(file("a")).getTenant());
+
+    }
+
+    @Test
+    public void testMetricName() throws Exception {
+        assertEquals("team_a", DefaultTenantQuotas.metricName("team.a"));
+        assertEquals("team-b_1", DefaultTenantQuotas.metricName("team-b_1"));
+    }
+
+    @Test
+    public void testTokenBucket() throws Exception {
+
+        long second = TimeUnit.SECONDS.toNanos(1);
+        DefaultTenantQuotas.TokenBucket bucket = new DefaultTenantQuotas.TokenBucket(100, 200, 0);
+
+        assertEquals(0, bucket.take(200, 0));
+        assertEquals(second / 2, bucket.take(50, 0));
+
+        // Refilling pays off the debt first and never saves more than the capacity
+        assertEquals(0, bucket.take(50, second));
+        assertEquals(0, bucket.take(200, 10 * second));
+        assertEquals(second, bucket.take(100, 10 * second));
+
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        DefaultTenantQuotas quotas = new DefaultTenantQuotas(new QuotaOptions(), registry, vertx, when);
+        TenantQuotas.Quota quota = quotas.forFile(file("batch"));
+        List<String> started = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            submit(quota, Integer.MAX_VALUE, started, "op");
+        }
+
+        assertEquals(100, started.size());
+        assertNull(quota.getTenant());
+        assertTrue(registry.getMeters().isEmpty());
+
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.englishtown.vertx.cassandra.binarystore.BufferPoolOptions;
+import com.englishtown.vertx.cassandra.binarystore.ChunkInfo;
+import com.englishtown.vertx.cassandra.binarystore.FileInfo;
+import com.englishtown.vertx.cassandra.binarystore.FileStatus;
+import com.englishtown.vertx.cassandra.binarystore.WarmCacheOptions;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DefaultWarmCache}
+ */
+public class DefaultWarmCacheTest {
+
+    MetricRegistry registry = new MetricRegistry();
+    DefaultChunkBufferPool bufferPool = new DefaultChunkBufferPool(
+            new BufferPoolOptions().setEnabled(true).setMinSize(0).setLeakDetection(true), registry);
+    WarmCacheOptions options = new WarmCacheOptions()
+            .setEnabled(true)
+            .setMaxBytes(1000)
+            .setMaxKeys(2);
+    DefaultWarmCache cache;
+
+    UUID id = UUID.randomUUID();
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new DefaultWarmCache(options, bufferPool, registry);
+    }
+
+    private ChunkInfo chunk(UUID id, int n, int length) {
+        byte[] data = new byte[length];
+        data[0] = (byte) n;
+        return new ChunkInfo().setId(id).setNum(n).setData(data).setChecksum(n);
+    }
+
+    @Test
+    public void testChunkAdmittedOnSecondRead() throws Exception {
+
+        // A single read is not cached
+        assertNull(cache.getChunk(id, 0));
+        cache.offerChunk(chunk(id, 0, 100));
+        assertEquals(0, cache.getCachedBytes());
+
+        assertNull(cache.getChunk(id, 0));
+        cache.offerChunk(chunk(id, 0, 100));
+        assertEquals(100, cache.getCachedBytes());
+
+        ChunkInfo cached = cache.getChunk(id, 0);
+        assertNotNull(cached);
+        assertEquals(0, cached.getNum());
+        assertEquals(Integer.valueOf(0), cached.getChecksum());
+        assertEquals(100, cached.getData().length);
+
+        assertEquals(1, registry.counter("et.cass.binarystore.warmcache.hits").getCount());
+        assertEquals(2, registry.counter("et.cass.binarystore.warmcache.misses").getCount());
+        assertEquals(100L, registry.getGauges().get("et.cass.binarystore.warmcache.bytes").getValue());
+
+    }
+
+    @Test
+    public void testPeekIsNotCounted() throws Exception {
+
+        // Lookups the store makes itself don't make a chunk popular or admit it
+        assertNull(cache.peekChunk(id, 0));
+        assertNull(cache.peekChunk(id, 0));
+        assertNull(cache.peekFile(id));
+        cache.offerChunk(chunk(id, 0, 100));
+        assertEquals(0, cache.getCachedBytes());
+        assertTrue(cache.getPopularChunks().isEmpty());
+
+        cache.putChunk(chunk(id, 0, 100));
+        ChunkInfo cached = cache.peekChunk(id, 0);
+        assertEquals(100, cached.getData().length);
+        bufferPool.release(cached.getData());
+
+        assertTrue(cache.getPopularChunks().isEmpty());
+        assertEquals(0, registry.counter("et.cass.binarystore.warmcache.hits").getCount());
+        assertEquals(0, registry.counter("et.cass.binarystore.warmcache.misses").getCount());
+
+    }
+
+    @Test
+    public void testCachedArraysStayOutOfThePool() throws Exception {
+
+        ChunkInfo loaded = chunk(id, 0, 100);
+        cache.putChunk(loaded);
+
+        // The caller's array is returned to the pool and reused without touching the cached copy
+        bufferPool.release(bufferPool.acquire(100));
+        loaded.getData()[0] = 42;
+
+        ChunkInfo hit1 = cache.getChunk(id, 0);
+        assertNotSame(loaded.getData(), hit1.getData());
+        assertEquals(0, hit1.getData()[0]);
+
+        // Each hit gets an array from the pool the reader may release
+        bufferPool.release(hit1.getData());
+        ChunkInfo hit2 = cache.getChunk(id, 0);
+        assertSame(hit1.getData(), hit2.getData());
+        bufferPool.release(hit2.getData());
+
+    }
+
+    @Test
+    public void testEvictedBySize() throws Exception {
+
+        cache.putChunk(chunk(id, 0, 600));
+        cache.putChunk(chunk(id, 1, 600));
+
+        assertEquals(600, cache.getCachedBytes());
+        assertNotNull(cache.getChunk(id, 1));
+
+        // Chunks larger than the cache are never held
+        cache.putChunk(chunk(id, 2, 2000));
+        assertNull(cache.getChunk(id, 2));
+
+    }
+
+    @Test
+    public void testFileRecords() throws Exception {
+
+        FileInfo pending = new FileInfo().setId(id).setStatus(FileStatus.PENDING);
+        cache.putFile(pending);
+        assertNull(cache.getFile(id));
+
+        // Read once so far, not cached until read again
+        FileInfo committed = new FileInfo().setId(id).setLength(100).setChunkSize(100);
+        cache.offerFile(committed);
+        assertNull(cache.getFile(id));
+
+        cache.offerFile(committed);
+        assertNotNull(cache.getFile(id));
+        assertNotSame(committed, cache.getFile(id));
+        assertEquals(100, cache.getFile(id).getLength());
+
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+
+        UUID other = UUID.randomUUID();
+        cache.putFile(new FileInfo().setId(id));
+        cache.putChunk(chunk(id, 0, 100));
+        cache.putChunk(chunk(id, 1, 100));
+        cache.putChunk(chunk(other, 0, 100));
+
+        cache.invalidate(id);
+
+        assertNull(cache.getFile(id));
+        assertNull(cache.getChunk(id, 0));
+        assertNull(cache.getChunk(id, 1));
+        assertNotNull(cache.getChunk(other, 0));
+        assertEquals(100, cache.getCachedBytes());
+
+    }
+
+    @Test
+    public void testPopularChunks() throws Exception {
+
+        UUID hot = UUID.randomUUID();
+        UUID warm = UUID.randomUUID();
+
+        for (int i = 0; i < 5; i++) {
+            cache.getChunk(hot, 3);
+        }
+        for (int i = 0; i < 3; i++) {
+            cache.getChunk(warm, 0);
+        }
+        cache.getFile(hot);
+
+        // Keys read once are pruned as new ones arrive, file records are not listed
+        for (int i = 0; i < 10; i++) {
+            cache.getChunk(UUID.randomUUID(), 0);
+        }
+
+        List<ChunkInfo> popular = cache.getPopularChunks();
+
+        assertEquals(2, popular.size());
+        assertEquals(hot, popular.get(0).getId());
+        assertEquals(3, popular.get(0).getNum());
+        assertEquals(warm, popular.get(1).getId());
+
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+
+        UUID hot = UUID.randomUUID();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+        // Reads counted from many threads at once, with enough one off keys to keep pruning
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 1000; i++) {
+                        cache.getChunk(hot, 0);
+                        cache.getChunk(UUID.randomUUID(), 0);
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(hot, cache.getPopularChunks().get(0).getId());
+
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        options.setEnabled(false);
+        cache = new DefaultWarmCache(options, bufferPool, registry);
+
+        cache.putChunk(chunk(id, 0, 100));
+        cache.putFile(new FileInfo().setId(id));
+
+        assertNull(cache.getChunk(id, 0));
+        assertNull(cache.getFile(id));
+        assertTrue(cache.getPopularChunks().isEmpty());
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HdrReservoir}
+ */
+public class HdrReservoirTest {
+
+    private long tick;
+    private Clock clock = new Clock() {
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    };
+
+    @Test
+    public void testBuckets() throws Exception {
+
+        // Small values are exact
+        for (long value = 0; value < 128; value++) {
+            assertEquals(value, HdrReservoir.valueOf(HdrReservoir.indexOf(value)));
+        }
+
+        // Larger values are within 1%
+        for (long value = 128; value < 1L << 40; value = value * 3 + 1) {
+            long bucket = HdrReservoir.valueOf(HdrReservoir.indexOf(value));
+            assertEquals(value, bucket, value / 100.0);
+        }
+
+        // Indexes are monotonic
+        int index = 0;
+        for (long value = 0; value < 100000; value++) {
+            int next = HdrReservoir.indexOf(value);
+            assertTrue(next == index || next == index + 1);
+            index = next;
+        }
+
+        // Out of range values are clamped
+        assertEquals(0, HdrReservoir.indexOf(-5));
+        assertEquals(HdrReservoir.indexOf((1L << 40) - 1), HdrReservoir.indexOf(Long.MAX_VALUE));
+
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+
+        HdrReservoir reservoir = new HdrReservoir(60, TimeUnit.SECONDS, clock);
+
+        for (long value = 1; value <= 1000; value++) {
+            reservoir.update(value * 1000);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1000, snapshot.size());
+        assertEquals(1000, snapshot.getMin(), 10);
+        assertEquals(1000000, snapshot.getMax(), 10000);
+        assertEquals(500000, snapshot.getMedian(), 5000);
+        assertEquals(990000, snapshot.get99thPercentile(), 9900);
+        assertEquals(500500, snapshot.getMean(), 5005);
+        assertEquals(1000, snapshot.getValues().length);
+
+    }
+
+    @Test
+    public void testWindows() throws Exception {
+
+        HdrReservoir reservoir = new HdrReservoir(60, TimeUnit.SECONDS, clock);
+        reservoir.update(10);
+
+        // The previous window is still included
+        tick = TimeUnit.SECONDS.toNanos(61);
+        reservoir.update(20);
+        assertEquals(2, reservoir.size());
+
+        // Then drops out
+        tick = TimeUnit.SECONDS.toNanos(122);
+        assertEquals(1, reservoir.size());
+        assertEquals(20, reservoir.getSnapshot().getMax());
+
+        // A whole idle window clears both
+        tick = TimeUnit.SECONDS.toNanos(300);
+        assertEquals(0, reservoir.size());
+        assertEquals(0, reservoir.getSnapshot().getMedian(), 0);
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link JfrEvents}
+ */
+public class JfrEventsTest {
+
+    private UUID uuid = UUID.fromString("739a6466-adf8-11e3-aca6-425861b86ab6");
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+
+        assertTrue(JfrEvents.AVAILABLE);
+        assertNull(JfrEvents.ChunkRead.begin(uuid, 0, 0, Integer.MAX_VALUE));
+
+        // A recording with the default settings doesn't turn them on either
+        try (Recording recording = new Recording()) {
+            recording.start();
+            assertNull(JfrEvents.FileRead.begin(uuid));
+        }
+
+    }
+
+    @Test
+    public void testRecorded() throws Exception {
+
+        Path path = Files.createTempFile("binarystore", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("binarystore.ChunkRead");
+            recording.start();
+
+            JfrEvents.ChunkRead event = JfrEvents.ChunkRead.begin(uuid, 3, 0, 7);
+            assertNotNull(event);
+            event.commit(100, false);
+
+            recording.stop();
+            recording.dump(path);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+        Files.delete(path);
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(uuid.toString(), event.getString("fileId"));
+        assertEquals(3, event.getInt("chunk"));
+        assertEquals(7, event.getInt("toBlock"));
+        assertEquals(100, event.getLong("bytes"));
+        assertFalse(event.getBoolean("failed"));
+
+    }
+
+}
@@ -0,0 +1,389 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.englishtown.vertx.cassandra.binarystore.BufferPoolOptions;
+import com.englishtown.vertx.cassandra.binarystore.ChunkLayout;
+import com.englishtown.vertx.cassandra.binarystore.ChunkSchedulerOptions;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitOptions;
+import com.englishtown.vertx.cassandra.binarystore.HedgingOptions;
+import com.englishtown.vertx.cassandra.binarystore.KeyspaceOptions;
+import com.englishtown.vertx.cassandra.binarystore.LaneOptions;
+import com.englishtown.vertx.cassandra.binarystore.MemoryBudgetOptions;
+import com.englishtown.vertx.cassandra.binarystore.MetricsOptions;
+import com.englishtown.vertx.cassandra.binarystore.OrphanedChunkCollectorOptions;
+import com.englishtown.vertx.cassandra.binarystore.QuotaOptions;
+import com.englishtown.vertx.cassandra.binarystore.TableOptions;
+import com.englishtown.vertx.cassandra.binarystore.WarmCacheOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link JsonBinaryStoreConfigurator}
+ */
+public class JsonBinaryStoreConfiguratorTest {
+
+    @Test
+    public void testDefaults() throws Exception {
+        JsonBinaryStoreConfigurator configurator = new JsonBinaryStoreConfigurator(new JsonObject());
+        assertEquals(ChunkLayout.PARTITIONED, configurator.getChunkLayout());
+        assertEquals(0, configurator.getDefaultTtl());
+        assertFalse(configurator.isVerifyChecksums());
+        assertEquals(0, configurator.getReadAhead());
+        assertEquals(0, configurator.getBlockSize());
+        assertFalse(configurator.getOrphanedChunkCollectorOptions().isEnabled());
+    }
+
+    @Test
+    public void testChunkLayout() throws Exception {
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_CHUNK_LAYOUT, "wide");
+        JsonBinaryStoreConfigurator configurator = new JsonBinaryStoreConfigurator(config);
+        assertEquals(ChunkLayout.WIDE, configurator.getChunkLayout());
+    }
+
+    @Test
+    public void testDefaultTtl() throws Exception {
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_DEFAULT_TTL, 3600);
+        JsonBinaryStoreConfigurator configurator = new JsonBinaryStoreConfigurator(config);
+        assertEquals(3600, configurator.getDefaultTtl());
+    }
+
+    @Test
+    public void testVerifyChecksums() throws Exception {
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_VERIFY_CHECKSUMS, true);
+        assertTrue(new JsonBinaryStoreConfigurator(config).isVerifyChecksums());
+    }
+
+    @Test
+    public void testLazyStartup() throws Exception {
+        assertFalse(new JsonBinaryStoreConfigurator(new JsonObject()).isLazyStartup());
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_LAZY_STARTUP, true);
+        assertTrue(new JsonBinaryStoreConfigurator(config).isLazyStartup());
+    }
+
+    @Test
+    public void testReadAhead() throws Exception {
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_READ_AHEAD, 4);
+        assertEquals(4, new JsonBinaryStoreConfigurator(config).getReadAhead());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeReadAhead() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_READ_AHEAD, -1));
+    }
+
+    @Test
+    public void testBlockSize() throws Exception {
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_BLOCK_SIZE, 65536);
+        assertEquals(65536, new JsonBinaryStoreConfigurator(config).getBlockSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBlockSize() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_BLOCK_SIZE, -1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDefaultTtl() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_DEFAULT_TTL, -1));
+    }
+
+    @Test
+    public void testOrphanedChunkCollector() throws Exception {
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_ORPHANED_CHUNK_COLLECTOR, new JsonObject()
+                .put("enabled", true)
+                .put("gracePeriod", 1000L)
+                .put("maxRowsPerSecond", 50));
+
+        OrphanedChunkCollectorOptions options = new JsonBinaryStoreConfigurator(config).getOrphanedChunkCollectorOptions();
+
+        assertTrue(options.isEnabled());
+        assertEquals(1000L, options.getGracePeriod());
+        assertEquals(50, options.getMaxRowsPerSecond());
+        assertEquals(OrphanedChunkCollectorOptions.DEFAULT_INTERVAL, options.getInterval());
+        assertEquals(OrphanedChunkCollectorOptions.DEFAULT_PAGE_SIZE, options.getPageSize());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        assertFalse(new JsonBinaryStoreConfigurator(new JsonObject()).getMetricsOptions().isPrometheusEnabled());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_METRICS, new JsonObject()
+                .put("jmxEnabled", true)
+                .put("prometheusEnabled", true));
+
+        MetricsOptions options = new JsonBinaryStoreConfigurator(config).getMetricsOptions();
+
+        assertTrue(options.isJmxEnabled());
+        assertEquals(MetricsOptions.DEFAULT_JMX_DOMAIN, options.getJmxDomain());
+        assertTrue(options.isPrometheusEnabled());
+        assertEquals(MetricsOptions.DEFAULT_PROMETHEUS_PATH, options.getPrometheusPath());
+    }
+
+    @Test
+    public void testHedging() throws Exception {
+        assertFalse(new JsonBinaryStoreConfigurator(new JsonObject()).getHedgingOptions().isEnabled());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_HEDGING, new JsonObject()
+                .put("enabled", true)
+                .put("percentile", 0.99)
+                .put("budget", 0.1));
+
+        HedgingOptions options = new JsonBinaryStoreConfigurator(config).getHedgingOptions();
+
+        assertTrue(options.isEnabled());
+        assertEquals(0.99, options.getPercentile(), 0);
+        assertEquals(0.1, options.getBudget(), 0);
+        assertEquals(HedgingOptions.DEFAULT_MAX_DELAY, options.getMaxDelay());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHedgingInvalidBudget() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_HEDGING, new JsonObject()
+                .put("budget", 0)));
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        assertFalse(new JsonBinaryStoreConfigurator(new JsonObject()).getConcurrencyLimitOptions().isEnabled());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_CONCURRENCY_LIMIT, new JsonObject()
+                .put("enabled", true)
+                .put("maxLimit", 100));
+
+        ConcurrencyLimitOptions options = new JsonBinaryStoreConfigurator(config).getConcurrencyLimitOptions();
+
+        assertTrue(options.isEnabled());
+        assertEquals(ConcurrencyLimitOptions.DEFAULT_INITIAL_LIMIT, options.getInitialLimit());
+        assertEquals(100, options.getMaxLimit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConcurrencyLimitInvalid() throws Exception {
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_CONCURRENCY_LIMIT, new JsonObject()
+                .put("minLimit", 50)
+                .put("maxLimit", 10));
+        new JsonBinaryStoreConfigurator(config);
+    }
+
+    @Test
+    public void testLanes() throws Exception {
+        JsonObject config = new JsonObject()
+                .put(JsonBinaryStoreConfigurator.CONFIG_CONCURRENCY_LIMIT, new JsonObject()
+                        .put("enabled", true)
+                        .put("maxLimit", 100))
+                .put(JsonBinaryStoreConfigurator.CONFIG_LANES, new JsonObject()
+                        .put(JsonBinaryStoreConfigurator.CONFIG_LANES_METADATA, new JsonObject()
+                                .put("separateSession", true)
+                                .put("concurrencyLimit", new JsonObject().put("maxLimit", 400))));
+
+        JsonBinaryStoreConfigurator configurator = new JsonBinaryStoreConfigurator(config);
+        LaneOptions metadata = configurator.getMetadataLaneOptions();
+        LaneOptions chunks = configurator.getChunkLaneOptions();
+
+        assertTrue(metadata.isSeparateSession());
+        assertTrue(metadata.getConcurrencyLimitOptions().isEnabled());
+        assertEquals(400, metadata.getConcurrencyLimitOptions().getMaxLimit());
+        assertFalse(chunks.isSeparateSession());
+        assertTrue(chunks.getConcurrencyLimitOptions().isEnabled());
+        assertEquals(100, chunks.getConcurrencyLimitOptions().getMaxLimit());
+    }
+
+    @Test
+    public void testChunkScheduler() throws Exception {
+        assertFalse(new JsonBinaryStoreConfigurator(new JsonObject()).getChunkSchedulerOptions().isEnabled());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_CHUNK_SCHEDULER, new JsonObject()
+                .put("enabled", true)
+                .put("maxInFlight", 8));
+
+        ChunkSchedulerOptions options = new JsonBinaryStoreConfigurator(config).getChunkSchedulerOptions();
+
+        assertTrue(options.isEnabled());
+        assertEquals(8, options.getMaxInFlight());
+        assertEquals(ChunkSchedulerOptions.DEFAULT_QUANTUM, options.getQuantum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChunkSchedulerInvalidQuantum() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_CHUNK_SCHEDULER, new JsonObject()
+                .put("quantum", 512)));
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        MemoryBudgetOptions defaults = new JsonBinaryStoreConfigurator(new JsonObject()).getMemoryBudgetOptions();
+        assertFalse(defaults.isEnabled());
+        assertEquals(MemoryBudgetOptions.DEFAULT_MAX_BYTES, defaults.getMaxBytes());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_MEMORY_BUDGET, new JsonObject()
+                .put("enabled", true)
+                .put("maxBytes", 64 * 1024 * 1024));
+
+        MemoryBudgetOptions options = new JsonBinaryStoreConfigurator(config).getMemoryBudgetOptions();
+
+        assertTrue(options.isEnabled());
+        assertEquals(64 * 1024 * 1024, options.getMaxBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMemoryBudgetInvalidMaxBytes() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_MEMORY_BUDGET, new JsonObject()
+                .put("maxBytes", 0)));
+    }
+
+    @Test
+    public void testBufferPool() throws Exception {
+        assertFalse(new JsonBinaryStoreConfigurator(new JsonObject()).getBufferPoolOptions().isEnabled());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_BUFFER_POOL, new JsonObject()
+                .put("enabled", true)
+                .put("maxPooledBytes", 16 * 1024 * 1024)
+                .put("leakDetection", true));
+
+        BufferPoolOptions options = new JsonBinaryStoreConfigurator(config).getBufferPoolOptions();
+
+        assertTrue(options.isEnabled());
+        assertEquals(16 * 1024 * 1024, options.getMaxPooledBytes());
+        assertEquals(BufferPoolOptions.DEFAULT_MIN_SIZE, options.getMinSize());
+        assertTrue(options.isLeakDetection());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferPoolInvalidMinSize() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_BUFFER_POOL, new JsonObject()
+                .put("minSize", -1)));
+    }
+
+    @Test
+    public void testWarmCache() throws Exception {
+        assertFalse(new JsonBinaryStoreConfigurator(new JsonObject()).getWarmCacheOptions().isEnabled());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_WARM_CACHE, new JsonObject()
+                .put("enabled", true)
+                .put("path", "/var/lib/binarystore/popular.txt")
+                .put("maxBytes", 256 * 1024 * 1024)
+                .put("prefetchPerSecond", 50));
+
+        WarmCacheOptions options = new JsonBinaryStoreConfigurator(config).getWarmCacheOptions();
+
+        assertTrue(options.isEnabled());
+        assertEquals("/var/lib/binarystore/popular.txt", options.getPath());
+        assertEquals(256 * 1024 * 1024, options.getMaxBytes());
+        assertEquals(50, options.getPrefetchPerSecond());
+        assertEquals(WarmCacheOptions.DEFAULT_MAX_KEYS, options.getMaxKeys());
+        assertEquals(WarmCacheOptions.DEFAULT_EXPIRE_AFTER, options.getExpireAfter());
+
+        try {
+            new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_WARM_CACHE, new JsonObject()
+                    .put("prefetchPerSecond", 0)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testQuotas() throws Exception {
+        assertFalse(new JsonBinaryStoreConfigurator(new JsonObject()).getQuotaOptions().isEnabled());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_QUOTAS, new JsonObject()
+                .put("enabled", true)
+                .put("tenantField", "team")
+                .put("bytesPerSecond", 1000)
+                .put("opsPerSecond", 10)
+                .put("tenants", new JsonObject()
+                        .put("batch", new JsonObject().put("bytesPerSecond", 100))));
+
+        QuotaOptions options = new JsonBinaryStoreConfigurator(config).getQuotaOptions();
+
+        assertTrue(options.isEnabled());
+        assertEquals("team", options.getTenantField());
+        assertEquals(QuotaOptions.DEFAULT_TENANT, options.getDefaultTenant());
+        assertEquals(1000, options.getQuota("web").getBytesPerSecond());
+
+        // A tenant's own limits are merged over the defaults
+        assertEquals(100, options.getQuota("batch").getBytesPerSecond());
+        assertEquals(10, options.getQuota("batch").getOpsPerSecond(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQuotasInvalidTenantLimit() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_QUOTAS, new JsonObject()
+                .put("tenants", new JsonObject()
+                        .put("batch", new JsonObject().put("burstSeconds", 0)))));
+    }
+
+    @Test
+    public void testKeyspaces() throws Exception {
+        KeyspaceOptions defaults = new JsonBinaryStoreConfigurator(new JsonObject()).getKeyspaceOptions();
+        assertTrue(defaults.getAllowed().isEmpty());
+        assertFalse(defaults.isAllowAny());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_KEYSPACES, new JsonObject()
+                .put("allowed", new JsonArray().add("tenant_a").add("tenant_b"))
+                .put("maxKeyspaces", 10));
+
+        KeyspaceOptions options = new JsonBinaryStoreConfigurator(config).getKeyspaceOptions();
+
+        assertTrue(options.isAllowed("tenant_a"));
+        assertFalse(options.isAllowed("tenant_c"));
+        assertEquals(10, options.getMaxKeyspaces());
+
+        try {
+            config.getJsonObject(JsonBinaryStoreConfigurator.CONFIG_KEYSPACES)
+                    .put("allowed", new JsonArray().add("tenant-a"));
+            new JsonBinaryStoreConfigurator(config);
+            fail("Invalid keyspace names should be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testTables() throws Exception {
+        assertTrue(new JsonBinaryStoreConfigurator(new JsonObject()).getTableOptions().isEmpty());
+
+        JsonObject config = new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_TABLES, new JsonObject()
+                .put("chunks", new JsonObject()
+                        .put("compression", false)
+                        .put("compaction", new JsonObject().put("class", "LeveledCompactionStrategy").put("sstable_size_in_mb", 320))
+                        .put("bloomFilterFpChance", 0.1))
+                .put("files", new JsonObject()
+                        .put("compression", new JsonObject().put("class", "LZ4Compressor").put("chunk_length_in_kb", 16))
+                        .put("caching", new JsonObject().put("keys", "ALL").put("rows_per_partition", "ALL"))));
+
+        Map<String, TableOptions> tables = new JsonBinaryStoreConfigurator(config).getTableOptions();
+
+        TableOptions chunks = tables.get("chunks");
+        assertEquals("false", chunks.getCompression().get("enabled"));
+        assertEquals("320", chunks.getCompaction().get("sstable_size_in_mb"));
+        assertEquals(0.1, chunks.getBloomFilterFpChance(), 0);
+        assertNull(chunks.getCaching());
+
+        TableOptions files = tables.get("files");
+        assertEquals("16", files.getCompression().get("chunk_length_in_kb"));
+        assertEquals("ALL", files.getCaching().get("rows_per_partition"));
+        assertNull(files.getCompaction());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTablesUnknownTable() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_TABLES, new JsonObject()
+                .put("chunk", new JsonObject().put("compression", false))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTablesCompactionWithoutClass() throws Exception {
+        new JsonBinaryStoreConfigurator(new JsonObject().put(JsonBinaryStoreConfigurator.CONFIG_TABLES, new JsonObject()
+                .put("chunks", new JsonObject().put("compaction", new JsonObject().put("sstable_size_in_mb", 320)))));
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.englishtown.vertx.cassandra.binarystore.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import com.englishtown.promises.HandlerState;
+import com.englishtown.promises.Promise;
+import com.englishtown.promises.When;
+import com.englishtown.promises.WhenFactory;
+import com.englishtown.vertx.cassandra.CassandraSession;
+import com.englishtown.vertx.cassandra.binarystore.ConcurrencyLimitOptions;
+import com.englishtown.vertx.cassandra.binarystore.HedgingOptions;
+import com.englishtown.vertx.cassandra.binarystore.Metrics;
+import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
+import com.google.common.util.concurrent.AbstractFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ReadHedger}
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ReadHedgerTest {
+
+    @Mock
+    WhenCassandraSession whenSession;
+    @Mock
+    CassandraSession session;
+    @Mock
+    Vertx vertx;
+    @Mock
+    Context context;
+    @Mock
+    Statement statement;
+    @Mock
+    ResultSet primaryResult;
+    @Mock
+    ResultSet secondaryResult;
+
+    MetricRegistry registry = new MetricRegistry();
+    HedgingOptions options = new HedgingOptions().setEnabled(true).setMinDelay(5).setMaxDelay(500).setMinSamples(10);
+    When when = WhenFactory.createSync();
+    TestFuture primary = new TestFuture();
+    TestFuture secondary = new TestFuture();
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(new ConcurrencyLimitOptions().setEnabled(true).setInitialLimit(1), registry, "chunks", when);
+    ReadHedger hedger;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+
+        when(whenSession.getSession()).thenReturn(session);
+        when(session.getVertx()).thenReturn(vertx);
+        when(vertx.getOrCreateContext()).thenReturn(context);
+        when(vertx.setTimer(anyLong(), any(Handler.class))).thenReturn(7L);
+        when(session.executeAsync(statement)).thenReturn(primary, secondary);
+
+        doAnswer(invocation -> {
+            ((Handler<Void>) invocation.getArguments()[0]).handle(null);
+            return null;
+        }).when(context).runOnContext(any(Handler.class));
+
+        hedger = new ReadHedger(whenSession, options, limiter, new Metrics(registry, "chunks"), registry, "chunks", when);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        options.setEnabled(false);
+        when(whenSession.executeAsync(statement)).thenReturn(when.resolve(primaryResult));
+
+        Promise<ResultSet> p = hedger.execute(statement);
+
+        assertEquals(primaryResult, p.inspect().getValue());
+        verifyZeroInteractions(session, vertx);
+
+    }
+
+    @Test
+    public void testPrimaryAnswersFirst() throws Exception {
+
+        Promise<ResultSet> p = hedger.execute(statement);
+
+        verify(statement).setIdempotent(true);
+        verify(vertx).setTimer(eq(500L), any());
+
+        primary.set(primaryResult);
+
+        assertEquals(primaryResult, p.inspect().getValue());
+        verify(vertx).cancelTimer(7L);
+        verify(session, times(1)).executeAsync(statement);
+        assertEquals(0, registry.meter("et.cass.binarystore.chunks.hedges.fired").getCount());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHedgeWins() throws Exception {
+
+        Promise<ResultSet> p = hedger.execute(statement);
+
+        ArgumentCaptor<Handler<Long>> captor = ArgumentCaptor.forClass((Class) Handler.class);
+        verify(vertx).setTimer(anyLong(), captor.capture());
+        captor.getValue().handle(7L);
+
+        // The hedge answers first and the slow primary is cancelled
+        verify(session, times(2)).executeAsync(statement);
+        secondary.set(secondaryResult);
+
+        assertEquals(secondaryResult, p.inspect().getValue());
+        assertTrue(primary.isCancelled());
+        assertEquals(1, registry.meter("et.cass.binarystore.chunks.hedges.fired").getCount());
+        assertEquals(1, registry.meter("et.cass.binarystore.chunks.hedges.won").getCount());
+        assertEquals(0, limiter.getInFlight());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHedgeHoldsLaneSlot() throws Exception {
+
+        Promise<ResultSet> p = hedger.execute(statement);
+
+        ArgumentCaptor<Handler<Long>> captor = ArgumentCaptor.forClass((Class) Handler.class);
+        verify(vertx).setTimer(anyLong(), captor.capture());
+        captor.getValue().handle(7L);
+        assertEquals(1, limiter.getInFlight());
+
+        // The copy gives its slot back when it is cancelled as well
+        primary.set(primaryResult);
+
+        assertEquals(primaryResult, p.inspect().getValue());
+        assertTrue(secondary.isCancelled());
+        assertEquals(0, limiter.getInFlight());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSkipHedgeWhenLaneFull() throws Exception {
+
+        assertTrue(limiter.tryAcquireSlot());
+        Promise<ResultSet> p = hedger.execute(statement);
+
+        ArgumentCaptor<Handler<Long>> captor = ArgumentCaptor.forClass((Class) Handler.class);
+        verify(vertx).setTimer(anyLong(), captor.capture());
+        captor.getValue().handle(7L);
+
+        verify(session, times(1)).executeAsync(statement);
+        assertEquals(0, registry.meter("et.cass.binarystore.chunks.hedges.fired").getCount());
+        assertEquals(1, registry.meter("et.cass.binarystore.chunks.hedges.skipped").getCount());
+
+        primary.set(primaryResult);
+        assertEquals(primaryResult, p.inspect().getValue());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSkipHedgeWhenBudgetSpent() throws Exception {
+
+        options.setBudget(0.01);
+        limiter = new ConcurrencyLimiter(new ConcurrencyLimitOptions(), registry, "chunks", when);
+        hedger = new ReadHedger(whenSession, options, limiter, new Metrics(registry, "chunks"), registry, "chunks", when);
+        when(session.executeAsync(statement)).thenAnswer(invocation -> new TestFuture());
+
+        // Every read is slow, only the initial burst is hedged
+        ArgumentCaptor<Handler<Long>> captor = ArgumentCaptor.forClass((Class) Handler.class);
+        for (int i = 0; i < 20; i++) {
+            hedger.execute(statement);
+            verify(vertx, times(i + 1)).setTimer(anyLong(), captor.capture());
+            captor.getValue().handle(7L);
+        }
+
+        assertEquals(10, registry.meter("et.cass.binarystore.chunks.hedges.fired").getCount());
+        assertEquals(10, registry.meter("et.cass.binarystore.chunks.hedges.skipped").getCount());
+
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailureWaitsForOtherCopy() throws Exception {
+
+        Promise<ResultSet> p = hedger.execute(statement);
+
+        ArgumentCaptor<Handler<Long>> captor = ArgumentCaptor.forClass((Class) Handler.class);
+        verify(vertx).setTimer(anyLong(), captor.capture());
+        captor.getValue().handle(7L);
+
+        primary.setException(new RuntimeException("timeout"));
+        assertEquals(HandlerState.PENDING, p.inspect().getState());
+
+        secondary.setException(new RuntimeException("timeout"));
+        assertEquals(HandlerState.REJECTED, p.inspect().getState());
+
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+
+        // Not enough samples yet
+        assertEquals(500, hedger.getDelay());
+
+        hedger = new ReadHedger(whenSession, options, limiter, new Metrics(registry, "files"), registry, "files", when);
+        for (int i = 0; i < 100; i++) {
+            registry.timer("et.cass.binarystore.files.read.success").update(20, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(20, hedger.getDelay());
+
+    }
+
+    private static class TestFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        @Override
+        public boolean set(ResultSet value) {
+            return super.set(value);
+        }
+
+        @Override
+        public boolean setException(Throwable throwable) {
+            return super.setException(throwable);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -8,10 +8,18 @@ import com.englishtown.promises.WhenFactory;
 import com.englishtown.vertx.cassandra.CassandraConfigurator;
 import com.englishtown.vertx.cassandra.CassandraSession;
 import com.englishtown.vertx.cassandra.binarystore.*;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreKeyspaces;
 import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreManager;
 import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreReader;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreSessions;
 import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreStatements;
 import com.englishtown.vertx.cassandra.binarystore.impl.DefaultBinaryStoreWriter;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultCacheWarmer;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultChunkBufferPool;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultMetricsExporter;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultOrphanedChunkCollector;
+import com.englishtown.vertx.cassandra.binarystore.impl.DefaultWarmCache;
+import com.englishtown.vertx.cassandra.binarystore.impl.JsonBinaryStoreConfigurator;
 import com.englishtown.vertx.cassandra.impl.DefaultCassandraSession;
 import com.englishtown.vertx.cassandra.impl.EnvironmentCassandraConfigurator;
 import com.englishtown.vertx.cassandra.promises.WhenCassandraSession;
@@ -75,12 +83,22 @@ public class BinaryStoreIntegrationTest extends VertxTestBase {
             CassandraConfigurator configurator = new EnvironmentCassandraConfigurator(vertx, System::getenv);
             session = new DefaultCassandraSession(builder, configurator, vertx);
             WhenCassandraSession whenSession = new DefaultWhenCassandraSession(session, when, vertx);
-            BinaryStoreStatements statements = new DefaultBinaryStoreStatements(whenSession, when);
-            BinaryStoreStarter starter = new BinaryStoreStarter(session, statements, vertx);
-            BinaryStoreManager binaryStoreManager = new DefaultBinaryStoreManager(whenSession, statements, new MetricRegistry(), when);
-
-            binaryStoreWriter = new DefaultBinaryStoreWriter(binaryStoreManager, when);
-            binaryStoreReader = new DefaultBinaryStoreReader(binaryStoreManager);
+            BinaryStoreConfigurator storeConfigurator = new JsonBinaryStoreConfigurator(config);
+            BinaryStoreStatements statements = new DefaultBinaryStoreStatements(whenSession, storeConfigurator, when);
+            MetricRegistry registry = new MetricRegistry();
+            BinaryStoreManager binaryStoreManager = new DefaultBinaryStoreManager(whenSession, statements, registry, when);
+            OrphanedChunkCollector collector = new DefaultOrphanedChunkCollector(whenSession, statements, binaryStoreManager, storeConfigurator, registry, vertx, when);
+            MetricsExporter metricsExporter = new DefaultMetricsExporter(registry, storeConfigurator, statements);
+            BinaryStoreSessions sessions = new DefaultBinaryStoreSessions(whenSession, when);
+            BinaryStoreKeyspaces keyspaces = new DefaultBinaryStoreKeyspaces(whenSession, sessions, statements, storeConfigurator, when);
+            ChunkBufferPool bufferPool = new DefaultChunkBufferPool(storeConfigurator, registry);
+            WarmCache warmCache = new DefaultWarmCache(storeConfigurator, bufferPool, registry);
+            CacheWarmer cacheWarmer = new DefaultCacheWarmer(binaryStoreManager, warmCache, bufferPool, storeConfigurator, registry, vertx, when);
+            BinaryStoreStarter starter = new BinaryStoreStarter(session, sessions, statements, keyspaces, collector, cacheWarmer,
+                    metricsExporter, storeConfigurator, registry, when, vertx);
+
+            binaryStoreWriter = new DefaultBinaryStoreWriter(binaryStoreManager, storeConfigurator, registry, when);
+            binaryStoreReader = new DefaultBinaryStoreReader(binaryStoreManager, storeConfigurator, registry, when);
 
             session.onReady(result -> {
                 if (result.failed()) {